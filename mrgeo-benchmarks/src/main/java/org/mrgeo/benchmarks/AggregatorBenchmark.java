@@ -0,0 +1,124 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.mrgeo.aggregators.Aggregator;
+import org.mrgeo.aggregators.AggregatorRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every Aggregator (by its AggregatorRegistry name), on the 2x2 blocks of a 512x512 tile (what BuildPyramid asks of them), with
+ * a few nodata values sprinkled in
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AggregatorBenchmark
+{
+private static final int BLOCKS = (BenchmarkRasters.TILESIZE / 2) * (BenchmarkRasters.TILESIZE / 2);
+private static final int NODATA = -1;
+
+@Param({"MEAN", "MAX", "MIN", "MINAVGPAIR", "MODE", "NEAREST", "SUM"})
+public String aggregator;
+
+private Aggregator agg;
+
+private double[][] doubles;
+private float[][] floats;
+private int[][] ints;
+private short[][] shorts;
+private byte[][] bytes;
+
+@Setup
+public void setup() throws ReflectiveOperationException
+{
+  agg = AggregatorRegistry.aggregatorRegistry.get(aggregator).newInstance();
+
+  Random random = new Random(42);
+
+  doubles = new double[BLOCKS][4];
+  floats = new float[BLOCKS][4];
+  ints = new int[BLOCKS][4];
+  shorts = new short[BLOCKS][4];
+  bytes = new byte[BLOCKS][4];
+
+  for (int i = 0; i < BLOCKS; i++)
+  {
+    for (int j = 0; j < 4; j++)
+    {
+      // about 1 in 20 values is nodata, the rest are in a small range, so mode has something to find
+      int v = (random.nextInt(20) == 0) ? NODATA : random.nextInt(8);
+      doubles[i][j] = v;
+      floats[i][j] = v;
+      ints[i][j] = v;
+      shorts[i][j] = (short) v;
+      bytes[i][j] = (byte) v;
+    }
+  }
+}
+
+@Benchmark
+public void aggregateDouble(Blackhole bh)
+{
+  for (int i = 0; i < BLOCKS; i++)
+  {
+    bh.consume(agg.aggregate(doubles[i], NODATA));
+  }
+}
+
+@Benchmark
+public void aggregateFloat(Blackhole bh)
+{
+  for (int i = 0; i < BLOCKS; i++)
+  {
+    bh.consume(agg.aggregate(floats[i], NODATA));
+  }
+}
+
+@Benchmark
+public void aggregateInt(Blackhole bh)
+{
+  for (int i = 0; i < BLOCKS; i++)
+  {
+    bh.consume(agg.aggregate(ints[i], NODATA));
+  }
+}
+
+@Benchmark
+public void aggregateShort(Blackhole bh)
+{
+  for (int i = 0; i < BLOCKS; i++)
+  {
+    bh.consume(agg.aggregate(shorts[i], (short) NODATA));
+  }
+}
+
+@Benchmark
+public void aggregateByte(Blackhole bh)
+{
+  for (int i = 0; i < BLOCKS; i++)
+  {
+    bh.consume(agg.aggregate(bytes[i], (byte) NODATA));
+  }
+}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.mrgeo.data.raster.MrGeoRaster;
+
+import java.awt.image.DataBuffer;
+
+/**
+ * Rasters the benchmarks run on, so every benchmark sees the same data.
+ */
+final class BenchmarkRasters
+{
+static final int TILESIZE = 512;
+
+private BenchmarkRasters()
+{
+}
+
+static int datatype(String name)
+{
+  switch (name.toLowerCase())
+  {
+  case "byte":
+    return DataBuffer.TYPE_BYTE;
+  case "short":
+    return DataBuffer.TYPE_SHORT;
+  case "ushort":
+    return DataBuffer.TYPE_USHORT;
+  case "int":
+    return DataBuffer.TYPE_INT;
+  case "float":
+    return DataBuffer.TYPE_FLOAT;
+  case "double":
+    return DataBuffer.TYPE_DOUBLE;
+  default:
+    throw new IllegalArgumentException("Unknown data type: " + name);
+  }
+}
+
+/**
+ * A smooth surface (like an elevation tile), values stay within the range of a byte
+ */
+static MrGeoRaster surface(int width, int height, int bands, int datatype) throws MrGeoRaster.MrGeoRasterException
+{
+  MrGeoRaster raster = MrGeoRaster.createEmptyRaster(width, height, bands, datatype);
+  for (int b = 0; b < bands; b++)
+  {
+    for (int y = 0; y < height; y++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        raster.setPixel(x, y, b, 64 + 50 * Math.sin(x / 37.0 + b) + 50 * Math.cos(y / 23.0));
+      }
+    }
+  }
+  return raster;
+}
+
+/**
+ * The surface, with the left half of the tile set to nodata
+ */
+static MrGeoRaster halfNodata(int width, int height, int bands, int datatype, double nodata)
+    throws MrGeoRaster.MrGeoRasterException
+{
+  MrGeoRaster raster = surface(width, height, bands, datatype);
+  for (int b = 0; b < bands; b++)
+  {
+    for (int y = 0; y < height; y++)
+    {
+      for (int x = 0; x < width / 2; x++)
+      {
+        raster.setPixel(x, y, b, nodata);
+      }
+    }
+  }
+  return raster;
+}
+
+static double[] nodatas(int bands, double nodata)
+{
+  double[] nodatas = new double[bands];
+  java.util.Arrays.fill(nodatas, nodata);
+  return nodatas;
+}
+}
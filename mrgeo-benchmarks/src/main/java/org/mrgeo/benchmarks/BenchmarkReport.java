@@ -0,0 +1,198 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Compares a JMH run (-rf json) against a stored baseline, benchmark by benchmark (and parameter
+ * set by parameter set), and exits with a non-zero status if any got slower by more than the
+ * threshold (10% by default).
+ * <p>
+ * No baseline is checked in, the numbers only mean something on the machine they were recorded on.
+ * A CI job first records one on its own hardware (from a build of the reference commit), then
+ * compares each later run against it:
+ * <pre>
+ *   java -jar benchmarks.jar -rf json -rff reference.json
+ *   java -cp benchmarks.jar org.mrgeo.benchmarks.BenchmarkReport -record baseline.json reference.json
+ *
+ *   java -jar benchmarks.jar -rf json -rff results.json
+ *   java -cp benchmarks.jar org.mrgeo.benchmarks.BenchmarkReport baseline.json results.json [threshold %]
+ * </pre>
+ * Benchmarks that aren't in the baseline are reported as new.
+ */
+public class BenchmarkReport
+{
+private static final double DEFAULT_THRESHOLD = 10.0;
+
+private static class Result
+{
+  final String mode;
+  final double score;
+  final double error;
+  final String unit;
+
+  Result(String mode, double score, double error, String unit)
+  {
+    this.mode = mode;
+    this.score = score;
+    this.error = error;
+    this.unit = unit;
+  }
+
+  // throughput is better higher, all the other modes are times, better lower
+  double change(Result baseline)
+  {
+    double change = (score - baseline.score) / baseline.score * 100.0;
+    return "thrpt".equals(mode) ? -change : change;
+  }
+}
+
+public static void main(String[] args) throws IOException
+{
+  if (args.length >= 3 && "-record".equals(args[0]))
+  {
+    // keep the results as the new baseline
+    File baseline = new File(args[1]);
+    if (baseline.getParentFile() != null && !baseline.getParentFile().exists() && !baseline.getParentFile().mkdirs())
+    {
+      throw new IOException("Can't create " + baseline.getParent());
+    }
+    Files.copy(new File(args[2]).toPath(), baseline.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    System.out.println("Recorded " + args[2] + " as baseline " + args[1]);
+    return;
+  }
+
+  if (args.length < 2)
+  {
+    System.err.println("Usage: BenchmarkReport <baseline.json> <results.json> [threshold %]");
+    System.err.println("       BenchmarkReport -record <baseline.json> <results.json>");
+    System.exit(2);
+  }
+
+  File baseline = new File(args[0]);
+  if (!baseline.exists())
+  {
+    System.err.println("No baseline " + args[0] + ", record one first with:");
+    System.err.println("       BenchmarkReport -record <baseline.json> <results.json>");
+    System.exit(2);
+  }
+
+  double threshold = (args.length > 2) ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+
+  int regressions = report(read(baseline), read(new File(args[1])), threshold, System.out);
+  System.exit(regressions > 0 ? 1 : 0);
+}
+
+/**
+ * Print the comparison, returns the number of regressions
+ */
+static int report(Map<String, Result> baseline, Map<String, Result> results, double threshold, PrintStream out)
+{
+  int regressions = 0;
+
+  out.println(String.format("%-90s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+  for (Map.Entry<String, Result> entry : results.entrySet())
+  {
+    Result current = entry.getValue();
+    Result base = baseline.get(entry.getKey());
+
+    if (base == null || !base.unit.equals(current.unit) || !base.mode.equals(current.mode))
+    {
+      out.println(String.format("%-90s %14s %14.3f %9s  %s", entry.getKey(), "-", current.score, "-",
+          current.unit + " (new)"));
+      continue;
+    }
+
+    double change = current.change(base);
+    String flag = "";
+
+    // only flag changes bigger than the measurement error too
+    if (Math.abs(current.score - base.score) > Math.max(current.error, base.error))
+    {
+      if (change > threshold)
+      {
+        flag = "REGRESSION";
+        regressions++;
+      }
+      else if (change < -threshold)
+      {
+        flag = "improved";
+      }
+    }
+
+    out.println(String.format("%-90s %14.3f %14.3f %+8.1f%%  %s %s", entry.getKey(), base.score, current.score,
+        change, current.unit, flag));
+  }
+
+  for (String name : baseline.keySet())
+  {
+    if (!results.containsKey(name))
+    {
+      out.println(String.format("%-90s (missing from the results)", name));
+    }
+  }
+
+  out.println();
+  out.println(regressions + " regression(s), threshold " + threshold + "%");
+
+  return regressions;
+}
+
+/**
+ * Read a JMH json result file, keyed by the benchmark name and its parameters
+ */
+static Map<String, Result> read(File file) throws IOException
+{
+  Map<String, Result> results = new LinkedHashMap<>();
+
+  JsonNode root = new ObjectMapper().readTree(file);
+  for (JsonNode run : root)
+  {
+    StringBuilder name = new StringBuilder(run.get("benchmark").asText()
+        .replace(BenchmarkReport.class.getPackage().getName() + ".", ""));
+
+    JsonNode params = run.get("params");
+    if (params != null && params.size() > 0)
+    {
+      // sort the parameters, so the key doesn't depend on their order in the file
+      SortedMap<String, String> sorted = new TreeMap<>();
+      Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+      while (fields.hasNext())
+      {
+        Map.Entry<String, JsonNode> field = fields.next();
+        sorted.put(field.getKey(), field.getValue().asText());
+      }
+      name.append(' ').append(sorted);
+    }
+
+    JsonNode metric = run.get("primaryMetric");
+    double error = metric.get("scoreError").asDouble();
+    results.put(name.toString(), new Result(run.get("mode").asText(), metric.get("score").asDouble(),
+        Double.isNaN(error) ? 0 : error, metric.get("scoreUnit").asText()));
+  }
+
+  return results;
+}
+}
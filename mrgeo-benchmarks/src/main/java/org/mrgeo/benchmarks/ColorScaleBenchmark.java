@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.mrgeo.colorscale.ColorScale;
+import org.mrgeo.colorscale.applier.ColorScaleApplier;
+import org.mrgeo.colorscale.applier.JpegColorScaleApplier;
+import org.mrgeo.colorscale.applier.PngColorScaleApplier;
+import org.mrgeo.data.raster.MrGeoRaster;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.DataBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coloring a 512x512 float tile (the first step of rendering a WMS/TMS tile), with the default
+ * color scale, and the color scale lookups it makes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ColorScaleBenchmark
+{
+@Param({"png", "jpeg"})
+public String format;
+
+private ColorScaleApplier applier;
+private ColorScale colorScale;
+private MrGeoRaster raster;
+private double[] extrema;
+private double[] nodatas;
+private double[] values;
+private int[] color;
+
+@Setup
+public void setup() throws Exception
+{
+  applier = format.equals("png") ? new PngColorScaleApplier() : new JpegColorScaleApplier();
+  colorScale = ColorScale.createDefault();
+
+  raster = BenchmarkRasters.halfNodata(BenchmarkRasters.TILESIZE, BenchmarkRasters.TILESIZE, 1,
+      DataBuffer.TYPE_FLOAT, Double.NaN);
+  extrema = new double[]{14, 114};
+  nodatas = new double[]{Double.NaN};
+
+  values = new double[raster.width() * raster.height()];
+  raster.readBand(0, values);
+  color = new int[4];
+
+  // sets up the color scale's extrema
+  applier.applyColorScale(raster, colorScale, extrema, nodatas, null);
+}
+
+@Benchmark
+public MrGeoRaster applyColorScale() throws ColorScale.ColorScaleException
+{
+  return applier.applyColorScale(raster, colorScale, extrema, nodatas, null);
+}
+
+@Benchmark
+public int lookup()
+{
+  int sum = 0;
+  for (double v : values)
+  {
+    colorScale.lookup(v, color);
+    sum += color[0];
+  }
+  return sum;
+}
+
+@Benchmark
+public int lookupPacked()
+{
+  int sum = 0;
+  for (double v : values)
+  {
+    sum += colorScale.lookupPacked(v);
+  }
+  return sum;
+}
+}
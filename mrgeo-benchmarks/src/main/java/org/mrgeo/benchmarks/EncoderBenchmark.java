@@ -0,0 +1,105 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.gdal.gdal.Dataset;
+import org.mrgeo.colorscale.ColorScale;
+import org.mrgeo.colorscale.applier.JpegColorScaleApplier;
+import org.mrgeo.colorscale.applier.PngColorScaleApplier;
+import org.mrgeo.data.raster.JpegEncoder;
+import org.mrgeo.data.raster.MrGeoRaster;
+import org.mrgeo.data.raster.PngEncoder;
+import org.mrgeo.utils.GDALJavaUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a colored 512x512 tile as a PNG or JPEG, with the Java encoders the image response
+ * writers use, or through GDAL (which needs the GDAL native libraries on java.library.path).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EncoderBenchmark
+{
+@Param({"png", "jpeg"})
+public String format;
+
+@Param({"java", "gdal"})
+public String encoder;
+
+private MrGeoRaster colored;
+private double[] nodatas;
+
+private final PngEncoder png = new PngEncoder();
+private final JpegEncoder jpeg = new JpegEncoder();
+
+@Setup
+public void setup() throws Exception
+{
+  MrGeoRaster raster = BenchmarkRasters.halfNodata(BenchmarkRasters.TILESIZE, BenchmarkRasters.TILESIZE, 1,
+      DataBuffer.TYPE_FLOAT, Double.NaN);
+  double[] extrema = {14, 114};
+
+  if (format.equals("png"))
+  {
+    colored = new PngColorScaleApplier().applyColorScale(raster, ColorScale.createDefault(), extrema,
+        new double[]{Double.NaN}, null);
+  }
+  else
+  {
+    colored = new JpegColorScaleApplier().applyColorScale(raster, ColorScale.createDefault(), extrema,
+        new double[]{Double.NaN}, null);
+  }
+  nodatas = BenchmarkRasters.nodatas(colored.bands(), 0);
+}
+
+@Benchmark
+public int encode() throws IOException
+{
+  ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  if (encoder.equals("java"))
+  {
+    if (format.equals("png"))
+    {
+      png.encode(colored, nodatas, stream);
+    }
+    else
+    {
+      jpeg.encode(colored, stream);
+    }
+    return stream.size();
+  }
+
+  Dataset dataset = colored.toDataset(null, nodatas);
+  try
+  {
+    GDALJavaUtils.saveRaster(dataset, stream, format);
+  }
+  finally
+  {
+    dataset.delete();
+  }
+  return stream.size();
+}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.mrgeo.hdfs.tile.FileSplit;
+import org.mrgeo.hdfs.tile.Splits;
+import org.mrgeo.utils.tms.TMSUtils;
+import org.mrgeo.utils.tms.TileOrder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the split (map file) of 1024 random tiles, the lookup made for every tile read from an
+ * HDFS pyramid.  Fewer than 1000 splits are searched linearly, more are binary searched.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FileSplitBenchmark
+{
+private static final int COUNT = 1024;
+private static final int ZOOM = 10;
+
+@Param({"10", "500", "5000"})
+public int splits;
+
+@Param({"ROW_MAJOR", "HILBERT"})
+public TileOrder order;
+
+private FileSplit fileSplit;
+private long[] tileids;
+
+@Setup
+public void setup()
+{
+  // the splits evenly divide the tile ids, or curve indices (the curves cover a square), of the zoom level
+  long tiles = TMSUtils.numXTiles(ZOOM) *
+      ((order == TileOrder.ROW_MAJOR) ? TMSUtils.numYTiles(ZOOM) : TMSUtils.numXTiles(ZOOM));
+  long[] startIds = new long[splits];
+  long[] endIds = new long[splits];
+  String[] names = new String[splits];
+  for (int i = 0; i < splits; i++)
+  {
+    startIds[i] = tiles * i / splits;
+    endIds[i] = tiles * (i + 1) / splits - 1;
+    names[i] = String.format("part-%05d", i);
+  }
+
+  fileSplit = new FileSplit();
+  fileSplit.generateSplits(startIds, endIds, names);
+  fileSplit.setTileOrder(order, ZOOM);
+
+  Random random = new Random(42);
+  tileids = new long[COUNT];
+  for (int i = 0; i < COUNT; i++)
+  {
+    tileids[i] = TMSUtils.tileid(random.nextInt((int) TMSUtils.numXTiles(ZOOM)),
+        random.nextInt((int) TMSUtils.numYTiles(ZOOM)), ZOOM);
+  }
+}
+
+@Benchmark
+public void getSplit(Blackhole bh) throws Splits.SplitException
+{
+  for (int i = 0; i < COUNT; i++)
+  {
+    bh.consume(fileSplit.getSplit(tileids[i]));
+  }
+}
+}
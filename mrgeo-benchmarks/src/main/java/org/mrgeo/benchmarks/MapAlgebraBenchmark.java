@@ -0,0 +1,113 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.mrgeo.data.DataProviderFactory;
+import org.mrgeo.data.ProviderProperties;
+import org.mrgeo.data.raster.MrGeoRaster;
+import org.mrgeo.data.raster.RasterWritable;
+import org.mrgeo.data.rdd.RasterRDD;
+import org.mrgeo.data.tile.TileIdWritable;
+import org.mrgeo.hdfs.utils.HadoopFileUtils;
+import org.mrgeo.mapalgebra.MapAlgebra;
+import org.mrgeo.utils.HadoopUtils;
+import org.mrgeo.utils.SparkUtils;
+import org.mrgeo.utils.tms.Bounds;
+import org.mrgeo.utils.tms.TMSUtils;
+import org.mrgeo.utils.tms.TileBounds;
+import org.openjdk.jmh.annotations.*;
+import scala.Tuple2;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole map algebra job, run in local Spark (the mrgeo "local" cluster), on an 8x8 tile
+ * float image.  This covers the job setup, reading and writing the pyramids and the pixel ops,
+ * so it is measured a run at a time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class MapAlgebraBenchmark
+{
+private static final int ZOOM = 10;
+private static final int TILES = 8;
+
+private Configuration conf;
+private ProviderProperties providerProperties;
+private java.nio.file.Path dir;
+private String input;
+private String output;
+
+@Setup(Level.Trial)
+public void setup() throws IOException
+{
+  conf = HadoopUtils.createConfiguration();
+  providerProperties = new ProviderProperties();
+
+  dir = Files.createTempDirectory("mrgeo-benchmark");
+  input = new Path(dir.toUri().toString(), "input").toString();
+  output = new Path(dir.toUri().toString(), "output").toString();
+
+  TileBounds tb = new TileBounds(512, 300, 512 + TILES - 1, 300 + TILES - 1);
+  List<Tuple2<TileIdWritable, RasterWritable>> tiles = new ArrayList<>();
+  for (long ty = tb.s; ty <= tb.n; ty++)
+  {
+    for (long tx = tb.w; tx <= tb.e; tx++)
+    {
+      MrGeoRaster raster = BenchmarkRasters.surface(BenchmarkRasters.TILESIZE, BenchmarkRasters.TILESIZE, 1,
+          DataBuffer.TYPE_FLOAT);
+      tiles.add(new Tuple2<>(new TileIdWritable(TMSUtils.tileid(tx, ty, ZOOM)), RasterWritable.toWritable(raster)));
+    }
+  }
+
+  Bounds bounds = TMSUtils.tileToBounds(tb, ZOOM, BenchmarkRasters.TILESIZE);
+  try (JavaSparkContext context = new JavaSparkContext(
+      new SparkConf().setMaster("local[*]").setAppName("MapAlgebraBenchmark setup")))
+  {
+    SparkUtils.saveMrsPyramid(RasterRDD.apply(context.parallelizePairs(tiles, TILES).rdd()),
+        DataProviderFactory.getMrsImageDataProvider(input, DataProviderFactory.AccessMode.OVERWRITE, providerProperties),
+        ZOOM, BenchmarkRasters.TILESIZE, new double[]{Double.NaN}, conf, DataBuffer.TYPE_FLOAT, bounds, 1, "",
+        providerProperties);
+  }
+}
+
+@TearDown(Level.Trial)
+public void teardown() throws IOException
+{
+  HadoopFileUtils.delete(conf, dir.toUri().toString());
+}
+
+@Benchmark
+public boolean pixelExpression() throws IOException
+{
+  HadoopFileUtils.delete(conf, output);
+  return MapAlgebra.mapalgebra("sin([" + input + "]) * 2 + [" + input + "] / 3 - 1", output, conf,
+      providerProperties, null);
+}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.mrgeo.data.raster.MrGeoRaster;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing every pixel of a 512x512 tile, a pixel at a time and a band at a time
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PixelAccessBenchmark
+{
+@Param({"byte", "short", "int", "float", "double"})
+public String datatype;
+
+private MrGeoRaster raster;
+private double[] samples;
+
+@Setup
+public void setup() throws MrGeoRaster.MrGeoRasterException
+{
+  raster = BenchmarkRasters.surface(BenchmarkRasters.TILESIZE, BenchmarkRasters.TILESIZE, 1,
+      BenchmarkRasters.datatype(datatype));
+  samples = new double[BenchmarkRasters.TILESIZE * BenchmarkRasters.TILESIZE];
+}
+
+@Benchmark
+public double getPixelDouble()
+{
+  double sum = 0;
+  for (int y = 0; y < raster.height(); y++)
+  {
+    for (int x = 0; x < raster.width(); x++)
+    {
+      sum += raster.getPixelDouble(x, y, 0);
+    }
+  }
+  return sum;
+}
+
+@Benchmark
+public MrGeoRaster setPixelDouble()
+{
+  for (int y = 0; y < raster.height(); y++)
+  {
+    for (int x = 0; x < raster.width(); x++)
+    {
+      raster.setPixel(x, y, 0, (double) ((x + y) & 0x7f));
+    }
+  }
+  return raster;
+}
+
+@Benchmark
+public double[] readBand()
+{
+  raster.readBand(0, samples);
+  return samples;
+}
+
+@Benchmark
+public MrGeoRaster writeBand()
+{
+  raster.writeBand(0, samples);
+  return raster;
+}
+}
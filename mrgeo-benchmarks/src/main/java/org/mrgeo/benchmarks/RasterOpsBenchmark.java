@@ -0,0 +1,91 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.mrgeo.aggregators.MeanAggregator;
+import org.mrgeo.data.raster.MrGeoRaster;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole-tile raster operations: decimating (pyramid building), scaling (nearest neighbor and
+ * bilinear) and mosaicking a 512x512 tile
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RasterOpsBenchmark
+{
+private static final double NODATA = 0;
+
+@Param({"byte", "short", "int", "float", "double"})
+public String datatype;
+
+@Param({"1", "3"})
+public int bands;
+
+private MrGeoRaster raster;
+private MrGeoRaster partial;
+private double[] nodatas;
+private MeanAggregator aggregator;
+
+@Setup
+public void setup() throws MrGeoRaster.MrGeoRasterException
+{
+  int type = BenchmarkRasters.datatype(datatype);
+  raster = BenchmarkRasters.surface(BenchmarkRasters.TILESIZE, BenchmarkRasters.TILESIZE, bands, type);
+  partial = BenchmarkRasters.halfNodata(BenchmarkRasters.TILESIZE, BenchmarkRasters.TILESIZE, bands, type, NODATA);
+  nodatas = BenchmarkRasters.nodatas(bands, NODATA);
+  aggregator = new MeanAggregator();
+}
+
+@Benchmark
+public MrGeoRaster reduce() throws MrGeoRaster.MrGeoRasterException
+{
+  return raster.reduce(2, 2, aggregator, nodatas);
+}
+
+@Benchmark
+public MrGeoRaster scaleNearest() throws MrGeoRaster.MrGeoRasterException
+{
+  return raster.scale(BenchmarkRasters.TILESIZE * 2, BenchmarkRasters.TILESIZE * 2, false, nodatas);
+}
+
+@Benchmark
+public MrGeoRaster scaleBilinear() throws MrGeoRaster.MrGeoRasterException
+{
+  return raster.scale(BenchmarkRasters.TILESIZE * 2, BenchmarkRasters.TILESIZE * 2, true, nodatas);
+}
+
+@Benchmark
+public MrGeoRaster scaleDownBilinear() throws MrGeoRaster.MrGeoRasterException
+{
+  return raster.scale(BenchmarkRasters.TILESIZE / 3, BenchmarkRasters.TILESIZE / 3, true, nodatas);
+}
+
+@Benchmark
+public MrGeoRaster mosaic() throws MrGeoRaster.MrGeoRasterException
+{
+  // the left half of the partial tile is nodata, so half the pixels are copied
+  MrGeoRaster dst = raster.clip(0, 0, raster.width(), raster.height());
+  dst.mosaic(partial, nodatas);
+  return dst;
+}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.mrgeo.data.raster.MrGeoRaster;
+import org.mrgeo.data.raster.RasterCodec;
+import org.mrgeo.data.raster.RasterWritable;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting 512x512 tiles to and from RasterWritables (what every shuffle and every tile read
+ * and write does), with each codec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RasterWritableBenchmark
+{
+@Param({"NONE", "CONSTANT", "LZ4", "DEFLATE"})
+public RasterCodec codec;
+
+@Param({"surface", "constant"})
+public String tile;
+
+private MrGeoRaster raster;
+private RasterWritable writable;
+
+@Setup
+public void setup() throws IOException
+{
+  if (tile.equals("constant"))
+  {
+    raster = MrGeoRaster.createEmptyRaster(BenchmarkRasters.TILESIZE, BenchmarkRasters.TILESIZE, 1,
+        DataBuffer.TYPE_FLOAT, Double.NaN);
+  }
+  else
+  {
+    raster = BenchmarkRasters.surface(BenchmarkRasters.TILESIZE, BenchmarkRasters.TILESIZE, 1,
+        DataBuffer.TYPE_FLOAT);
+  }
+  writable = RasterWritable.toWritable(raster, codec, true);
+}
+
+@Benchmark
+public RasterWritable toWritable()
+{
+  return RasterWritable.toWritable(raster, codec, true);
+}
+
+@Benchmark
+public MrGeoRaster toMrGeoRaster() throws IOException
+{
+  return RasterWritable.toMrGeoRaster(writable);
+}
+
+@Benchmark
+public MrGeoRaster roundTrip() throws IOException
+{
+  return RasterWritable.toMrGeoRaster(RasterWritable.toWritable(raster, codec, true));
+}
+}
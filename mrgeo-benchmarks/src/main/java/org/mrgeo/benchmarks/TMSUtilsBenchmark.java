@@ -0,0 +1,130 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.benchmarks;
+
+import org.mrgeo.utils.tms.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The tile and pixel conversions made for every tile (and often every pixel) of a job, on 1024
+ * random locations
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TMSUtilsBenchmark
+{
+private static final int COUNT = 1024;
+private static final int ZOOM = 12;
+private static final int TILESIZE = BenchmarkRasters.TILESIZE;
+
+private double[] lats;
+private double[] lons;
+private long[] tileids;
+private Bounds[] bounds;
+
+@Setup
+public void setup()
+{
+  Random random = new Random(42);
+
+  lats = new double[COUNT];
+  lons = new double[COUNT];
+  tileids = new long[COUNT];
+  bounds = new Bounds[COUNT];
+
+  for (int i = 0; i < COUNT; i++)
+  {
+    lats[i] = random.nextDouble() * 170 - 85;
+    lons[i] = random.nextDouble() * 350 - 175;
+
+    Tile t = TMSUtils.latLonToTile(lats[i], lons[i], ZOOM, TILESIZE);
+    tileids[i] = TMSUtils.tileid(t.tx, t.ty, ZOOM);
+    bounds[i] = new Bounds(lons[i], lats[i], lons[i] + random.nextDouble() * 5, lats[i] + random.nextDouble() * 5);
+  }
+}
+
+@Benchmark
+public void latLonToTile(Blackhole bh)
+{
+  for (int i = 0; i < COUNT; i++)
+  {
+    bh.consume(TMSUtils.latLonToTile(lats[i], lons[i], ZOOM, TILESIZE));
+  }
+}
+
+@Benchmark
+public void latLonToPixels(Blackhole bh)
+{
+  for (int i = 0; i < COUNT; i++)
+  {
+    bh.consume(TMSUtils.latLonToPixels(lats[i], lons[i], ZOOM, TILESIZE));
+  }
+}
+
+@Benchmark
+public void tileidToTile(Blackhole bh)
+{
+  for (int i = 0; i < COUNT; i++)
+  {
+    bh.consume(TMSUtils.tileid(tileids[i], ZOOM));
+  }
+}
+
+@Benchmark
+public void tileToTileid(Blackhole bh)
+{
+  for (int i = 0; i < COUNT; i++)
+  {
+    Tile t = TMSUtils.tileid(tileids[i], ZOOM);
+    bh.consume(TMSUtils.tileid(t.tx, t.ty, ZOOM));
+  }
+}
+
+@Benchmark
+public void tileBounds(Blackhole bh)
+{
+  for (int i = 0; i < COUNT; i++)
+  {
+    bh.consume(TMSUtils.tileBounds(TMSUtils.tileid(tileids[i], ZOOM), ZOOM, TILESIZE));
+  }
+}
+
+@Benchmark
+public void boundsToTile(Blackhole bh)
+{
+  for (int i = 0; i < COUNT; i++)
+  {
+    bh.consume(TMSUtils.boundsToTile(bounds[i], ZOOM, TILESIZE));
+  }
+}
+
+@Benchmark
+public void tileOrderIndex(Blackhole bh)
+{
+  for (int i = 0; i < COUNT; i++)
+  {
+    bh.consume(TileOrder.HILBERT.index(tileids[i], ZOOM));
+  }
+}
+}
@@ -52,6 +52,11 @@ public void addOptions(Options options)
   Option fraction = new Option("f", "fraction", true, "The fraction of pixel values to sample. Must be between 0.0 - 1.0");
   fraction.setRequired(false);
   options.addOption(fraction);
+
+  Option accuracy = new Option("a", "accuracy", true,
+      "The allowed rank error of the quantiles (e.g. 0.001), much faster than exact quantiles. 0.0 is exact");
+  accuracy.setRequired(false);
+  options.addOption(accuracy);
 }
 
 @Override
@@ -90,7 +95,19 @@ public int run(CommandLine line, final Configuration conf,
       }
       int numQuantiles = Integer.parseInt(line.getOptionValue("numQuantiles", "0"));
       if (numQuantiles > 0) {
-        if (line.hasOption("fraction")) {
+        if (line.hasOption("accuracy")) {
+          float fraction = Float.parseFloat(line.getOptionValue("fraction", "1.0"));
+          double accuracy = Double.parseDouble(line.getOptionValue("accuracy"));
+          if (accuracy < 0.0 || accuracy >= 1.0)
+          {
+            throw new ParseException("The accuracy must be between 0.0 (exact) and 1.0");
+          }
+          if (!org.mrgeo.quantiles.Quantiles.compute(input, numQuantiles, fraction, accuracy,
+                  conf, providerProperties)) {
+            log.error("Quantiles exited with error");
+            return -1;
+          }
+        } else if (line.hasOption("fraction")) {
           float fraction = Float.parseFloat(line.getOptionValue("fraction"));
           if (!org.mrgeo.quantiles.Quantiles.compute(input, numQuantiles, fraction,
                   conf, providerProperties)) {
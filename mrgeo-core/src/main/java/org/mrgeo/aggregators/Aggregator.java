@@ -18,6 +18,8 @@
  */
 package org.mrgeo.aggregators;
 
+import org.mrgeo.data.raster.MrGeoRaster;
+
 /**
  * An Aggregator takes an input array of 4 sample values
  * and returns an aggregated value according to the implemented
@@ -44,4 +46,19 @@ byte aggregate(byte[][] values, double weightx, double weighty, byte nodata);
 short aggregate(short[][] values, double weightx, double weighty, short nodata);
 
 int aggregate(int[][] values, double weightx, double weighty, int nodata);
+
+/**
+ * Reduces one band of src into the same band of dst, aggregating each xfactor x yfactor block
+ * of source pixels into one destination pixel.  dst must have the same data type as src, and be
+ * (src width / xfactor) x (src height / yfactor) pixels.
+ *
+ * The default gathers each block into a (reused) sample array and calls aggregate().  Byte, short
+ * and ushort samples go through the int version, so unsigned values keep their meaning and sums
+ * don't overflow.
+ */
+default void reduceBand(MrGeoRaster src, MrGeoRaster dst, int band, int xfactor, int yfactor,
+    double nodata)
+{
+  BlockReducer.reduce(this, src, dst, band, xfactor, yfactor, nodata);
+}
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.aggregators;
+
+import org.mrgeo.data.raster.MrGeoRaster;
+
+/**
+ * An Aggregator with a fast path for the 2x2 reduction used to build pyramids.  Instead of being
+ * handed one block of samples at a time, it aggregates a pair of source rows into a destination
+ * row, so there are no sample arrays to fill and no calls per pixel.
+ *
+ * out[i] is the aggregate of top[2i], top[2i + 1], bottom[2i] and bottom[2i + 1], and must be the
+ * same value aggregate() returns for those 4 samples, in that order.
+ */
+public interface Aggregator2x2 extends Aggregator
+{
+void aggregateRows(double[] top, double[] bottom, double[] out, double nodata);
+
+void aggregateRows(float[] top, float[] bottom, float[] out, float nodata);
+
+void aggregateRows(int[] top, int[] bottom, int[] out, int nodata);
+
+@Override
+default void reduceBand(MrGeoRaster src, MrGeoRaster dst, int band, int xfactor, int yfactor,
+    double nodata)
+{
+  if (xfactor == 2 && yfactor == 2)
+  {
+    BlockReducer.reduce2x2(this, src, dst, band, nodata);
+  }
+  else
+  {
+    BlockReducer.reduce(this, src, dst, band, xfactor, yfactor, nodata);
+  }
+}
+}
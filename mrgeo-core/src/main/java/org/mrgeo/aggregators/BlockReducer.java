@@ -0,0 +1,284 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.aggregators;
+
+import org.mrgeo.data.raster.MrGeoRaster;
+
+import java.awt.image.DataBuffer;
+import java.nio.ByteBuffer;
+
+/**
+ * The loops behind Aggregator.reduceBand().  All the integer data types are reduced as ints, with
+ * byte and ushort samples unsigned.
+ */
+final class BlockReducer
+{
+private BlockReducer()
+{
+}
+
+static void reduce(Aggregator aggregator, MrGeoRaster src, MrGeoRaster dst, int band,
+    int xfactor, int yfactor, double nodata)
+{
+  int width = dst.width();
+  int height = dst.height();
+  int subsize = xfactor * yfactor;
+
+  switch (src.datatype())
+  {
+  case DataBuffer.TYPE_BYTE:
+  case DataBuffer.TYPE_SHORT:
+  case DataBuffer.TYPE_USHORT:
+  case DataBuffer.TYPE_INT:
+  {
+    int[] samples = new int[subsize];
+    int nd = intNodata(src.datatype(), nodata);
+    for (int y = 0; y < height; y++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        int ndx = 0;
+        for (int yy = y * yfactor; yy < (y + 1) * yfactor; yy++)
+        {
+          for (int xx = x * xfactor; xx < (x + 1) * xfactor; xx++)
+          {
+            samples[ndx++] = src.getPixelInt(xx, yy, band);
+          }
+        }
+        dst.setPixel(x, y, band, aggregator.aggregate(samples, nd));
+      }
+    }
+    break;
+  }
+  case DataBuffer.TYPE_FLOAT:
+  {
+    float[] samples = new float[subsize];
+    float nd = (float) nodata;
+    for (int y = 0; y < height; y++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        int ndx = 0;
+        for (int yy = y * yfactor; yy < (y + 1) * yfactor; yy++)
+        {
+          for (int xx = x * xfactor; xx < (x + 1) * xfactor; xx++)
+          {
+            samples[ndx++] = src.getPixelFloat(xx, yy, band);
+          }
+        }
+        dst.setPixel(x, y, band, aggregator.aggregate(samples, nd));
+      }
+    }
+    break;
+  }
+  case DataBuffer.TYPE_DOUBLE:
+  {
+    double[] samples = new double[subsize];
+    for (int y = 0; y < height; y++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        int ndx = 0;
+        for (int yy = y * yfactor; yy < (y + 1) * yfactor; yy++)
+        {
+          for (int xx = x * xfactor; xx < (x + 1) * xfactor; xx++)
+          {
+            samples[ndx++] = src.getPixelDouble(xx, yy, band);
+          }
+        }
+        dst.setPixel(x, y, band, aggregator.aggregate(samples, nodata));
+      }
+    }
+    break;
+  }
+  default:
+    throw new IllegalArgumentException("Error trying to reduce the raster. Bad raster data type");
+  }
+}
+
+// Reduces a pair of source rows at a time into a destination row.  The rows are copied into (and
+// out of) arrays, so the aggregator's loops only ever see plain arrays.
+static void reduce2x2(Aggregator2x2 aggregator, MrGeoRaster src, MrGeoRaster dst, int band,
+    double nodata)
+{
+  int srcwidth = src.width();
+  int width = dst.width();
+  int height = dst.height();
+
+  switch (src.datatype())
+  {
+  case DataBuffer.TYPE_BYTE:
+  case DataBuffer.TYPE_SHORT:
+  case DataBuffer.TYPE_USHORT:
+  case DataBuffer.TYPE_INT:
+  {
+    int[] top = new int[srcwidth];
+    int[] bottom = new int[srcwidth];
+    int[] out = new int[width];
+    int nd = intNodata(src.datatype(), nodata);
+    for (int y = 0; y < height; y++)
+    {
+      readRow(src, y * 2, band, top);
+      readRow(src, y * 2 + 1, band, bottom);
+      aggregator.aggregateRows(top, bottom, out, nd);
+      writeRow(dst, y, band, out);
+    }
+    break;
+  }
+  case DataBuffer.TYPE_FLOAT:
+  {
+    float[] top = new float[srcwidth];
+    float[] bottom = new float[srcwidth];
+    float[] out = new float[width];
+    for (int y = 0; y < height; y++)
+    {
+      readRow(src, y * 2, band, top);
+      readRow(src, y * 2 + 1, band, bottom);
+      aggregator.aggregateRows(top, bottom, out, (float) nodata);
+      writeRow(dst, y, band, out);
+    }
+    break;
+  }
+  case DataBuffer.TYPE_DOUBLE:
+  {
+    double[] top = new double[srcwidth];
+    double[] bottom = new double[srcwidth];
+    double[] out = new double[width];
+    for (int y = 0; y < height; y++)
+    {
+      readRow(src, y * 2, band, top);
+      readRow(src, y * 2 + 1, band, bottom);
+      aggregator.aggregateRows(top, bottom, out, nodata);
+      writeRow(dst, y, band, out);
+    }
+    break;
+  }
+  default:
+    throw new IllegalArgumentException("Error trying to reduce the raster. Bad raster data type");
+  }
+}
+
+// The nodata value as it compares to the (unsigned, for byte and ushort) int samples
+private static int intNodata(int datatype, double nodata)
+{
+  switch (datatype)
+  {
+  case DataBuffer.TYPE_BYTE:
+    return (int) nodata & 0xff;
+  case DataBuffer.TYPE_SHORT:
+    return (short) nodata;
+  case DataBuffer.TYPE_USHORT:
+    return (int) nodata & 0xffff;
+  default:
+    return (int) nodata;
+  }
+}
+
+private static void readRow(MrGeoRaster raster, int y, int band, int[] row)
+{
+  ByteBuffer buffer = raster.rowBuffer(y, band);
+  switch (raster.datatype())
+  {
+  case DataBuffer.TYPE_BYTE:
+    for (int x = 0; x < row.length; x++)
+    {
+      row[x] = buffer.get(x) & 0xff;
+    }
+    break;
+  case DataBuffer.TYPE_SHORT:
+    for (int x = 0; x < row.length; x++)
+    {
+      row[x] = buffer.getShort(x << 1);
+    }
+    break;
+  case DataBuffer.TYPE_USHORT:
+    for (int x = 0; x < row.length; x++)
+    {
+      row[x] = buffer.getShort(x << 1) & 0xffff;
+    }
+    break;
+  default:
+    for (int x = 0; x < row.length; x++)
+    {
+      row[x] = buffer.getInt(x << 2);
+    }
+    break;
+  }
+}
+
+private static void readRow(MrGeoRaster raster, int y, int band, float[] row)
+{
+  ByteBuffer buffer = raster.rowBuffer(y, band);
+  for (int x = 0; x < row.length; x++)
+  {
+    row[x] = buffer.getFloat(x << 2);
+  }
+}
+
+private static void readRow(MrGeoRaster raster, int y, int band, double[] row)
+{
+  ByteBuffer buffer = raster.rowBuffer(y, band);
+  for (int x = 0; x < row.length; x++)
+  {
+    row[x] = buffer.getDouble(x << 3);
+  }
+}
+
+private static void writeRow(MrGeoRaster raster, int y, int band, int[] row)
+{
+  ByteBuffer buffer = raster.rowBuffer(y, band);
+  switch (raster.datatype())
+  {
+  case DataBuffer.TYPE_BYTE:
+    for (int x = 0; x < row.length; x++)
+    {
+      buffer.put(x, (byte) row[x]);
+    }
+    break;
+  case DataBuffer.TYPE_SHORT:
+  case DataBuffer.TYPE_USHORT:
+    for (int x = 0; x < row.length; x++)
+    {
+      buffer.putShort(x << 1, (short) row[x]);
+    }
+    break;
+  default:
+    for (int x = 0; x < row.length; x++)
+    {
+      buffer.putInt(x << 2, row[x]);
+    }
+    break;
+  }
+}
+
+private static void writeRow(MrGeoRaster raster, int y, int band, float[] row)
+{
+  ByteBuffer buffer = raster.rowBuffer(y, band);
+  for (int x = 0; x < row.length; x++)
+  {
+    buffer.putFloat(x << 2, row[x]);
+  }
+}
+
+private static void writeRow(MrGeoRaster raster, int y, int band, double[] row)
+{
+  ByteBuffer buffer = raster.rowBuffer(y, band);
+  for (int x = 0; x < row.length; x++)
+  {
+    buffer.putDouble(x << 3, row[x]);
+  }
+}
+}
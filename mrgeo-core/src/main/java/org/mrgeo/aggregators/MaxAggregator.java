@@ -22,7 +22,7 @@ import org.mrgeo.utils.FloatUtils;
  * Uses the maximum pixel value for the resampled pixel.
  * No data values are excluded.
  */
-public class MaxAggregator implements Aggregator
+public class MaxAggregator implements Aggregator2x2
 {
 
 @Override
@@ -42,7 +42,7 @@ public double aggregate(double[] values, double nodata)
 @Override
 public float aggregate(float[] values, float nodata)
 {
-  Float max = -Float.MAX_VALUE;
+  float max = -Float.MAX_VALUE;
   for (float value : values)
   {
     if (FloatUtils.isNotNodata(value, nodata))
@@ -125,5 +125,63 @@ public int aggregate(int[][] values, double weightx, double weighty, int nodata)
   throw new NotImplementedException("Not yet implemented");
 }
 
+@Override
+public void aggregateRows(double[] top, double[] bottom, double[] out, double nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    double max = -Double.MAX_VALUE;
+    max = max(max, top[x], nodata);
+    max = max(max, top[x + 1], nodata);
+    max = max(max, bottom[x], nodata);
+    max = max(max, bottom[x + 1], nodata);
+    out[i] = FloatUtils.isEqual(max, -Double.MAX_VALUE) ? nodata : max;
+  }
+}
 
+@Override
+public void aggregateRows(float[] top, float[] bottom, float[] out, float nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    float max = -Float.MAX_VALUE;
+    max = max(max, top[x], nodata);
+    max = max(max, top[x + 1], nodata);
+    max = max(max, bottom[x], nodata);
+    max = max(max, bottom[x + 1], nodata);
+    out[i] = FloatUtils.isEqual(max, -Float.MAX_VALUE) ? nodata : max;
+  }
+}
+
+@Override
+public void aggregateRows(int[] top, int[] bottom, int[] out, int nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    int max = -Integer.MAX_VALUE;
+    max = max(max, top[x], nodata);
+    max = max(max, top[x + 1], nodata);
+    max = max(max, bottom[x], nodata);
+    max = max(max, bottom[x + 1], nodata);
+    out[i] = (max == -Integer.MAX_VALUE) ? nodata : max;
+  }
+}
+
+private static double max(double max, double value, double nodata)
+{
+  return FloatUtils.isNotNodata(value, nodata) ? Math.max(max, value) : max;
+}
+
+private static float max(float max, float value, float nodata)
+{
+  return FloatUtils.isNotNodata(value, nodata) ? Math.max(max, value) : max;
+}
+
+private static int max(int max, int value, int nodata)
+{
+  return (value != nodata) ? Math.max(max, value) : max;
+}
 }
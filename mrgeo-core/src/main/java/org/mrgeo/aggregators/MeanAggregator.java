@@ -24,7 +24,7 @@ import org.mrgeo.utils.FloatUtils;
 /**
  * Uses the mean pixel value for the resampled pixel. No data values are excluded.
  */
-public class MeanAggregator implements Aggregator
+public class MeanAggregator implements Aggregator2x2
 {
 
 @Override
@@ -350,4 +350,100 @@ public byte aggregate(byte[][] values, double weightx, double weighty,
     return (byte) ((s1 - s0) * weighty + s0);
   }
 }
+
+@Override
+public void aggregateRows(double[] top, double[] bottom, double[] out, double nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    double sum = 0;
+    int count = 0;
+    if (FloatUtils.isNotNodata(top[x], nodata))
+    {
+      sum += top[x];
+      count++;
+    }
+    if (FloatUtils.isNotNodata(top[x + 1], nodata))
+    {
+      sum += top[x + 1];
+      count++;
+    }
+    if (FloatUtils.isNotNodata(bottom[x], nodata))
+    {
+      sum += bottom[x];
+      count++;
+    }
+    if (FloatUtils.isNotNodata(bottom[x + 1], nodata))
+    {
+      sum += bottom[x + 1];
+      count++;
+    }
+    out[i] = (count == 0) ? nodata : (sum / count);
+  }
+}
+
+@Override
+public void aggregateRows(float[] top, float[] bottom, float[] out, float nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    float sum = 0;
+    int count = 0;
+    if (FloatUtils.isNotNodata(top[x], nodata))
+    {
+      sum += top[x];
+      count++;
+    }
+    if (FloatUtils.isNotNodata(top[x + 1], nodata))
+    {
+      sum += top[x + 1];
+      count++;
+    }
+    if (FloatUtils.isNotNodata(bottom[x], nodata))
+    {
+      sum += bottom[x];
+      count++;
+    }
+    if (FloatUtils.isNotNodata(bottom[x + 1], nodata))
+    {
+      sum += bottom[x + 1];
+      count++;
+    }
+    out[i] = (count == 0) ? nodata : (sum / count);
+  }
+}
+
+@Override
+public void aggregateRows(int[] top, int[] bottom, int[] out, int nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    int sum = 0;
+    int count = 0;
+    if (top[x] != nodata)
+    {
+      sum += top[x];
+      count++;
+    }
+    if (top[x + 1] != nodata)
+    {
+      sum += top[x + 1];
+      count++;
+    }
+    if (bottom[x] != nodata)
+    {
+      sum += bottom[x];
+      count++;
+    }
+    if (bottom[x + 1] != nodata)
+    {
+      sum += bottom[x + 1];
+      count++;
+    }
+    out[i] = (count == 0) ? nodata : (sum / count);
+  }
+}
 }
@@ -22,7 +22,7 @@ import org.mrgeo.utils.FloatUtils;
  * Uses the minimum pixel value for the resampled pixel.
  * No data values are excluded.
  */
-public class MinAggregator implements Aggregator
+public class MinAggregator implements Aggregator2x2
 {
 
 @Override
@@ -42,7 +42,7 @@ public double aggregate(double[] values, double nodata)
 @Override
 public float aggregate(float[] values, float nodata)
 {
-  Float min = Float.MAX_VALUE;
+  float min = Float.MAX_VALUE;
   for (float value : values)
   {
     if (FloatUtils.isNotNodata(value, nodata))
@@ -126,4 +126,63 @@ public int aggregate(int[][] values, double weightx, double weighty, int nodata)
   throw new NotImplementedException("Not yet implemented");
 }
 
+@Override
+public void aggregateRows(double[] top, double[] bottom, double[] out, double nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    double min = Double.MAX_VALUE;
+    min = min(min, top[x], nodata);
+    min = min(min, top[x + 1], nodata);
+    min = min(min, bottom[x], nodata);
+    min = min(min, bottom[x + 1], nodata);
+    out[i] = FloatUtils.isEqual(min, Double.MAX_VALUE) ? nodata : min;
+  }
+}
+
+@Override
+public void aggregateRows(float[] top, float[] bottom, float[] out, float nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    float min = Float.MAX_VALUE;
+    min = min(min, top[x], nodata);
+    min = min(min, top[x + 1], nodata);
+    min = min(min, bottom[x], nodata);
+    min = min(min, bottom[x + 1], nodata);
+    out[i] = FloatUtils.isEqual(min, Float.MAX_VALUE) ? nodata : min;
+  }
+}
+
+@Override
+public void aggregateRows(int[] top, int[] bottom, int[] out, int nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    int min = Integer.MAX_VALUE;
+    min = min(min, top[x], nodata);
+    min = min(min, top[x + 1], nodata);
+    min = min(min, bottom[x], nodata);
+    min = min(min, bottom[x + 1], nodata);
+    out[i] = (min == Integer.MAX_VALUE) ? nodata : min;
+  }
+}
+
+private static double min(double min, double value, double nodata)
+{
+  return FloatUtils.isNotNodata(value, nodata) ? Math.min(min, value) : min;
+}
+
+private static float min(float min, float value, float nodata)
+{
+  return FloatUtils.isNotNodata(value, nodata) ? Math.min(min, value) : min;
+}
+
+private static int min(int min, int value, int nodata)
+{
+  return (value != nodata) ? Math.min(min, value) : min;
+}
 }
@@ -32,7 +32,7 @@ import org.mrgeo.utils.FloatUtils;
  * ---------
  * No data values will be excluded.
  */
-public class NearestAggregator implements Aggregator
+public class NearestAggregator implements Aggregator2x2
 {
 
 @Override
@@ -205,4 +205,90 @@ public int aggregate(int[][] values, double weightx, double weighty, int nodata)
   throw new NotImplementedException("Not yet implemented");
 }
 
+@Override
+public void aggregateRows(double[] top, double[] bottom, double[] out, double nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    if (FloatUtils.isNotNodata(top[x], nodata))
+    {
+      out[i] = top[x];
+    }
+    else if (FloatUtils.isNotNodata(top[x + 1], nodata))
+    {
+      out[i] = top[x + 1];
+    }
+    else if (FloatUtils.isNotNodata(bottom[x + 1], nodata))
+    {
+      out[i] = bottom[x + 1];
+    }
+    else if (FloatUtils.isNotNodata(bottom[x], nodata))
+    {
+      out[i] = bottom[x];
+    }
+    else
+    {
+      out[i] = nodata;
+    }
+  }
+}
+
+@Override
+public void aggregateRows(float[] top, float[] bottom, float[] out, float nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    if (FloatUtils.isNotNodata(top[x], nodata))
+    {
+      out[i] = top[x];
+    }
+    else if (FloatUtils.isNotNodata(top[x + 1], nodata))
+    {
+      out[i] = top[x + 1];
+    }
+    else if (FloatUtils.isNotNodata(bottom[x + 1], nodata))
+    {
+      out[i] = bottom[x + 1];
+    }
+    else if (FloatUtils.isNotNodata(bottom[x], nodata))
+    {
+      out[i] = bottom[x];
+    }
+    else
+    {
+      out[i] = nodata;
+    }
+  }
+}
+
+@Override
+public void aggregateRows(int[] top, int[] bottom, int[] out, int nodata)
+{
+  for (int i = 0; i < out.length; i++)
+  {
+    int x = i << 1;
+    if (top[x] != nodata)
+    {
+      out[i] = top[x];
+    }
+    else if (top[x + 1] != nodata)
+    {
+      out[i] = top[x + 1];
+    }
+    else if (bottom[x + 1] != nodata)
+    {
+      out[i] = bottom[x + 1];
+    }
+    else if (bottom[x] != nodata)
+    {
+      out[i] = bottom[x];
+    }
+    else
+    {
+      out[i] = nodata;
+    }
+  }
+}
 }
@@ -64,6 +64,10 @@ private static ColorScale _colorScale;
 private static ColorScale _grayScale;
 
 private int[][] cache;
+private int[] packedCache;
+private double cacheScale;
+// the sub-scale for each of CACHE_SIZE even bins from min to max, -1 if a quantile splits the bin
+private int[] quantileBins;
 private boolean interpolate;
 private Double min, max;
 private int[] nullColor = {0, 0, 0, 0};
@@ -71,6 +75,9 @@ private boolean reliefShading;
 private Scaling scaling = Scaling.Absolute;
 private boolean forceValuesIntoRange;
 private double transparent = Double.NaN;
+// values outside of this range can't be transparent, so most lookups skip FloatUtils.isEqual()
+private double transparentLow = Double.NaN;
+private double transparentHigh = Double.NaN;
 private String name;
 private String title;
 private String description;
@@ -276,8 +283,9 @@ public void clear()
   min = null;
   max = null;
   cache = null;
+  quantileBins = null;
   nullColor = new int[]{0, 0, 0, 0};
-  transparent = Double.NaN;
+  setTransparent(Double.NaN);
   name = null;
   title = null;
   description = null;
@@ -309,7 +317,7 @@ public Object clone()
   result.nullColor = nullColor.clone();
   result.reliefShading = reliefShading;
   result.scaling = scaling;
-  result.transparent = transparent;
+  result.setTransparent(transparent);
   result.forceValuesIntoRange = forceValuesIntoRange;
   result.putAll(this);
   result.name = name;
@@ -449,6 +457,7 @@ public void setInterpolate(boolean i)
 {
   interpolate = i;
   cache = null;
+  quantileBins = null;
 }
 
 public Double getMax()
@@ -495,6 +504,7 @@ public void setScaling(Scaling s)
 {
   scaling = s;
   cache = null;
+  quantileBins = null;
 }
 
 public double getTransparent()
@@ -505,6 +515,8 @@ public double getTransparent()
 public void setTransparent(double transparent)
 {
   this.transparent = transparent;
+  transparentLow = Math.nextDown(transparent);
+  transparentHigh = Math.nextUp(transparent);
 }
 
 public void fromXML(Document doc) throws ColorScaleException
@@ -585,6 +597,7 @@ public void fromXML(Document doc) throws ColorScaleException
       put(value, color);
     }
     cache = null;
+    quantileBins = null;
   }
   catch (XPathExpressionException | IOException e)
   {
@@ -698,19 +711,14 @@ public void fromJSON(String json) throws ColorScaleException
 
 final public int[] lookup(double v)
 {
-  if (scaling == Scaling.Quantile) {
-    // Lookup the sub-scale for the value, then call it's lookup
-    for (int q = 0; q < quantiles.length; q++) {
-      if (v < quantiles[q]) {
-        return quantileSubScales[q].lookup(v);
-      }
-    }
-    return quantileSubScales[quantileSubScales.length-1].lookup(v);
-  }
-  if (Double.isNaN(v) || FloatUtils.isEqual(v, transparent))
+  if (isTransparent(v))
   {
     return getNullColor();
   }
+  if (scaling == Scaling.Quantile) {
+    // Lookup the sub-scale for the value, then call it's lookup
+    return quantileSubScales[quantileIndex(v)].lookup(v);
+  }
   if (cache == null)
   {
     buildCache();
@@ -734,12 +742,40 @@ final public int[] lookup(double v)
   }
   else
   {
-    int i = (int) ((v - min) / (max - min) * (CACHE_SIZE - 1) + 0.5);
-    // int i = (int) ((v - min) / (max - min) * (CACHE_SIZE - 1));
+    int i = (int) ((v - min) * cacheScale + 0.5);
     return cache[i];
   }
 }
 
+/**
+ * The same color as lookup(v), packed into an int as (r << 24) | (g << 16) | (b << 8) | a, so
+ * building a lookup table of colors doesn't need an array per entry.
+ */
+final public int lookupPacked(double v)
+{
+  if (isTransparent(v))
+  {
+    return pack(nullColor);
+  }
+  if (scaling == Scaling.Quantile) {
+    return quantileSubScales[quantileIndex(v)].lookupPacked(v);
+  }
+  if (cache == null)
+  {
+    buildCache();
+  }
+
+  if (v < min)
+  {
+    return forceValuesIntoRange ? packedCache[0] : pack(nullColor);
+  }
+  else if (v > max)
+  {
+    return forceValuesIntoRange ? packedCache[CACHE_SIZE - 1] : pack(nullColor);
+  }
+  return packedCache[(int) ((v - min) * cacheScale + 0.5)];
+}
+
 final public void lookup(double v, int[] color)
 {
   int[] c = lookup(v);
@@ -778,24 +814,28 @@ public void put(double key, Color c)
 {
   put(Double.valueOf(key), c);
   cache = null;
+  quantileBins = null;
 }
 
 public void put(double key, int r, int g, int b)
 {
   put(Double.valueOf(key), new Color(r, g, b));
   cache = null;
+  quantileBins = null;
 }
 
 public void put(double key, int r, int g, int b, int a)
 {
   put(Double.valueOf(key), new Color(r, g, b, a));
   cache = null;
+  quantileBins = null;
 }
 
 public void put(double key, int[] c)
 {
   put(Double.valueOf(key), new Color(c[0], c[1], c[2], c[3]));
   cache = null;
+  quantileBins = null;
 }
 
 /**
@@ -864,6 +904,7 @@ public void setScaleRange(double min, double max)
     scaling = Scaling.MinMax;
   }
   cache = null;
+  quantileBins = null;
   buildCache();
 }
 
@@ -872,6 +913,7 @@ public void setScaleRangeWithQuantiles(double min, double max, double[] quantile
   this.min = min;
   this.max = max;
   cache = null;
+  quantileBins = null;
   if (quantiles == null) {
     this.quantiles = null;
   }
@@ -1035,6 +1077,86 @@ protected void buildCache()
       }
     }
   }
+
+  // multiplying by this is much cheaper, per lookup, than dividing by the range
+  cacheScale = (CACHE_SIZE - 1) / (max - min);
+
+  packedCache = new int[CACHE_SIZE];
+  for (int i = 0; i < CACHE_SIZE; i++) {
+    packedCache[i] = pack(cache[i]);
+  }
+
+  quantileBins = null;
+  if (scaling == Scaling.Quantile) {
+    buildQuantileBins();
+  }
+}
+
+// (v - min) * cacheScale, truncated, never decreases as v increases, so a bin holding none of the
+// quantiles is wholly above or below each of them, and all its values share a sub-scale.
+private void buildQuantileBins()
+{
+  quantileBins = new int[CACHE_SIZE];
+
+  int[] qbins = new int[quantiles.length];
+  for (int q = 0; q < quantiles.length; q++) {
+    qbins[q] = (int) ((quantiles[q] - min) * cacheScale);
+  }
+
+  for (int bin = 0; bin < CACHE_SIZE; bin++) {
+    int sub = 0;
+    for (int qbin : qbins) {
+      if (qbin == bin) {
+        sub = -1;
+        break;
+      }
+      if (qbin < bin) {
+        sub++;
+      }
+    }
+    quantileBins[bin] = sub;
+  }
+}
+
+private boolean isTransparent(double v)
+{
+  return Double.isNaN(v) ||
+      (v >= transparentLow && v <= transparentHigh && FloatUtils.isEqual(v, transparent));
+}
+
+// The sub-scale for a value, the first quantile the value is below (or the last sub-scale).  Most
+// values are found in the even bins, the rest with a binary search of the (sorted) quantiles.
+private int quantileIndex(double v)
+{
+  if (quantileBins != null && v >= min && v <= max)
+  {
+    int sub = quantileBins[(int) ((v - min) * cacheScale)];
+    if (sub >= 0)
+    {
+      return sub;
+    }
+  }
+
+  int lo = 0;
+  int hi = quantiles.length;
+  while (lo < hi)
+  {
+    int mid = (lo + hi) >>> 1;
+    if (v < quantiles[mid])
+    {
+      hi = mid;
+    }
+    else
+    {
+      lo = mid + 1;
+    }
+  }
+  return lo;
+}
+
+private static int pack(int[] color)
+{
+  return (color[R] << 24) | (color[G] << 16) | (color[B] << 8) | color[A];
 }
 
 private int interpolateValue(int v1, int v2, float factor)
@@ -16,7 +16,9 @@
 package org.mrgeo.colorscale;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.mrgeo.colorscale.ColorScale.BadSourceException;
 import org.mrgeo.colorscale.ColorScale.ColorScaleException;
 import org.mrgeo.core.MrGeoProperties;
@@ -27,6 +29,7 @@ import org.mrgeo.utils.HadoopUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -41,6 +44,7 @@ private static final Logger log = LoggerFactory.getLogger(ColorScale.class);
 
 private static Map<String, ColorScale> colorscales;
 private static Map<String, String> colorscalenamemap;
+private static Map<String, String> colorscaleversions;
 
 static
 {
@@ -82,6 +86,29 @@ public static ColorScale fromName(String colorScaleName) throws ColorScaleExcept
   return null;
 }
 
+/**
+ * A digest of the file the named color scale was loaded from, so anything built from the color scale
+ * can tell when the file has been edited.  Null if there is no color scale with the name.
+ */
+public static String getVersion(String colorScaleName)
+{
+  String name = colorScaleName;
+  if (!colorscales.containsKey(name))
+  {
+    name = colorscalenamemap.get(colorScaleName);
+  }
+
+  if (name != null && colorscaleversions.containsKey(name))
+  {
+    return colorscaleversions.get(name);
+  }
+  else if ("grayscale".equalsIgnoreCase(colorScaleName))
+  {
+    return "grayscale";
+  }
+  return null;
+}
+
 public static ColorScale[] getColorScaleList() throws IOException
 {
   // for convenience and testing, we'll sort the list...
@@ -103,6 +130,7 @@ private static synchronized void initializeColorscales() throws ColorScaleExcept
   {
     colorscales = new TreeMap<>();
     colorscalenamemap = new HashMap<>();
+    colorscaleversions = new HashMap<>();
 
     Properties props = MrGeoProperties.getInstance();
 
@@ -123,10 +151,12 @@ private static synchronized void initializeColorscales() throws ColorScaleExcept
             {
               try (InputStream fdis = provider.get(i))
               {
-                ColorScale cs = ColorScale.loadFromXML(fdis);
+                byte[] xml = IOUtils.toByteArray(fdis);
+                ColorScale cs = ColorScale.loadFromXML(new ByteArrayInputStream(xml));
 
                 colorscales.put(cs.getName(), cs);
                 colorscalenamemap.put(FilenameUtils.getBaseName(name), cs.getName());
+                colorscaleversions.put(cs.getName(), DigestUtils.shaHex(xml));
               }
             }
           }
@@ -20,6 +20,9 @@ import org.mrgeo.colorscale.ColorScale.ColorScaleException;
 import org.mrgeo.colorscale.ColorScale.Scaling;
 import org.mrgeo.data.raster.MrGeoRaster;
 
+import java.awt.image.DataBuffer;
+import java.nio.ByteBuffer;
+
 /**
  * Interface to implement for classes who apply color scales to images requested by the WMS;
  * Implementing class names must begin with the image format name they handle (e.g. "Png") and end
@@ -59,23 +62,126 @@ protected void apply(MrGeoRaster source, MrGeoRaster dest, ColorScale colorScale
     colorScale = ColorScale.createDefaultGrayScale();
   }
 
-  int[] color = new int[4];
+  int[] colors = colorize(source, colorScale);
 
-  for (int y = 0; y < dest.height(); y++)
+  int bands = Math.min(dest.bands(), 4);
+  if (dest.datatype() == DataBuffer.TYPE_BYTE)
+  {
+    // Unpack the (r, g, b, a) colors a band at a time, then copy each band's plane in one go
+    byte[] plane = new byte[colors.length];
+    for (int b = 0; b < bands; b++)
+    {
+      int shift = 24 - (b * 8);
+      for (int i = 0; i < colors.length; i++)
+      {
+        plane[i] = (byte) (colors[i] >>> shift);
+      }
+      dest.bandBuffer(b).put(plane);
+    }
+  }
+  else
   {
-    for (int x = 0; x < dest.width(); x++)
+    int width = dest.width();
+    for (int i = 0; i < colors.length; i++)
     {
-      colorScale.lookup(source.getPixelDouble(x, y, 0), color);
+      for (int b = 0; b < bands; b++)
+      {
+        dest.setPixel(i % width, i / width, b, (colors[i] >>> (24 - (b * 8))) & 0xff);
+      }
+    }
+  }
+}
+
+/**
+ * The packed colors (see ColorScale.lookupPacked()) of the source's first band.  Byte, short and
+ * ushort samples go through a table indexed by the sample, so the color scale (extrema, quantiles,
+ * transparency) is consulted once per value, not once per pixel.  Int, float and double samples are
+ * looked up in the color scale's own bins.
+ */
+static int[] colorize(MrGeoRaster source, ColorScale colorScale)
+{
+  int pixels = source.width() * source.height();
+  int[] colors = new int[pixels];
+  ByteBuffer buffer = source.bandBuffer(0);
 
-      for (int b = 0; b < color.length; b++)
+  switch (source.datatype())
+  {
+  case DataBuffer.TYPE_BYTE:
+  {
+    int[] lut = new int[256];
+    for (int v = 0; v < lut.length; v++)
+    {
+      lut[v] = colorScale.lookupPacked(v);
+    }
+    for (int i = 0; i < pixels; i++)
+    {
+      colors[i] = lut[buffer.get(i) & 0xff];
+    }
+    break;
+  }
+  case DataBuffer.TYPE_SHORT:
+  case DataBuffer.TYPE_USHORT:
+  {
+    // 64K entries, more than most tiles have distinct values, so the table is filled lazily
+    boolean signed = source.datatype() == DataBuffer.TYPE_SHORT;
+    int[] lut = new int[65536];
+    boolean[] filled = new boolean[65536];
+    for (int i = 0; i < pixels; i++)
+    {
+      int ndx = buffer.getShort(i << 1) & 0xffff;
+      if (!filled[ndx])
+      {
+        lut[ndx] = colorScale.lookupPacked(signed ? (short) ndx : ndx);
+        filled[ndx] = true;
+      }
+      colors[i] = lut[ndx];
+    }
+    break;
+  }
+  case DataBuffer.TYPE_INT:
+    for (int i = 0; i < pixels; i++)
+    {
+      colors[i] = colorScale.lookupPacked(buffer.getInt(i << 2));
+    }
+    break;
+  case DataBuffer.TYPE_FLOAT:
+  {
+    // Runs of the same value (nodata, flat areas) are common, so remember the last color.  The
+    // values are compared by their bits, NaN (a common nodata) never equals itself
+    int last = Float.floatToRawIntBits(Float.NaN);
+    int color = colorScale.lookupPacked(Float.NaN);
+    for (int i = 0; i < pixels; i++)
+    {
+      int bits = buffer.getInt(i << 2);
+      if (bits != last)
+      {
+        color = colorScale.lookupPacked(Float.intBitsToFloat(bits));
+        last = bits;
+      }
+      colors[i] = color;
+    }
+    break;
+  }
+  case DataBuffer.TYPE_DOUBLE:
+  {
+    long last = Double.doubleToRawLongBits(Double.NaN);
+    int color = colorScale.lookupPacked(Double.NaN);
+    for (int i = 0; i < pixels; i++)
+    {
+      long bits = buffer.getLong(i << 3);
+      if (bits != last)
       {
-        if (dest.bands() > b)
-        {
-          dest.setPixel(x, y, b, color[b]);
-        }
+        color = colorScale.lookupPacked(Double.longBitsToDouble(bits));
+        last = bits;
       }
+      colors[i] = color;
     }
+    break;
+  }
+  default:
+    throw new IllegalArgumentException("Error trying to apply the color scale. Bad raster data type");
   }
+  return colors;
 }
 
 void setupExtrema(ColorScale colorScale, double[] extrema, double defaultValue, double[] quantiles)
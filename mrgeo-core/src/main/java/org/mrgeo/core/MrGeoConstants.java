@@ -66,6 +66,52 @@ public static final String MRGEO_HDFS_KML = "kml.base";
 
 public static final String MRGEO_HDFS_DISTRIBUTED_CACHE = "distributed.base";
 
+/*
+ * HDFS tile cache (size is in bytes, 0 turns the cache off)
+ */
+public static final String MRGEO_HDFS_TILE_CACHE_SIZE = "hdfs.tile.cache.size";
+public static final String MRGEO_HDFS_TILE_CACHE_OFFHEAP = "hdfs.tile.cache.offheap";
+
+/*
+ * Threads (shared by all HDFS readers) reading the partitions of a batched tile get in parallel
+ */
+public static final String MRGEO_HDFS_READ_THREADS = "hdfs.read.threads";
+
+/*
+ * HDFS tile layout of new pyramids, rowmajor, zorder or hilbert (see TileOrder)
+ */
+public static final String MRGEO_HDFS_TILE_ORDER = "hdfs.tile.order";
+public static final String MRGEO_HDFS_TILE_ORDER_DEFAULT = "rowmajor";
+
+/*
+ * Per-tile encoding of new tiles, none, constant, lz4 or deflate (see RasterCodec), and whether
+ * the compressing codecs use the horizontal predictor.  Anything but none writes tiles that older
+ * MrGeo versions (and other MapFile readers) can't decode, so the encodings are opt-in.
+ */
+public static final String MRGEO_RASTER_CODEC = "raster.codec";
+public static final String MRGEO_RASTER_CODEC_DEFAULT = "none";
+public static final String MRGEO_RASTER_CODEC_PREDICTOR = "raster.codec.predictor";
+public static final String MRGEO_RASTER_CODEC_PREDICTOR_DEFAULT = "true";
+
+/*
+ * Ingest, maximum size (in bytes of raw pixel data at the ingest zoom level, all bands) of the windows
+ * a source image is split into.  Each window is read, reprojected and tiled by its own task.
+ */
+public static final String MRGEO_INGEST_WINDOW_BYTES = "ingest.window.bytes";
+public static final String MRGEO_INGEST_WINDOW_BYTES_DEFAULT = "67108864";
+
+/*
+ * BuildPyramid, number of zoom levels built from each read (and shuffle) of a level
+ */
+public static final String MRGEO_BUILDPYRAMID_LEVELS_PER_PASS = "buildpyramid.levels.per.pass";
+public static final String MRGEO_BUILDPYRAMID_LEVELS_PER_PASS_DEFAULT = "3";
+
+/*
+ * Quantiles, the allowed rank error of computed quantiles (e.g. 0.001), 0 computes exact quantiles
+ */
+public static final String MRGEO_QUANTILES_ACCURACY = "quantiles.accuracy";
+public static final String MRGEO_QUANTILES_ACCURACY_DEFAULT = "0";
+
 /* Spark configuration keys
  *
  */
@@ -109,6 +155,28 @@ public static final String MRGEO_PROTECTION_LEVEL = "protectionLevel";
  */
 public static final String MRGEO_WCS_CAPABILITIES_CACHE = "wcs.capabilities.cache";
 public static final String MRGEO_WCS_CAPABILITIES_REFRESH = "wcs.capabilities.refresh";
+// seconds between checks of the published pyramids for the layer catalog (capabilities documents)
+public static final String MRGEO_LAYER_CATALOG_REFRESH = "layer.catalog.refresh";
+// bytes rendered at a time for large WCS GeoTIFF coverages, which are streamed strip by strip
+public static final String MRGEO_WCS_COVERAGE_MEMORY = "wcs.coverage.memory";
+// rendered tile cache, size is in bytes (0 turns it off), the directory is optional, and bounded by
+// its own size in bytes
+public static final String MRGEO_TMS_TILE_CACHE_SIZE = "tms.tile.cache.size";
+public static final String MRGEO_TMS_TILE_CACHE_DIR = "tms.tile.cache.dir";
+public static final String MRGEO_TMS_TILE_CACHE_DIR_SIZE = "tms.tile.cache.dir.size";
+// largest image (in bytes of raw pixel data) rendered in memory, larger images use temporary files
+public static final String MRGEO_RENDER_MEMORY = "render.memory";
+// PNG and JPEG encoding of rendered images: the PNG zlib level (0 - 9), row filter (none, sub, up,
+// average, paeth or adaptive), whether images with few colors are written as paletted PNGs, and the
+// JPEG quality (1 - 100)
+public static final String MRGEO_PNG_COMPRESSION_LEVEL = "png.compression.level";
+public static final String MRGEO_PNG_COMPRESSION_LEVEL_DEFAULT = "6";
+public static final String MRGEO_PNG_FILTER = "png.filter";
+public static final String MRGEO_PNG_FILTER_DEFAULT = "up";
+public static final String MRGEO_PNG_PALETTE = "png.palette";
+public static final String MRGEO_PNG_PALETTE_DEFAULT = "true";
+public static final String MRGEO_JPEG_QUALITY = "jpeg.quality";
+public static final String MRGEO_JPEG_QUALITY_DEFAULT = "75";
 
 /*
  * Postgres keys
@@ -19,6 +19,7 @@ import org.mrgeo.mapreduce.splitters.TiledInputSplit;
 import org.mrgeo.utils.tms.TMSUtils;
 import org.mrgeo.utils.tms.Tile;
 import org.mrgeo.utils.tms.TileBounds;
+import org.mrgeo.utils.tms.TileOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,10 +40,20 @@ public boolean accept(TiledInputSplit split)
   int zoom = split.getZoomLevel();
 //    Tile startTile = TMSUtils.tileid(split.getStartTileId(), zoom);
 //    Tile endTile = TMSUtils.tileid(split.getEndTileId(), zoom);
-  boolean result = splitOverlapsTileBounds(
-      TMSUtils.tileid(split.getStartTileId(), zoom),
-      TMSUtils.tileid(split.getEndTileId(), zoom),
-      region);
+  TileOrder order = split.getTileOrder();
+  boolean result;
+  if (order == null || order == TileOrder.ROW_MAJOR)
+  {
+    result = splitOverlapsTileBounds(
+        TMSUtils.tileid(split.getStartTileId(), zoom),
+        TMSUtils.tileid(split.getEndTileId(), zoom),
+        region);
+  }
+  else
+  {
+    // the split is a range of a space-filling curve, not of rows
+    result = order.intersects(split.getStartTileId(), split.getEndTileId(), region, zoom);
+  }
   if (!result)
   {
     log.info("Skipping split starting at tile " + split.getStartTileId());
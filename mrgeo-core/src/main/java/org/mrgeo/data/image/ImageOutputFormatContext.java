@@ -17,6 +17,7 @@ package org.mrgeo.data.image;
 
 
 import org.mrgeo.utils.tms.Bounds;
+import org.mrgeo.utils.tms.TileOrder;
 
 public class ImageOutputFormatContext
 {
@@ -27,6 +28,7 @@ private int bands;
 private Bounds bounds;
 private int tiletype;
 private String protectionLevel;
+private TileOrder tileOrder = TileOrder.ROW_MAJOR;
 
 /**
  * This constructor is used when producing a single image output.
@@ -95,4 +97,18 @@ public String getProtectionLevel()
 {
   return protectionLevel;
 }
+
+/**
+ * The order the tiles are requested to be stored in.  Providers that can only store tiles in
+ * one order are free to ignore it (see MrsImageOutputFormatProvider.getTileOrder()).
+ */
+public TileOrder getTileOrder()
+{
+  return tileOrder;
+}
+
+public void setTileOrder(TileOrder tileOrder)
+{
+  this.tileOrder = tileOrder;
+}
 }
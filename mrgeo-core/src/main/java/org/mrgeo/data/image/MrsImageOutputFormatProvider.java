@@ -26,6 +26,7 @@ import org.mrgeo.data.ProtectionLevelValidator;
 import org.mrgeo.data.raster.RasterWritable;
 import org.mrgeo.data.rdd.RasterRDD;
 import org.mrgeo.data.tile.TileIdWritable;
+import org.mrgeo.utils.tms.TileOrder;
 
 import java.io.IOException;
 
@@ -46,6 +47,14 @@ public abstract void save(RasterRDD raster, Configuration conf);
 
 public abstract void finalizeExternalSave(Configuration conf) throws DataProviderException;
 
+/**
+ * The order the tiles are stored in, which is recorded in the pyramid's metadata.
+ */
+public TileOrder getTileOrder()
+{
+  return TileOrder.ROW_MAJOR;
+}
+
 /**
  * For any additional Spark configuration besides setting
  * the actual output format class (see getOutputFormatClass method in
@@ -25,8 +25,11 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 public abstract class MrsImageReader
@@ -113,6 +116,30 @@ private static List<Class<?>> findClasses(File directory, String packageName)
  */
 public abstract MrGeoRaster get(TileIdWritable key);
 
+/**
+ * Retrieve a batch of tiles.  This gets the tiles one at a time, in tile id order, readers that
+ * can do better (e.g. reading several files at once) override it.
+ *
+ * @param tileids the tiles to get
+ * @return the tiles found, by tile id.  Tiles that don't exist are left out
+ */
+public Map<Long, MrGeoRaster> get(long[] tileids)
+{
+  long[] sorted = tileids.clone();
+  Arrays.sort(sorted);
+
+  Map<Long, MrGeoRaster> tiles = new HashMap<>();
+  for (long tileid : sorted)
+  {
+    MrGeoRaster tile = get(new TileIdWritable(tileid));
+    if (tile != null)
+    {
+      tiles.put(tileid, tile);
+    }
+  }
+  return tiles;
+}
+
 /**
  * Need to know the zoom level of the data being used
  *
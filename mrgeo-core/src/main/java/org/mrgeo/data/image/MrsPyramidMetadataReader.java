@@ -27,4 +27,13 @@ public interface MrsPyramidMetadataReader
 MrsPyramidMetadata read() throws IOException;
 
 MrsPyramidMetadata reload() throws IOException;
+
+/**
+ * The time (in milliseconds) the metadata was last written, or 0 if the data store can't tell.
+ * Lets callers holding on to the metadata check for changes without reloading it.
+ */
+default long getModificationTime() throws IOException
+{
+  return 0;
+}
 }
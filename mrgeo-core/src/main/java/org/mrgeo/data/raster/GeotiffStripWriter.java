@@ -0,0 +1,475 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.raster;
+
+import org.mrgeo.utils.FloatUtils;
+import org.mrgeo.utils.tms.Bounds;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes an uncompressed GeoTIFF to a stream a strip of rows at a time, so an image far larger
+ * than memory (or than a single MrGeoRaster can hold) can be written as it is rendered.
+ * <p>
+ * Nothing is compressed, so the size of every strip is known up front, and the header (with all
+ * the strip offsets) goes out before the first strip.  The bands are stored as separate planes
+ * (PlanarConfiguration 2), the same layout as MrGeoRaster, so each strip is written straight from
+ * the raster's data.  Images over 4GB are written as BigTIFFs.
+ * <p>
+ * A GeoTIFF has a single nodata value (GDAL's nodata tag) for all its bands, the first band's.  When
+ * the other bands have different nodata values, their nodata pixels are changed to the first band's
+ * as they are written.
+ */
+public class GeotiffStripWriter
+{
+// TIFF field types
+private static final short ASCII = 2;
+private static final short SHORT = 3;
+private static final short LONG = 4;
+private static final short DOUBLE = 12;
+private static final short LONG8 = 16;
+
+private static final int CLASSIC_HEADER = 8;
+private static final int BIGTIFF_HEADER = 16;
+
+private final int width;
+private final int height;
+private final int bands;
+private final int datatype;
+private final int rowsPerStrip;
+private final int strips;
+private final int bytesPerSample;
+private final double[] nodatas;
+
+private final byte[] header;
+private final long length;
+
+private int row = 0;
+
+/**
+ * @param rowsPerStrip the rows in each strip (the last strip may be shorter)
+ * @param bounds       the image bounds, in the coordinates of the EPSG code
+ * @param epsg         the EPSG code of the image's coordinate system
+ * @param geographic   whether the coordinate system is geographic (lat/lon), otherwise projected
+ * @param nodata       nodata value for all the bands
+ */
+public GeotiffStripWriter(int width, int height, int bands, int datatype, int rowsPerStrip,
+    Bounds bounds, int epsg, boolean geographic, double nodata)
+{
+  this(width, height, bands, datatype, rowsPerStrip, bounds, epsg, geographic, fill(bands, nodata));
+}
+
+/**
+ * @param nodatas      nodata value of each band
+ */
+public GeotiffStripWriter(int width, int height, int bands, int datatype, int rowsPerStrip,
+    Bounds bounds, int epsg, boolean geographic, double[] nodatas)
+{
+  this(width, height, bands, datatype, rowsPerStrip, bounds, epsg, geographic, nodatas,
+      // the classic header and IFD are a few KB for all but absurd numbers of strips, this leaves room
+      (long) width * height * bands * bytesPerSample(datatype) + 1024L * 1024L +
+          8L * bands * ((height + rowsPerStrip - 1) / Math.max(1, rowsPerStrip)) > 0xffffffffL);
+}
+
+// big forces (or prevents) a BigTIFF
+GeotiffStripWriter(int width, int height, int bands, int datatype, int rowsPerStrip,
+    Bounds bounds, int epsg, boolean geographic, double[] nodatas, boolean big)
+{
+  if (width <= 0 || height <= 0 || bands <= 0 || rowsPerStrip <= 0)
+  {
+    throw new IllegalArgumentException("Bad GeoTIFF size: " + width + "x" + height + ", " + bands +
+        " bands, " + rowsPerStrip + " rows per strip");
+  }
+  if (nodatas.length != bands)
+  {
+    throw new IllegalArgumentException("Expected " + bands + " nodata values, got " + nodatas.length);
+  }
+
+  this.width = width;
+  this.height = height;
+  this.bands = bands;
+  this.datatype = datatype;
+  this.rowsPerStrip = Math.min(rowsPerStrip, height);
+
+  strips = (height + this.rowsPerStrip - 1) / this.rowsPerStrip;
+  bytesPerSample = bytesPerSample(datatype);
+  this.nodatas = nodatas.clone();
+
+  long databytes = (long) width * height * bands * bytesPerSample;
+
+  header = buildHeader(bounds, epsg, geographic, nodatas[0], big);
+  length = header.length + databytes;
+}
+
+/**
+ * The number of bytes in the finished image (for a Content-Length)
+ */
+public long getLength()
+{
+  return length;
+}
+
+public int getRowsPerStrip()
+{
+  return rowsPerStrip;
+}
+
+/**
+ * Write the next strip of rows, top to bottom.  The strip has all the image's bands, with
+ * getRowsPerStrip() rows, except the last strip, which has the rows that are left.  Nodata pixels
+ * of bands with a nodata value other than the first band's are changed in the strip.
+ */
+public void writeStrip(MrGeoRaster strip, OutputStream stream) throws IOException
+{
+  int rows = Math.min(rowsPerStrip, height - row);
+  if (rows <= 0)
+  {
+    throw new IOException("All " + height + " rows have already been written");
+  }
+  if (strip.width() != width || strip.height() != rows || strip.bands() != bands ||
+      strip.datatype() != datatype)
+  {
+    throw new IOException("Bad strip at row " + row + ": expected " + width + "x" + rows + ", " + bands +
+        " bands, type " + datatype + ", got " + strip.width() + "x" + strip.height() + ", " + strip.bands() +
+        " bands, type " + strip.datatype());
+  }
+
+  if (row == 0)
+  {
+    stream.write(header);
+  }
+
+  for (int b = 1; b < bands; b++)
+  {
+    if (!isNodata(nodatas[b], nodatas[0]))
+    {
+      for (int y = 0; y < rows; y++)
+      {
+        for (int x = 0; x < width; x++)
+        {
+          if (isNodata(strip.getPixelDouble(x, y, b), nodatas[b]))
+          {
+            strip.setPixel(x, y, b, nodatas[0]);
+          }
+        }
+      }
+    }
+  }
+
+  byte[] data = strip.data();
+  int planebytes = width * rows * bytesPerSample;
+  for (int b = 0; b < bands; b++)
+  {
+    stream.write(data, strip.calculateByteOffset(0, 0, b), planebytes);
+  }
+
+  row += rows;
+}
+
+/**
+ * Check every row was written, and flush the stream (which is left open)
+ */
+public void finish(OutputStream stream) throws IOException
+{
+  if (row != height)
+  {
+    throw new IOException("Only " + row + " of " + height + " rows were written");
+  }
+  stream.flush();
+}
+
+private static double[] fill(int bands, double nodata)
+{
+  double[] nodatas = new double[Math.max(0, bands)];
+  Arrays.fill(nodatas, nodata);
+  return nodatas;
+}
+
+private static boolean isNodata(double value, double nodata)
+{
+  return Double.isNaN(nodata) ? Double.isNaN(value) : FloatUtils.isEqual(value, nodata);
+}
+
+private static int bytesPerSample(int datatype)
+{
+  switch (datatype)
+  {
+  case DataBuffer.TYPE_BYTE:
+    return 1;
+  case DataBuffer.TYPE_SHORT:
+  case DataBuffer.TYPE_USHORT:
+    return 2;
+  case DataBuffer.TYPE_INT:
+  case DataBuffer.TYPE_FLOAT:
+    return 4;
+  case DataBuffer.TYPE_DOUBLE:
+    return 8;
+  default:
+    throw new IllegalArgumentException("Can't write a GeoTIFF of data type " + datatype);
+  }
+}
+
+// 1 - unsigned int, 2 - signed int, 3 - floating point
+private static int sampleFormat(int datatype)
+{
+  switch (datatype)
+  {
+  case DataBuffer.TYPE_SHORT:
+  case DataBuffer.TYPE_INT:
+    return 2;
+  case DataBuffer.TYPE_FLOAT:
+  case DataBuffer.TYPE_DOUBLE:
+    return 3;
+  default:
+    return 1;
+  }
+}
+
+// GDAL's format for the nodata tag
+private static String nodataString(double nodata)
+{
+  if (Double.isNaN(nodata))
+  {
+    return "nan";
+  }
+  if (nodata == Math.rint(nodata) && Math.abs(nodata) < 1e15)
+  {
+    return Long.toString((long) nodata);
+  }
+  return Double.toString(nodata);
+}
+
+private byte[] buildHeader(Bounds bounds, int epsg, boolean geographic, double nodata, boolean big)
+{
+  int planes = strips * bands;
+
+  short[] bits = new short[bands];
+  short[] formats = new short[bands];
+  for (int b = 0; b < bands; b++)
+  {
+    bits[b] = (short) (bytesPerSample * 8);
+    formats[b] = (short) sampleFormat(datatype);
+  }
+
+  // the strip offsets are filled in once the header's size is known
+  long[] offsets = new long[planes];
+  long[] counts = new long[planes];
+  for (int s = 0; s < strips; s++)
+  {
+    int rows = Math.min(rowsPerStrip, height - s * rowsPerStrip);
+    for (int b = 0; b < bands; b++)
+    {
+      counts[b * strips + s] = (long) width * rows * bytesPerSample;
+    }
+  }
+
+  short[] geokeys = {
+      1, 1, 0, 3,                                             // version, revision, key count
+      1024, 0, 1, (short) (geographic ? 2 : 1),               // GTModelTypeGeoKey
+      1025, 0, 1, 1,                                          // GTRasterTypeGeoKey: PixelIsArea
+      (short) (geographic ? 2048 : 3072), 0, 1, (short) epsg  // Geographic/ProjectedCSTypeGeoKey
+  };
+
+  // sorted by tag
+  List<Entry> entries = new ArrayList<>();
+  entries.add(Entry.ofLong(256, width));                             // ImageWidth
+  entries.add(Entry.ofLong(257, height));                            // ImageLength
+  entries.add(Entry.ofShorts(258, bits));                            // BitsPerSample
+  entries.add(Entry.ofShorts(259, (short) 1));                       // Compression: none
+  entries.add(Entry.ofShorts(262, (short) 1));                       // Photometric: min is black
+  Entry stripOffsets = Entry.ofOffsets(273, offsets, big);           // StripOffsets
+  entries.add(stripOffsets);
+  entries.add(Entry.ofShorts(277, (short) bands));                   // SamplesPerPixel
+  entries.add(Entry.ofLong(278, rowsPerStrip));                      // RowsPerStrip
+  entries.add(Entry.ofOffsets(279, counts, big));                    // StripByteCounts
+  entries.add(Entry.ofShorts(284, (short) 2));                       // PlanarConfiguration: planes
+  if (bands > 1)
+  {
+    entries.add(Entry.ofShorts(338, new short[bands - 1]));          // ExtraSamples: unspecified
+  }
+  entries.add(Entry.ofShorts(339, formats));                         // SampleFormat
+  entries.add(Entry.ofDoubles(33550, bounds.width() / width, bounds.height() / height, 0)); // ModelPixelScale
+  entries.add(Entry.ofDoubles(33922, 0, 0, 0, bounds.w, bounds.n, 0));  // ModelTiepoint
+  entries.add(Entry.ofShorts(34735, geokeys));                       // GeoKeyDirectory
+  entries.add(Entry.ofAscii(42113, nodataString(nodata)));           // GDAL_NODATA
+
+  int headersize = big ? BIGTIFF_HEADER : CLASSIC_HEADER;
+  int inline = big ? 8 : 4;
+  int ifdsize = big ? (8 + entries.size() * 20 + 8) : (2 + entries.size() * 12 + 4);
+
+  int extrasize = 0;
+  for (Entry entry : entries)
+  {
+    if (entry.value.length > inline)
+    {
+      extrasize += (entry.value.length + 7) & ~7;
+    }
+  }
+  int size = headersize + ifdsize + extrasize;
+
+  // the data is in strip order, with each strip's bands one after the other
+  for (int s = 0; s < strips; s++)
+  {
+    for (int b = 0; b < bands; b++)
+    {
+      offsets[b * strips + s] = size + (long) s * rowsPerStrip * width * bytesPerSample * bands +
+          b * counts[b * strips + s];
+    }
+  }
+  stripOffsets.set(offsets, big);
+
+  ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  buffer.put((byte) 'I').put((byte) 'I');
+  if (big)
+  {
+    buffer.putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(headersize);
+    buffer.putLong(entries.size());
+  }
+  else
+  {
+    buffer.putShort((short) 42).putInt(headersize);
+    buffer.putShort((short) entries.size());
+  }
+
+  int extra = headersize + ifdsize;
+  for (Entry entry : entries)
+  {
+    buffer.putShort(entry.tag).putShort(entry.type);
+    if (big)
+    {
+      buffer.putLong(entry.count);
+    }
+    else
+    {
+      buffer.putInt((int) entry.count);
+    }
+
+    if (entry.value.length > inline)
+    {
+      if (big)
+      {
+        buffer.putLong(extra);
+      }
+      else
+      {
+        buffer.putInt(extra);
+      }
+      buffer.mark();
+      buffer.position(extra);
+      buffer.put(entry.value);
+      buffer.reset();
+      extra += (entry.value.length + 7) & ~7;
+    }
+    else
+    {
+      buffer.put(entry.value);
+      buffer.position(buffer.position() + inline - entry.value.length);
+    }
+  }
+
+  // next IFD offset, 0 (the buffer is already zeroed)
+  return buffer.array();
+}
+
+// An IFD entry, with its value as little endian bytes
+private static class Entry
+{
+  final short tag;
+  short type;
+  long count;
+  byte[] value;
+
+  private Entry(int tag, short type, long count, byte[] value)
+  {
+    this.tag = (short) tag;
+    this.type = type;
+    this.count = count;
+    this.value = value;
+  }
+
+  static Entry ofLong(int tag, int value)
+  {
+    return new Entry(tag, LONG, 1, buffer(4).putInt(value).array());
+  }
+
+  static Entry ofShorts(int tag, short... values)
+  {
+    ByteBuffer buffer = buffer(values.length * 2);
+    for (short v : values)
+    {
+      buffer.putShort(v);
+    }
+    return new Entry(tag, SHORT, values.length, buffer.array());
+  }
+
+  static Entry ofDoubles(int tag, double... values)
+  {
+    ByteBuffer buffer = buffer(values.length * 8);
+    for (double v : values)
+    {
+      buffer.putDouble(v);
+    }
+    return new Entry(tag, DOUBLE, values.length, buffer.array());
+  }
+
+  static Entry ofAscii(int tag, String value)
+  {
+    byte[] chars = value.getBytes(StandardCharsets.US_ASCII);
+    byte[] bytes = new byte[chars.length + 1]; // null terminated
+    System.arraycopy(chars, 0, bytes, 0, chars.length);
+    return new Entry(tag, ASCII, bytes.length, bytes);
+  }
+
+  static Entry ofOffsets(int tag, long[] values, boolean big)
+  {
+    Entry entry = new Entry(tag, LONG, 0, null);
+    entry.set(values, big);
+    return entry;
+  }
+
+  void set(long[] values, boolean big)
+  {
+    ByteBuffer buffer = buffer(values.length * (big ? 8 : 4));
+    for (long v : values)
+    {
+      if (big)
+      {
+        buffer.putLong(v);
+      }
+      else
+      {
+        buffer.putInt((int) v);
+      }
+    }
+    type = big ? LONG8 : LONG;
+    count = values.length;
+    value = buffer.array();
+  }
+
+  private static ByteBuffer buffer(int size)
+  {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
+}
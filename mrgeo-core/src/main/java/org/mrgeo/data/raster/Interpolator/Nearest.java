@@ -38,10 +38,11 @@ public static void scaleInt(MrGeoRaster src, MrGeoRaster dst)
   }
 
   double srcX;
-  double srcY = startY;
+  double srcY;
 
   for (int b = 0; b < src.bands(); b++)
   {
+    srcY = startY;
     for (int y = 0; y < dst.height(); y++)
     {
       srcX = startX;
@@ -61,10 +62,11 @@ public static void scaleFloat(MrGeoRaster src, MrGeoRaster dst)
   double y_ratio = (double) src.height() / dst.height();
 
   double srcX;
-  double srcY = 0;
+  double srcY;
 
   for (int b = 0; b < src.bands(); b++)
   {
+    srcY = 0;
     for (int y = 0; y < dst.height(); y++)
     {
       srcX = 0;
@@ -85,10 +87,11 @@ public static void scaleDouble(MrGeoRaster src, MrGeoRaster dst)
   double y_ratio = (double) src.height() / dst.height();
 
   double srcX;
-  double srcY = 0;
+  double srcY;
 
   for (int b = 0; b < src.bands(); b++)
   {
+    srcY = 0;
     for (int y = 0; y < dst.height(); y++)
     {
       srcX = 0;
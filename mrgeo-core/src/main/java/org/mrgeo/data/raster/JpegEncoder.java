@@ -0,0 +1,122 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.raster;
+
+import org.mrgeo.core.MrGeoConstants;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Encodes byte rasters as JPEGs with the JDK's JPEG writer, without going through GDAL.  1 band is
+ * gray, 3 RGB, and a 4th (alpha) band is dropped, JPEGs can't hold it.
+ * <p>
+ * The writer reads the raster's bands in place (no copy), and writes to the stream through a memory
+ * cache, never a temporary file.
+ */
+public class JpegEncoder
+{
+private static final ThreadLocal<ImageWriter> writers = ThreadLocal.withInitial(() ->
+{
+  Iterator<ImageWriter> it = ImageIO.getImageWritersByFormatName("jpeg");
+  if (!it.hasNext())
+  {
+    throw new IllegalStateException("No JPEG image writer available");
+  }
+  return it.next();
+});
+
+private final float quality;
+
+public JpegEncoder()
+{
+  this(Integer.parseInt(MrGeoConstants.MRGEO_JPEG_QUALITY_DEFAULT));
+}
+
+/**
+ * @param quality the JPEG quality, 1 - 100 (the same scale as GDAL's QUALITY option)
+ */
+public JpegEncoder(int quality)
+{
+  if (quality < 1 || quality > 100)
+  {
+    throw new IllegalArgumentException("Bad JPEG quality: " + quality);
+  }
+  this.quality = quality / 100.0f;
+}
+
+public static boolean canEncode(MrGeoRaster raster)
+{
+  return raster.datatype() == DataBuffer.TYPE_BYTE &&
+      (raster.bands() == 1 || raster.bands() == 3 || raster.bands() == 4);
+}
+
+public void encode(MrGeoRaster raster, OutputStream stream) throws IOException
+{
+  if (!canEncode(raster))
+  {
+    throw new IOException("Can't encode a " + raster.bands() + " band, type " + raster.datatype() +
+        " raster as a JPEG");
+  }
+
+  ImageWriter writer = writers.get();
+  ImageWriteParam param = writer.getDefaultWriteParam();
+  param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+  param.setCompressionQuality(quality);
+
+  try (ImageOutputStream ios = new MemoryCacheImageOutputStream(stream))
+  {
+    writer.setOutput(ios);
+    writer.write(null, new IIOImage(toImage(raster), null, null), param);
+  }
+  finally
+  {
+    writer.reset();
+  }
+}
+
+// A BufferedImage over the raster's data, each band a plane in the same bank
+private static BufferedImage toImage(MrGeoRaster raster)
+{
+  int bands = (raster.bands() == 1) ? 1 : 3;
+
+  int[] banks = new int[bands];
+  int[] offsets = new int[bands];
+  for (int b = 0; b < bands; b++)
+  {
+    offsets[b] = raster.calculateByteOffset(0, 0, b);
+  }
+
+  byte[] data = raster.data();
+  WritableRaster wr = Raster.createBandedRaster(new DataBufferByte(data, data.length),
+      raster.width(), raster.height(), raster.width(), banks, offsets, null);
+
+  ColorSpace cs = ColorSpace.getInstance(bands == 1 ? ColorSpace.CS_GRAY : ColorSpace.CS_sRGB);
+  ColorModel cm = new ComponentColorModel(cs, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+  return new BufferedImage(cm, wr, false, null);
+}
+}
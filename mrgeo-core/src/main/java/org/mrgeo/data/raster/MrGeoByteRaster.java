@@ -18,6 +18,7 @@ package org.mrgeo.data.raster;
 import org.mrgeo.utils.ByteArrayUtils;
 
 import java.awt.image.DataBuffer;
+import java.util.function.DoubleUnaryOperator;
 
 final class MrGeoByteRaster extends MrGeoRaster
 {
@@ -113,6 +114,39 @@ public void setPixel(int x, int y, int band, double pixel)
 
 }
 
+@Override
+public void readBand(int band, double[] samples)
+{
+  int offset = calculateByteOffset(0, 0, band);
+  int len = width() * height();
+  for (int i = 0; i < len; i++)
+  {
+    samples[i] = data[offset + i] & 0xff;
+  }
+}
+
+@Override
+public void writeBand(int band, double[] samples)
+{
+  int offset = calculateByteOffset(0, 0, band);
+  int len = width() * height();
+  for (int i = 0; i < len; i++)
+  {
+    data[offset + i] = (byte) samples[i];
+  }
+}
+
+@Override
+public void mapBand(int band, DoubleUnaryOperator op)
+{
+  int offset = calculateByteOffset(0, 0, band);
+  int len = width() * height();
+  for (int i = 0; i < len; i++)
+  {
+    data[offset + i] = (byte) op.applyAsDouble(data[offset + i] & 0xff);
+  }
+}
+
 @Override
 public int bytesPerPixel()
 {
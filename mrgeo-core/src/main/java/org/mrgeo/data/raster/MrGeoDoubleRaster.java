@@ -18,6 +18,8 @@ package org.mrgeo.data.raster;
 import org.mrgeo.utils.ByteArrayUtils;
 
 import java.awt.image.DataBuffer;
+import java.nio.DoubleBuffer;
+import java.util.function.DoubleUnaryOperator;
 
 final class MrGeoDoubleRaster extends MrGeoRaster
 {
@@ -113,6 +115,39 @@ public void setPixel(int x, int y, int band, double pixel)
 
 }
 
+@Override
+public void readBand(int band, double[] samples)
+{
+  DoubleBuffer buffer = bandBuffer(band).asDoubleBuffer();
+  int len = buffer.remaining();
+  for (int i = 0; i < len; i++)
+  {
+    samples[i] = buffer.get(i);
+  }
+}
+
+@Override
+public void writeBand(int band, double[] samples)
+{
+  DoubleBuffer buffer = bandBuffer(band).asDoubleBuffer();
+  int len = buffer.remaining();
+  for (int i = 0; i < len; i++)
+  {
+    buffer.put(i, samples[i]);
+  }
+}
+
+@Override
+public void mapBand(int band, DoubleUnaryOperator op)
+{
+  DoubleBuffer buffer = bandBuffer(band).asDoubleBuffer();
+  int len = buffer.remaining();
+  for (int i = 0; i < len; i++)
+  {
+    buffer.put(i, op.applyAsDouble(buffer.get(i)));
+  }
+}
+
 @Override
 public int bytesPerPixel()
 {
@@ -18,6 +18,8 @@ package org.mrgeo.data.raster;
 import org.mrgeo.utils.ByteArrayUtils;
 
 import java.awt.image.DataBuffer;
+import java.nio.FloatBuffer;
+import java.util.function.DoubleUnaryOperator;
 
 final class MrGeoFloatRaster extends MrGeoRaster
 {
@@ -113,6 +115,39 @@ public void setPixel(int x, int y, int band, double pixel)
 
 }
 
+@Override
+public void readBand(int band, double[] samples)
+{
+  FloatBuffer buffer = bandBuffer(band).asFloatBuffer();
+  int len = buffer.remaining();
+  for (int i = 0; i < len; i++)
+  {
+    samples[i] = buffer.get(i);
+  }
+}
+
+@Override
+public void writeBand(int band, double[] samples)
+{
+  FloatBuffer buffer = bandBuffer(band).asFloatBuffer();
+  int len = buffer.remaining();
+  for (int i = 0; i < len; i++)
+  {
+    buffer.put(i, (float) samples[i]);
+  }
+}
+
+@Override
+public void mapBand(int band, DoubleUnaryOperator op)
+{
+  FloatBuffer buffer = bandBuffer(band).asFloatBuffer();
+  int len = buffer.remaining();
+  for (int i = 0; i < len; i++)
+  {
+    buffer.put(i, (float) op.applyAsDouble(buffer.get(i)));
+  }
+}
+
 @Override
 public int bytesPerPixel()
 {
@@ -38,6 +38,7 @@ import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.*;
+import java.util.function.DoubleUnaryOperator;
 
 public abstract class MrGeoRaster implements Serializable
 {
@@ -120,8 +121,9 @@ public static MrGeoRaster createRaster(int width, int height, int bands, int dat
   case DataBuffer.TYPE_INT:
     return new MrGeoIntRaster(width, height, bands, data, dataOffset);
   case DataBuffer.TYPE_SHORT:
-  case DataBuffer.TYPE_USHORT:
     return new MrGeoShortRaster(width, height, bands, data, dataOffset);
+  case DataBuffer.TYPE_USHORT:
+    return new MrGeoUShortRaster(width, height, bands, data, dataOffset);
   default:
     throw new RasterWritableException("Error trying to read raster.  Bad raster data type");
   }
@@ -204,22 +206,34 @@ public static MrGeoRaster fromDataset(Dataset dataset, int x, int y, int width,
 
 static int writeHeader(int width, int height, int bands, int datatype, byte[] data)
 {
-  ByteArrayUtils.setByte(VERSION, data, VERSION_OFFSET);
-  ByteArrayUtils.setInt(width, data, WIDTH_OFFSET);
-  ByteArrayUtils.setInt(height, data, HEIGHT_OFFSET);
-  ByteArrayUtils.setShort((short) bands, data, BANDS_OFFSET);
-  ByteArrayUtils.setByte((byte) datatype, data, DATATYPE_OFFSET);
+  return writeHeader(width, height, bands, datatype, data, 0);
+}
+
+// write a header starting at offset within data (i.e. embedded in an encoded tile)
+static int writeHeader(int width, int height, int bands, int datatype, byte[] data, int offset)
+{
+  ByteArrayUtils.setByte(VERSION, data, offset + VERSION_OFFSET);
+  ByteArrayUtils.setInt(width, data, offset + WIDTH_OFFSET);
+  ByteArrayUtils.setInt(height, data, offset + HEIGHT_OFFSET);
+  ByteArrayUtils.setShort((short) bands, data, offset + BANDS_OFFSET);
+  ByteArrayUtils.setByte((byte) datatype, data, offset + DATATYPE_OFFSET);
   return HEADER_LEN;
 }
 
 static int[] readHeader(byte[] data)
+{
+  return readHeader(data, 0);
+}
+
+// read a header that starts at offset within data (i.e. embedded in an encoded tile)
+static int[] readHeader(byte[] data, int offset)
 {
   return new int[]{
-      ByteArrayUtils.getByte(data, VERSION_OFFSET),
-      ByteArrayUtils.getInt(data, WIDTH_OFFSET),
-      ByteArrayUtils.getInt(data, HEIGHT_OFFSET),
-      ByteArrayUtils.getShort(data, BANDS_OFFSET),
-      ByteArrayUtils.getByte(data, DATATYPE_OFFSET),
+      ByteArrayUtils.getByte(data, offset + VERSION_OFFSET),
+      ByteArrayUtils.getInt(data, offset + WIDTH_OFFSET),
+      ByteArrayUtils.getInt(data, offset + HEIGHT_OFFSET),
+      ByteArrayUtils.getShort(data, offset + BANDS_OFFSET),
+      ByteArrayUtils.getByte(data, offset + DATATYPE_OFFSET),
       HEADER_LEN
   };
 }
@@ -562,104 +576,9 @@ final public MrGeoRaster reduce(int xfactor, int yfactor, Aggregator aggregator,
 {
   MrGeoRaster child = createCompatibleRaster(width / xfactor, height / yfactor);
 
-  int subsize = xfactor * yfactor;
-  byte[] bytesamples = new byte[subsize];
-  short[] shortsamples = new short[subsize];
-  int[] intsamples = new int[subsize];
-  float[] floatsamples = new float[subsize];
-  double[] doublesamples = new double[subsize];
-
-  int ndx;
-
   for (int b = 0; b < bands; b++)
   {
-    for (int y = 0; y < height; y += yfactor)
-    {
-      for (int x = 0; x < width; x += xfactor)
-      {
-        ndx = 0;
-        switch (datatype)
-        {
-        case DataBuffer.TYPE_BYTE:
-          for (int yy = y; yy < y + yfactor; yy++)
-          {
-            for (int xx = x; xx < x + xfactor; xx++)
-            {
-              bytesamples[ndx++] = getPixelByte(xx, yy, b);
-            }
-          }
-
-          byte bytesample = aggregator.aggregate(bytesamples, (byte) nodatas[b]);
-          child.setPixel(x / xfactor, y / yfactor, b, bytesample);
-          break;
-
-
-        case DataBuffer.TYPE_SHORT:
-          for (int yy = y; yy < y + yfactor; yy++)
-          {
-            for (int xx = x; xx < x + xfactor; xx++)
-            {
-              shortsamples[ndx++] = getPixelShort(xx, yy, b);
-            }
-          }
-
-          short shortsample = aggregator.aggregate(shortsamples, (short) nodatas[b]);
-          child.setPixel(x / xfactor, y / yfactor, b, shortsample);
-          break;
-        case DataBuffer.TYPE_USHORT:
-          for (int yy = y; yy < y + yfactor; yy++)
-          {
-            for (int xx = x; xx < x + xfactor; xx++)
-            {
-              shortsamples[ndx++] = getPixelShort(xx, yy, b);
-            }
-          }
-
-          int ushortsample = aggregator.aggregate(shortsamples, (short) nodatas[b]);
-          child.setPixel(x / xfactor, y / yfactor, b, ushortsample);
-          break;
-        case DataBuffer.TYPE_INT:
-          for (int yy = y; yy < y + yfactor; yy++)
-          {
-            for (int xx = x; xx < x + xfactor; xx++)
-            {
-              intsamples[ndx++] = getPixelInt(xx, yy, b);
-            }
-          }
-
-          int intSample = aggregator.aggregate(intsamples, (int) nodatas[b]);
-          child.setPixel(x / xfactor, y / yfactor, b, intSample);
-          break;
-        case DataBuffer.TYPE_FLOAT:
-          for (int yy = y; yy < y + yfactor; yy++)
-          {
-            for (int xx = x; xx < x + xfactor; xx++)
-            {
-              floatsamples[ndx++] = getPixelFloat(xx, yy, b);
-            }
-          }
-
-          float floatsample = aggregator.aggregate(floatsamples, (float) nodatas[b]);
-          child.setPixel(x / xfactor, y / yfactor, b, floatsample);
-          break;
-        case DataBuffer.TYPE_DOUBLE:
-          for (int yy = y; yy < y + yfactor; yy++)
-          {
-            for (int xx = x; xx < x + xfactor; xx++)
-            {
-              doublesamples[ndx++] = getPixelDouble(xx, yy, b);
-            }
-          }
-
-          double doublesample = aggregator.aggregate(doublesamples, nodatas[b]);
-          child.setPixel(x / xfactor, y / yfactor, b, doublesample);
-          break;
-        default:
-          throw new RasterWritableException(
-              "Error trying to get decimate pixels in the raster. Bad raster data type");
-        }
-      }
-    }
+    aggregator.reduceBand(this, child, b, xfactor, yfactor, nodatas[b]);
   }
 
   return child;
@@ -667,77 +586,108 @@ final public MrGeoRaster reduce(int xfactor, int yfactor, Aggregator aggregator,
 
 final public void mosaic(MrGeoRaster other, double[] nodata)
 {
+  int len = width * height;
+  double[] src = new double[len];
+  double[] dst = new double[len];
+
   for (int b = 0; b < bands; b++)
   {
-    for (int y = 0; y < height; y++)
+    switch (datatype)
+    {
+    case DataBuffer.TYPE_FLOAT:
     {
-      for (int x = 0; x < width; x++)
+      if (other.datatype == datatype)
       {
-        switch (datatype)
+        FloatBuffer srcbuf = other.floatBand(b);
+        FloatBuffer dstbuf = floatBand(b);
+        float nd = (float) nodata[b];
+        for (int i = 0; i < len; i++)
         {
-        case DataBuffer.TYPE_BYTE:
-        {
-          byte p = other.getPixelByte(x, y, b);
-          if (getPixelByte(x, y, b) == (byte) nodata[b])
+          float p = srcbuf.get(i);
+          if (FloatUtils.isNotNodata(p, nd))
           {
-            setPixel(x, y, b, p);
+            dstbuf.put(i, p);
           }
-          break;
         }
-        case DataBuffer.TYPE_FLOAT:
+      }
+      else
+      {
+        other.readBand(b, src);
+        FloatBuffer dstbuf = floatBand(b);
+        float nd = (float) nodata[b];
+        for (int i = 0; i < len; i++)
         {
-          float p = other.getPixelFloat(x, y, b);
-          if (FloatUtils.isNotNodata(p, (float) nodata[b]))
+          float p = (float) src[i];
+          if (FloatUtils.isNotNodata(p, nd))
           {
-            setPixel(x, y, b, p);
+            dstbuf.put(i, p);
           }
-
-          break;
         }
-        case DataBuffer.TYPE_DOUBLE:
+      }
+      break;
+    }
+    case DataBuffer.TYPE_DOUBLE:
+    {
+      other.readBand(b, src);
+      DoubleBuffer dstbuf = doubleBand(b);
+      for (int i = 0; i < len; i++)
+      {
+        if (FloatUtils.isNotNodata(src[i], nodata[b]))
         {
-          double p = other.getPixelDouble(x, y, b);
-          if (FloatUtils.isNotNodata(p, nodata[b]))
-          {
-            setPixel(x, y, b, p);
-          }
-
-          break;
+          dstbuf.put(i, src[i]);
         }
-        case DataBuffer.TYPE_INT:
+      }
+      break;
+    }
+    case DataBuffer.TYPE_BYTE:
+    {
+      other.readBand(b, src);
+      readBand(b, dst);
+      byte nd = (byte) nodata[b];
+      for (int i = 0; i < len; i++)
+      {
+        if ((byte) dst[i] == nd)
         {
-          int p = other.getPixelInt(x, y, b);
-          if (getPixelInt(x, y, b) == (int) nodata[b])
-          {
-            setPixel(x, y, b, p);
-          }
-
-          break;
+          dst[i] = src[i];
         }
-        case DataBuffer.TYPE_SHORT:
+      }
+      writeBand(b, dst);
+      break;
+    }
+    case DataBuffer.TYPE_INT:
+    {
+      other.readBand(b, src);
+      readBand(b, dst);
+      int nd = (int) nodata[b];
+      for (int i = 0; i < len; i++)
+      {
+        if ((int) dst[i] == nd)
         {
-          short p = other.getPixelShort(x, y, b);
-          if (getPixelShort(x, y, b) == (short) nodata[b])
-          {
-            setPixel(x, y, b, p);
-          }
-
-          break;
+          dst[i] = src[i];
         }
-        case DataBuffer.TYPE_USHORT:
-          int p = other.getPixeUShort(x, y, b);
-          if (getPixeUShort(x, y, b) == (short) nodata[b])
-          {
-            setPixel(x, y, b, p);
-          }
-
-          break;
-        default:
-          throw new RasterWritableException(
-              "Error trying to get mosaic raster. Bad raster data type");
+      }
+      writeBand(b, dst);
+      break;
+    }
+    case DataBuffer.TYPE_SHORT:
+    case DataBuffer.TYPE_USHORT:
+    {
+      other.readBand(b, src);
+      readBand(b, dst);
+      short nd = (short) nodata[b];
+      for (int i = 0; i < len; i++)
+      {
+        if ((short) dst[i] == nd)
+        {
+          dst[i] = src[i];
         }
-
       }
+      writeBand(b, dst);
+      break;
+    }
+    default:
+      throw new RasterWritableException(
+          "Error trying to get mosaic raster. Bad raster data type");
     }
   }
 }
@@ -944,6 +894,65 @@ public abstract void setPixel(int x, int y, int band, float pixel);
 
 public abstract void setPixel(int x, int y, int band, double pixel);
 
+// Bulk band access.  These work on an entire band (row-major, width * height samples) at once,
+// and are implemented per data type so the inner loops don't have to go through the per-pixel
+// virtual get/set calls and the byte decoding for every sample.
+public abstract void readBand(int band, double[] samples);
+
+public abstract void writeBand(int band, double[] samples);
+
+public abstract void mapBand(int band, DoubleUnaryOperator op);
+
+// Little-endian views over the backing data.  These share the raster's data, so writes through
+// the buffer change the raster.
+final public ByteBuffer bandBuffer(int band)
+{
+  return ByteBuffer.wrap(data, calculateByteOffset(0, 0, band), bandoffset * bytesPerPixel())
+      .slice().order(ByteOrder.LITTLE_ENDIAN);
+}
+
+final public ByteBuffer rowBuffer(int y, int band)
+{
+  return ByteBuffer.wrap(data, calculateByteOffset(0, y, band), width * bytesPerPixel())
+      .slice().order(ByteOrder.LITTLE_ENDIAN);
+}
+
+final public ShortBuffer shortBand(int band)
+{
+  if (datatype != DataBuffer.TYPE_SHORT && datatype != DataBuffer.TYPE_USHORT)
+  {
+    throw new RasterWritableException("Error trying to get a short view of the raster. Raster is not a short type");
+  }
+  return bandBuffer(band).asShortBuffer();
+}
+
+final public IntBuffer intBand(int band)
+{
+  if (datatype != DataBuffer.TYPE_INT)
+  {
+    throw new RasterWritableException("Error trying to get an int view of the raster. Raster is not an int type");
+  }
+  return bandBuffer(band).asIntBuffer();
+}
+
+final public FloatBuffer floatBand(int band)
+{
+  if (datatype != DataBuffer.TYPE_FLOAT)
+  {
+    throw new RasterWritableException("Error trying to get a float view of the raster. Raster is not a float type");
+  }
+  return bandBuffer(band).asFloatBuffer();
+}
+
+final public DoubleBuffer doubleBand(int band)
+{
+  if (datatype != DataBuffer.TYPE_DOUBLE)
+  {
+    throw new RasterWritableException("Error trying to get a double view of the raster. Raster is not a double type");
+  }
+  return bandBuffer(band).asDoubleBuffer();
+}
+
 final byte[] data()
 {
   return data;
@@ -18,6 +18,8 @@ package org.mrgeo.data.raster;
 import org.mrgeo.utils.ByteArrayUtils;
 
 import java.awt.image.DataBuffer;
+import java.nio.ShortBuffer;
+import java.util.function.DoubleUnaryOperator;
 
 final class MrGeoShortRaster extends MrGeoRaster
 {
@@ -113,6 +115,39 @@ public void setPixel(int x, int y, int band, double pixel)
   ByteArrayUtils.setShort((short) pixel, data, calculateByteOffset(x, y, band));
 }
 
+@Override
+public void readBand(int band, double[] samples)
+{
+  ShortBuffer buffer = bandBuffer(band).asShortBuffer();
+  int len = buffer.remaining();
+  for (int i = 0; i < len; i++)
+  {
+    samples[i] = buffer.get(i);
+  }
+}
+
+@Override
+public void writeBand(int band, double[] samples)
+{
+  ShortBuffer buffer = bandBuffer(band).asShortBuffer();
+  int len = buffer.remaining();
+  for (int i = 0; i < len; i++)
+  {
+    buffer.put(i, (short) samples[i]);
+  }
+}
+
+@Override
+public void mapBand(int band, DoubleUnaryOperator op)
+{
+  ShortBuffer buffer = bandBuffer(band).asShortBuffer();
+  int len = buffer.remaining();
+  for (int i = 0; i < len; i++)
+  {
+    buffer.put(i, (short) op.applyAsDouble(buffer.get(i)));
+  }
+}
+
 @Override
 public int bytesPerPixel()
 {
@@ -0,0 +1,486 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.raster;
+
+import org.mrgeo.core.MrGeoConstants;
+
+import java.awt.image.DataBuffer;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes byte rasters as PNGs, straight from the raster's data into a stream, without going
+ * through GDAL.  1 band is gray, 2 gray + alpha, 3 RGB and 4 RGBA.
+ * <p>
+ * The rows are filtered and compressed one at a time, and written as they're compressed.  An RGB
+ * or RGBA raster with no more than 256 colors (typical of a colored tile with a few color scale
+ * entries) is written as a paletted PNG, a quarter of the data before compression.  For gray and
+ * RGB rasters, a nodata value for each band becomes the transparent color, the way GDAL's PNG
+ * driver does it.
+ */
+public class PngEncoder
+{
+/**
+ * The PNG row filters, in PNG filter type order.  ADAPTIVE picks the best filter for each row
+ * (the one with the smallest sum of absolute differences).
+ */
+public enum Filter
+{
+  NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE;
+
+  public static Filter fromName(String name)
+  {
+    try
+    {
+      return valueOf(name.trim().toUpperCase());
+    }
+    catch (IllegalArgumentException e)
+    {
+      throw new IllegalArgumentException("Unknown PNG filter: " + name, e);
+    }
+  }
+}
+
+private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+private static final int COLOR_GRAY = 0;
+private static final int COLOR_RGB = 2;
+private static final int COLOR_PALETTE = 3;
+private static final int COLOR_GRAY_ALPHA = 4;
+private static final int COLOR_RGBA = 6;
+
+private static final int IDAT_SIZE = 64 * 1024;
+private static final int PALETTE_HASH_SIZE = 1024;
+
+// Deflaters hold native memory, and are expensive to make, so each thread keeps one
+private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(Deflater::new);
+
+private final int level;
+private final Filter filter;
+private final boolean palette;
+
+public PngEncoder()
+{
+  this(Integer.parseInt(MrGeoConstants.MRGEO_PNG_COMPRESSION_LEVEL_DEFAULT),
+      Filter.fromName(MrGeoConstants.MRGEO_PNG_FILTER_DEFAULT),
+      Boolean.parseBoolean(MrGeoConstants.MRGEO_PNG_PALETTE_DEFAULT));
+}
+
+/**
+ * @param level   the zlib compression level (0 - 9)
+ * @param filter  the row filter, paletted images are always unfiltered
+ * @param palette write rasters with few enough colors as paletted PNGs
+ */
+public PngEncoder(int level, Filter filter, boolean palette)
+{
+  if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+  {
+    throw new IllegalArgumentException("Bad PNG compression level: " + level);
+  }
+  this.level = level;
+  this.filter = filter;
+  this.palette = palette;
+}
+
+public static boolean canEncode(MrGeoRaster raster)
+{
+  return raster.datatype() == DataBuffer.TYPE_BYTE && raster.bands() >= 1 && raster.bands() <= 4;
+}
+
+/**
+ * Write the raster as a PNG.  nodatas (may be null) are the nodata values of the raster's bands.
+ */
+public void encode(MrGeoRaster raster, double[] nodatas, OutputStream stream) throws IOException
+{
+  if (!canEncode(raster))
+  {
+    throw new IOException("Can't encode a " + raster.bands() + " band, type " + raster.datatype() +
+        " raster as a PNG");
+  }
+
+  int width = raster.width();
+  int height = raster.height();
+  int bands = raster.bands();
+
+  byte[] data = raster.data();
+  int[] offsets = new int[bands];
+  for (int b = 0; b < bands; b++)
+  {
+    offsets[b] = raster.calculateByteOffset(0, 0, b);
+  }
+
+  int[] key = transparentColor(nodatas, bands);
+
+  byte[] indices = null;
+  int[] colors = null;
+  if (palette && bands >= 3)
+  {
+    indices = new byte[width * height];
+    colors = buildPalette(data, offsets, width * height, key, indices);
+  }
+
+  DataOutputStream out = new DataOutputStream(stream);
+  out.write(SIGNATURE);
+
+  int colortype;
+  if (colors != null)
+  {
+    colortype = COLOR_PALETTE;
+  }
+  else
+  {
+    colortype = (bands == 1) ? COLOR_GRAY : (bands == 2) ? COLOR_GRAY_ALPHA :
+        (bands == 3) ? COLOR_RGB : COLOR_RGBA;
+  }
+
+  byte[] header = new byte[13];
+  writeInt(header, 0, width);
+  writeInt(header, 4, height);
+  header[8] = 8; // bit depth
+  header[9] = (byte) colortype;
+  writeChunk(out, "IHDR", header, header.length);
+
+  if (colors != null)
+  {
+    writePalette(out, colors);
+  }
+  else if (key != null)
+  {
+    byte[] trns = new byte[key.length * 2];
+    for (int i = 0; i < key.length; i++)
+    {
+      trns[i * 2 + 1] = (byte) key[i];
+    }
+    writeChunk(out, "tRNS", trns, trns.length);
+  }
+
+  if (colors != null)
+  {
+    writeImage(out, indices, new int[]{0}, width, height, Filter.NONE);
+  }
+  else
+  {
+    writeImage(out, data, offsets, width, height, filter);
+  }
+
+  writeChunk(out, "IEND", new byte[0], 0);
+  out.flush();
+}
+
+// The nodata values, if every band has one that is a byte value, for a gray or RGB raster
+private static int[] transparentColor(double[] nodatas, int bands)
+{
+  if (nodatas == null || nodatas.length < bands || (bands != 1 && bands != 3))
+  {
+    return null;
+  }
+
+  int[] key = new int[bands];
+  for (int b = 0; b < bands; b++)
+  {
+    double nodata = nodatas[b];
+    if (Double.isNaN(nodata) || nodata < 0 || nodata > 255 || nodata != Math.rint(nodata))
+    {
+      return null;
+    }
+    key[b] = (int) nodata;
+  }
+  return key;
+}
+
+// Map each pixel to a palette entry, returns the palette's RGBA colors, or null if there are more
+// than 256 of them.  Tiles are mostly runs of the same color, so the last lookup is remembered.
+private static int[] buildPalette(byte[] data, int[] offsets, int len, int[] key, byte[] indices)
+{
+  boolean alpha = offsets.length == 4;
+  int keycolor = (key == null) ? 0 : rgba(key[0], key[1], key[2], 255);
+
+  int[] table = new int[PALETTE_HASH_SIZE];
+  int[] slots = new int[PALETTE_HASH_SIZE]; // palette index + 1, 0 is empty
+  int[] colors = new int[256];
+  int count = 0;
+
+  int last = 0;
+  int index = -1;
+  for (int i = 0; i < len; i++)
+  {
+    int color = rgba(data[offsets[0] + i] & 0xff, data[offsets[1] + i] & 0xff,
+        data[offsets[2] + i] & 0xff, alpha ? data[offsets[3] + i] & 0xff : 255);
+    if (key != null && color == keycolor)
+    {
+      color &= 0xffffff00;
+    }
+
+    if (index < 0 || color != last)
+    {
+      int h = (color * 0x9e3779b9) >>> 22;
+      while (true)
+      {
+        if (slots[h] == 0)
+        {
+          if (count == colors.length)
+          {
+            return null;
+          }
+          colors[count] = color;
+          table[h] = color;
+          slots[h] = ++count;
+          index = count - 1;
+          break;
+        }
+        if (table[h] == color)
+        {
+          index = slots[h] - 1;
+          break;
+        }
+        h = (h + 1) & (PALETTE_HASH_SIZE - 1);
+      }
+      last = color;
+    }
+    indices[i] = (byte) index;
+  }
+
+  return Arrays.copyOf(colors, count);
+}
+
+private static int rgba(int r, int g, int b, int a)
+{
+  return (r << 24) | (g << 16) | (b << 8) | a;
+}
+
+private static void writePalette(DataOutputStream out, int[] colors) throws IOException
+{
+  byte[] plte = new byte[colors.length * 3];
+  byte[] trns = new byte[colors.length];
+  int transparent = 0;
+  for (int i = 0; i < colors.length; i++)
+  {
+    plte[i * 3] = (byte) (colors[i] >>> 24);
+    plte[i * 3 + 1] = (byte) (colors[i] >>> 16);
+    plte[i * 3 + 2] = (byte) (colors[i] >>> 8);
+    trns[i] = (byte) colors[i];
+    if ((colors[i] & 0xff) != 0xff)
+    {
+      transparent = i + 1;
+    }
+  }
+  writeChunk(out, "PLTE", plte, plte.length);
+  if (transparent > 0)
+  {
+    // entries past the last transparent one are opaque
+    writeChunk(out, "tRNS", trns, transparent);
+  }
+}
+
+// Filter and compress the image a row at a time.  The samples of band b (of the bpp interleaved
+// in each pixel) start at offsets[b] in data.
+private void writeImage(DataOutputStream out, byte[] data, int[] offsets, int width, int height,
+    Filter filter) throws IOException
+{
+  int bpp = offsets.length;
+  int rowlen = width * bpp;
+
+  byte[] prev = new byte[rowlen];
+  byte[] cur = new byte[rowlen];
+  byte[] filtered = new byte[rowlen + 1];
+  byte[] best = (filter == Filter.ADAPTIVE) ? new byte[rowlen + 1] : null;
+
+  byte[] idat = new byte[IDAT_SIZE];
+  int pos = 0;
+
+  Deflater deflater = deflaters.get();
+  deflater.reset();
+  deflater.setLevel(level);
+  try
+  {
+    for (int y = 0; y < height; y++)
+    {
+      int start = y * width;
+      if (bpp == 1)
+      {
+        System.arraycopy(data, offsets[0] + start, cur, 0, width);
+      }
+      else
+      {
+        for (int b = 0; b < bpp; b++)
+        {
+          int src = offsets[b] + start;
+          for (int x = 0, i = b; x < width; x++, i += bpp)
+          {
+            cur[i] = data[src + x];
+          }
+        }
+      }
+
+      byte[] row = filtered;
+      if (filter == Filter.ADAPTIVE)
+      {
+        long min = Long.MAX_VALUE;
+        for (Filter f : Filter.values())
+        {
+          if (f != Filter.ADAPTIVE)
+          {
+            filterRow(f, cur, prev, bpp, filtered);
+            long sum = weight(filtered);
+            if (sum < min)
+            {
+              min = sum;
+              byte[] tmp = best;
+              best = filtered;
+              filtered = tmp;
+            }
+          }
+        }
+        row = best;
+      }
+      else
+      {
+        filterRow(filter, cur, prev, bpp, filtered);
+      }
+
+      deflater.setInput(row, 0, row.length);
+      while (!deflater.needsInput())
+      {
+        pos += deflater.deflate(idat, pos, IDAT_SIZE - pos);
+        if (pos == IDAT_SIZE)
+        {
+          writeChunk(out, "IDAT", idat, pos);
+          pos = 0;
+        }
+      }
+
+      byte[] tmp = prev;
+      prev = cur;
+      cur = tmp;
+    }
+
+    deflater.finish();
+    while (!deflater.finished())
+    {
+      pos += deflater.deflate(idat, pos, IDAT_SIZE - pos);
+      if (pos == IDAT_SIZE)
+      {
+        writeChunk(out, "IDAT", idat, pos);
+        pos = 0;
+      }
+    }
+    if (pos > 0)
+    {
+      writeChunk(out, "IDAT", idat, pos);
+    }
+  }
+  finally
+  {
+    deflater.reset();
+  }
+}
+
+// Filter a row into out, the filter type byte, then the row
+private static void filterRow(Filter filter, byte[] cur, byte[] prev, int bpp, byte[] out)
+{
+  int len = cur.length;
+  out[0] = (byte) filter.ordinal();
+
+  switch (filter)
+  {
+  case NONE:
+    System.arraycopy(cur, 0, out, 1, len);
+    break;
+  case SUB:
+    for (int i = 0; i < len; i++)
+    {
+      int left = (i >= bpp) ? cur[i - bpp] : 0;
+      out[i + 1] = (byte) (cur[i] - left);
+    }
+    break;
+  case UP:
+    for (int i = 0; i < len; i++)
+    {
+      out[i + 1] = (byte) (cur[i] - prev[i]);
+    }
+    break;
+  case AVERAGE:
+    for (int i = 0; i < len; i++)
+    {
+      int left = (i >= bpp) ? cur[i - bpp] & 0xff : 0;
+      out[i + 1] = (byte) (cur[i] - ((left + (prev[i] & 0xff)) >>> 1));
+    }
+    break;
+  case PAETH:
+    for (int i = 0; i < len; i++)
+    {
+      int left = (i >= bpp) ? cur[i - bpp] & 0xff : 0;
+      int upleft = (i >= bpp) ? prev[i - bpp] & 0xff : 0;
+      out[i + 1] = (byte) (cur[i] - paeth(left, prev[i] & 0xff, upleft));
+    }
+    break;
+  default:
+    throw new IllegalArgumentException("Bad PNG filter: " + filter);
+  }
+}
+
+// The sum of the absolute values of the (signed) filtered bytes, the usual guess at how well a
+// filtered row will compress
+private static long weight(byte[] filtered)
+{
+  long sum = 0;
+  for (int i = 1; i < filtered.length; i++)
+  {
+    sum += Math.abs(filtered[i]);
+  }
+  return sum;
+}
+
+private static int paeth(int a, int b, int c)
+{
+  int p = a + b - c;
+  int pa = Math.abs(p - a);
+  int pb = Math.abs(p - b);
+  int pc = Math.abs(p - c);
+  if (pa <= pb && pa <= pc)
+  {
+    return a;
+  }
+  return (pb <= pc) ? b : c;
+}
+
+private static void writeChunk(DataOutputStream out, String type, byte[] data, int len) throws IOException
+{
+  byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+
+  CRC32 crc = new CRC32();
+  crc.update(name);
+  crc.update(data, 0, len);
+
+  out.writeInt(len);
+  out.write(name);
+  out.write(data, 0, len);
+  out.writeInt((int) crc.getValue());
+}
+
+private static void writeInt(byte[] bytes, int offset, int value)
+{
+  bytes[offset] = (byte) (value >>> 24);
+  bytes[offset + 1] = (byte) (value >>> 16);
+  bytes[offset + 2] = (byte) (value >>> 8);
+  bytes[offset + 3] = (byte) value;
+}
+}
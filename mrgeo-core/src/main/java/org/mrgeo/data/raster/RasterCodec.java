@@ -0,0 +1,408 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.raster;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.mrgeo.data.raster.MrGeoRaster.MrGeoRasterException;
+import org.mrgeo.data.raster.RasterWritable.RasterWritableException;
+import org.mrgeo.utils.ByteArrayUtils;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-tile encodings of a MrGeoRaster, used by RasterWritable.
+ * <p>
+ * NONE is the raw raster bytes, as always.  CONSTANT writes a tile where every pixel of each band
+ * is the same (typically an all nodata tile) as just those values, and any other tile raw.  LZ4
+ * (fast) and DEFLATE (smaller) compress the pixel data, and also use the constant short form when
+ * they can.  Any of the compressing codecs can first replace each pixel with its difference from
+ * its left neighbor (the horizontal predictor), which turns smooth data like elevations into small,
+ * very compressible values.  If an encoding doesn't make the tile smaller, it is stored raw.
+ * <p>
+ * An encoded tile is: byte ENCODED, byte codec (ordinal), byte flags, the raster header, then the
+ * (compressed) data.  Raw tiles start with the raster's own version byte, which is never ENCODED.
+ */
+public enum RasterCodec
+{
+  NONE, CONSTANT, LZ4, DEFLATE;
+
+static final byte ENCODED = 0x10;
+private static final int FLAG_PREDICTOR = 0x01;
+
+private static final int CODEC_OFFSET = 1;
+private static final int FLAGS_OFFSET = 2;
+private static final int RASTER_HEADER_OFFSET = 3;
+private static final int HEADER_LEN = RASTER_HEADER_OFFSET + MrGeoRaster.HEADER_LEN;
+
+/**
+ * Parse a codec by name, ignoring case.  A null or empty name is NONE.
+ */
+public static RasterCodec fromName(String name)
+{
+  if (name == null || name.trim().isEmpty())
+  {
+    return NONE;
+  }
+  try
+  {
+    return valueOf(name.trim().toUpperCase());
+  }
+  catch (IllegalArgumentException e)
+  {
+    throw new IllegalArgumentException("Unknown raster codec: " + name, e);
+  }
+}
+
+/**
+ * For a tile in the constant short form, a 1 x 1 raster (of the tile's type) holding the value of
+ * each band, otherwise null.  This is how ops can work on constant tiles without expanding them.
+ */
+static MrGeoRaster constantPixel(byte[] bytes) throws MrGeoRasterException
+{
+  if (bytes == null || bytes.length < HEADER_LEN || bytes[0] != ENCODED ||
+      bytes[CODEC_OFFSET] != CONSTANT.ordinal())
+  {
+    return null;
+  }
+
+  int[] header = MrGeoRaster.readHeader(bytes, RASTER_HEADER_OFFSET);
+  MrGeoRaster pixel = MrGeoRaster.createEmptyRaster(1, 1, header[3], header[4]);
+  System.arraycopy(bytes, HEADER_LEN, pixel.data, pixel.dataoffset(), pixel.datasize());
+  return pixel;
+}
+
+/**
+ * A width x height tile in the constant short form, every pixel being the (1 x 1) pixel's values
+ */
+static byte[] constant(MrGeoRaster pixel, int width, int height)
+{
+  byte[] encoded = header(CONSTANT, false, width, height, pixel.bands(), pixel.datatype(), pixel.datasize());
+  System.arraycopy(pixel.data, pixel.dataoffset(), encoded, HEADER_LEN, pixel.datasize());
+  return encoded;
+}
+
+// The raster header (see MrGeoRaster.readHeader()) of an encoded tile
+static int[] header(byte[] bytes)
+{
+  return MrGeoRaster.readHeader(bytes, RASTER_HEADER_OFFSET);
+}
+
+static MrGeoRaster decode(byte[] bytes) throws MrGeoRasterException
+{
+  RasterCodec codec = values()[bytes[CODEC_OFFSET]];
+  boolean predictor = (bytes[FLAGS_OFFSET] & FLAG_PREDICTOR) != 0;
+
+  int[] header = MrGeoRaster.readHeader(bytes, RASTER_HEADER_OFFSET);
+  MrGeoRaster raster = MrGeoRaster.createEmptyRaster(header[1], header[2], header[3], header[4]);
+
+  // decode right into the raster's data
+  byte[] data = raster.data;
+  int offset = raster.dataoffset();
+  int len = raster.datasize();
+
+  switch (codec)
+  {
+  case CONSTANT:
+    fillConstant(bytes, HEADER_LEN, raster);
+    return raster;
+  case LZ4:
+    Lz4.decompressor.decompress(bytes, HEADER_LEN, data, offset, len);
+    break;
+  case DEFLATE:
+    inflate(bytes, data, offset, len);
+    break;
+  default:
+    throw new RasterWritableException("Bad raster encoding: " + codec);
+  }
+
+  if (predictor)
+  {
+    undoPredictor(raster);
+  }
+  return raster;
+}
+
+private static void inflate(byte[] bytes, byte[] data, int offset, int len)
+{
+  Inflater inflater = new Inflater();
+  try
+  {
+    inflater.setInput(bytes, HEADER_LEN, bytes.length - HEADER_LEN);
+    int pos = 0;
+    while (pos < len && !inflater.finished())
+    {
+      int n = inflater.inflate(data, offset + pos, len - pos);
+      if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+      {
+        break;
+      }
+      pos += n;
+    }
+    if (pos != len)
+    {
+      throw new RasterWritableException("Truncated deflated raster, expected " + len + " bytes, got " + pos);
+    }
+  }
+  catch (DataFormatException e)
+  {
+    throw new RasterWritableException("Bad deflated raster: " + e.getMessage());
+  }
+  finally
+  {
+    inflater.end();
+  }
+}
+
+private static void fillConstant(byte[] bytes, int offset, MrGeoRaster raster)
+{
+  int bpp = raster.bytesPerPixel();
+  int bandlen = raster.width() * raster.height() * bpp;
+
+  for (int b = 0; b < raster.bands(); b++)
+  {
+    int start = raster.dataoffset() + b * bandlen;
+    System.arraycopy(bytes, offset + b * bpp, raster.data, start, bpp);
+
+    // double the filled part until the band is full
+    int filled = bpp;
+    while (filled < bandlen)
+    {
+      int n = Math.min(filled, bandlen - filled);
+      System.arraycopy(raster.data, start, raster.data, start + filled, n);
+      filled += n;
+    }
+  }
+}
+
+// The (constant) value of each band, or null if any band isn't constant
+private static byte[] constantValues(MrGeoRaster raster)
+{
+  int bpp = raster.bytesPerPixel();
+  int bandlen = raster.width() * raster.height() * bpp;
+  byte[] data = raster.data;
+
+  byte[] values = new byte[raster.bands() * bpp];
+  for (int b = 0; b < raster.bands(); b++)
+  {
+    int start = raster.dataoffset() + b * bandlen;
+    for (int i = start + bpp; i < start + bandlen; i++)
+    {
+      if (data[i] != data[i - bpp])
+      {
+        return null;
+      }
+    }
+    System.arraycopy(data, start, values, b * bpp, bpp);
+  }
+  return values;
+}
+
+private static void undoPredictor(MrGeoRaster raster)
+{
+  int bpp = raster.bytesPerPixel();
+  int width = raster.width();
+  int rows = raster.height() * raster.bands();
+  byte[] data = raster.data;
+
+  int offset = raster.dataoffset();
+  for (int r = 0; r < rows; r++)
+  {
+    long prev = get(data, offset, bpp);
+    for (int x = 1; x < width; x++)
+    {
+      int ndx = offset + x * bpp;
+      prev += get(data, ndx, bpp);
+      set(prev, data, ndx, bpp);
+    }
+    offset += width * bpp;
+  }
+}
+
+private static byte[] applyPredictor(MrGeoRaster raster)
+{
+  int bpp = raster.bytesPerPixel();
+  int width = raster.width();
+  int rows = raster.height() * raster.bands();
+  byte[] data = raster.data;
+
+  byte[] diff = new byte[raster.datasize()];
+  int src = raster.dataoffset();
+  int dst = 0;
+  for (int r = 0; r < rows; r++)
+  {
+    long prev = get(data, src, bpp);
+    set(prev, diff, dst, bpp);
+    for (int x = 1; x < width; x++)
+    {
+      long v = get(data, src + x * bpp, bpp);
+      set(v - prev, diff, dst + x * bpp, bpp);
+      prev = v;
+    }
+    src += width * bpp;
+    dst += width * bpp;
+  }
+  return diff;
+}
+
+// The pixel as an integer of its size (floating point values by their bits), the differences
+// wrap around, so they undo exactly
+private static long get(byte[] data, int offset, int bpp)
+{
+  switch (bpp)
+  {
+  case 1:
+    return data[offset];
+  case 2:
+    return ByteArrayUtils.getShort(data, offset);
+  case 4:
+    return ByteArrayUtils.getInt(data, offset);
+  default:
+    return ByteArrayUtils.getLong(data, offset);
+  }
+}
+
+private static void set(long value, byte[] data, int offset, int bpp)
+{
+  switch (bpp)
+  {
+  case 1:
+    data[offset] = (byte) value;
+    break;
+  case 2:
+    ByteArrayUtils.setShort((short) value, data, offset);
+    break;
+  case 4:
+    ByteArrayUtils.setInt((int) value, data, offset);
+    break;
+  default:
+    ByteArrayUtils.setLong(value, data, offset);
+    break;
+  }
+}
+
+/**
+ * Encode the raster, returning the raster's own (raw) data if the encoding doesn't make it smaller.
+ */
+byte[] encode(MrGeoRaster raster, boolean predictor)
+{
+  if (this == NONE)
+  {
+    return raster.data;
+  }
+
+  byte[] constant = constantValues(raster);
+  if (constant != null)
+  {
+    byte[] encoded = header(CONSTANT, false, raster, constant.length);
+    System.arraycopy(constant, 0, encoded, HEADER_LEN, constant.length);
+    return encoded;
+  }
+
+  if (this == CONSTANT)
+  {
+    return raster.data;
+  }
+
+  byte[] src = raster.data;
+  int offset = raster.dataoffset();
+  int len = raster.datasize();
+  if (predictor && raster.width() > 1)
+  {
+    src = applyPredictor(raster);
+    offset = 0;
+  }
+  else
+  {
+    predictor = false;
+  }
+
+  // anything that doesn't fit in the raw size isn't worth keeping
+  int limit = raster.datalength() - HEADER_LEN;
+  if (limit <= 0)
+  {
+    return raster.data;
+  }
+
+  byte[] encoded;
+  int encodedLen;
+  if (this == LZ4)
+  {
+    encoded = header(LZ4, predictor, raster, Lz4.compressor.maxCompressedLength(len));
+    encodedLen = Lz4.compressor.compress(src, offset, len, encoded, HEADER_LEN);
+  }
+  else
+  {
+    encoded = header(DEFLATE, predictor, raster, limit);
+    encodedLen = deflate(src, offset, len, encoded, limit);
+  }
+
+  if (encodedLen < 0 || encodedLen >= limit)
+  {
+    return raster.data;
+  }
+  return Arrays.copyOf(encoded, HEADER_LEN + encodedLen);
+}
+
+private static byte[] header(RasterCodec codec, boolean predictor, MrGeoRaster raster, int datalen)
+{
+  return header(codec, predictor, raster.width(), raster.height(), raster.bands(), raster.datatype(), datalen);
+}
+
+private static byte[] header(RasterCodec codec, boolean predictor, int width, int height, int bands, int datatype,
+    int datalen)
+{
+  byte[] encoded = new byte[HEADER_LEN + datalen];
+  encoded[0] = ENCODED;
+  encoded[CODEC_OFFSET] = (byte) codec.ordinal();
+  encoded[FLAGS_OFFSET] = (byte) (predictor ? FLAG_PREDICTOR : 0);
+  MrGeoRaster.writeHeader(width, height, bands, datatype, encoded, RASTER_HEADER_OFFSET);
+  return encoded;
+}
+
+// Returns the compressed length, or -1 if it doesn't fit in limit bytes
+private static int deflate(byte[] src, int offset, int len, byte[] encoded, int limit)
+{
+  Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+  try
+  {
+    deflater.setInput(src, offset, len);
+    deflater.finish();
+
+    int pos = 0;
+    while (!deflater.finished() && pos < limit)
+    {
+      pos += deflater.deflate(encoded, HEADER_LEN + pos, limit - pos);
+    }
+    return deflater.finished() ? pos : -1;
+  }
+  finally
+  {
+    deflater.end();
+  }
+}
+
+// lz4 is only loaded when it is used
+private static class Lz4
+{
+  static final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+  static final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+}
+}
@@ -23,6 +23,8 @@ import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.CompressionInputStream;
 import org.apache.hadoop.io.compress.Decompressor;
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
 import org.mrgeo.data.raster.MrGeoRaster.MrGeoRasterException;
 import org.mrgeo.utils.ByteArrayUtils;
 import org.slf4j.Logger;
@@ -32,6 +34,7 @@ import java.awt.image.DataBuffer;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Properties;
 
 @SuppressFBWarnings(value = "MS_PKGPROTECT", justification = "Serializer/Deserializers only!  Need to be removed after testing")
 public class RasterWritable implements WritableComparable<RasterWritable>, Serializable, Cloneable
@@ -40,6 +43,9 @@ private static final Logger log = LoggerFactory.getLogger(RasterWritable.class);
 
 private static final long serialVersionUID = 1L;
 
+private static volatile RasterCodec defaultCodec;
+private static boolean defaultPredictor;
+
 private byte[] bytes;
 
 
@@ -67,6 +73,10 @@ public static MrGeoRaster toMrGeoRaster(RasterWritable writable) throws IOExcept
     // this is an old MrsPyramid v2 image, read it into a MrGeoRaster
     return convertFromV2(writable.bytes);
   }
+  if (version == RasterCodec.ENCODED)
+  {
+    return RasterCodec.decode(writable.bytes);
+  }
   return MrGeoRaster.createRaster(writable.bytes);
 }
 
@@ -82,9 +92,102 @@ public static MrGeoRaster toMrGeoRaster(RasterWritable writable,
   return toMrGeoRaster(new RasterWritable(baos.toByteArray()));
 }
 
+/**
+ * The codec set in the MrGeo properties (raster.codec, by default none, the raw raster bytes)
+ */
+public static RasterCodec getDefaultCodec()
+{
+  if (defaultCodec == null)
+  {
+    Properties props = MrGeoProperties.getInstance();
+    defaultPredictor = Boolean.parseBoolean(props.getProperty(MrGeoConstants.MRGEO_RASTER_CODEC_PREDICTOR,
+        MrGeoConstants.MRGEO_RASTER_CODEC_PREDICTOR_DEFAULT));
+    defaultCodec = RasterCodec.fromName(props.getProperty(MrGeoConstants.MRGEO_RASTER_CODEC,
+        MrGeoConstants.MRGEO_RASTER_CODEC_DEFAULT));
+  }
+  return defaultCodec;
+}
+
+/**
+ * Make a writable of the raster, encoded with the codec set in the MrGeo properties
+ * (raster.codec, by default none)
+ */
 public static RasterWritable toWritable(MrGeoRaster raster) throws IOException
 {
-  return new RasterWritable(raster.data());
+  RasterCodec codec = getDefaultCodec();
+  return toWritable(raster, codec, defaultPredictor);
+}
+
+/**
+ * The writable as it is stored in a pyramid written with codec.  Ops make constant tiles (see
+ * fromConstantPixel) whatever the codec, so with NONE any encoded tile is expanded to the raw raster
+ * bytes, which every reader understands.
+ */
+public static RasterWritable toStored(RasterWritable writable, RasterCodec codec) throws IOException
+{
+  if (codec == RasterCodec.NONE && ByteArrayUtils.getByte(writable.bytes) == RasterCodec.ENCODED)
+  {
+    return new RasterWritable(toMrGeoRaster(writable).data());
+  }
+  return writable;
+}
+
+/**
+ * Make a writable of the raster, encoded with codec, using the horizontal predictor (if the codec
+ * compresses)
+ */
+public static RasterWritable toWritable(MrGeoRaster raster, RasterCodec codec, boolean predictor)
+{
+  return new RasterWritable(codec.encode(raster, predictor));
+}
+
+/**
+ * If the writable is a constant tile (every pixel of each band is the same value, see
+ * RasterCodec.CONSTANT), a 1 x 1 raster holding those values, otherwise null.  Ops can use this to
+ * work on constant tiles without expanding them to full size.
+ */
+public static MrGeoRaster toConstantPixel(RasterWritable writable) throws IOException
+{
+  return RasterCodec.constantPixel(writable.bytes);
+}
+
+/**
+ * Make a width x height constant tile, every pixel being the (1 x 1) pixel's values, without
+ * expanding it to full size.
+ */
+public static RasterWritable fromConstantPixel(MrGeoRaster pixel, int width, int height)
+{
+  return new RasterWritable(RasterCodec.constant(pixel, width, height));
+}
+
+/**
+ * The width of the tile, read from its header
+ */
+public static int getWidth(RasterWritable writable) throws IOException
+{
+  return header(writable)[1];
+}
+
+/**
+ * The height of the tile, read from its header
+ */
+public static int getHeight(RasterWritable writable) throws IOException
+{
+  return header(writable)[2];
+}
+
+private static int[] header(RasterWritable writable) throws IOException
+{
+  int version = ByteArrayUtils.getByte(writable.bytes);
+  if (version == RasterCodec.ENCODED)
+  {
+    return RasterCodec.header(writable.bytes);
+  }
+  if (version == 0)
+  {
+    return MrGeoRaster.readHeader(toMrGeoRaster(writable).data);
+  }
+  return MrGeoRaster.readHeader(writable.bytes);
 }
 
 private static MrGeoRaster convertFromV2(byte[] data) throws MrGeoRasterException
@@ -275,6 +378,13 @@ public int getSize()
   return bytes.length;
 }
 
+// the (encoded) bytes themselves, not a copy, for the serializers
+@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Used only by the serializers")
+byte[] rawBytes()
+{
+  return bytes;
+}
+
 @SuppressFBWarnings(value = "PZLA_PREFER_ZERO_LENGTH_ARRAYS", justification = "API")
 public byte[] copyBytes()
 {
@@ -25,6 +25,8 @@ import org.mrgeo.image.MrsImageException;
 import org.mrgeo.utils.LongRectangle;
 import org.mrgeo.utils.tms.TMSUtils;
 import org.mrgeo.utils.tms.Tile;
+import org.mrgeo.utils.tms.TileBounds;
+import org.mrgeo.utils.tms.TileOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +61,15 @@ private TileIdWritable endKey;
 // workaround for MapFile.Reader.seek behavior
 private boolean readFirstKey;
 
+// When the tiles are partitioned along a space-filling curve, the range isn't contiguous across the
+// map files, instead, each partition that can hold tiles in it is searched from the start key in turn.
+// null for row major order.
+private int[] partitions;
+private int partitionNdx;
+private long rangeStart;
+private long rangeEnd;
+private TileIdWritable seekKey;
+
 HdfsImageResultScanner(LongRectangle bounds,
     HdfsMrsImageReader reader)
 {
@@ -68,6 +79,12 @@ HdfsImageResultScanner(LongRectangle bounds,
   rowEnd = bounds.getMaxX();
   zoom = reader.getZoomlevel();
 
+  if (reader.getTileOrder() != TileOrder.ROW_MAJOR)
+  {
+    partitions = curvePartitions(new TileBounds(bounds.getMinX(), bounds.getMinY(),
+        bounds.getMaxX(), bounds.getMaxY()));
+  }
+
   primeScanner(TMSUtils.tileid(bounds.getMinX(), bounds.getMinY(), zoom),
       TMSUtils.tileid(bounds.getMaxX(), bounds.getMaxY(), zoom));
 }
@@ -93,6 +110,11 @@ HdfsImageResultScanner(TileIdWritable startKey, TileIdWritable endKey,
   rowEnd = Long.MAX_VALUE;
   zoom = -1;
 
+  if (reader.getTileOrder() != TileOrder.ROW_MAJOR)
+  {
+    partitions = curvePartitions(null);
+  }
+
   primeScanner(startTileId, endTileId);
 
 }
@@ -137,14 +159,14 @@ public boolean hasNext()
 {
   try
   {
-    if (mapfile == null)
+    if (currentKey == null)
     {
-      throw new MrsImageException("Mapfile.Reader has been closed");
+      return false;
     }
 
-    if (currentKey == null)
+    if (mapfile == null)
     {
-      return false;
+      throw new MrsImageException("Mapfile.Reader has been closed");
     }
 
     // TODO eaw - This causes the first call to hasNext after the primeScanner to not advance the key.  This means 2 calls
@@ -186,10 +208,30 @@ public boolean hasNext()
             return true;
           }
         }
-        else
+        else if (partitions == null)
         {
           return false;
         }
+        else if (!nextCurvePartition())
+        {
+          return false;
+        }
+        else if (inRange(currentKey))
+        {
+          return true;
+        }
+      }
+      else if (partitions != null)
+      {
+        // the end of this partition, move on to the next one holding tiles in the range
+        if (!nextCurvePartition())
+        {
+          return false;
+        }
+        if (inRange(currentKey))
+        {
+          return true;
+        }
       }
       else
       {
@@ -277,6 +319,11 @@ private void primeScanner(long startTileId, long endTileId)
      * next() method below.
      */
   log.debug("start tile id: " + startTileId);
+  if (partitions != null)
+  {
+    primeCurveScanner(startTileId, endTileId);
+    return;
+  }
   try
   {
     if (mapfile != null)
@@ -348,4 +395,81 @@ private void primeScanner(long startTileId, long endTileId)
     throw new MrsImageException(e);
   }
 }
+private int[] curvePartitions(TileBounds bounds)
+{
+  try
+  {
+    return reader.getPartitions(bounds);
+  }
+  catch (IOException e)
+  {
+    throw new MrsImageException(e);
+  }
+}
+
+private void primeCurveScanner(long startTileId, long endTileId)
+{
+  try
+  {
+    if (mapfile != null)
+    {
+      mapfile.close();
+      mapfile = null;
+    }
+
+    rangeStart = startTileId;
+    rangeEnd = endTileId;
+    partitionNdx = -1;
+    seekKey = null;
+    if (nextCurvePartition())
+    {
+      readFirstKey = inRange(currentKey);
+    }
+  }
+  catch (IOException e)
+  {
+    throw new MrsImageException(e);
+  }
+}
+
+// Open the next of the partitions with a tile in the range, positioned at its first tile at or after
+// the start key.  If there are no more, currentKey is set to null and false is returned.
+@SuppressWarnings("squid:S1166") // Exception caught and handled
+private boolean nextCurvePartition() throws IOException
+{
+  while (++partitionNdx < partitions.length)
+  {
+    if (mapfile != null && !reader.canBeCached())
+    {
+      mapfile.close();
+    }
+    mapfile = reader.getReaderWrapper(partitions[partitionNdx]);
+
+    if (seekKey == null)
+    {
+      try
+      {
+        seekKey = (TileIdWritable) mapfile.getReader().getKeyClass().newInstance();
+        seekKey.set(rangeStart);
+        endKey = (TileIdWritable) mapfile.getReader().getKeyClass().newInstance();
+        endKey.set(rangeEnd);
+        currentValue = (RasterWritable) mapfile.getReader().getValueClass().newInstance();
+      }
+      catch (InstantiationException | IllegalAccessException e)
+      {
+        throw new MrsImageException(e);
+      }
+    }
+
+    TileIdWritable key = (TileIdWritable) mapfile.getReader().getClosest(seekKey, currentValue);
+    if (key != null && key.compareTo(endKey) <= 0)
+    {
+      currentKey = key;
+      return true;
+    }
+  }
+
+  currentKey = null;
+  return false;
+}
 }
@@ -24,6 +24,8 @@ import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.SequenceFile;
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
 import org.mrgeo.data.KVIterator;
 import org.mrgeo.data.image.MrsImageException;
 import org.mrgeo.data.image.MrsImageReader;
@@ -41,6 +43,7 @@ import org.mrgeo.utils.tms.Bounds;
 import org.mrgeo.utils.tms.TMSUtils;
 import org.mrgeo.utils.tms.Tile;
 import org.mrgeo.utils.tms.TileBounds;
+import org.mrgeo.utils.tms.TileOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,8 +51,16 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 
@@ -58,6 +69,9 @@ public class HdfsMrsImageReader extends MrsImageReader
 {
 private final static int READER_CACHE_SIZE = 100;
 private final static int READER_CACHE_EXPIRE = 10; // minutes
+private final static String READ_THREADS_DEFAULT = "8";
+// reads the partitions of batched gets, shared by all the readers
+private static ExecutorService readPool = null;
 @SuppressWarnings("unused")
 private static Logger log = LoggerFactory.getLogger(HdfsMrsImageReader.class);
 final int tileSize;
@@ -69,6 +83,9 @@ final boolean profile;
 //final private HdfsMrsImageDataProvider provider;
 final private MrsPyramidReaderContext context;
 final private FileSplit splits = new FileSplit();
+// pyramid (resource path) the tiles are cached under, and the shared tile cache (null if disabled)
+final private String pyramid;
+final private HdfsTileCache tileCache = HdfsTileCache.getInstance();
 private final LoadingCache<Integer, MapFileReaderWrapper> readerCache = CacheBuilder.newBuilder()
     .maximumSize(READER_CACHE_SIZE)
     .expireAfterAccess(READER_CACHE_EXPIRE, TimeUnit.SECONDS)
@@ -102,7 +119,8 @@ private boolean canBeCached = true;
 public HdfsMrsImageReader(HdfsMrsImageDataProvider provider,
     MrsPyramidReaderContext context) throws IOException
 {
-  String path = new Path(provider.getResourcePath(true), "" + context.getZoomlevel()).toString();
+  pyramid = provider.getResourcePath(true).toString();
+  String path = new Path(pyramid, "" + context.getZoomlevel()).toString();
 
 //    this.provider = provider;
   this.context = context;
@@ -244,16 +262,185 @@ public KVIterator<TileIdWritable, MrGeoRaster> get()
  * @param key is the tile to get from the max zoom level
  * @return the data for the tile requested
  */
-@SuppressWarnings({"unchecked", "squid:S1166"}) // Exception caught and handled
 @Override
 public MrGeoRaster get(TileIdWritable key)
 {
   MapFileReaderWrapper readerWrapper = null;
   try
   {
+    if (tileCache != null)
+    {
+      byte[] cached = tileCache.get(pyramid, getZoomlevel(), key.get());
+      if (cached != null)
+      {
+        return toNonWritable(RasterWritable.fromBytes(cached));
+      }
+    }
+
     // get the reader that handles the partition/map file
     readerWrapper = getReaderWrapper(getPartitionIndex(key));
+    return read(readerWrapper, key);
+  }
+  catch (IOException e)
+  {
+    log.error("Got IOException when reading tile", e);
+    throw new MrsImageException(e);
+  }
+  finally
+  {
+    closeUncached(readerWrapper);
+  }
+}
 
+/**
+ * Retrieve a batch of tiles.  The tiles not in the tile cache are grouped by partition, and each
+ * partition's map file is read in tile id order (the map file seeks forward), with the partitions
+ * read in parallel.  A batch spread over several partitions takes about as long as its slowest
+ * partition, rather than the sum of all the reads.
+ *
+ * @param tileids the tiles to get
+ * @return the tiles found, by tile id.  Tiles that don't exist are left out
+ */
+@Override
+public Map<Long, MrGeoRaster> get(long[] tileids)
+{
+  long[] sorted = tileids.clone();
+  Arrays.sort(sorted);
+
+  Map<Long, MrGeoRaster> tiles = new HashMap<>();
+  Map<Integer, List<Long>> partitions = new TreeMap<>();
+  try
+  {
+    for (long tileid : sorted)
+    {
+      if (tileCache != null)
+      {
+        byte[] cached = tileCache.get(pyramid, getZoomlevel(), tileid);
+        if (cached != null)
+        {
+          tiles.put(tileid, toNonWritable(RasterWritable.fromBytes(cached)));
+          continue;
+        }
+      }
+      partitions.computeIfAbsent(getPartitionIndex(new TileIdWritable(tileid)), k -> new ArrayList<>())
+          .add(tileid);
+    }
+  }
+  catch (IOException e)
+  {
+    throw new MrsImageException(e);
+  }
+
+  // the first partition is read here, while the pool reads the rest
+  List<Map.Entry<Integer, List<Long>>> entries = new ArrayList<>(partitions.entrySet());
+  List<Future<Map<Long, MrGeoRaster>>> futures = new ArrayList<>();
+  for (Map.Entry<Integer, List<Long>> entry : entries.subList(Math.min(1, entries.size()), entries.size()))
+  {
+    futures.add(getReadPool().submit(() -> readPartition(entry.getKey(), entry.getValue())));
+  }
+
+  try
+  {
+    if (!entries.isEmpty())
+    {
+      tiles.putAll(readPartition(entries.get(0).getKey(), entries.get(0).getValue()));
+    }
+    for (Future<Map<Long, MrGeoRaster>> future : futures)
+    {
+      tiles.putAll(future.get());
+    }
+  }
+  catch (ExecutionException e)
+  {
+    if (e.getCause() instanceof MrsImageException)
+    {
+      throw (MrsImageException) e.getCause();
+    }
+    throw new MrsImageException(e);
+  }
+  catch (InterruptedException e)
+  {
+    Thread.currentThread().interrupt();
+    throw new MrsImageException(e);
+  }
+  finally
+  {
+    for (Future<Map<Long, MrGeoRaster>> future : futures)
+    {
+      future.cancel(true);
+    }
+  }
+
+  return tiles;
+}
+
+private static synchronized ExecutorService getReadPool()
+{
+  if (readPool == null)
+  {
+    int threads = Integer.parseInt(MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_HDFS_READ_THREADS,
+        READ_THREADS_DEFAULT));
+    readPool = Executors.newFixedThreadPool(threads, runnable ->
+    {
+      Thread thread = new Thread(runnable, "HdfsMrsImageReader");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+  return readPool;
+}
+
+// Reads the tiles (sorted by tile id) of a single partition
+private Map<Long, MrGeoRaster> readPartition(int partition, List<Long> tileids) throws MrsImageException
+{
+  MapFileReaderWrapper readerWrapper = null;
+  try
+  {
+    readerWrapper = getReaderWrapper(partition);
+
+    Map<Long, MrGeoRaster> tiles = new HashMap<>();
+    for (long tileid : tileids)
+    {
+      MrGeoRaster tile = read(readerWrapper, new TileIdWritable(tileid));
+      if (tile != null)
+      {
+        tiles.put(tileid, tile);
+      }
+    }
+    return tiles;
+  }
+  catch (IOException e)
+  {
+    log.error("Got IOException when reading tiles", e);
+    throw new MrsImageException(e);
+  }
+  finally
+  {
+    closeUncached(readerWrapper);
+  }
+}
+
+private void closeUncached(MapFileReaderWrapper readerWrapper)
+{
+  if (readerWrapper != null && !canBeCached())
+  {
+    try
+    {
+      readerWrapper.close();
+    }
+    catch (IOException e)
+    {
+      log.error("Unable to close reader for " + imagePath, e);
+    }
+  }
+}
+
+// Reads a tile from a partition's map file (and caches it), null if the tile isn't there
+@SuppressWarnings({"unchecked", "squid:S1166"}) // Exception caught and handled
+private MrGeoRaster read(MapFileReaderWrapper readerWrapper, TileIdWritable key) throws IOException
+{
+  try
+  {
     // return object
     RasterWritable val = (RasterWritable) readerWrapper.getReader().getValueClass().newInstance();
 
@@ -269,6 +456,11 @@ public MrGeoRaster get(TileIdWritable key)
       }
       if (getWritableSize(val) > 0)
       {
+        if (tileCache != null)
+        {
+          tileCache.put(pyramid, getZoomlevel(), key.get(), val.copyBytes());
+        }
+
         // return the data
         return toNonWritable(val);
       }
@@ -282,31 +474,11 @@ public MrGeoRaster get(TileIdWritable key)
 
     // nothing came back from the map file
     return null;
-
-  }
-  catch (IOException e)
-  {
-    log.error("Got IOException when reading tile", e);
-    throw new MrsImageException(e);
   }
   catch (InstantiationException | IllegalAccessException e)
   {
     throw new MrsImageException(e);
   }
-  finally
-  {
-    if (readerWrapper != null && !canBeCached())
-    {
-      try
-      {
-        readerWrapper.close();
-      }
-      catch (IOException e)
-      {
-        log.error("Unable to close reader for " + imagePath, e);
-      }
-    }
-  }
 }
 
 @Override
@@ -338,6 +510,34 @@ public int getPartitionIndex(TileIdWritable key) throws IOException
   return splits.getSplitIndex(key.get());
 }
 
+/**
+ * The order the tiles are partitioned into the map files by.  Within each map file, the tiles
+ * are always sorted by tile id.
+ */
+public TileOrder getTileOrder()
+{
+  return splits.getTileOrder();
+}
+
+/**
+ * The partitions that can hold tiles within bounds (all of them if bounds is null), in order
+ */
+public int[] getPartitions(TileBounds bounds) throws IOException
+{
+  int[] partitions = new int[getMaxPartitions()];
+  int count = 0;
+  for (int i = 0; i < partitions.length; i++)
+  {
+    FileSplitInfo part = (FileSplitInfo) splits.getSplitByPartitionIndex(i);
+    if (bounds == null ||
+        getTileOrder().intersects(part.getStartId(), part.getEndId(), bounds, getZoomlevel()))
+    {
+      partitions[count++] = i;
+    }
+  }
+  return Arrays.copyOf(partitions, count);
+}
+
 /**
  * This method will get a MapFile.Reader for the partition specified.
  * Before closing the returned reader, the caller should make sure it
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.hdfs.image;
+
+import com.google.common.cache.*;
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A process-wide cache of encoded (RasterWritable) tiles read by HdfsMrsImageReader, shared by all
+ * the readers in the JVM.  The cache is bounded by the total size of the tile bytes, not the number
+ * of tiles, and can optionally keep the bytes off the java heap.  Tiles are cached encoded and a
+ * fresh raster is decoded for every hit, so callers can't modify the cached data.
+ */
+public class HdfsTileCache
+{
+private static final Logger log = LoggerFactory.getLogger(HdfsTileCache.class);
+
+private static final String CACHE_SIZE_DEFAULT = Long.toString(128L * 1024 * 1024); // bytes
+private static final int STATS_LOG_INTERVAL = 10000; // requests
+private static final int CONCURRENCY_DEFAULT = 4; // same as the guava default
+
+private static HdfsTileCache instance = null;
+
+private final Cache<Key, Object> cache;
+private final boolean offheap;
+private final long maxTileBytes;
+private long requests = 0;
+
+HdfsTileCache(long maxBytes, boolean offheap)
+{
+  this(maxBytes, offheap, CONCURRENCY_DEFAULT);
+}
+
+// The cache is split into (concurrency) segments that each get an equal share of the bytes, and
+// evict (least recently used first) on their own
+HdfsTileCache(long maxBytes, boolean offheap, int concurrency)
+{
+  this.offheap = offheap;
+
+  // a tile bigger than a segment would push everything else out before being evicted itself
+  maxTileBytes = maxBytes / concurrency;
+
+  cache = CacheBuilder.newBuilder()
+      .concurrencyLevel(concurrency)
+      .maximumWeight(maxBytes)
+      .weigher(new Weigher<Key, Object>()
+      {
+        @Override
+        public int weigh(Key key, Object value)
+        {
+          return size(value);
+        }
+      })
+      .recordStats()
+      .build();
+}
+
+/**
+ * The shared cache, or null if tile caching is turned off (a cache size of 0)
+ */
+public static synchronized HdfsTileCache getInstance()
+{
+  if (instance == null)
+  {
+    long size = Long.parseLong(MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_HDFS_TILE_CACHE_SIZE,
+        CACHE_SIZE_DEFAULT));
+    if (size <= 0)
+    {
+      return null;
+    }
+
+    boolean offheap = MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_HDFS_TILE_CACHE_OFFHEAP,
+        "false").equals("true");
+
+    log.info("Creating HDFS tile cache of " + size + " bytes" + (offheap ? " (off heap)" : ""));
+    instance = new HdfsTileCache(size, offheap);
+  }
+
+  return instance;
+}
+
+/**
+ * Get a copy of the cached bytes of the tile, or null if the tile isn't cached
+ */
+public byte[] get(String pyramid, int zoom, long tileid)
+{
+  Object value = cache.getIfPresent(new Key(pyramid, zoom, tileid));
+  logStats();
+
+  if (value == null)
+  {
+    return null;
+  }
+
+  if (value instanceof ByteBuffer)
+  {
+    ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  return ((byte[]) value).clone();
+}
+
+/**
+ * Cache the bytes of a tile (unless it is too big to be worth caching).  The cache takes ownership of
+ * the array, so it must not be modified afterward
+ */
+public void put(String pyramid, int zoom, long tileid, byte[] bytes)
+{
+  if (bytes.length > maxTileBytes)
+  {
+    return;
+  }
+
+  Object value;
+  if (offheap)
+  {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes);
+    buffer.flip();
+    value = buffer;
+  }
+  else
+  {
+    value = bytes;
+  }
+
+  cache.put(new Key(pyramid, zoom, tileid), value);
+}
+
+/**
+ * Remove all the cached tiles of a pyramid, if the cache has been created
+ */
+public static synchronized void invalidatePyramid(String pyramid)
+{
+  if (instance != null)
+  {
+    instance.invalidate(pyramid);
+  }
+}
+
+/**
+ * Remove all the tiles of a pyramid (all zoom levels), e.g. when it has been rewritten
+ */
+public void invalidate(String pyramid)
+{
+  for (Key key : cache.asMap().keySet())
+  {
+    if (key.pyramid.equals(pyramid))
+    {
+      cache.invalidate(key);
+    }
+  }
+}
+
+public void invalidateAll()
+{
+  cache.invalidateAll();
+}
+
+/**
+ * Hit, miss, and eviction counts of the cache
+ */
+public CacheStats stats()
+{
+  return cache.stats();
+}
+
+public long size()
+{
+  return cache.size();
+}
+
+private static int size(Object value)
+{
+  if (value instanceof ByteBuffer)
+  {
+    return ((ByteBuffer) value).capacity();
+  }
+  return ((byte[]) value).length;
+}
+
+private void logStats()
+{
+  if (log.isDebugEnabled())
+  {
+    synchronized (this)
+    {
+      if (++requests % STATS_LOG_INTERVAL == 0)
+      {
+        CacheStats stats = cache.stats();
+        log.debug("HDFS tile cache: " + cache.size() + " tiles, hits: " + stats.hitCount() +
+            " misses: " + stats.missCount() + " evictions: " + stats.evictionCount());
+      }
+    }
+  }
+}
+
+private static class Key
+{
+  private final String pyramid;
+  private final int zoom;
+  private final long tileid;
+
+  Key(String pyramid, int zoom, long tileid)
+  {
+    this.pyramid = pyramid;
+    this.zoom = zoom;
+    this.tileid = tileid;
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o)
+    {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass())
+    {
+      return false;
+    }
+
+    Key key = (Key) o;
+    return zoom == key.zoom && tileid == key.tileid && pyramid.equals(key.pyramid);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    int result = pyramid.hashCode();
+    result = 31 * result + zoom;
+    result = 31 * result + (int) (tileid ^ (tileid >>> 32));
+    return result;
+  }
+}
+}
@@ -34,6 +34,7 @@ import org.mrgeo.mapreduce.splitters.TiledInputSplit;
 import org.mrgeo.utils.tms.Bounds;
 import org.mrgeo.utils.tms.TMSUtils;
 import org.mrgeo.utils.tms.Tile;
+import org.mrgeo.utils.tms.TileOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -135,6 +136,8 @@ public List<InputSplit> getSplits(JobContext context) throws IOException
 
   List<InputSplit> result = new ArrayList<>(splits.length);
 
+  TileOrder order = fsplit.getTileOrder();
+
   Bounds requestedBounds = ifContext.getBounds();
   for (FileSplitInfo split : splits)
   {
@@ -144,7 +147,18 @@ public List<InputSplit> getSplits(JobContext context) throws IOException
     long endTileId = split.getEndId();
     long startTileId = split.getStartId();
 
-    if (requestedBounds != null)
+    if (order != TileOrder.ROW_MAJOR)
+    {
+      // The split is a range of a space-filling curve, which can be checked against the
+      // requested bounds directly.
+      if (requestedBounds == null || order.intersects(startTileId, endTileId,
+          TMSUtils.boundsToTile(requestedBounds, zoom, tilesize), zoom))
+      {
+        result.add(new TiledInputSplit(new FileSplit(dataFile, 0, 0, null), startTileId, endTileId,
+            zoom, metadata.getTilesize(), order));
+      }
+    }
+    else if (requestedBounds != null)
     {
       // Do not include splits that can't possibly intersect the requested bounds. This
       // is an HDFS-specific efficiency to avoid needlessly processing splits.
@@ -23,12 +23,14 @@ import org.apache.hadoop.fs.Path;
 import org.mrgeo.data.image.MrsPyramidMetadataReader;
 import org.mrgeo.data.image.MrsPyramidMetadataReaderContext;
 import org.mrgeo.hdfs.image.HdfsMrsImageDataProvider;
+import org.mrgeo.hdfs.image.HdfsTileCache;
 import org.mrgeo.hdfs.utils.HadoopFileUtils;
 import org.mrgeo.image.MrsPyramidMetadata;
 import org.reflections.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.AnnotatedElement;
@@ -96,6 +98,11 @@ public MrsPyramidMetadata read() throws IOException
 @Override
 public MrsPyramidMetadata reload() throws IOException
 {
+  // the pyramid may have been rewritten, so any of its cached tiles are stale
+  if (dataProvider != null)
+  {
+    HdfsTileCache.invalidatePyramid(dataProvider.getResourcePath(true).toString());
+  }
 
   if (metadata == null)
   {
@@ -169,6 +176,29 @@ public MrsPyramidMetadata reload() throws IOException
   return metadata;
 }
 
+/**
+ * The modification time of the metadata file, 0 if it doesn't exist
+ */
+@Override
+public long getModificationTime() throws IOException
+{
+  if (dataProvider == null)
+  {
+    throw new IOException("DataProvider not set!");
+  }
+
+  Path metapath = new Path(dataProvider.getResourcePath(true), HdfsMrsImageDataProvider.METADATA);
+  FileSystem fs = HadoopFileUtils.getFileSystem(conf, metapath);
+  try
+  {
+    return fs.getFileStatus(metapath).getModificationTime();
+  }
+  catch (FileNotFoundException ignored)
+  {
+    return 0;
+  }
+}
+
 /**
  * Check for existence and load the metadata
  */
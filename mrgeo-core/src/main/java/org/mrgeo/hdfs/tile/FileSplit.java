@@ -26,6 +26,7 @@ import org.mrgeo.data.tile.TileIdWritable;
 import org.mrgeo.hdfs.partitioners.SplitGenerator;
 import org.mrgeo.hdfs.utils.HadoopFileUtils;
 import org.mrgeo.utils.HadoopUtils;
+import org.mrgeo.utils.tms.TileOrder;
 
 import javax.xml.bind.DatatypeConverter;
 import java.io.*;
@@ -42,9 +43,36 @@ public static final String SPLIT_FILE = "splits";
 public static final String OLD_SPLIT_FILE = "splits.txt";
 private static final String SPACER = " ";
 private static final String VERSION = "v3";
+// v4 adds a line with the tile order (and zoom level) of the split ranges, it is only written when the
+// tiles aren't in row major order, so older readers can still read those splits
+private static final String VERSION_4 = "v4";
 // negative magic number telling if the split is an old (version 2) splitfile.  v1 is deprecated
 private static final long VERSION_2 = -12345;
 
+// the split ranges (start/end ids) are indices in this order, and the map files are partitioned by it
+private TileOrder tileOrder = TileOrder.ROW_MAJOR;
+private int zoom;
+
+public TileOrder getTileOrder()
+{
+  return tileOrder;
+}
+
+public int getZoomLevel()
+{
+  return zoom;
+}
+
+/**
+ * Set the order (at zoom level) the start and end ids of the splits are in.  Tile ids passed to
+ * getSplit() and getSplitIndex() are always plain (row major) tile ids.
+ */
+public void setTileOrder(TileOrder tileOrder, int zoom)
+{
+  this.tileOrder = tileOrder;
+  this.zoom = zoom;
+}
+
 public void generateSplits(FileSplitInfo[] splits)
 {
   this.splits = new FileSplitInfo[splits.length];
@@ -103,6 +131,8 @@ public void generateSplits(Path parent, Configuration conf) throws IOException
     }
   }
 
+  // the first and last keys of the map files are only ranges in row major order
+  setTileOrder(TileOrder.ROW_MAJOR, 0);
   splits = list.toArray(new FileSplitInfo[list.size()]);
 }
 
@@ -147,6 +177,13 @@ public void readSplits(InputStream stream) throws SplitException
 
     if (first.equals(VERSION))
     {
+      setTileOrder(TileOrder.ROW_MAJOR, 0);
+      readSplits(reader);
+    }
+    else if (first.equals(VERSION_4))
+    {
+      setTileOrder(TileOrder.valueOf(reader.next()), reader.nextInt());
+      reader.nextLine();
       readSplits(reader);
     }
     else
@@ -208,7 +245,17 @@ public void writeSplits(OutputStream stream) throws SplitException
   }
 
   PrintWriter writer = new PrintWriter(stream);
-  writer.println(VERSION);
+  if (tileOrder == TileOrder.ROW_MAJOR)
+  {
+    writer.println(VERSION);
+  }
+  else
+  {
+    writer.println(VERSION_4);
+    writer.print(tileOrder.name());
+    writer.print(SPACER);
+    writer.println(zoom);
+  }
   writer.println(splits.length);
   for (SplitInfo split : splits)
   {
@@ -242,6 +289,21 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
     splits[i] = new FileSplitInfo(in.readLong(), in.readLong(), in.readUTF(), in.readInt());
   }
 
+  tileOrder = TileOrder.values()[in.readInt()];
+  zoom = in.readInt();
+}
+
+@Override
+protected void writeSplitKeys(ObjectOutput out) throws IOException
+{
+  out.writeInt(tileOrder.ordinal());
+  out.writeInt(zoom);
+}
+
+@Override
+protected long splitKey(long tileId)
+{
+  return tileOrder.index(tileId, zoom);
 }
 
 protected MapFile.Reader createMapFileReader(Configuration conf, Path mapfile) throws IOException
@@ -68,16 +68,17 @@ final public SplitInfo getSplit(long tileId) throws SplitException
   {
     throw new SplitException("Splits not generated, call readSplits() or generateSplits() first");
   }
+  long key = splitKey(tileId);
 
   // lots of splits, use binary search
   if (splits.length > 1000)
   {
-    return splits[findSplitIndex(tileId)];
+    return splits[findSplitIndex(key)];
   }
   // few splits, brute force search
   for (SplitInfo split : splits)
   {
-    if (split.compareLE(tileId))
+    if (split.compareLE(key))
     {
       return split;
     }
@@ -93,16 +94,17 @@ final public int getSplitIndex(long tileId) throws SplitException
   {
     throw new SplitException("Splits not generated, call readSplits() or generateSplits() first");
   }
+  long key = splitKey(tileId);
 
   // If a tile before the start of the first tile is requested,
   // return the first split.
-  if (splits[0].compareLT(tileId))
+  if (splits[0].compareLT(key))
   {
     return 0;
   }
   // If a tile after the end of the last tile is requested,
   // return the last split.
-  if (splits[splits.length - 1].compareGT(tileId))
+  if (splits[splits.length - 1].compareGT(key))
   {
     return splits.length - 1;
   }
@@ -110,12 +112,12 @@ final public int getSplitIndex(long tileId) throws SplitException
   // lots of splits, use binary search
   if (splits.length > 1000)
   {
-    return findSplitIndex(tileId);
+    return findSplitIndex(key);
   }
   // few splits, brute force search
   for (int i = 0; i < splits.length; i++)
   {
-    if (splits[i].compareLE(tileId))
+    if (splits[i].compareLE(key))
     {
       return i;
     }
@@ -125,6 +127,15 @@ final public int getSplitIndex(long tileId) throws SplitException
 //                             ".  splits: min: " + splits[0].getTileId() + ", max: " + splits[splits.length - 1].getTileId());
 }
 
+/**
+ * The value the splits are ordered by for a tile id, the tile id itself unless the tiles are
+ * stored in some other order
+ */
+protected long splitKey(long tileId)
+{
+  return tileId;
+}
+
 @Override
 final public void writeExternal(ObjectOutput out) throws IOException
 {
@@ -133,6 +144,15 @@ final public void writeExternal(ObjectOutput out) throws IOException
   {
     split.writeExternal(out);
   }
+  writeSplitKeys(out);
+}
+
+/**
+ * Write whatever splitKey() depends on, after the splits.  The subclass's readExternal() reads
+ * it back.
+ */
+protected void writeSplitKeys(ObjectOutput out) throws IOException
+{
 }
 
 private int findSplitIndex(long tileId) throws SplitException
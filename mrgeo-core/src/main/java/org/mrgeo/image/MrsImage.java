@@ -39,6 +39,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -382,6 +383,21 @@ public KVIterator<TileIdWritable, MrGeoRaster> getTiles(TileIdWritable start,
   return reader.get(start, end);
 }
 
+/**
+ * Get a batch of tiles at once (see MrsImageReader.get(long[]))
+ *
+ * @param tileids the tiles to get
+ * @return the tiles found, by tile id.  Tiles that don't exist are left out
+ */
+public Map<Long, MrGeoRaster> getTiles(long[] tileids)
+{
+  if (reader == null)
+  {
+    openReader();
+  }
+  return reader.get(tileids);
+}
+
 public int getTilesize()
 {
   if (tilesize < 0)
@@ -24,6 +24,7 @@ import org.mrgeo.utils.tms.Bounds;
 import org.mrgeo.utils.tms.Pixel;
 import org.mrgeo.utils.tms.TMSUtils;
 import org.mrgeo.utils.tms.TileBounds;
+import org.mrgeo.utils.tms.TileOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +54,8 @@ public class MrsPyramidMetadata implements Serializable
 private static final Logger log = LoggerFactory.getLogger(MrsPyramidMetadata.class);
 // version
 private static final long serialVersionUID = 1L;
+// the tile type of metadata that hasn't been given one yet (0 is DataBuffer.TYPE_BYTE)
+public static final int TILETYPE_UNKNOWN = -1;
 protected String pyramid; // base hdfs path or accumulo table for the pyramid
 
 
@@ -81,11 +84,13 @@ private double[][] quantiles; // quantiles computed in each band for the entire
 // really
 // the nodata value for each pixel
 private double[] defaultValues;
-private int tileType; // pixel type for the image
+private int tileType = TILETYPE_UNKNOWN; // pixel type for the image
 private ImageStats[] stats; // min, max, mean, std dev of pixel values by band for the source resolution level image
 private String[][] categories; // categories for each band in the image
 private Classification classification = Classification.Continuous;
 private String resamplingMethod;
+// order the tiles are laid out in by the data provider (i.e. the HDFS map files)
+private TileOrder tileOrder = TileOrder.ROW_MAJOR;
 
 public MrsPyramidMetadata()
 {
@@ -135,6 +140,7 @@ public MrsPyramidMetadata(MrsPyramidMetadata copy)
 
   classification = copy.classification;
   resamplingMethod = copy.resamplingMethod;
+  tileOrder = copy.tileOrder;
 
   imageData = new ImageMetadata[copy.imageData.length];
   for (int i = 0; i < copy.imageData.length; i++)
@@ -911,6 +917,16 @@ public void setResamplingMethod(String resamplingMethod)
   this.resamplingMethod = resamplingMethod;
 }
 
+public TileOrder getTileOrder()
+{
+  return tileOrder;
+}
+
+public void setTileOrder(TileOrder tileOrder)
+{
+  this.tileOrder = (tileOrder == null) ? TileOrder.ROW_MAJOR : tileOrder;
+}
+
 @SuppressWarnings("squid:S1166") // Exception caught and handled
 public void save(OutputStream stream) throws IOException
 {
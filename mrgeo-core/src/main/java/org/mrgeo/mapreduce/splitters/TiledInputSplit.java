@@ -19,6 +19,7 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.mrgeo.utils.HadoopUtils;
+import org.mrgeo.utils.tms.TileOrder;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -31,6 +32,8 @@ private long startTileId;
 private long endTileId;
 private int zoomLevel;
 private int tileSize;
+// the order the start and end tile ids are in
+private TileOrder tileOrder = TileOrder.ROW_MAJOR;
 
 // Used by Hadoop to re-construct the split when readFields is called.
 public TiledInputSplit()
@@ -47,6 +50,17 @@ public TiledInputSplit(InputSplit inputSplit, long startTileId,
   this.tileSize = tileSize;
 }
 
+/**
+ * A split whose start and end "tile ids" are indices in tileOrder (i.e. the split holds a
+ * range of a space-filling curve instead of a range of rows)
+ */
+public TiledInputSplit(InputSplit inputSplit, long startTileId,
+    long endTileId, int zoomLevel, int tileSize, TileOrder tileOrder)
+{
+  this(inputSplit, startTileId, endTileId, zoomLevel, tileSize);
+  this.tileOrder = tileOrder;
+}
+
 @Override
 public void readFields(DataInput in) throws IOException
 {
@@ -70,6 +84,7 @@ public void readFields(DataInput in) throws IOException
   endTileId = in.readLong();
   zoomLevel = in.readInt();
   tileSize = in.readInt();
+  tileOrder = TileOrder.values()[in.readInt()];
 }
 
 @Override
@@ -91,6 +106,7 @@ public void write(DataOutput out) throws IOException
   out.writeLong(endTileId);
   out.writeInt(zoomLevel);
   out.writeInt(tileSize);
+  out.writeInt(tileOrder.ordinal());
 }
 
 @Override
@@ -129,4 +145,9 @@ public int getTileSize()
 {
   return tileSize;
 }
+
+public TileOrder getTileOrder()
+{
+  return tileOrder;
+}
 }
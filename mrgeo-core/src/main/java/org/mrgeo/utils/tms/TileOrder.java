@@ -0,0 +1,265 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.utils.tms;
+
+/**
+ * The order tiles of a zoom level are laid out in, as a (long) index per tile.  ROW_MAJOR is the
+ * order of the tile ids themselves (TMSUtils.tileid()), a row at a time.  ZORDER (Morton) and
+ * HILBERT are space-filling curves over the 2^zoom x 2^zoom square holding the level, so a range of
+ * indices covers a compact block of tiles instead of a long strip of rows.  For the curves, every
+ * aligned run of 4^k indices covers an aligned 2^k x 2^k square of tiles.
+ */
+public enum TileOrder
+{
+  ROW_MAJOR, ZORDER, HILBERT;
+
+/**
+ * Parse an order by name, ignoring case, "-" and "_" (i.e. "rowmajor", "row_major" and "z-order"
+ * are all fine).  A null or empty name is ROW_MAJOR.
+ */
+public static TileOrder fromName(String name)
+{
+  if (name == null || name.trim().isEmpty())
+  {
+    return ROW_MAJOR;
+  }
+
+  String n = name.trim().replace("-", "").replace("_", "");
+  for (TileOrder order : values())
+  {
+    if (order.name().replace("_", "").equalsIgnoreCase(n))
+    {
+      return order;
+    }
+  }
+  throw new IllegalArgumentException("Unknown tile order: " + name);
+}
+
+/**
+ * The index of tile tx, ty in this order
+ */
+public long index(long tx, long ty, int zoom)
+{
+  switch (this)
+  {
+  case ZORDER:
+    return spread(tx) | (spread(ty) << 1);
+  case HILBERT:
+    return hilbertIndex(tx, ty, zoom);
+  default:
+    return TMSUtils.tileid(tx, ty, zoom);
+  }
+}
+
+/**
+ * The index, in this order, of the tile with the (row major) tile id
+ */
+public long index(long tileid, int zoom)
+{
+  if (this == ROW_MAJOR)
+  {
+    return tileid;
+  }
+  Tile t = TMSUtils.tileid(tileid, zoom);
+  return index(t.tx, t.ty, zoom);
+}
+
+/**
+ * The tile at index in this order
+ */
+public Tile tile(long index, int zoom)
+{
+  switch (this)
+  {
+  case ZORDER:
+    return new Tile(compact(index), compact(index >>> 1));
+  case HILBERT:
+    return hilbertTile(index, zoom);
+  default:
+    return TMSUtils.tileid(index, zoom);
+  }
+}
+
+/**
+ * The (row major) tile id of the tile at index in this order
+ */
+public long tileid(long index, int zoom)
+{
+  if (this == ROW_MAJOR)
+  {
+    return index;
+  }
+  Tile t = tile(index, zoom);
+  return TMSUtils.tileid(t.tx, t.ty, zoom);
+}
+
+/**
+ * Does the (inclusive) range of indices start - end hold any tile within bounds?
+ */
+public boolean intersects(long start, long end, TileBounds bounds, int zoom)
+{
+  if (start > end)
+  {
+    return false;
+  }
+  if (this == ROW_MAJOR)
+  {
+    return rowsIntersect(start, end, bounds, zoom);
+  }
+  return curveIntersects(start, end, bounds, zoom, 0, zoom);
+}
+
+private boolean rowsIntersect(long start, long end, TileBounds bounds, int zoom)
+{
+  Tile first = TMSUtils.tileid(start, zoom);
+  Tile last = TMSUtils.tileid(end, zoom);
+
+  long lo = Math.max(first.ty, bounds.s);
+  long hi = Math.min(last.ty, bounds.n);
+
+  // only the first and last rows of the range can be partial, any other row crosses the bounds
+  for (long row = lo; row <= hi; row++)
+  {
+    if (row != first.ty && row != last.ty)
+    {
+      return true;
+    }
+    long w = (row == first.ty) ? first.tx : 0;
+    long e = (row == last.ty) ? last.tx : TMSUtils.numXTiles(zoom) - 1;
+    if (w <= bounds.e && e >= bounds.w)
+    {
+      return true;
+    }
+  }
+  return false;
+}
+
+// Descend the curve's quadtree, the block of 4^level indices starting at base covers a 2^level
+// square of tiles, which is where tile(base) is, aligned to the square's size
+private boolean curveIntersects(long start, long end, TileBounds bounds, int zoom, long base, int level)
+{
+  long size = 1L << (2 * level);
+  if (base > end || base + size - 1 < start)
+  {
+    return false;
+  }
+
+  long side = 1L << level;
+  Tile corner = tile(base, zoom);
+  long x = corner.tx & ~(side - 1);
+  long y = corner.ty & ~(side - 1);
+  if (x > bounds.e || x + side - 1 < bounds.w || y > bounds.n || y + side - 1 < bounds.s)
+  {
+    return false;
+  }
+
+  // the whole block is in the range, and it overlaps the bounds
+  if (base >= start && base + size - 1 <= end)
+  {
+    return true;
+  }
+
+  long quarter = size >>> 2;
+  for (int q = 0; q < 4; q++)
+  {
+    if (curveIntersects(start, end, bounds, zoom, base + q * quarter, level - 1))
+    {
+      return true;
+    }
+  }
+  return false;
+}
+
+private static long hilbertIndex(long tx, long ty, int zoom)
+{
+  long n = 1L << zoom;
+  long x = tx;
+  long y = ty;
+  long index = 0;
+  for (long s = n >>> 1; s > 0; s >>>= 1)
+  {
+    long rx = (x & s) != 0 ? 1 : 0;
+    long ry = (y & s) != 0 ? 1 : 0;
+    index += s * s * ((3 * rx) ^ ry);
+
+    // rotate the quadrant so its sub-curve is in the standard orientation
+    if (ry == 0)
+    {
+      if (rx == 1)
+      {
+        x = n - 1 - x;
+        y = n - 1 - y;
+      }
+      long t = x;
+      x = y;
+      y = t;
+    }
+  }
+  return index;
+}
+
+private static Tile hilbertTile(long index, int zoom)
+{
+  long n = 1L << zoom;
+  long x = 0;
+  long y = 0;
+  long t = index;
+  for (long s = 1; s < n; s <<= 1)
+  {
+    long rx = 1 & (t >>> 1);
+    long ry = 1 & (t ^ rx);
+    if (ry == 0)
+    {
+      if (rx == 1)
+      {
+        x = s - 1 - x;
+        y = s - 1 - y;
+      }
+      long tmp = x;
+      x = y;
+      y = tmp;
+    }
+    x += s * rx;
+    y += s * ry;
+    t >>>= 2;
+  }
+  return new Tile(x, y);
+}
+
+// Spread the low 32 bits of v out to the even bits of a long
+private static long spread(long v)
+{
+  long x = v & 0xffffffffL;
+  x = (x | (x << 16)) & 0x0000ffff0000ffffL;
+  x = (x | (x << 8)) & 0x00ff00ff00ff00ffL;
+  x = (x | (x << 4)) & 0x0f0f0f0f0f0f0f0fL;
+  x = (x | (x << 2)) & 0x3333333333333333L;
+  x = (x | (x << 1)) & 0x5555555555555555L;
+  return x;
+}
+
+// Gather the even bits of v back into the low 32 bits (the inverse of spread())
+private static long compact(long v)
+{
+  long x = v & 0x5555555555555555L;
+  x = (x | (x >>> 1)) & 0x3333333333333333L;
+  x = (x | (x >>> 2)) & 0x0f0f0f0f0f0f0f0fL;
+  x = (x | (x >>> 4)) & 0x00ff00ff00ff00ffL;
+  x = (x | (x >>> 8)) & 0x0000ffff0000ffffL;
+  x = (x | (x >>> 16)) & 0x00000000ffffffffL;
+  return x;
+}
+}
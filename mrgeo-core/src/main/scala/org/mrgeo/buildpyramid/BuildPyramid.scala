@@ -17,13 +17,16 @@ package org.mrgeo.buildpyramid
 
 import java.io.{Externalizable, ObjectInput, ObjectOutput}
 import java.util.Properties
+import java.util.concurrent.Executors
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings
 import org.apache.commons.lang3.NotImplementedException
 import org.apache.hadoop.conf.Configuration
 import org.apache.spark.rdd.{PairRDDFunctions, RDD}
+import org.apache.spark.storage.StorageLevel
 import org.apache.spark.{SparkConf, SparkContext}
 import org.mrgeo.aggregators.{Aggregator, AggregatorRegistry, MeanAggregator}
+import org.mrgeo.core.{MrGeoConstants, MrGeoProperties}
 import org.mrgeo.data
 import org.mrgeo.data.DataProviderFactory.AccessMode
 import org.mrgeo.data.image.{ImageOutputFormatContext, MrsImageDataProvider, MrsImageWriter}
@@ -31,13 +34,15 @@ import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
 import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.data.tile.TileIdWritable
 import org.mrgeo.data.{DataProviderFactory, ProviderProperties}
-import org.mrgeo.image.{ImageStats, MrsPyramidMetadata}
+import org.mrgeo.image.{ImageStats, MrsPyramid, MrsPyramidMetadata}
 import org.mrgeo.job.{JobArguments, MrGeoDriver, MrGeoJob}
 import org.mrgeo.utils._
 import org.mrgeo.utils.tms._
 
 import scala.beans.BeanProperty
 import scala.collection.mutable
+import scala.concurrent.duration.Duration
+import scala.concurrent.{Await, ExecutionContext, Future}
 
 object BuildPyramid extends MrGeoDriver with Externalizable {
 
@@ -146,87 +151,62 @@ class BuildPyramid extends MrGeoJob with Externalizable {
 
     var pyramid = SparkUtils.loadMrsPyramid(provider, maxLevel, context)
 
-    var builtlocally = false
-    // build the levels
-    for (level <- maxLevel until 1 by -1) {
-      val fromlevel = level
-      val tolevel = fromlevel - 1
-
-      if (!builtlocally) {
-        logInfo("Building pyramid for: " + pyramidName + " from: " + fromlevel + " to: " + tolevel)
-        val tb = metadata.getTileBounds(fromlevel)
-
-        // if we have less than 1000 tiles total, we'll use the local buildpyramid
-        if (tb.getWidth * tb.getHeight > BuildPyramid.MIN_TILES_FOR_SPARK) {
-
-          val decimated:RDD[(TileIdWritable, RasterWritable)] = pyramid.map(tile => {
-            val fromkey = tile._1
-            val fromtile:Tile = TMSUtils.tileid(fromkey.get, fromlevel)
-            val frombounds:Bounds = TMSUtils.tileBounds(fromtile.tx, fromtile.ty, fromlevel, tilesize)
-
-            val fromraster = RasterWritable.toMrGeoRaster(tile._2)
-
-            // calculate the starting pixel for the from-tile (make sure to use the NW coordinate)
-            val fromcorner:Pixel = TMSUtils.latLonToPixelsUL(frombounds.n, frombounds.w, fromlevel, tilesize)
-
-            val totile:Tile = TMSUtils.latLonToTile(frombounds.s, frombounds.w, tolevel, tilesize)
-            val tobounds:Bounds = TMSUtils.tileBounds(totile.tx, totile.ty, tolevel, tilesize)
-
-            // calculate the starting pixel for the to-tile (make sure to use the NW coordinate) in the from-tile's pixel space
-            val tocorner:Pixel = TMSUtils.latLonToPixelsUL(tobounds.n, tobounds.w, fromlevel, tilesize)
-
-            val tokey = new TileIdWritable(TMSUtils.tileid(totile.tx, totile.ty, tolevel))
-
-            val reduced = fromraster.reduce(2, 2, aggregator, nodatas)
+    val levelsPerPass = math.max(1, MrGeoProperties.getInstance.getProperty(
+      MrGeoConstants.MRGEO_BUILDPYRAMID_LEVELS_PER_PASS,
+      MrGeoConstants.MRGEO_BUILDPYRAMID_LEVELS_PER_PASS_DEFAULT).toInt)
 
-            // create a compatible writable raster
-            logDebug("from  tx: " + fromtile.tx + " ty: " + fromtile.ty + " (" + fromlevel + ") to tx: " + totile.tx +
-                     " ty: " + totile.ty + " (" + tolevel + ") x: "
-                     + ((fromcorner.px - tocorner.px) / 2) + " y: " + ((fromcorner.py - tocorner.py) / 2) +
-                     " w: " + reduced.width() + " h: " + reduced.height())
+    // build the levels, several at a time
+    var built:RDD[(Int, (TileIdWritable, RasterWritable))] = null
+    var fromlevel = maxLevel
+    while (fromlevel > 1) {
+      val tb = metadata.getTileBounds(fromlevel)
 
-            val toraster = fromraster.createCompatibleRaster(tilesize, tilesize)
-            toraster.fill(nodatas)
-
-            toraster.copyFrom(0, 0, reduced.width(), reduced.height(), reduced,
-              (fromcorner.px - tocorner.px).toInt / 2, (fromcorner.py - tocorner.py).toInt / 2)
-
-            (tokey, RasterWritable.toWritable(toraster))
-          })
+      // if we have less than 1000 tiles total, we'll use the local buildpyramid
+      if (tb.getWidth * tb.getHeight > BuildPyramid.MIN_TILES_FOR_SPARK) {
+        val tolevel = math.max(1, fromlevel - levelsPerPass)
+        logInfo("Building pyramid for: " + pyramidName + " from: " + fromlevel + " to: " + tolevel)
 
-          val mergedTiles = new PairRDDFunctions(decimated).reduceByKey((r1, r2) => {
-            val src = RasterWritable.toMrGeoRaster(r1)
-            val dst = RasterWritable.toMrGeoRaster(r2)
+        val levels = buildlevels(pyramid, fromlevel, tolevel, tilesize, nodatas)
+        levels.persist(StorageLevel.MEMORY_AND_DISK_SER)
 
-            dst.mosaic(src, nodatas)
+        // build the levels once, up front.  The concurrent saves would otherwise each compute the
+        // (not yet cached) levels for themselves, running the shuffle and decimation once per level
+        levels.count()
 
-            RasterWritable.toWritable(dst)
-          })
+        // while we were running, there is chance the pyramid was removed from the cache and
+        // reopened by another process. Re-loading it here will avoid some potential conflicts.
+        metadata = provider.getMetadataReader.reload()
 
-          // while we were running, there is chance the pyramid was removed from the cache and
-          // reopened by another process. Re-loading it here will avoid some potential conflicts.
-          metadata = provider.getMetadataReader.reload()
+        // make sure the levels are deleted
+        for (level <- tolevel until fromlevel) {
+          deletelevel(level, metadata, provider)
+        }
 
-          // make sure the level is deleted
-          deletelevel(tolevel, metadata, provider)
+        metadata = savelevels(levels, tolevel until fromlevel, provider, context)
 
-          pyramid = RasterRDD(mergedTiles)
+        if (built != null) {
+          built.unpersist()
+        }
+        built = levels
 
-          SparkUtils.saveMrsPyramid(pyramid, provider, tolevel,
-            context.hadoopConfiguration, providerproperties = this.providerproperties)
+        pyramid = RasterRDD(levels.filter(_._1 == tolevel).map(_._2))
+        fromlevel = tolevel
 
-          //TODO: Fix this in S3
-          // in S3, sometimes the just-written data isn't available to read yet.  This sleep just gives
-          // S3 a chance to catch up...
-          //Thread.sleep(5000)
-        }
-        else {
-          buildlevellocal(provider, pyramid, fromlevel, 1)
-          builtlocally = true
-        }
+        //TODO: Fix this in S3
+        // in S3, sometimes the just-written data isn't available to read yet.  This sleep just gives
+        // S3 a chance to catch up...
+        //Thread.sleep(5000)
+      }
+      else {
+        buildlevellocal(provider, pyramid, fromlevel, 1)
+        fromlevel = 1
       }
     }
 
+    if (built != null) {
+      built.unpersist()
+    }
+
     true
   }
 
@@ -261,6 +241,164 @@ class BuildPyramid extends MrGeoJob with Externalizable {
     aggregator = clazz.newInstance().asInstanceOf[Aggregator]
   }
 
+  // Build the levels from fromlevel - 1 down to tolevel in a single shuffle.  Each tile is reduced 2x2
+  // as it is read, then all the tiles under the same tolevel tile are grouped together, so the
+  // remaining levels can be built in-task, without going back to the cluster.  The result is keyed
+  // by zoom level.
+  private[buildpyramid] def buildlevels(pyramid:RasterRDD, fromlevel:Int, tolevel:Int, tilesize:Int,
+                                       nodatas:Array[Double]):RDD[(Int, (TileIdWritable, RasterWritable))] = {
+    val shift = fromlevel - tolevel
+
+    val reduced = pyramid.map(tile => {
+      val fromtile:Tile = TMSUtils.tileid(tile._1.get, fromlevel)
+      val parent = TMSUtils.tileid(fromtile.tx >> shift, fromtile.ty >> shift, tolevel)
+
+      // constant tiles (e.g. all nodata) reduce to constant tiles, without being expanded
+      val pixel = RasterWritable.toConstantPixel(tile._2)
+      val reduced = if (pixel != null) {
+        reduceConstant(pixel, RasterWritable.getWidth(tile._2), RasterWritable.getHeight(tile._2), nodatas)
+      }
+      else {
+        RasterWritable.toWritable(RasterWritable.toMrGeoRaster(tile._2).reduce(2, 2, aggregator, nodatas))
+      }
+      (parent, (tile._1.get, reduced))
+    })
+
+    new PairRDDFunctions(reduced).groupByKey().flatMap(group => {
+      val built = mutable.ArrayBuffer.empty[(Int, (TileIdWritable, RasterWritable))]
+
+      var level = fromlevel - 1
+      var tiles = mutable.HashMap.empty[TileIdWritable, MrGeoRaster]
+      group._2.foreach(tile => {
+        place(tiles, tile._1, RasterWritable.toMrGeoRaster(tile._2), fromlevel, tilesize, nodatas)
+      })
+
+      while (level >= tolevel) {
+        tiles.foreach(tile => built += ((level, (tile._1, RasterWritable.toWritable(tile._2)))))
+
+        if (level > tolevel) {
+          tiles = decimate(tiles, level, tilesize, nodatas)
+        }
+        level -= 1
+      }
+
+      built
+    })
+  }
+
+  // Save the levels built by buildlevels (already computed and persisted).  The levels are written
+  // concurrently (they are independent Spark jobs), the metadata is only updated once they have all
+  // been written.
+  private def savelevels(levels:RDD[(Int, (TileIdWritable, RasterWritable))], zooms:Seq[Int],
+                         provider:MrsImageDataProvider, context:SparkContext):MrsPyramidMetadata = {
+    val metadata = provider.getMetadataReader.read
+    val bounds = metadata.getBounds
+    val bands = metadata.getBands
+    val tiletype = metadata.getTileType
+    val tilesize = metadata.getTilesize
+    val nodatas = metadata.getDefaultValuesDouble
+    val protectionlevel = metadata.getProtectionLevel
+
+    val pool = Executors.newFixedThreadPool(zooms.length)
+    implicit val ec = ExecutionContext.fromExecutorService(pool)
+
+    try {
+      val saves = zooms.map(zoom => Future {
+        val tiles = RasterRDD(levels.filter(_._1 == zoom).map(_._2))
+
+        val stats = SparkUtils.calculateStats(tiles, bands, nodatas)
+
+        val tofc = new ImageOutputFormatContext(provider.getResourceName, bounds, zoom, tilesize,
+          protectionlevel, tiletype, bands)
+        // the lower levels are stored in the same order as the rest of the pyramid
+        tofc.setTileOrder(metadata.getTileOrder)
+        val tofp = provider.getTiledOutputFormatProvider(tofc)
+
+        // the save modifies the configuration, so each level needs its own
+        tofp.save(tiles, new Configuration(context.hadoopConfiguration))
+
+        (zoom, stats)
+      })
+
+      val saved = Await.result(Future.sequence(saves), Duration.Inf)
+
+      val reloaded = provider.getMetadataReader.reload()
+      saved.foreach(level => {
+        MrsPyramid.calculateMetadata(level._1, tilesize, bands, tiletype, provider, level._2, reloaded)
+      })
+
+      reloaded
+    }
+    finally {
+      ec.shutdown()
+    }
+  }
+
+  // Reduce a width x height constant tile, given as its 1 x 1 pixel, the result is the aggregate of
+  // a 2 x 2 block of that pixel
+  private def reduceConstant(pixel:MrGeoRaster, width:Int, height:Int, nodatas:Array[Double]):RasterWritable = {
+    val block = pixel.createCompatibleRaster(2, 2)
+    var b:Int = 0
+    while (b < pixel.bands()) {
+      block.fill(b, pixel.getPixelDouble(0, 0, b))
+      b += 1
+    }
+    RasterWritable.fromConstantPixel(block.reduce(2, 2, aggregator, nodatas), width / 2, height / 2)
+  }
+
+  // Decimate the tiles of fromlevel into the tiles of the next level down
+  private def decimate(inputTiles:mutable.HashMap[TileIdWritable, MrGeoRaster], fromlevel:Int, tilesize:Int,
+                       nodatas:Array[Double]):mutable.HashMap[TileIdWritable, MrGeoRaster] = {
+    val outputTiles = mutable.HashMap.empty[TileIdWritable, MrGeoRaster]
+
+    inputTiles.foreach(tile => {
+      place(outputTiles, tile._1.get, tile._2.reduce(2, 2, aggregator, nodatas), fromlevel, tilesize, nodatas)
+    })
+
+    outputTiles
+  }
+
+  // Copy a tile from fromlevel, already reduced 2x2, into its spot in the tile of the next level down
+  private def place(outputTiles:mutable.HashMap[TileIdWritable, MrGeoRaster], fromid:Long,
+                    reduced:MrGeoRaster, fromlevel:Int, tilesize:Int, nodatas:Array[Double]):Unit = {
+    val tolevel = fromlevel - 1
+
+    val fromtile:Tile = TMSUtils.tileid(fromid, fromlevel)
+    val frombounds:Bounds = TMSUtils.tileBounds(fromtile.tx, fromtile.ty, fromlevel, tilesize)
+
+    // calculate the starting pixel for the from-tile (make sure to use the NW coordinate)
+    val fromcorner:Pixel = TMSUtils.latLonToPixelsUL(frombounds.n, frombounds.w, fromlevel, tilesize)
+
+    val totile:Tile = TMSUtils.latLonToTile(frombounds.s, frombounds.w, tolevel, tilesize)
+    val tobounds:Bounds = TMSUtils.tileBounds(totile.tx, totile.ty, tolevel, tilesize)
+
+    // calculate the starting pixel for the to-tile (make sure to use the NW coordinate)
+    // in the from-tile's pixel space
+    val tocorner:Pixel = TMSUtils.latLonToPixelsUL(tobounds.n, tobounds.w, fromlevel, tilesize)
+
+    val tokey = new TileIdWritable(TMSUtils.tileid(totile.tx, totile.ty, tolevel))
+
+    // create a compatible writable raster
+    logDebug("from  tx: " + fromtile.tx + " ty: " + fromtile.ty + " (" + fromlevel + ") to tx: " + totile.tx +
+             " ty: " + totile.ty + " (" + tolevel + ") x: "
+             + ((fromcorner.px - tocorner.px) / 2) + " y: " + ((fromcorner.py - tocorner.py) / 2) +
+             " w: " + reduced.width() + " h: " + reduced.height())
+
+    val toraster = if (!outputTiles.contains(tokey)) {
+      val raster = reduced.createCompatibleRaster(tilesize, tilesize)
+      raster.fill(nodatas)
+
+      outputTiles.put(tokey, raster)
+      raster
+    }
+    else {
+      outputTiles(tokey)
+    }
+
+    toraster.copyFrom(0, 0, reduced.width(), reduced.height(), reduced,
+      (fromcorner.px - tocorner.px).toInt / 2, (fromcorner.py - tocorner.py).toInt / 2)
+  }
+
   private def deletelevel(level:Int, metadata:MrsPyramidMetadata, provider:MrsImageDataProvider) {
     val imagedata:Array[MrsPyramidMetadata.ImageMetadata] = metadata.getImageMetadata
 
@@ -296,49 +434,7 @@ class BuildPyramid extends MrGeoJob with Externalizable {
 
       deletelevel(tolevel, metadata, provider)
 
-      val outputTiles = mutable.HashMap.empty[TileIdWritable, MrGeoRaster]
-
-      inputTiles.foreach(tile => {
-        val fromkey = tile._1
-        val fromtile:Tile = TMSUtils.tileid(fromkey.get, fromlevel)
-        val frombounds:Bounds = TMSUtils.tileBounds(fromtile.tx, fromtile.ty, fromlevel, tilesize)
-
-        val fromraster = tile._2
-
-        // calculate the starting pixel for the from-tile (make sure to use the NW coordinate)
-        val fromcorner:Pixel = TMSUtils.latLonToPixelsUL(frombounds.n, frombounds.w, fromlevel, tilesize)
-
-        val totile:Tile = TMSUtils.latLonToTile(frombounds.s, frombounds.w, tolevel, tilesize)
-        val tobounds:Bounds = TMSUtils.tileBounds(totile.tx, totile.ty, tolevel, tilesize)
-
-        // calculate the starting pixel for the to-tile (make sure to use the NW coordinate)
-        // in the from-tile's pixel space
-        val tocorner:Pixel = TMSUtils.latLonToPixelsUL(tobounds.n, tobounds.w, fromlevel, tilesize)
-
-        val tokey = new TileIdWritable(TMSUtils.tileid(totile.tx, totile.ty, tolevel))
-
-        val reduced = fromraster.reduce(2, 2, aggregator, nodatas)
-
-        // create a compatible writable raster
-        logDebug("from  tx: " + fromtile.tx + " ty: " + fromtile.ty + " (" + fromlevel + ") to tx: " + totile.tx +
-                 " ty: " + totile.ty + " (" + tolevel + ") x: "
-                 + ((fromcorner.px - tocorner.px) / 2) + " y: " + ((fromcorner.py - tocorner.py) / 2) +
-                 " w: " + reduced.width() + " h: " + reduced.height())
-
-        val toraster = if (!outputTiles.contains(tokey)) {
-          val raster = fromraster.createCompatibleRaster(tilesize, tilesize)
-          raster.fill(nodatas)
-
-          outputTiles.put(tokey, raster)
-          raster
-        }
-        else {
-          outputTiles(tokey)
-        }
-
-        toraster.copyFrom(0, 0, reduced.width(), reduced.height(), reduced,
-          (fromcorner.px - tocorner.px).toInt / 2, (fromcorner.py - tocorner.py).toInt / 2)
-      })
+      val outputTiles = decimate(inputTiles, fromlevel, tilesize, nodatas)
 
       val stats:Array[ImageStats] = ImageStats.initializeStatsArray(metadata.getBands)
 
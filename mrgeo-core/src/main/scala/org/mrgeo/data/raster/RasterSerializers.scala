@@ -0,0 +1,75 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.raster
+
+import com.esotericsoftware.kryo.io.{Input, Output}
+import com.esotericsoftware.kryo.{Kryo, Serializer}
+
+// Kryo serializers for the raster classes.  They live here, in the raster package, so they can write
+// the rasters' bytes directly, instead of a copy of them.
+
+// The (possibly encoded) bytes, length prefixed, with 0 for a null raster
+class RasterWritableSerializer extends Serializer[RasterWritable] {
+  override def write(kryo:Kryo, output:Output, raster:RasterWritable):Unit = {
+    val bytes = raster.rawBytes()
+    if (bytes == null) {
+      output.writeInt(0, true)
+    }
+    else {
+      output.writeInt(bytes.length + 1, true)
+      output.writeBytes(bytes)
+    }
+  }
+
+  override def read(kryo:Kryo, input:Input, `type`:Class[RasterWritable]):RasterWritable = {
+    val len = input.readInt(true)
+    if (len == 0) {
+      new RasterWritable()
+    }
+    else {
+      RasterWritable.fromBytes(input.readBytes(len - 1))
+    }
+  }
+}
+
+// The raster's data, header and all (the same bytes as an unencoded RasterWritable)
+class MrGeoRasterSerializer extends Serializer[MrGeoRaster] {
+  override def write(kryo:Kryo, output:Output, raster:MrGeoRaster):Unit = {
+    val data = raster.data()
+    output.writeInt(data.length, true)
+    output.writeBytes(data)
+  }
+
+  override def read(kryo:Kryo, input:Input, `type`:Class[MrGeoRaster]):MrGeoRaster = {
+    MrGeoRaster.createRaster(input.readBytes(input.readInt(true)))
+  }
+}
+
+object RasterSerializers {
+  // Register the raster classes (the MrGeoRaster implementations aren't visible outside this package)
+  def register(kryo:Kryo):Unit = {
+    kryo.register(classOf[RasterWritable], new RasterWritableSerializer)
+    kryo.register(classOf[Array[RasterWritable]])
+
+    val rasters = new MrGeoRasterSerializer
+    kryo.register(classOf[MrGeoByteRaster], rasters)
+    kryo.register(classOf[MrGeoShortRaster], rasters)
+    kryo.register(classOf[MrGeoUShortRaster], rasters)
+    kryo.register(classOf[MrGeoIntRaster], rasters)
+    kryo.register(classOf[MrGeoFloatRaster], rasters)
+    kryo.register(classOf[MrGeoDoubleRaster], rasters)
+  }
+}
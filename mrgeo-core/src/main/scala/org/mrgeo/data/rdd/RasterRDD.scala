@@ -15,6 +15,7 @@
 
 package org.mrgeo.data.rdd
 
+import org.apache.spark.Partitioner
 import org.apache.spark.rdd.RDD
 import org.mrgeo.data.raster.RasterWritable
 import org.mrgeo.data.tile.TileIdWritable
@@ -28,10 +29,14 @@ object RasterRDD {
   def apply(parent:RDD[(TileIdWritable, RasterWritable)]):RasterRDD = {
     new RasterRDD(parent)
   }
+
+  def apply(parent:RDD[(TileIdWritable, RasterWritable)], partitioner:Partitioner):RasterRDD = {
+    new RasterRDD(parent, Some(partitioner))
+  }
 }
 
 @SerialVersionUID(1L)
-class RasterRDD(parent:RDD[(TileIdWritable, RasterWritable)]) extends MrGeoRDD[TileIdWritable, RasterWritable](
-  parent) {
+class RasterRDD(parent:RDD[(TileIdWritable, RasterWritable)], part:Option[Partitioner] = None)
+    extends MrGeoRDD[TileIdWritable, RasterWritable](parent, part) {
 
 }
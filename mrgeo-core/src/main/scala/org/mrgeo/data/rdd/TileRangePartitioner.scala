@@ -0,0 +1,102 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.rdd
+
+import java.io.{Externalizable, ObjectInput, ObjectOutput}
+
+import org.apache.spark.Partitioner
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.utils.tms.TileOrder
+
+// Partitions tile ids by the (sorted, non-overlapping) tile id ranges of the input splits a pyramid was
+// read from, so partition n of the RDD holds exactly the tiles in range n.  Two RDDs read from pyramids
+// with the same splits get equal partitioners, which lets Spark join them without a shuffle.  For pyramids
+// stored along a space-filling curve, the ranges are of curve indices (in order, at zoom) instead.
+@SerialVersionUID(1L)
+class TileRangePartitioner() extends Partitioner with Externalizable {
+  private var startIds:Array[Long] = Array.empty[Long]
+  private var endIds:Array[Long] = Array.empty[Long]
+  private var order:TileOrder = TileOrder.ROW_MAJOR
+  private var zoom:Int = 0
+
+  def this(startIds:Array[Long], endIds:Array[Long]) = {
+    this()
+    this.startIds = startIds
+    this.endIds = endIds
+  }
+
+  def this(startIds:Array[Long], endIds:Array[Long], order:TileOrder, zoom:Int) = {
+    this(startIds, endIds)
+    this.order = order
+    this.zoom = zoom
+  }
+
+  override def numPartitions:Int = endIds.length
+
+  override def getPartition(key:Any):Int = {
+    key match {
+      case id:TileIdWritable =>
+        // the first range ending at or after the tile, tiles past the last range go into the last partition
+        val ndx = java.util.Arrays.binarySearch(endIds, order.index(id.get(), zoom))
+        Math.min(if (ndx >= 0) ndx else -(ndx + 1), endIds.length - 1)
+      case _ => throw new RuntimeException("Bad type sent into TileRangePartitioner.getPartition(): " +
+                                           key.getClass +
+                                           ". Expected org.mrgeo.data.tile.TileIdWritable or a subclass.")
+    }
+  }
+
+  override def equals(other:Any):Boolean = {
+    other match {
+      case p:TileRangePartitioner =>
+        order == p.order && zoom == p.zoom &&
+        java.util.Arrays.equals(startIds, p.startIds) && java.util.Arrays.equals(endIds, p.endIds)
+      case _ => false
+    }
+  }
+
+  override def hashCode():Int = 31 * (31 * (31 * order.ordinal() + zoom) + java.util.Arrays.hashCode(startIds)) +
+                                java.util.Arrays.hashCode(endIds)
+
+  override def readExternal(in:ObjectInput):Unit = {
+    order = TileOrder.values()(in.readInt())
+    zoom = in.readInt()
+
+    val count = in.readInt()
+    startIds = new Array[Long](count)
+    endIds = new Array[Long](count)
+
+    var i:Int = 0
+    while (i < count) {
+      startIds(i) = in.readLong()
+      endIds(i) = in.readLong()
+      i += 1
+    }
+  }
+
+  override def writeExternal(out:ObjectOutput):Unit = {
+    out.writeInt(order.ordinal())
+    out.writeInt(zoom)
+
+    out.writeInt(endIds.length)
+
+    var i:Int = 0
+    while (i < endIds.length) {
+      out.writeLong(startIds(i))
+      out.writeLong(endIds(i))
+      i += 1
+    }
+  }
+}
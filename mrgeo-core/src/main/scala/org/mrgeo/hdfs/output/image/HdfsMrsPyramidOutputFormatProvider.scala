@@ -24,15 +24,17 @@ import org.apache.hadoop.io.{SequenceFile, Writable, WritableComparable}
 import org.apache.hadoop.mapreduce.lib.output.{FileOutputFormat, SequenceFileOutputFormat}
 import org.apache.hadoop.mapreduce.{Job, OutputFormat}
 import org.apache.spark.rdd.PairRDDFunctions
-import org.mrgeo.core.MrGeoConstants
+import org.mrgeo.core.{MrGeoConstants, MrGeoProperties}
 import org.mrgeo.data.DataProviderException
 import org.mrgeo.data.image.{ImageOutputFormatContext, MrsImageOutputFormatProvider}
+import org.mrgeo.data.raster.{RasterCodec, RasterWritable}
 import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.data.tile.TileIdWritable
 import org.mrgeo.hdfs.image.HdfsMrsImageDataProvider
-import org.mrgeo.hdfs.partitioners.{BlockSizePartitioner, FileSplitPartitioner, RowPartitioner}
+import org.mrgeo.hdfs.partitioners.{BlockSizePartitioner, FileSplitPartitioner, RowPartitioner, TileOrderPartitioner}
 import org.mrgeo.hdfs.tile.FileSplit
 import org.mrgeo.hdfs.utils.HadoopFileUtils
+import org.mrgeo.utils.tms.TileOrder
 
 
 @SuppressFBWarnings(value = Array("NM_FIELD_NAMING_CONVENTION"), justification = "PartitionType is Enumeration")
@@ -49,6 +51,18 @@ class HdfsMrsPyramidOutputFormatProvider(context:ImageOutputFormatContext) exten
     partitioner = PartitionType.BLOCKSIZE
   }
 
+  // Tiles are written in the order asked for (i.e. the order of the pyramid's other levels), or, for new
+  // pyramids, the configured default order
+  override def getTileOrder:TileOrder = {
+    if (context.getTileOrder != null && context.getTileOrder != TileOrder.ROW_MAJOR) {
+      context.getTileOrder
+    }
+    else {
+      TileOrder.fromName(MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_HDFS_TILE_ORDER,
+        MrGeoConstants.MRGEO_HDFS_TILE_ORDER_DEFAULT))
+    }
+  }
+
   def setInfo(conf:Configuration, job:Job) {
     conf.set("io.map.index.interval", "1")
     if (job != null) {
@@ -67,7 +81,16 @@ class HdfsMrsPyramidOutputFormatProvider(context:ImageOutputFormatContext) exten
     }
   }
 
-  override def save(raster:RasterRDD, conf:Configuration):Unit = {
+  override def save(tiles:RasterRDD, conf:Configuration):Unit = {
+
+    // tiles in an encoded form (e.g. constant tiles) are only stored that way when the codec is set
+    val codec = RasterWritable.getDefaultCodec
+    val raster = if (codec == RasterCodec.NONE) {
+      RasterRDD(tiles.mapValues(tile => RasterWritable.toStored(tile, codec)))
+    }
+    else {
+      tiles
+    }
 
     implicit val tileIdOrdering = new Ordering[TileIdWritable] {
       override def compare(x:TileIdWritable, y:TileIdWritable):Int = x.compareTo(y)
@@ -105,7 +128,7 @@ class HdfsMrsPyramidOutputFormatProvider(context:ImageOutputFormatContext) exten
     }
 
 
-    val sparkPartitioner = getSparkPartitioner
+    val sparkPartitioner = getSparkPartitioner(raster, outputWithZoom)
 
     // Repartition the output if the output data provider requires it
     val sorted = RasterRDD(
@@ -144,14 +167,23 @@ class HdfsMrsPyramidOutputFormatProvider(context:ImageOutputFormatContext) exten
 
   @SuppressFBWarnings(value = Array("DB_DUPLICATE_BRANCHES"),
     justification = "For now, BlockSizePartitioner is default")
-  private def getSparkPartitioner:FileSplitPartitioner = {
-    partitioner match {
-      case PartitionType.ROW =>
-        new RowPartitioner(context.getBounds, context.getZoomLevel, context.getTileSize)
-      case PartitionType.BLOCKSIZE =>
-        new BlockSizePartitioner()
-      case _ =>
-        new BlockSizePartitioner()
+  private def getSparkPartitioner(raster:RasterRDD, output:String):FileSplitPartitioner = {
+    val order = getTileOrder
+    if (order != TileOrder.ROW_MAJOR) {
+      // map files the size of a block, each a (compact) range of the curve
+      val partitions = new BlockSizePartitioner(context.getTileSize, context.getBands, context.getTileType)
+          .calculateNumPartitions(raster, output)
+      new TileOrderPartitioner(raster, order, context.getZoomLevel, partitions)
+    }
+    else {
+      partitioner match {
+        case PartitionType.ROW =>
+          new RowPartitioner(context.getBounds, context.getZoomLevel, context.getTileSize)
+        case PartitionType.BLOCKSIZE =>
+          new BlockSizePartitioner(context.getTileSize, context.getBands, context.getTileType)
+        case _ =>
+          new BlockSizePartitioner(context.getTileSize, context.getBands, context.getTileType)
+      }
     }
   }
 
@@ -15,18 +15,25 @@
 
 package org.mrgeo.hdfs.partitioners
 
+import java.awt.image.DataBuffer
 import java.io.{Externalizable, ObjectInput, ObjectOutput}
 
 import org.apache.hadoop.fs.Path
-import org.mrgeo.data.raster.RasterWritable
 import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.hdfs.utils.HadoopFileUtils
 
 
-class BlockSizePartitioner() extends FileSplitPartitioner() with Externalizable {
+// tilebytes is the size of a tile's data, known from the metadata, so sizing the partitions doesn't need
+// to look at a tile
+class BlockSizePartitioner(tilebytes:Long) extends FileSplitPartitioner() with Externalizable {
 
   var partitions:Int = 0
 
+  def this() = this(0)
+
+  def this(tilesize:Int, bands:Int, tiletype:Int) =
+    this(tilesize.toLong * tilesize * bands * (DataBuffer.getDataTypeSize(tiletype) / 8))
+
   override def numPartitions:Int = {
     partitions
   }
@@ -44,11 +51,7 @@ class BlockSizePartitioner() extends FileSplitPartitioner() with Externalizable
     val fs = HadoopFileUtils.getFileSystem(path)
     val blocksize = fs.getDefaultBlockSize(path)
 
-    // val tile = RasterWritable.toRaster(raster.first()._2)
-    val tile = RasterWritable.toMrGeoRaster(raster.first()._2)
-
-
-    val tilesperblock = (blocksize / tile.datalength()) - 1 // subtract 1 for the 0-based counting
+    val tilesperblock = Math.max(1, (blocksize / Math.max(1, tilebytes)) - 1) // subtract 1 for the 0-based counting
 
     partitions = Math.ceil(raster.count() / tilesperblock.toDouble).toInt
 
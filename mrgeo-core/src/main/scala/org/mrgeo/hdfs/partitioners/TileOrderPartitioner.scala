@@ -0,0 +1,154 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.hdfs.partitioners
+
+import java.io.{Externalizable, ObjectInput, ObjectOutput}
+import java.util.Random
+
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.Path
+import org.mrgeo.data.rdd.RasterRDD
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.hdfs.image.HdfsMrsImageDataProvider
+import org.mrgeo.hdfs.tile.FileSplit
+import org.mrgeo.utils.SparkUtils
+import org.mrgeo.utils.tms.TileOrder
+
+// Partitions tiles into contiguous ranges of a space-filling curve (or row major order), so each
+// partition (map file) holds a compact block of tiles.  The range boundaries are picked from a sample
+// of the curve indices of the tiles themselves, so the partitions are about the same size.  The tiles are
+// still keyed (and sorted within each map file) by their tile id, the splits file records the order.
+@SerialVersionUID(-1)
+class TileOrderPartitioner() extends FileSplitPartitioner() with Externalizable {
+  private var order:TileOrder = TileOrder.ROW_MAJOR
+  private var zoom:Int = 0
+  // the last curve index of each partition, except the last one
+  private var bounds:Array[Long] = Array.empty[Long]
+
+  def this(raster:RasterRDD, order:TileOrder, zoom:Int, partitions:Int) {
+    this()
+
+    this.order = order
+    this.zoom = zoom
+
+    if (partitions > 1) {
+      // Sample the curve indices, the way RangePartitioner does, rather than collecting the index of
+      // every tile:  about 20 samples per partition, oversampled 3x across the input partitions in
+      // case they are unbalanced, kept with a reservoir sample of each input partition.
+      val sampleSize = math.min(20.0 * partitions, 1e6)
+      val perPartition = math.ceil(3.0 * sampleSize / raster.partitions.length).toInt
+
+      val sketched = raster.mapPartitionsWithIndex((ndx, tiles) => {
+        val random = new Random(ndx)
+        val reservoir = new Array[Long](perPartition)
+        var count:Long = 0
+        tiles.foreach(tile => {
+          val index = order.index(tile._1.get(), zoom)
+          if (count < perPartition) {
+            reservoir(count.toInt) = index
+          }
+          else {
+            val r = (random.nextDouble() * (count + 1)).toLong
+            if (r < perPartition) {
+              reservoir(r.toInt) = index
+            }
+          }
+          count += 1
+        })
+        Iterator((count, reservoir.take(math.min(count, perPartition).toInt)))
+      }).collect()
+
+      // each sample stands in for (tiles / samples) tiles of its input partition
+      val candidates = sketched.flatMap(sketch => {
+        val weight = if (sketch._2.isEmpty) 0.0 else sketch._1.toDouble / sketch._2.length
+        sketch._2.map(index => (index, weight))
+      }).sortBy(_._1)
+
+      val step = candidates.map(_._2).sum / partitions
+      val bounds = Array.newBuilder[Long]
+      var cumulative = 0.0
+      var target = step
+      var last = Long.MinValue
+      var found:Int = 0
+      var i:Int = 0
+      // the largest index can't be a bound, the last partition would be empty
+      while (i < candidates.length - 1 && found < partitions - 1) {
+        cumulative += candidates(i)._2
+        // skip empty partitions (more partitions than tiles)
+        if (cumulative >= target && candidates(i)._1 > last) {
+          last = candidates(i)._1
+          bounds += last
+          target += step
+          found += 1
+        }
+        i += 1
+      }
+      this.bounds = bounds.result()
+    }
+  }
+
+  override def numPartitions:Int = bounds.length + 1
+
+  override def getPartition(key:Any):Int = {
+    key match {
+      case id:TileIdWritable =>
+        val ndx = java.util.Arrays.binarySearch(bounds, order.index(id.get(), zoom))
+        if (ndx >= 0) ndx else -(ndx + 1)
+      case _ => throw new RuntimeException("Bad type sent into TileOrderPartitioner.getPartition(): " +
+                                           key.getClass +
+                                           ". Expected org.mrgeo.data.tile.TileIdWritable or a subclass.")
+    }
+  }
+
+  def hasFixedPartitions:Boolean = false
+
+  override def writeSplits(rdd:RasterRDD, pyramid:String, zoom:Int, conf:Configuration):Unit = {
+    val fileSplits = new FileSplit
+
+    fileSplits.generateSplits(SparkUtils.calculateSplitData(rdd, order, this.zoom))
+    fileSplits.setTileOrder(order, this.zoom)
+
+    val dp:HdfsMrsImageDataProvider = new HdfsMrsImageDataProvider(conf, pyramid, null)
+    val inputWithZoom = new Path(dp.getResourcePath(false), "" + zoom)
+
+    fileSplits.writeSplits(inputWithZoom)
+  }
+
+  override def readExternal(in:ObjectInput):Unit = {
+    order = TileOrder.values()(in.readInt())
+    zoom = in.readInt()
+
+    val count = in.readInt()
+    bounds = new Array[Long](count)
+    var i:Int = 0
+    while (i < count) {
+      bounds(i) = in.readLong()
+      i += 1
+    }
+  }
+
+  override def writeExternal(out:ObjectOutput):Unit = {
+    out.writeInt(order.ordinal())
+    out.writeInt(zoom)
+
+    out.writeInt(bounds.length)
+    var i:Int = 0
+    while (i < bounds.length) {
+      out.writeLong(bounds(i))
+      i += 1
+    }
+  }
+}
@@ -27,6 +27,7 @@ import org.apache.spark.storage.StorageLevel
 import org.apache.spark.{AccumulatorParam, SparkConf, SparkContext}
 import org.gdal.gdal.{Dataset, gdal}
 import org.gdal.gdalconst.gdalconstConstants
+import org.mrgeo.core.{MrGeoConstants, MrGeoProperties}
 import org.mrgeo.data
 import org.mrgeo.data.DataProviderFactory.AccessMode
 import org.mrgeo.data.image.MrsImageDataProvider
@@ -39,7 +40,7 @@ import org.mrgeo.image.MrsPyramidMetadata
 import org.mrgeo.job.{JobArguments, MrGeoDriver, MrGeoJob}
 import org.mrgeo.mapalgebra.MapAlgebra
 import org.mrgeo.utils._
-import org.mrgeo.utils.tms.{Bounds, TMSUtils}
+import org.mrgeo.utils.tms.{Bounds, TMSUtils, TileBounds}
 
 import scala.collection.JavaConversions._
 import scala.collection.mutable
@@ -151,12 +152,18 @@ object IngestImage extends MrGeoDriver with Externalizable {
       firstCategories = checkResult._2
     }
 
-    // force 1 partition per file, this will keep the size of each ingest task as small as possible, so we
-    // won't eat up too much memory
-    val in = context.parallelize(inputs, inputs.length)
+    // split the images into tile aligned windows, then force 1 partition per window, this will keep the
+    // size of each ingest task as small as possible, so we won't eat up too much memory, and lets a single
+    // huge image be ingested by the whole cluster
+    val maxbytes = windowBytes()
+    val windows = context.parallelize(inputs, inputs.length).flatMap(input => {
+      IngestImage.makeWindows(input, zoom, tilesize, maxbytes)
+    }).collect()
+
+    val in = context.parallelize(windows, math.max(1, windows.length))
     val nodataAccum = context.accumulator(null.asInstanceOf[NodataArray])(NodataAccumulator)
-    val rawtiles = in.flatMap(input => {
-      val (tile, actualnodata) = IngestImage.makeTiles(input, zoom, tilesize, categorical, nodata)
+    val rawtiles = in.flatMap(window => {
+      val (tile, actualnodata) = IngestImage.makeTiles(window._1, window._2, zoom, tilesize, categorical, nodata)
       if (tile.nonEmpty) {
         nodataAccum.add(new NodataArray(actualnodata))
       }
@@ -237,23 +244,26 @@ object IngestImage extends MrGeoDriver with Externalizable {
       SequenceFile.Writer.compression(SequenceFile.CompressionType.BLOCK)
     )
 
+    val maxbytes = windowBytes()
     val nodataAccum = context.accumulator(null.asInstanceOf[NodataArray])(NodataAccumulator)
+    var cnt = 0
     inputs.foreach(input => {
-      val (tile, actualnodata) = IngestImage.makeTiles(input, zoom, tilesize, categorical, nodata)
+      IngestImage.makeWindows(input, zoom, tilesize, maxbytes).foreach(window => {
+        val (tile, actualnodata) = IngestImage.makeTiles(window._1, window._2, zoom, tilesize, categorical, nodata)
 
-      if (tile.nonEmpty) {
-        nodataAccum.add(new NodataArray(actualnodata))
+        if (tile.nonEmpty) {
+          nodataAccum.add(new NodataArray(actualnodata))
 
-        var cnt = 0
-        tile.foreach(kv => {
-          writer.append(new TileIdWritable(kv._1.get()), kv._2)
+          tile.foreach(kv => {
+            writer.append(new TileIdWritable(kv._1.get()), kv._2)
 
-          cnt += 1
-          if (cnt % 1000 == 0) {
-            writer.hflush()
-          }
-        })
-      }
+            cnt += 1
+            if (cnt % 1000 == 0) {
+              writer.hflush()
+            }
+          })
+        }
+      })
     })
 
     writer.close()
@@ -497,7 +507,91 @@ object IngestImage extends MrGeoDriver with Externalizable {
     args
   }
 
-  private def makeTiles(image:String, zoom:Int, tilesize:Int, categorical:Boolean,
+  private def windowBytes():Long = {
+    MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_INGEST_WINDOW_BYTES,
+      MrGeoConstants.MRGEO_INGEST_WINDOW_BYTES_DEFAULT).toLong
+  }
+
+  // Split the image into windows of tiles (at the ingest zoom level), of at most maxbytes of pixel data
+  // (all the bands).  The windows are lined up with the image's blocks where possible, so each block is
+  // only read by a window or two (strip images are split into strips of tiles).
+  private def makeWindows(image:String, zoom:Int, tilesize:Int, maxbytes:Long):Array[(String, TileBounds)] = {
+    try {
+      val src = GDALUtils.open(image)
+
+      if (src != null) {
+        try {
+          val imageBounds = GDALUtils.getBounds(src)
+          val tiles = TMSUtils.boundsToTile(imageBounds, zoom, tilesize)
+
+          val bx = Array.ofDim[Int](1)
+          val by = Array.ofDim[Int](1)
+          src.GetRasterBand(1).GetBlockSize(bx, by)
+
+          // the size of an image block, in tiles
+          val tileres = TMSUtils.resolution(zoom, tilesize) * tilesize
+          val blockw = math.max(1L, math.round(bx(0) * imageBounds.width() / src.GetRasterXSize / tileres))
+          val blockh = math.max(1L, math.round(by(0) * imageBounds.height() / src.GetRasterYSize / tileres))
+
+          val tilebytes = tilesize.toLong * tilesize * src.GetRasterCount() *
+                          (gdal.GetDataTypeSize(src.GetRasterBand(1).getDataType) / 8)
+          val maxtiles = math.max(1L, maxbytes / tilebytes)
+
+          val windows = splitWindows(tiles, blockw, blockh, bx(0) >= src.GetRasterXSize, maxtiles)
+
+          if (log.isDebugEnabled) {
+            logDebug("Split " + image + " (" + tiles + ") into " + windows.length + " windows")
+          }
+          windows.map(window => (image, window))
+        }
+        finally {
+          GDALUtils.close(src)
+        }
+      }
+      else {
+        logError("Could not open " + image)
+        Array.empty[(String, TileBounds)]
+      }
+    }
+    catch {
+      case ioe:IOException =>
+        // this can happen in "skip preprocessing" mode
+        logError("Could not read " + image, ioe)
+        Array.empty[(String, TileBounds)]
+    }
+  }
+
+  // Split the tiles into windows of at most maxtiles tiles.  The windows are multiples of the image
+  // blocks (blockw x blockh tiles) where they can be, strip images (stripped) get full-width windows.
+  def splitWindows(tiles:TileBounds, blockw:Long, blockh:Long, stripped:Boolean,
+                   maxtiles:Long):Array[TileBounds] = {
+    val ww = math.min(tiles.width(), if (stripped) {
+      maxtiles
+    }
+    else {
+      roundDown(math.max(1L, math.sqrt(maxtiles).toLong), blockw)
+    })
+    val wh = math.min(tiles.height(), roundDown(math.max(1L, maxtiles / ww), blockh))
+
+    val windows = Array.newBuilder[TileBounds]
+    var n:Long = tiles.n
+    while (n >= tiles.s) {
+      var w:Long = tiles.w
+      while (w <= tiles.e) {
+        windows += new TileBounds(w, math.max(tiles.s, n - wh + 1), math.min(tiles.e, w + ww - 1), n)
+        w += ww
+      }
+      n -= wh
+    }
+    windows.result()
+  }
+
+  private def roundDown(value:Long, multiple:Long):Long = {
+    if (value > multiple) (value / multiple) * multiple else value
+  }
+
+  // Reproject the window of the image and cut it into tiles
+  private def makeTiles(image:String, window:TileBounds, zoom:Int, tilesize:Int, categorical:Boolean,
                         nodata:Array[Double]):(TraversableOnce[(TileIdWritable, RasterWritable)], Array[Double]) = {
 
     val result = ListBuffer[(TileIdWritable, RasterWritable)]()
@@ -540,9 +634,8 @@ object IngestImage extends MrGeoDriver with Externalizable {
           band.SetNoDataValue(actualNoData(i - 1))
         }
 
-        val imageBounds = GDALUtils.getBounds(src)
-        val tiles = TMSUtils.boundsToTile(imageBounds, zoom, tilesize)
-        val tileBounds = TMSUtils.tileBounds(imageBounds, zoom, tilesize)
+        val tiles = window
+        val tileBounds = TMSUtils.tileToBounds(window, zoom, tilesize)
 
         val w = tiles.width() * tilesize
         val h = tiles.height() * tilesize
@@ -555,13 +648,13 @@ object IngestImage extends MrGeoDriver with Externalizable {
           logDebug("  data type:  " + datatype)
           logDebug("  width:  " + src.getRasterXSize)
           logDebug("  height:  " + src.getRasterYSize)
-          logDebug("  bounds:  " + imageBounds)
+          logDebug("  window:  " + tileBounds)
           logDebug("  tiles:  " + tiles)
           logDebug("  tile width:  " + w)
           logDebug("  tile height:  " + h)
         }
 
-        val scaled = GDALUtils.createEmptyDiskBasedRaster(src, w.toInt, h.toInt)
+        val scaled = GDALUtils.createEmptyMemoryRaster(src, w.toInt, h.toInt)
 
         if (scaled == null) {
           throw new java.lang.OutOfMemoryError(
@@ -660,7 +753,7 @@ object IngestImage extends MrGeoDriver with Externalizable {
     }
 
     if (log.isDebugEnabled) {
-      logDebug("Ingested " + result.length + " tiles from " + image)
+      logDebug("Ingested " + result.length + " tiles from " + image + " " + window)
     }
     (result.iterator, actualNoData)
   }
@@ -17,20 +17,40 @@ package org.mrgeo.job
 
 import com.esotericsoftware.kryo.Kryo
 import org.apache.spark.serializer.KryoRegistrator
+import org.mrgeo.data.raster.RasterSerializers
 import org.mrgeo.data.tile.TileIdWritable
-import org.mrgeo.job.serializers.{BoundsSerializer, PixelSerializer}
+import org.mrgeo.data.vector.FeatureIdWritable
+import org.mrgeo.geometry._
+import org.mrgeo.job.serializers._
 import org.mrgeo.utils.tms.{Bounds, Pixel}
 
 class KryoRegistrar extends KryoRegistrator {
   override def registerClasses(kryo:Kryo) {
     //    kryo.setReferences(false)
 
-    kryo.register(classOf[TileIdWritable])
+    kryo.register(classOf[TileIdWritable], new TileIdWritableSerializer)
+    kryo.register(classOf[Array[TileIdWritable]])
+    kryo.register(classOf[FeatureIdWritable], new FeatureIdWritableSerializer)
+
+    RasterSerializers.register(kryo)
+
+    val geometries = new GeometrySerializer
+    kryo.register(classOf[PointImpl], geometries)
+    kryo.register(classOf[LineStringImpl], geometries)
+    kryo.register(classOf[LinearRingImpl], geometries)
+    kryo.register(classOf[PolygonImpl], geometries)
+    kryo.register(classOf[GeometryCollectionImpl], geometries)
 
     kryo.register(classOf[Bounds], new BoundsSerializer)
     kryo.register(classOf[Pixel], new PixelSerializer)
 
+    // nodata values and the like, captured in closures
     kryo.register(classOf[Array[Long]])
+    kryo.register(classOf[Array[Double]])
+    kryo.register(classOf[Array[Float]])
+    kryo.register(classOf[Array[Int]])
+    kryo.register(classOf[Array[Byte]])
+    kryo.register(classOf[Array[String]])
     kryo.register(Class.forName("org.apache.spark.util.BoundedPriorityQueue"))
 
 
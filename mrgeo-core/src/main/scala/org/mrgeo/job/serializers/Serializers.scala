@@ -15,8 +15,13 @@
 
 package org.mrgeo.job.serializers
 
+import java.io.{DataInputStream, DataOutputStream}
+
 import com.esotericsoftware.kryo.io.{Input, Output}
 import com.esotericsoftware.kryo.{Kryo, Serializer}
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.data.vector.FeatureIdWritable
+import org.mrgeo.geometry.{Geometry, WritableGeometry}
 import org.mrgeo.utils.tms.{Bounds, Pixel}
 
 class Serializers {}
@@ -44,3 +49,40 @@ class PixelSerializer extends Serializer[Pixel] {
     new Pixel(input.readLong(), input.readLong())
   }
 }
+
+class TileIdWritableSerializer extends Serializer[TileIdWritable] {
+  override def write(kryo:Kryo, output:Output, id:TileIdWritable):Unit = {
+    output.writeLong(id.get)
+  }
+
+  override def read(kryo:Kryo, input:Input, `type`:Class[TileIdWritable]):TileIdWritable = {
+    new TileIdWritable(input.readLong())
+  }
+}
+
+class FeatureIdWritableSerializer extends Serializer[FeatureIdWritable] {
+  override def write(kryo:Kryo, output:Output, id:FeatureIdWritable):Unit = {
+    output.writeLong(id.get)
+  }
+
+  override def read(kryo:Kryo, input:Input, `type`:Class[FeatureIdWritable]):FeatureIdWritable = {
+    new FeatureIdWritable(input.readLong())
+  }
+}
+
+// Registered for each of the geometry implementations, writes the same way as their Java serialization
+class GeometrySerializer extends Serializer[Geometry] {
+  override def write(kryo:Kryo, output:Output, geometry:Geometry):Unit = {
+    val dos = new DataOutputStream(output)
+    geometry.write(dos)
+    geometry.writeAttributes(dos)
+  }
+
+  override def read(kryo:Kryo, input:Input, `type`:Class[Geometry]):Geometry = {
+    val geometry = kryo.newInstance(`type`).asInstanceOf[WritableGeometry]
+    val dis = new DataInputStream(input)
+    geometry.read(dis)
+    geometry.readAttributes(dis)
+    geometry
+  }
+}
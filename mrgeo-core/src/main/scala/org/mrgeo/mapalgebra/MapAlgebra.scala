@@ -196,7 +196,14 @@ class MapAlgebra() extends MrGeoJob with Externalizable {
     false
   }
 
-  override def teardown(job:JobArguments, conf:SparkConf):Boolean = true
+  override def teardown(job:JobArguments, conf:SparkConf):Boolean = {
+    // let the map ops clean up (e.g. temporary files), now that the result is saved
+    nodes.foreach(node => {
+      teardown(node, job, conf)
+    })
+
+    true
+  }
 
   override def readExternal(in:ObjectInput):Unit = {}
 
@@ -484,6 +491,29 @@ class MapAlgebra() extends MrGeoJob with Externalizable {
     }
   }
 
+  @SuppressFBWarnings(value = Array("RCN_REDUNDANT_NULLCHECK_OF_NONNULL_VALUE"), justification = "Scala generated code")
+  private def teardown(node:ParserNode, job:JobArguments, conf:SparkConf):Unit = {
+    // depth first run
+    node.getChildren.foreach(child => {
+      teardown(child, job, conf)
+    })
+
+    node match {
+      case function:ParserFunctionNode =>
+        function.getName match {
+          case "=" => // ignore assignments...
+          case _ =>
+            val mapop = function.getMapOp
+
+            if (mapop != null) {
+              mapop.teardown(job, conf)
+            }
+        }
+
+      case _ => // no op, nothing to do if we're not a function (MapOp)
+    }
+  }
+
   private def save(node:ParserNode, output:String, providerproperties:ProviderProperties,
                    context:SparkContext):Boolean = {
 
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.mapalgebra.raster
+
+import java.awt.image.DataBuffer
+import java.io.IOException
+
+import org.apache.spark.rdd.CoGroupedRDD
+import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
+import org.mrgeo.data.rdd.RasterRDD
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.image.MrsPyramidMetadata
+import org.mrgeo.utils.SparkUtils
+
+import scala.collection.mutable
+
+object PixelMapOp {
+
+  // Compile the chain of pixel ops ending in op into a single expression.  Any input that is not itself
+  // a (fusable) pixel op becomes a leaf of the expression, and is returned in the leaf array
+  def compile(op:PixelMapOp):(Array[RasterMapOp], PixelExpression) = {
+    val leaves = mutable.ArrayBuffer.empty[RasterMapOp]
+
+    def leaf(raster:RasterMapOp):Int = {
+      val ndx = leaves.indexWhere(_ eq raster)
+      if (ndx >= 0) {
+        ndx
+      }
+      else {
+        leaves += raster
+        leaves.length - 1
+      }
+    }
+
+    def build(pixel:PixelMapOp):PixelExpression = {
+      val terms = pixel.pixelTerms()
+
+      val children = terms.map {
+        case Left(p:PixelMapOp) if p.fusable() => build(p)
+        case Left(raster) => new PixelInput(leaf(raster))
+        case Right(const) => new PixelConstant(const)
+      }
+
+      val nodatas = terms.map {
+        case Left(raster) => metadata(raster).getDefaultValues
+        case Right(_) => null
+      }
+
+      val meta = metadata(pixel)
+      new PixelOperation(pixel, children, nodatas, meta.getDefaultValues, meta.getTileType)
+    }
+
+    val expression = build(op)
+    (leaves.toArray, expression)
+  }
+
+  // Build the RDD for op by evaluating the whole fused expression in one pass over the leaf tiles
+  def compute(op:PixelMapOp):RasterRDD = {
+    val (leaves, expression) = compile(op)
+
+    val meta = metadata(op)
+    val bands = meta.getBands
+    val datatype = meta.getTileType
+
+    val rdds = leaves.map(leaf => leaf.rdd() getOrElse
+                                  (throw new IOException("Can't load RDD! Ouch! " + leaf.getClass.getName)))
+
+    // a tile is only produced when all the inputs have it
+    val tiles = if (rdds.length == 1) {
+      rdds(0).mapPartitions(_.map(tile => (tile._1, Array(tile._2))), preservesPartitioning = true)
+    }
+    else {
+      new CoGroupedRDD[TileIdWritable](rdds, SparkUtils.joinPartitioner(rdds)).mapPartitions(_.flatMap(tile => {
+        if (tile._2.forall(_.nonEmpty)) {
+          Array((tile._1, tile._2.map(_.head.asInstanceOf[RasterWritable]))).iterator
+        }
+        else {
+          Array.empty[(TileIdWritable, Array[RasterWritable])].iterator
+        }
+      }), preservesPartitioning = true)
+    }
+
+    RasterRDD(tiles.mapPartitions(_.map(tile => {
+      val pixels = tile._2.map(RasterWritable.toConstantPixel)
+      if (pixels.forall(_ != null)) {
+        (tile._1, constant(expression, pixels, bands, datatype, tile._2(0)))
+      }
+      else {
+        (tile._1, evaluate(expression, tile._2.map(RasterWritable.toMrGeoRaster), bands, datatype))
+      }
+    }), preservesPartitioning = true))
+  }
+
+  // All the inputs are constant tiles, so the output is too, it is the expression evaluated on
+  // a single pixel
+  private def constant(expression:PixelExpression, pixels:Array[MrGeoRaster], bands:Int, datatype:Int,
+                       like:RasterWritable):RasterWritable = {
+    val output = MrGeoRaster.createEmptyRaster(1, 1, bands, datatype)
+
+    var b:Int = 0
+    while (b < bands) {
+      output.writeBand(b, expression.evaluate(pixels, b, 1))
+      b += 1
+    }
+
+    RasterWritable.fromConstantPixel(output, RasterWritable.getWidth(like), RasterWritable.getHeight(like))
+  }
+
+  private def evaluate(expression:PixelExpression, rasters:Array[MrGeoRaster], bands:Int,
+                       datatype:Int):RasterWritable = {
+    val width = rasters(0).width()
+    val height = rasters(0).height()
+    val len = width * height
+
+    val output = MrGeoRaster.createEmptyRaster(width, height, bands, datatype)
+
+    var b:Int = 0
+    while (b < bands) {
+      output.writeBand(b, expression.evaluate(rasters, b, len))
+      b += 1
+    }
+
+    RasterWritable.toWritable(output)
+  }
+
+  private def metadata(raster:RasterMapOp):MrsPyramidMetadata = {
+    raster.metadata() getOrElse (throw new IOException("Can't load metadata! Ouch! " + raster.getClass.getName))
+  }
+}
+
+// A RasterMapOp whose output pixel only depends on the same pixel (and band) of its inputs.  These ops
+// don't build their own RDD when executed (they only calculate their metadata), instead, the first time
+// the RDD is requested, the op and all the pixel ops it consumes are fused into one tile-level
+// evaluator (see PixelMapOp.compute)
+trait PixelMapOp extends RasterMapOp {
+  private var pixelRDD:Option[RasterRDD] = None
+
+  // The inputs to the op, either a raster or a constant
+  def pixelTerms():Array[Either[RasterMapOp, Double]]
+
+  // Calculate the output pixel from the term values.  This is only called when none of the raster
+  // terms are nodata
+  def pixel(values:Array[Double]):Double
+
+  // Can this op be folded into the expression of the op consuming it?
+  def fusable():Boolean = true
+
+  override def rdd():Option[RasterRDD] = {
+    if (pixelRDD.isEmpty && fusable()) {
+      pixelRDD = Some(PixelMapOp.compute(this))
+    }
+    pixelRDD
+  }
+}
+
+// Serializable, tile-level form of a chain of pixel ops
+abstract class PixelExpression extends Serializable {
+  // Evaluate the band of the expression.  The returned array may be reused by the caller
+  def evaluate(inputs:Array[MrGeoRaster], band:Int, len:Int):Array[Double]
+}
+
+@SerialVersionUID(1L)
+class PixelInput(val index:Int) extends PixelExpression {
+  override def evaluate(inputs:Array[MrGeoRaster], band:Int, len:Int):Array[Double] = {
+    val samples = new Array[Double](len)
+    inputs(index).readBand(band, samples)
+    samples
+  }
+}
+
+@SerialVersionUID(1L)
+class PixelConstant(val value:Double) extends PixelExpression {
+  override def evaluate(inputs:Array[MrGeoRaster], band:Int, len:Int):Array[Double] = {
+    Array.fill[Double](len)(value)
+  }
+}
+
+@SerialVersionUID(1L)
+class PixelOperation(op:PixelMapOp, children:Array[PixelExpression], nodatas:Array[Array[Double]],
+                     outputNodatas:Array[Double], datatype:Int) extends PixelExpression {
+
+  override def evaluate(inputs:Array[MrGeoRaster], band:Int, len:Int):Array[Double] = {
+    val terms = children.length
+
+    // constants are never nodata, and don't need to be expanded
+    val values = new Array[Array[Double]](terms)
+    val constants = new Array[Double](terms)
+    var t:Int = 0
+    while (t < terms) {
+      children(t) match {
+        case const:PixelConstant => constants(t) = const.value
+        case child => values(t) = child.evaluate(inputs, band, len)
+      }
+      t += 1
+    }
+
+    // intermediate results are ours, so write the answer over one of them
+    val output = children.indexWhere(_.isInstanceOf[PixelOperation]) match {
+      case -1 => new Array[Double](len)
+      case ndx => values(ndx)
+    }
+
+    val termNodatas = new Array[Double](terms)
+    t = 0
+    while (t < terms) {
+      if (nodatas(t) != null) {
+        termNodatas(t) = nodatas(t)(band)
+      }
+      t += 1
+    }
+
+    val outputNodata = outputNodatas(band)
+    val args = new Array[Double](terms)
+
+    var i:Int = 0
+    while (i < len) {
+      var valid = true
+      t = 0
+      while (valid && t < terms) {
+        if (values(t) == null) {
+          args(t) = constants(t)
+        }
+        else {
+          val v = values(t)(i)
+          valid = RasterMapOp.isNotNodata(v, termNodatas(t))
+          args(t) = v
+        }
+        t += 1
+      }
+
+      output(i) = if (valid) {
+        narrow(op.pixel(args))
+      }
+      else {
+        outputNodata
+      }
+      i += 1
+    }
+
+    output
+  }
+
+  // Intermediate values need to look just like they would if they had been stored in a raster of
+  // the op's datatype, otherwise the fused result can differ from running the ops one at a time
+  private def narrow(v:Double):Double = {
+    datatype match {
+      case DataBuffer.TYPE_BYTE => v.toByte & 0xff
+      case DataBuffer.TYPE_SHORT => v.toShort
+      case DataBuffer.TYPE_USHORT => v.toShort & 0xffff
+      case DataBuffer.TYPE_INT => v.toInt
+      case DataBuffer.TYPE_FLOAT => v.toFloat
+      case _ => v
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.quantiles
+
+import java.util.Random
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings
+
+object QuantileSketch {
+  // the compactor capacities shrink by this factor at each level below the top one
+  private val Shrink = 2.0 / 3.0
+
+  // Create a sketch with a (normalized) rank error of roughly accuracy, i.e. 0.01 means a quantile
+  // may be off by up to about 1% of the values
+  def apply(accuracy:Double):QuantileSketch = {
+    new QuantileSketch(math.max(8, math.ceil(2.0 / accuracy).toInt))
+  }
+}
+
+// A mergeable quantile sketch (KLL, Karnin, Lang & Liberty).  Values are collected into a stack of
+// compactors, each holding values with twice the weight of the one below it.  When a compactor is
+// full, it is sorted and every other value is promoted to the next one up, so the sketch stays
+// O(k) in size no matter how many values are added.  Sketches built over different partitions can
+// be merged, which is what lets quantiles be computed with an aggregate instead of a sort.
+@SuppressFBWarnings(value = Array("PREDICTABLE_RANDOM"),
+  justification = "Use of Random has no impact on security")
+@SerialVersionUID(1L)
+class QuantileSketch(val k:Int) extends Serializable {
+  private val random = new Random()
+
+  private var compactors = Array(new Compactor)
+  private var size:Int = 0
+  private var maxSize:Int = capacity(0)
+
+  private var total:Long = 0
+
+  def count():Long = total
+
+  def add(value:Double):Unit = {
+    compactors(0).add(value)
+    size += 1
+    total += 1
+    if (size >= maxSize) {
+      compress()
+    }
+  }
+
+  def merge(other:QuantileSketch):QuantileSketch = {
+    while (compactors.length < other.compactors.length) {
+      grow()
+    }
+
+    var h:Int = 0
+    while (h < other.compactors.length) {
+      compactors(h).addAll(other.compactors(h))
+      h += 1
+    }
+    total += other.total
+
+    size = compactors.map(_.size).sum
+    while (size >= maxSize) {
+      compress()
+    }
+
+    this
+  }
+
+  // The value at (0-based) rank index of the sorted values
+  def quantile(index:Long):Double = {
+    quantiles(Array(index))(0)
+  }
+
+  // The values at each of the (0-based) rank indices of the sorted values.  The indices need to be
+  // in increasing order.
+  def quantiles(indices:Array[Long]):Array[Double] = {
+    val values = new Array[Double](size)
+    val weights = new Array[Long](size)
+
+    var n:Int = 0
+    var h:Int = 0
+    while (h < compactors.length) {
+      val c = compactors(h)
+      var i:Int = 0
+      while (i < c.size) {
+        values(n) = c.items(i)
+        weights(n) = 1L << h
+        n += 1
+        i += 1
+      }
+      h += 1
+    }
+
+    val order = (0 until n).sortBy(values(_)).toArray
+
+    val result = new Array[Double](indices.length)
+    var cumulative:Long = 0
+    var o:Int = 0
+    var q:Int = 0
+    while (q < indices.length && o < n) {
+      cumulative += weights(order(o))
+      while (q < indices.length && cumulative > indices(q)) {
+        result(q) = values(order(o))
+        q += 1
+      }
+      o += 1
+    }
+
+    // anything past the end is the largest value
+    while (q < indices.length) {
+      result(q) = if (n > 0) values(order(n - 1)) else Double.NaN
+      q += 1
+    }
+
+    result
+  }
+
+  private def capacity(h:Int):Int = {
+    val depth = compactors.length - h - 1
+    math.ceil(math.pow(QuantileSketch.Shrink, depth) * k).toInt + 1
+  }
+
+  private def grow():Unit = {
+    compactors = compactors :+ new Compactor
+    maxSize = compactors.indices.map(capacity).sum
+  }
+
+  private def compress():Unit = {
+    var h:Int = 0
+    var compacted = false
+    while (!compacted && h < compactors.length) {
+      if (compactors(h).size >= capacity(h)) {
+        if (h + 1 >= compactors.length) {
+          grow()
+        }
+        compactors(h).compact(compactors(h + 1), random.nextBoolean())
+        size = compactors.map(_.size).sum
+        compacted = true
+      }
+      h += 1
+    }
+  }
+}
+
+@SerialVersionUID(1L)
+private class Compactor extends Serializable {
+  var items = new Array[Double](16)
+  var size:Int = 0
+
+  def add(value:Double):Unit = {
+    if (size == items.length) {
+      items = java.util.Arrays.copyOf(items, size * 2)
+    }
+    items(size) = value
+    size += 1
+  }
+
+  def addAll(other:Compactor):Unit = {
+    if (size + other.size > items.length) {
+      items = java.util.Arrays.copyOf(items, math.max(size + other.size, size * 2))
+    }
+    System.arraycopy(other.items, 0, items, size, other.size)
+    size += other.size
+  }
+
+  // Promote every other (sorted) value to the next compactor, if there is an odd number of values,
+  // the largest one stays behind
+  def compact(next:Compactor, odd:Boolean):Unit = {
+    java.util.Arrays.sort(items, 0, size)
+
+    val pairs = size / 2
+    var i:Int = if (odd) 1 else 0
+    var p:Int = 0
+    while (p < pairs) {
+      next.add(items(i))
+      i += 2
+      p += 1
+    }
+
+    if (size % 2 == 1) {
+      items(0) = items(size - 1)
+      size = 1
+    }
+    else {
+      size = 0
+    }
+  }
+}
@@ -24,6 +24,7 @@ import org.apache.hadoop.conf.Configuration
 import org.apache.spark.rdd.RDD
 import org.apache.spark.storage.StorageLevel
 import org.apache.spark.{SparkConf, SparkContext}
+import org.mrgeo.core.{MrGeoConstants, MrGeoProperties}
 import org.mrgeo.data
 import org.mrgeo.data.ProviderProperties
 import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
@@ -45,13 +46,14 @@ object Quantiles extends MrGeoDriver with Externalizable {
   final private val Input = "input"
   final private val NumQuantiles = "num.quantiles"
   final private val Fraction = "fraction"
+  final private val Accuracy = "accuracy"
   final private val ProviderProperties = "provider.properties"
 
   def compute(input:String, numQuantiles:Int,
               conf:Configuration, providerProperties:ProviderProperties):Boolean = {
     val name = "Quantiles"
 
-    val args = setupArguments(input, numQuantiles, None, providerProperties)
+    val args = setupArguments(input, numQuantiles, None, None, providerProperties)
 
     run(name, classOf[Quantiles].getName, args.toMap, conf)
 
@@ -62,7 +64,19 @@ object Quantiles extends MrGeoDriver with Externalizable {
               conf:Configuration, providerProperties:ProviderProperties):Boolean = {
     val name = "Quantiles"
 
-    val args = setupArguments(input, numQuantiles, Some(fraction), providerProperties)
+    val args = setupArguments(input, numQuantiles, Some(fraction), None, providerProperties)
+
+    run(name, classOf[Quantiles].getName, args.toMap, conf)
+
+    true
+  }
+
+  // accuracy is the allowed rank error of the quantiles (e.g. 0.001), 0 computes exact quantiles
+  def compute(input:String, numQuantiles:Int, fraction:Float, accuracy:Double,
+              conf:Configuration, providerProperties:ProviderProperties):Boolean = {
+    val name = "Quantiles"
+
+    val args = setupArguments(input, numQuantiles, Some(fraction), Some(accuracy), providerProperties)
 
     run(name, classOf[Quantiles].getName, args.toMap, conf)
 
@@ -328,7 +342,167 @@ object Quantiles extends MrGeoDriver with Externalizable {
     data
   }
 
-  def compute(rdd:RasterRDD, numberOfQuantiles:Int, fraction:Option[Float], meta:MrsPyramidMetadata) = {
+  def compute(rdd:RasterRDD, numberOfQuantiles:Int, fraction:Option[Float],
+              meta:MrsPyramidMetadata):List[Array[Double]] = {
+    val accuracy = MrGeoProperties.getInstance.getProperty(MrGeoConstants.MRGEO_QUANTILES_ACCURACY,
+      MrGeoConstants.MRGEO_QUANTILES_ACCURACY_DEFAULT).toDouble
+
+    compute(rdd, numberOfQuantiles, fraction, meta, accuracy)
+  }
+
+  // Compute the quantiles for each band.  Byte and short images are always computed exactly, from a
+  // histogram of the values.  For the other types, an accuracy > 0 computes approximate quantiles
+  // (with a rank error of about accuracy) with a mergeable sketch, in a single scan of the image,
+  // otherwise the pixel values are sorted.
+  def compute(rdd:RasterRDD, numberOfQuantiles:Int, fraction:Option[Float], meta:MrsPyramidMetadata,
+              accuracy:Double):List[Array[Double]] = {
+    meta.getTileType match {
+      case DataBuffer.TYPE_BYTE | DataBuffer.TYPE_SHORT | DataBuffer.TYPE_USHORT =>
+        histogramQuantiles(rdd, numberOfQuantiles, fraction, meta)
+      case _ if accuracy > 0 =>
+        sketchQuantiles(rdd, numberOfQuantiles, fraction, meta, accuracy)
+      case _ =>
+        sortedQuantiles(rdd, numberOfQuantiles, fraction, meta)
+    }
+  }
+
+  // The (0-based) indices in the sorted values of each quantile
+  private def quantileIndices(numberOfQuantiles:Int, count:Long):Array[Long] = {
+    val quantileIndices = new Array[Long](numberOfQuantiles - 1)
+    for (i <- quantileIndices.indices) {
+      val qFraction = 1.0f / numberOfQuantiles.toFloat * (i + 1).toFloat
+      quantileIndices(i) = (qFraction * count).ceil.toLong
+    }
+    quantileIndices
+  }
+
+  // Call fn with each of the valid (and, when sampling, selected) pixel values in the band
+  private def foreachPixel(raster:MrGeoRaster, band:Int, nodata:Double, fraction:Option[Float], random:Random,
+                           samples:Array[Double])(fn:Double => Unit):Unit = {
+    raster.readBand(band, samples)
+
+    val sample = fraction.isDefined && fraction.get < 1.0f
+    val len = raster.width() * raster.height()
+    var i:Int = 0
+    while (i < len) {
+      val v = samples(i)
+      if (!RasterMapOp.isNodata(v, nodata) && (!sample || random.nextFloat() < fraction.get)) {
+        fn(v)
+      }
+      i += 1
+    }
+  }
+
+  private[quantiles] def histogramQuantiles(rdd:RasterRDD, numberOfQuantiles:Int, fraction:Option[Float],
+                                 meta:MrsPyramidMetadata):List[Array[Double]] = {
+    val bands = meta.getBands
+    val nodatas = meta.getDefaultValues
+
+    // bytes are unsigned (0 - 255), shorts are offset so the most negative value lands in the first bin
+    val (bins, offset) = meta.getTileType match {
+      case DataBuffer.TYPE_BYTE => (256, 0)
+      case DataBuffer.TYPE_SHORT => (65536, 32768)
+      case _ => (65536, 0)
+    }
+
+    val zero = Array.ofDim[Long](bands, bins)
+    val histograms = rdd.treeAggregate(zero)((histograms, tile) => {
+      val raster = RasterWritable.toMrGeoRaster(tile._2)
+      val samples = new Array[Double](raster.width() * raster.height())
+      val random = new Random()
+
+      var b:Int = 0
+      while (b < bands) {
+        val histogram = histograms(b)
+        foreachPixel(raster, b, nodatas(b), fraction, random, samples)(v => histogram(v.toInt + offset) += 1)
+        b += 1
+      }
+      histograms
+    }, (h1, h2) => {
+      var b:Int = 0
+      while (b < bands) {
+        var i:Int = 0
+        while (i < bins) {
+          h1(b)(i) += h2(b)(i)
+          i += 1
+        }
+        b += 1
+      }
+      h1
+    })
+
+    val result = new ListBuffer[Array[Double]]()
+    histograms.foreach(histogram => {
+      val count = histogram.sum
+      val indices = quantileIndices(numberOfQuantiles, count)
+      if (count >= indices.length) {
+        val quantiles = new Array[Double](indices.length)
+
+        var cumulative:Long = 0
+        var bin:Int = 0
+        var q:Int = 0
+        while (q < indices.length && bin < bins) {
+          cumulative += histogram(bin)
+          while (q < indices.length && cumulative > indices(q)) {
+            quantiles(q) = bin - offset
+            q += 1
+          }
+          bin += 1
+        }
+        result += quantiles
+      }
+    })
+
+    result.toList
+  }
+
+  private def sketchQuantiles(rdd:RasterRDD, numberOfQuantiles:Int, fraction:Option[Float],
+                              meta:MrsPyramidMetadata, accuracy:Double):List[Array[Double]] = {
+    val bands = meta.getBands
+    val nodatas = meta.getDefaultValues
+
+    val zero = Array.fill[QuantileSketch](bands)(QuantileSketch(accuracy))
+    val sketches = rdd.treeAggregate(zero)((sketches, tile) => {
+      val raster = RasterWritable.toMrGeoRaster(tile._2)
+      val samples = new Array[Double](raster.width() * raster.height())
+      val random = new Random()
+
+      var b:Int = 0
+      while (b < bands) {
+        val sketch = sketches(b)
+        foreachPixel(raster, b, nodatas(b), fraction, random, samples)(v => sketch.add(v))
+        b += 1
+      }
+      sketches
+    }, (s1, s2) => {
+      var b:Int = 0
+      while (b < bands) {
+        s1(b).merge(s2(b))
+        b += 1
+      }
+      s1
+    })
+
+    val result = new ListBuffer[Array[Double]]()
+    sketches.foreach(sketch => {
+      val indices = quantileIndices(numberOfQuantiles, sketch.count())
+      if (sketch.count() >= indices.length) {
+        val quantiles = sketch.quantiles(indices)
+        if (meta.getTileType == DataBuffer.TYPE_FLOAT) {
+          // report float values just like the sorted computation does
+          result += quantiles.map(_.toFloat.toString.toDouble)
+        }
+        else {
+          result += quantiles
+        }
+      }
+    })
+
+    result.toList
+  }
+
+  private[quantiles] def sortedQuantiles(rdd:RasterRDD, numberOfQuantiles:Int, fraction:Option[Float],
+                              meta:MrsPyramidMetadata):List[Array[Double]] = {
     var b:Int = 0
     //val dt = meta.getTileType
     var result = new ListBuffer[Array[Double]]()
@@ -345,7 +519,8 @@ object Quantiles extends MrGeoDriver with Externalizable {
           getFloatPixelValues(RasterWritable.toMrGeoRaster(U._2), b, nodata, fraction)
         })
         pixelValues.persist(StorageLevel.MEMORY_AND_DISK).sortBy(x => x).asInstanceOf[RDD[AnyVal]]
-      case (DataBuffer.TYPE_INT | DataBuffer.TYPE_USHORT) =>
+      case (DataBuffer.TYPE_INT | DataBuffer.TYPE_USHORT | DataBuffer.TYPE_BYTE) =>
+        // read as ints, so bytes are unsigned, like everywhere else
         var pixelValues = rdd.flatMap(U => {
           getIntPixelValues(RasterWritable.toMrGeoRaster(U._2), b, nodata, fraction)
         })
@@ -355,22 +530,11 @@ object Quantiles extends MrGeoDriver with Externalizable {
           getShortPixelValues(RasterWritable.toMrGeoRaster(U._2), b, nodata, fraction)
         })
         pixelValues.persist(StorageLevel.MEMORY_AND_DISK).sortBy(x => x).asInstanceOf[RDD[AnyVal]]
-      case DataBuffer.TYPE_BYTE =>
-        var pixelValues = rdd.flatMap(U => {
-          getBytePixelValues(RasterWritable.toMrGeoRaster(U._2), b, nodata, fraction)
-        })
-        pixelValues.persist(StorageLevel.MEMORY_AND_DISK).sortBy(x => x).asInstanceOf[RDD[AnyVal]]
       }
       try {
         val count = sortedPixelValues.count()
-        // Build an RDD containing an entry for each individual quantile to compute.
-        // The key is the index into the set of sorted pixel values corresponding to
-        // the quantile. The value is the number of the quantile itself.
-        val quantileIndices = new Array[Long](numberOfQuantiles - 1)
-        for (i <- quantileIndices.indices) {
-          val qFraction = 1.0f / numberOfQuantiles.toFloat * (i + 1).toFloat
-          quantileIndices(i) = (qFraction * count).ceil.toLong
-        }
+        // The index into the set of sorted pixel values corresponding to each quantile.
+        val quantileIndices = Quantiles.quantileIndices(numberOfQuantiles, count)
         if (count >= quantileIndices.length) {
           //        log.info("value count is " + count)
           // Add an index as the key to the sorted pixel values so we can join on that key.
@@ -408,6 +572,7 @@ object Quantiles extends MrGeoDriver with Externalizable {
   private def setupArguments(input:String,
                              numQuantiles:Int,
                              fraction:Option[Float],
+                             accuracy:Option[Double],
                              providerProperties:ProviderProperties):mutable.Map[String, String] = {
     val args = mutable.Map[String, String]()
 
@@ -416,6 +581,9 @@ object Quantiles extends MrGeoDriver with Externalizable {
     if (fraction.isDefined) {
       args += Fraction -> fraction.get.toString
     }
+    if (accuracy.isDefined) {
+      args += Accuracy -> accuracy.get.toString
+    }
 
     if (providerProperties != null) {
       args += ProviderProperties -> data.ProviderProperties.toDelimitedString(providerProperties)
@@ -433,12 +601,16 @@ class Quantiles extends MrGeoJob with Externalizable {
   private var input:String = _
   private var numQuantiles:Int = 0
   private var fraction:Option[Float] = None
+  private var accuracy:Option[Double] = None
 
   override def registerClasses():Array[Class[_]] = {
     val classes = Array.newBuilder[Class[_]]
 
     classes += classOf[Array[Float]]
     classes += classOf[Array[Object]]
+    classes += classOf[Array[Array[Long]]]
+    classes += classOf[Array[QuantileSketch]]
+    classes += classOf[QuantileSketch]
 
     classes.result()
   }
@@ -452,6 +624,12 @@ class Quantiles extends MrGeoJob with Externalizable {
     else {
       None
     }
+    accuracy = if (job.hasSetting(Quantiles.Accuracy)) {
+      Some(job.getSetting(Quantiles.Accuracy).toDouble)
+    }
+    else {
+      None
+    }
     providerproperties = ProviderProperties.fromDelimitedString(
       job.getSetting(Quantiles.ProviderProperties))
 
@@ -461,7 +639,10 @@ class Quantiles extends MrGeoJob with Externalizable {
   override def execute(context:SparkContext):Boolean = {
     val imagePair = SparkUtils.loadMrsPyramidAndMetadata(input, context)
     if (numQuantiles > 0) {
-      val quantiles = org.mrgeo.quantiles.Quantiles.compute(imagePair._1, numQuantiles, fraction, imagePair._2)
+      val quantiles = accuracy match {
+        case Some(a) => org.mrgeo.quantiles.Quantiles.compute(imagePair._1, numQuantiles, fraction, imagePair._2, a)
+        case None => org.mrgeo.quantiles.Quantiles.compute(imagePair._1, numQuantiles, fraction, imagePair._2)
+      }
       // Save the quantiles to metadata
       imagePair._2.setQuantiles(quantiles.toArray)
       SparkUtils.saveMrsPyramidMetadata(input, context, imagePair._2, providerproperties)
@@ -480,6 +661,10 @@ class Quantiles extends MrGeoJob with Externalizable {
     if (hasFraction) {
       fraction = Some(in.readFloat())
     }
+    val hasAccuracy = in.readBoolean()
+    if (hasAccuracy) {
+      accuracy = Some(in.readDouble())
+    }
     val hasProviderProperties = in.readBoolean()
     if (hasProviderProperties) {
       providerproperties = ProviderProperties.fromDelimitedString(in.readUTF())
@@ -493,6 +678,10 @@ class Quantiles extends MrGeoJob with Externalizable {
     if (fraction.isDefined) {
       out.writeFloat(fraction.get)
     }
+    out.writeBoolean(accuracy.isDefined)
+    if (accuracy.isDefined) {
+      out.writeDouble(accuracy.get)
+    }
     out.writeBoolean(providerproperties != null)
     if (providerproperties != null) {
       out.writeUTF(ProviderProperties.toDelimitedString(providerproperties))
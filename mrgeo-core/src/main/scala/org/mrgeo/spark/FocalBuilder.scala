@@ -15,124 +15,167 @@
 
 package org.mrgeo.spark
 
-import org.apache.spark.SparkContext
-import org.apache.spark.rdd.{PairRDDFunctions, RDD}
-import org.mrgeo.data.raster.RasterWritable
+import org.apache.spark.rdd.RDD
+import org.apache.spark.{Partitioner, SparkContext}
+import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
+import org.mrgeo.data.rdd.TileRangePartitioner
 import org.mrgeo.data.tile.TileIdWritable
 import org.mrgeo.utils.Logging
-import org.mrgeo.utils.tms.{Bounds, TMSUtils, Tile}
+import org.mrgeo.utils.tms.{Bounds, TMSUtils, TileBounds}
 
+import scala.collection.mutable
 import scala.collection.mutable.ListBuffer
 
+// Builds "focal" tiles, each tile with a buffer of bufferX and bufferY pixels of its neighbors around it.
+// The tiles stay in their partitions, and only the edge strips the neighbors need are shuffled, to the
+// partition of the tile they buffer.  If the tiles aren't partitioned, they are first partitioned into
+// bands of tile rows, so most of a tile's neighbors are in the same partition.
 object FocalBuilder extends Logging {
 
+  // Sniffs the tilesize from the first tile, which runs a Spark job.  Use the version taking the tilesize
+  // (from the metadata) when it is known.
   def create(tiles:RDD[(TileIdWritable, RasterWritable)],
              bufferX:Int, bufferY:Int, bounds:Bounds, zoom:Int, nodatas:Array[Double],
              context:SparkContext):RDD[(TileIdWritable, RasterWritable)] = {
 
     val sample = RasterWritable.toMrGeoRaster(tiles.first()._2)
 
-    val tilesize = sample.width()
+    create(tiles, bufferX, bufferY, bounds, zoom, sample.width(), nodatas, context)
+  }
+
+  def create(tiles:RDD[(TileIdWritable, RasterWritable)],
+             bufferX:Int, bufferY:Int, bounds:Bounds, zoom:Int, tilesize:Int, nodatas:Array[Double],
+             context:SparkContext):RDD[(TileIdWritable, RasterWritable)] = {
+    assemble(tiles, bufferX, bufferY, bounds, zoom, tilesize, nodatas, reuse = false).mapPartitions(
+      _.map(tile => (tile._1, RasterWritable.toWritable(tile._2))), preservesPartitioning = true)
+  }
 
-    val offsetX = (bufferX / tilesize) + 1
-    val offsetY = (bufferY / tilesize) + 1
+  // Same as create, but without serializing the buffered tiles.  The raster for each tile is a view that
+  // is reused for the next tile in the partition, so it is only valid until the next tile is read.  The
+  // tiles need to be consumed one at a time (e.g. in a map), anything that holds on to them must copy them.
+  def buffered(tiles:RDD[(TileIdWritable, RasterWritable)],
+               bufferX:Int, bufferY:Int, bounds:Bounds, zoom:Int, tilesize:Int, nodatas:Array[Double],
+               context:SparkContext):RDD[(TileIdWritable, MrGeoRaster)] = {
+    assemble(tiles, bufferX, bufferY, bounds, zoom, tilesize, nodatas, reuse = true)
+  }
 
-    val dstW = sample.width() + bufferX * 2
-    val dstH = sample.height() + bufferY * 2
+  private def assemble(tiles:RDD[(TileIdWritable, RasterWritable)],
+                       bufferX:Int, bufferY:Int, bounds:Bounds, zoom:Int, tilesize:Int, nodatas:Array[Double],
+                       reuse:Boolean):RDD[(TileIdWritable, MrGeoRaster)] = {
+
+    // how many tiles away the buffer reaches
+    val offsetX = (bufferX + tilesize - 1) / tilesize
+    val offsetY = (bufferY + tilesize - 1) / tilesize
+
+    val dstW = tilesize + bufferX * 2
+    val dstH = tilesize + bufferY * 2
 
     val tb = TMSUtils.boundsToTile(bounds, zoom, tilesize)
-    val minX = tb.w
-    val minY = tb.s
-    val maxX = tb.e
-    val maxY = tb.n
 
-    val partitions = Math.min(context.getConf.getInt("spark.executor.cores", Int.MaxValue) * 2, tiles.partitions.length)
+    val partitioned = tiles.partitioner match {
+      case Some(_) => tiles
+      case None => tiles.partitionBy(rowPartitioner(tb, zoom, tiles.partitions.length))
+    }
+    val partitioner = partitioned.partitioner.get
 
-    logInfo("Using " + partitions + " partitions for grouping")
+    logInfo("Exchanging edges over " + partitioner.numPartitions + " partitions")
 
-    val pieces = new PairRDDFunctions[TileIdWritable, (Int, Int, Int, Int, RasterWritable)](tiles.flatMap(tile => {
-      val pieces = ListBuffer[(TileIdWritable, (Int, Int, Int, Int, RasterWritable))]()
+    val strips = partitioned.flatMap(tile => {
+      val strips = ListBuffer[(TileIdWritable, (Int, Int, RasterWritable))]()
       val from = TMSUtils.tileid(tile._1.get(), zoom)
 
-      val src = RasterWritable.toMrGeoRaster(tile._2)
-      val srcW = src.width()
-      val srcH = src.height()
+      // strips of a constant tile are constant, and are made without expanding the tile
+      val pixel = RasterWritable.toConstantPixel(tile._2)
+      val src = if (pixel == null) RasterWritable.toMrGeoRaster(tile._2) else null
 
       var y:Int = -offsetY
       while (y <= offsetY) {
         var x:Int = -offsetX
         while (x <= offsetX) {
-          val to = new Tile(from.tx + x, from.ty + y)
-          if (to.ty >= minY && to.ty <= maxY && to.tx >= minX && to.tx <= maxX) {
-            var srcX = -1
-            var dstX = -1
-
-            var width = bufferX
-            if (x == offsetX) {
-              srcX = srcW - width
-              dstX = 0
-            }
-            else if (x == -offsetX) {
-              srcX = 0
-              dstX = dstW - width
-            }
-            else {
-              srcX = 0
-              dstX = bufferX + (x * srcW)
-              width = srcW
-            }
-
-            var srcY = -1
-            var dstY = -1
-
-            var height = bufferY
-            if (y == -offsetY) {
-              srcY = srcH - height
-              dstY = 0
-            }
-            else if (y == offsetY) {
-              srcY = 0
-              dstY = dstH - height
+          val tx = from.tx + x
+          val ty = from.ty + y
+          if ((x != 0 || y != 0) && ty >= tb.s && ty <= tb.n && tx >= tb.w && tx <= tb.e) {
+            // where this tile lands in the buffered neighbor tile (y goes down, ty goes up)
+            val left = bufferX - x * tilesize
+            val top = bufferY + y * tilesize
+
+            val x0 = Math.max(0, left)
+            val y0 = Math.max(0, top)
+            val x1 = Math.min(dstW, left + tilesize)
+            val y1 = Math.min(dstH, top + tilesize)
+
+            if (x0 < x1 && y0 < y1) {
+              val strip = if (pixel != null) {
+                RasterWritable.fromConstantPixel(pixel, x1 - x0, y1 - y0)
+              }
+              else {
+                RasterWritable.toWritable(src.clip(x0 - left, y0 - top, x1 - x0, y1 - y0))
+              }
+              strips.append((new TileIdWritable(TMSUtils.tileid(tx, ty, zoom)), (x0, y0, strip)))
             }
-            else {
-              srcY = 0
-              dstY = bufferY + (y * srcH)
-              height = srcH
-            }
-
-            val piece = src.clip(srcX, srcY, width, height)
-
-            pieces.append(
-              (new TileIdWritable(TMSUtils.tileid(to.tx, to.ty, zoom)), (dstX, dstY, width, height, RasterWritable
-                  .toWritable(piece))))
           }
           x += 1
         }
         y += 1
       }
-      pieces.iterator
+      strips.iterator
+    }).partitionBy(partitioner)
 
-    })).groupByKey() // .groupByKey(partitions)
+    partitioned.zipPartitions(strips, preservesPartitioning = true)((centers, edges) => {
+      val pieces = mutable.HashMap.empty[Long, ListBuffer[(Int, Int, RasterWritable)]]
+      edges.foreach(edge => {
+        pieces.getOrElseUpdate(edge._1.get(), ListBuffer[(Int, Int, RasterWritable)]()) += edge._2
+      })
 
-    val dnodatas = nodatas.map(_.doubleValue())
-    val focal = pieces.map(tile => {
-      val first = RasterWritable.toMrGeoRaster(tile._2.head._5)
-      val dst = first.createCompatibleEmptyRaster(dstW, dstH, dnodatas)
+      var view:MrGeoRaster = null
 
-      for (piece <- tile._2) {
-        val x = piece._1
-        val y = piece._2
-        val w = piece._3
-        val h = piece._4
-        val src = RasterWritable.toMrGeoRaster(piece._5)
+      def buffer(like:MrGeoRaster, edges:Option[ListBuffer[(Int, Int, RasterWritable)]]):MrGeoRaster = {
+        val dst = if (reuse && view != null && view.bands() == like.bands() && view.datatype() == like.datatype()) {
+          view.fill(nodatas)
+          view
+        }
+        else {
+          like.createCompatibleEmptyRaster(dstW, dstH, nodatas)
+        }
+        if (reuse) {
+          view = dst
+        }
 
-        dst.copyFrom(0, 0, w, h, src, x, y)
+        edges.foreach(_.foreach(edge => {
+          val src = RasterWritable.toMrGeoRaster(edge._3)
+          dst.copyFrom(0, 0, src.width(), src.height(), src, edge._1, edge._2)
+        }))
+        dst
       }
 
-      (new TileIdWritable(tile._1), RasterWritable.toWritable(dst))
+      centers.filter(tile => tb.contains(TMSUtils.tileid(tile._1.get(), zoom), true)).map(tile => {
+        val center = RasterWritable.toMrGeoRaster(tile._2)
+        val dst = buffer(center, pieces.remove(tile._1.get()))
+        dst.copyFrom(0, 0, center.width(), center.height(), center, bufferX, bufferY)
+
+        (tile._1, dst)
+      }) ++ pieces.iterator.map(missing => {
+        // there is no tile here, but it is surrounded by some, so it still gets their edges
+        (new TileIdWritable(missing._1), buffer(RasterWritable.toMrGeoRaster(missing._2.head._3), Some(missing._2)))
+      })
     })
+  }
 
-    focal
+  // Partition tiles into bands of whole tile rows
+  private def rowPartitioner(tb:TileBounds, zoom:Int, partitions:Int):Partitioner = {
+    val rows = tb.n - tb.s + 1
+    val count = Math.max(1L, Math.min(partitions.toLong, rows)).toInt
+
+    val startIds = new Array[Long](count)
+    val endIds = new Array[Long](count)
+    var p:Int = 0
+    while (p < count) {
+      startIds(p) = TMSUtils.tileid(tb.w, tb.s + rows * p / count, zoom)
+      endIds(p) = TMSUtils.tileid(tb.e, tb.s + rows * (p + 1) / count - 1, zoom)
+      p += 1
+    }
+
+    new TileRangePartitioner(startIds, endIds)
   }
 
 }
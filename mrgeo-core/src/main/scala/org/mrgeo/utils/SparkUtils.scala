@@ -24,14 +24,16 @@ import org.apache.hadoop.conf.Configuration
 import org.apache.hadoop.mapreduce.Job
 import org.apache.spark._
 import org.apache.spark.rdd.RDD
+import org.apache.spark.storage.StorageLevel
 import org.mrgeo.data.image.{ImageInputFormatContext, ImageOutputFormatContext, MrsImageDataProvider}
-import org.mrgeo.data.raster.RasterWritable
-import org.mrgeo.data.rdd.{AutoPersister, RasterRDD}
+import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
+import org.mrgeo.data.rdd.{AutoPersister, RasterRDD, TileRangePartitioner}
 import org.mrgeo.data.tile._
 import org.mrgeo.data.{DataProviderFactory, MrsPyramidInputFormat, ProviderProperties}
 import org.mrgeo.hdfs.tile.FileSplit.FileSplitInfo
 import org.mrgeo.image.{ImageStats, MrsPyramid, MrsPyramidMetadata}
-import org.mrgeo.utils.tms.{Bounds, Pixel, TMSUtils}
+import org.mrgeo.mapreduce.splitters.MrsPyramidInputSplit
+import org.mrgeo.utils.tms.{Bounds, Pixel, TMSUtils, TileOrder}
 
 import scala.collection.JavaConversions._
 import scala.collection.mutable.ListBuffer
@@ -46,6 +48,11 @@ object SparkUtils extends Logging {
   }
 
   def calculateSplitData(rdd:RasterRDD):Array[FileSplitInfo] = {
+    calculateSplitData(rdd, TileOrder.ROW_MAJOR, 0)
+  }
+
+  // The split ranges of the partitions, as indices in order (at zoom)
+  def calculateSplitData(rdd:RasterRDD, order:TileOrder, zoom:Int):Array[FileSplitInfo] = {
     // calculate the min/max tile id for each partition
     val partitions = rdd.mapPartitionsWithIndex((partition, data) => {
       var startId = Long.MaxValue
@@ -55,8 +62,9 @@ object SparkUtils extends Logging {
       val name = f"part-r-$partition%05d"
 
       data.foreach(tile => {
-        startId = Math.min(startId, tile._1.get())
-        endId = Math.max(endId, tile._1.get())
+        val id = order.index(tile._1.get(), zoom)
+        startId = Math.min(startId, id)
+        endId = Math.max(endId, id)
       })
 
       val split = new FileSplitInfo(startId, endId, name, partition)
@@ -266,10 +274,7 @@ object SparkUtils extends Logging {
 
     logInfo("Loading MrsPyramid " + provider.getResourceName)
 
-    RasterRDD(context.newAPIHadoopRDD(job.getConfiguration,
-      classOf[MrsPyramidInputFormat],
-      classOf[TileIdWritable],
-      classOf[RasterWritable]))
+    pyramidRDD(job, context)
 
     //        FileInputFormat.addInputPath(job, new Path(provider.getResourceName, zoom.toString))
     //        FileInputFormat.setInputPathFilter(job, classOf[MapFileFilter])
@@ -305,10 +310,7 @@ object SparkUtils extends Logging {
 
     //    log.warn("Running loadPyramid with configuration " + job.getConfiguration + " with input format " +
     //      inputFormatClass.getName)
-    RasterRDD(context.newAPIHadoopRDD(job.getConfiguration,
-      classOf[MrsPyramidInputFormat],
-      classOf[TileIdWritable],
-      classOf[RasterWritable]))
+    pyramidRDD(job, context)
 
     //        FileInputFormat.addInputPath(job, new Path(provider.getResourceName, zoom.toString))
     //        FileInputFormat.setInputPathFilter(job, classOf[MapFileFilter])
@@ -319,6 +321,75 @@ object SparkUtils extends Logging {
     //          classOf[RasterWritable])
   }
 
+  // Choose the partitioner to join (cogroup) the rdds with.  When one or more of the inputs are already
+  // partitioned, the one with the most partitions is used, so it (and any input partitioned the same way,
+  // i.e. pyramids with matching splits) is joined in place and only the others are shuffled.
+  def joinPartitioner(rdds:Seq[RDD[_]]):Partitioner = {
+    val partitioned = rdds.flatMap(_.partitioner).filter(_.numPartitions > 0)
+    if (partitioned.nonEmpty) {
+      partitioned.maxBy(_.numPartitions)
+    }
+    else {
+      new HashPartitioner(rdds.map(_.partitions.length).max)
+    }
+  }
+
+  // Derive a partitioner from the tile ranges of the pyramid's input splits (one split per partition),
+  // so tiles read from pyramids with the same splits are known to be co-partitioned.
+  private[utils] def splitPartitioner(job:Job):Option[Partitioner] = {
+    val splits = new MrsPyramidInputFormat().getSplits(job)
+
+    val startIds = new Array[Long](splits.size())
+    val endIds = new Array[Long](splits.size())
+
+    // the ranges are in the order the pyramid's tiles are stored in, which all the splits share
+    var order:TileOrder = null
+    var zoom:Int = 0
+
+    var ordered = splits.nonEmpty
+    var i:Int = 0
+    splits.foreach(split => {
+      split match {
+        case mp:MrsPyramidInputSplit =>
+          val tiled = mp.getWrappedSplit
+          startIds(i) = tiled.getStartTileId
+          endIds(i) = tiled.getEndTileId
+          if (order == null) {
+            order = tiled.getTileOrder
+            zoom = tiled.getZoomLevel
+          }
+          else if (order != tiled.getTileOrder) {
+            ordered = false
+          }
+        case _ => ordered = false
+      }
+      // the ranges need to be in order and can't overlap, otherwise we can't tell which partition a tile is in
+      if (ordered && (startIds(i) > endIds(i) || (i > 0 && startIds(i) <= endIds(i - 1)))) {
+        ordered = false
+      }
+      i += 1
+    })
+
+    if (ordered) {
+      Some(new TileRangePartitioner(startIds, endIds, order, zoom))
+    }
+    else {
+      None
+    }
+  }
+
+  private def pyramidRDD(job:Job, context:SparkContext):RasterRDD = {
+    val rdd = context.newAPIHadoopRDD(job.getConfiguration,
+      classOf[MrsPyramidInputFormat],
+      classOf[TileIdWritable],
+      classOf[RasterWritable])
+
+    splitPartitioner(job) match {
+      case Some(partitioner) => RasterRDD(rdd, partitioner)
+      case _ => RasterRDD(rdd)
+    }
+  }
+
   def saveMrsPyramidMetadata(imageName:String, context:SparkContext, metadata:MrsPyramidMetadata,
                              providerProps:ProviderProperties): Unit = {
     val dp:MrsImageDataProvider = DataProviderFactory.getMrsImageDataProvider(imageName,
@@ -377,7 +448,7 @@ object SparkUtils extends Logging {
   }
 
   def saveMrsPyramid(tiles:RasterRDD, outputProvider:MrsImageDataProvider,
-                     zoom:Int, tilesize:Int, nodatas:Array[Double], conf:Configuration, tiletype:Int = -1,
+                     zoom:Int, tilesize:Int, nodatas:Array[Double], conf:Configuration, tiletype:Int = MrsPyramidMetadata.TILETYPE_UNKNOWN,
                      bounds:Bounds = null, bands:Int = -1,
                      protectionlevel:String = null,
                      providerproperties:ProviderProperties = new ProviderProperties()):Unit = {
@@ -399,45 +470,56 @@ object SparkUtils extends Logging {
 
     AutoPersister.incrementRef(tiles)
 
-    //    val localpersist = if (tiles.getStorageLevel == StorageLevel.NONE) {
-    //      tiles.persist(StorageLevel.MEMORY_AND_DISK_SER)
-    //      true
-    //    }
-    //    else {
-    //      false
-    //    }
+    // the stats and the save both run over the tiles, so the lineage behind them (usually the whole map
+    // algebra expression) should only be computed once
+    val localpersist = if (tiles.getStorageLevel == StorageLevel.NONE) {
+      tiles.persist(StorageLevel.MEMORY_AND_DISK_SER)
+      true
+    }
+    else {
+      false
+    }
 
     val output = outputProvider.getResourceName
 
-    val tilesize = metadata.getTilesize
-
-    if (metadata.getBounds == null) {
-      metadata.setBounds(SparkUtils.calculateBounds(tiles, zoom, tilesize))
-    }
-    val bounds = metadata.getBounds
-
-    val tile = RasterWritable.toMrGeoRaster(tiles.first()._2)
-    if (metadata.getBands <= 0 || metadata.getTileType <= 0) {
+    // map ops declare their metadata up front, only look at the tiles for whatever is missing
+    if (metadata.getTilesize <= 0 || metadata.getBands <= 0 || metadata.getTileType == MrsPyramidMetadata.TILETYPE_UNKNOWN) {
+      val tile = RasterWritable.toMrGeoRaster(tiles.first()._2)
 
+      metadata.setTilesize(tile.width())
       metadata.setBands(tile.bands())
       metadata.setTileType(tile.datatype())
     }
 
-    metadata.setName(zoom, zoom.toString)
-
-
+    val tilesize = metadata.getTilesize
     val bands = metadata.getBands
 
-    val stats = SparkUtils.calculateStats(tiles, bands, metadata.getDefaultValues)
+    val stats = if (metadata.getBounds == null) {
+      val (bounds, stats) = calculateBoundsAndStats(tiles, bands, zoom, tilesize, metadata.getDefaultValues)
+      metadata.setBounds(bounds)
+      stats
+    }
+    else {
+      SparkUtils.calculateStats(tiles, bands, metadata.getDefaultValues)
+    }
+    val bounds = metadata.getBounds
+
+    metadata.setName(zoom, zoom.toString)
 
     val tofc = new ImageOutputFormatContext(output, bounds, zoom, tilesize,
       metadata.getProtectionLevel, metadata.getTileType, bands)
+    tofc.setTileOrder(metadata.getTileOrder)
     val tofp = outputProvider.getTiledOutputFormatProvider(tofc)
 
     tofp.save(tiles, conf)
+    metadata.setTileOrder(tofp.getTileOrder)
 
     // calculate and save metadata
-    MrsPyramid.calculateMetadata(zoom, tile, outputProvider, stats, metadata)
+    MrsPyramid.calculateMetadata(zoom, tilesize, bands, metadata.getTileType, outputProvider, stats, metadata)
+
+    if (localpersist) {
+      tiles.unpersist()
+    }
 
     AutoPersister.decrementRef(tiles)
   }
@@ -712,7 +794,7 @@ object SparkUtils extends Logging {
 
   @deprecated("Use RasterRDD method instead", "")
   def saveMrsPyramidRDD(tiles:RDD[(TileIdWritable, RasterWritable)], outputProvider:MrsImageDataProvider,
-                        zoom:Int, tilesize:Int, nodatas:Array[Double], conf:Configuration, tiletype:Int = -1,
+                        zoom:Int, tilesize:Int, nodatas:Array[Double], conf:Configuration, tiletype:Int = MrsPyramidMetadata.TILETYPE_UNKNOWN,
                         bounds:Bounds = null, bands:Int = -1,
                         protectionlevel:String = null,
                         providerproperties:ProviderProperties = new ProviderProperties()):Unit = {
@@ -726,60 +808,72 @@ object SparkUtils extends Logging {
     calculateBounds(RasterRDD(rdd), zoom, tilesize)
   }
 
+  // Metadata for a raster whose tile size, bands and type are only known from its tiles.  This runs Spark
+  // jobs over the RDD (and its whole lineage), so map ops that can work out their metadata from their
+  // inputs' should use the version taking everything instead.
   def calculateMetadata(rdd:RasterRDD, zoom:Int, nodata:Double, calcStats:Boolean,
                         bounds:Bounds):MrsPyramidMetadata = {
-    val first = rdd.first()
-    val raster = RasterWritable.toMrGeoRaster(first._2)
+    val raster = RasterWritable.toMrGeoRaster(rdd.first()._2)
 
     val nodatas = Array.fill[Double](raster.bands())(nodata)
-    calculateMetadata(rdd, zoom, nodatas, calcStats, bounds)
+    calculateMetadata(rdd, zoom, raster, nodatas, calcStats, bounds)
   }
 
   def calculateMetadata(rdd:RasterRDD, zoom:Int, nodatas:Array[Double], calcStats:Boolean,
                         bounds:Bounds):MrsPyramidMetadata = {
-    val meta = new MrsPyramidMetadata
+    calculateMetadata(rdd, zoom, RasterWritable.toMrGeoRaster(rdd.first()._2), nodatas, calcStats, bounds)
+  }
 
-    //    rdd.persist(StorageLevel.MEMORY_AND_DISK_SER)
+  // Build the metadata for a raster when everything about it is already known, no Spark job is run
+  def calculateMetadata(zoom:Int, tilesize:Int, bands:Int, tiletype:Int, nodatas:Array[Double],
+                        bounds:Bounds):MrsPyramidMetadata = {
+    val meta = new MrsPyramidMetadata
 
-    meta.setPyramid(rdd.name)
     meta.setName(zoom)
     meta.setMaxZoomLevel(zoom)
 
-    val first = rdd.first()
-    //val raster = RasterWritable.toRaster(first._2)
-    val raster = RasterWritable.toMrGeoRaster(first._2)
-
-    meta.setBands(raster.bands())
-    meta.setTileType(raster.datatype())
-
-    val tilesize = raster.width()
+    meta.setBands(bands)
+    meta.setTileType(tiletype)
     meta.setTilesize(tilesize)
 
     meta.setDefaultValues(nodatas)
 
-    val bnds = if (bounds == null) {
-      calculateBounds(rdd, zoom, tilesize)
-    }
-    else {
-      bounds
-    }
-
-    meta.setBounds(bnds)
+    meta.setBounds(bounds)
 
     meta.setName(zoom, zoom.toString)
 
-    val tb = TMSUtils.boundsToTile(bnds, zoom, tilesize)
+    val tb = TMSUtils.boundsToTile(bounds, zoom, tilesize)
     meta.setTileBounds(zoom, tb.toLongRectangle)
 
-    val pll:Pixel = TMSUtils.latLonToPixels(bnds.s, bnds.w, zoom, tilesize)
-    val pur:Pixel = TMSUtils.latLonToPixels(bnds.n, bnds.e, zoom, tilesize)
+    val pll:Pixel = TMSUtils.latLonToPixels(bounds.s, bounds.w, zoom, tilesize)
+    val pur:Pixel = TMSUtils.latLonToPixels(bounds.n, bounds.e, zoom, tilesize)
     meta.setPixelBounds(zoom, new LongRectangle(0, 0, pur.px - pll.px, pur.py - pll.py))
 
-    if (calcStats) {
-      val stats = calculateStats(rdd, meta.getBands, nodatas)
+    meta
+  }
+
+  private def calculateMetadata(rdd:RasterRDD, zoom:Int, sample:MrGeoRaster, nodatas:Array[Double],
+                                calcStats:Boolean, bounds:Bounds):MrsPyramidMetadata = {
+    val tilesize = sample.width()
 
-      meta.setImageStats(zoom, stats)
+    // bounds and stats can be found in the same pass
+    val (bnds, stats) = if (bounds == null) {
+      if (calcStats) {
+        val (b, s) = calculateBoundsAndStats(rdd, sample.bands(), zoom, tilesize, nodatas)
+        (b, Some(s))
+      }
+      else {
+        (calculateBounds(rdd, zoom, tilesize), None)
+      }
     }
+    else {
+      (bounds, if (calcStats) Some(calculateStats(rdd, sample.bands(), nodatas)) else None)
+    }
+
+    val meta = calculateMetadata(zoom, tilesize, sample.bands(), sample.datatype(), nodatas, bnds)
+    meta.setPyramid(rdd.name)
+
+    stats.foreach(s => meta.setImageStats(zoom, s))
 
     meta
   }
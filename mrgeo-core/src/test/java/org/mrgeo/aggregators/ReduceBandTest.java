@@ -0,0 +1,175 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.aggregators;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.data.raster.MrGeoRaster;
+import org.mrgeo.junit.UnitTest;
+
+import java.awt.image.DataBuffer;
+import java.util.Random;
+
+@SuppressWarnings("all") // test code, not included in production
+public class ReduceBandTest
+{
+private static final int[] datatypes = {DataBuffer.TYPE_BYTE, DataBuffer.TYPE_SHORT,
+    DataBuffer.TYPE_USHORT, DataBuffer.TYPE_INT, DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE};
+
+private static final Aggregator2x2[] aggregators = {new MeanAggregator(), new MinAggregator(),
+    new MaxAggregator(), new NearestAggregator()};
+
+private static double nodata(int datatype)
+{
+  switch (datatype)
+  {
+  case DataBuffer.TYPE_BYTE:
+    return 255;
+  case DataBuffer.TYPE_SHORT:
+    return Short.MIN_VALUE;
+  case DataBuffer.TYPE_USHORT:
+    return 65535;
+  case DataBuffer.TYPE_INT:
+    return -9999;
+  default:
+    return Double.NaN;
+  }
+}
+
+// Random values over the type's whole (unsigned, for byte and ushort) range, about 1 in 4 nodata
+private static MrGeoRaster raster(int width, int height, int datatype, double nodata) throws Exception
+{
+  Random random = new Random(datatype);
+  MrGeoRaster raster = MrGeoRaster.createEmptyRaster(width, height, 1, datatype);
+  for (int y = 0; y < height; y++)
+  {
+    for (int x = 0; x < width; x++)
+    {
+      double v;
+      switch (datatype)
+      {
+      case DataBuffer.TYPE_BYTE:
+        v = random.nextInt(255);
+        break;
+      case DataBuffer.TYPE_SHORT:
+        v = random.nextInt(65535) - 32767;
+        break;
+      case DataBuffer.TYPE_USHORT:
+        v = random.nextInt(65535);
+        break;
+      case DataBuffer.TYPE_INT:
+        v = random.nextInt(2000000) - 1000000;
+        break;
+      default:
+        v = (random.nextDouble() - 0.5) * 1000.0;
+        break;
+      }
+      raster.setPixel(x, y, 0, random.nextInt(4) == 0 ? nodata : v);
+    }
+  }
+  return raster;
+}
+
+private static void compare(String msg, MrGeoRaster expected, MrGeoRaster actual)
+{
+  for (int y = 0; y < expected.height(); y++)
+  {
+    for (int x = 0; x < expected.width(); x++)
+    {
+      Assert.assertEquals(msg + " (" + x + ", " + y + ")",
+          Double.doubleToLongBits(expected.getPixelDouble(x, y, 0)),
+          Double.doubleToLongBits(actual.getPixelDouble(x, y, 0)));
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void fastPathMatchesAggregate() throws Exception
+{
+  // odd sizes, the last row and column are dropped
+  for (int datatype : datatypes)
+  {
+    double nodata = nodata(datatype);
+    MrGeoRaster src = raster(33, 21, datatype, nodata);
+
+    for (Aggregator2x2 aggregator : aggregators)
+    {
+      MrGeoRaster expected = src.createCompatibleRaster(16, 10);
+      BlockReducer.reduce(aggregator, src, expected, 0, 2, 2, nodata);
+
+      MrGeoRaster actual = src.createCompatibleRaster(16, 10);
+      aggregator.reduceBand(src, actual, 0, 2, 2, nodata);
+
+      compare(aggregator.getClass().getSimpleName() + " type " + datatype, expected, actual);
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void unsigned() throws Exception
+{
+  MrGeoRaster src = MrGeoRaster.createEmptyRaster(2, 2, 1, DataBuffer.TYPE_BYTE);
+  src.setPixel(0, 0, 0, 200);
+  src.setPixel(1, 0, 0, 100);
+  src.setPixel(0, 1, 0, 250);
+  src.setPixel(1, 1, 0, 255);
+
+  double[] nodatas = {255};
+  Assert.assertEquals(183, src.reduce(2, 2, new MeanAggregator(), nodatas).getPixelInt(0, 0, 0));
+  Assert.assertEquals(100, src.reduce(2, 2, new MinAggregator(), nodatas).getPixelInt(0, 0, 0));
+  Assert.assertEquals(250, src.reduce(2, 2, new MaxAggregator(), nodatas).getPixelInt(0, 0, 0));
+  Assert.assertEquals(200, src.reduce(2, 2, new NearestAggregator(), nodatas).getPixelInt(0, 0, 0));
+
+  src = MrGeoRaster.createEmptyRaster(2, 2, 1, DataBuffer.TYPE_USHORT);
+  src.setPixel(0, 0, 0, 40000);
+  src.setPixel(1, 0, 0, 30000);
+  src.setPixel(0, 1, 0, 65535);
+  src.setPixel(1, 1, 0, 50000);
+
+  nodatas[0] = 65535;
+  Assert.assertEquals(40000, src.reduce(2, 2, new MeanAggregator(), nodatas).getPixelInt(0, 0, 0));
+  Assert.assertEquals(30000, src.reduce(2, 2, new MinAggregator(), nodatas).getPixelInt(0, 0, 0));
+  Assert.assertEquals(50000, src.reduce(2, 2, new MaxAggregator(), nodatas).getPixelInt(0, 0, 0));
+}
+
+@Test
+@Category(UnitTest.class)
+public void otherFactors() throws Exception
+{
+  MrGeoRaster src = MrGeoRaster.createEmptyRaster(8, 6, 2, DataBuffer.TYPE_FLOAT);
+  for (int b = 0; b < 2; b++)
+  {
+    for (int y = 0; y < 6; y++)
+    {
+      for (int x = 0; x < 8; x++)
+      {
+        src.setPixel(x, y, b, x + y * 8 + b * 100);
+      }
+    }
+  }
+
+  MrGeoRaster reduced = src.reduce(4, 3, new MeanAggregator(), new double[]{Double.NaN, Double.NaN});
+  Assert.assertEquals(2, reduced.width());
+  Assert.assertEquals(2, reduced.height());
+  // mean of x 0 - 3, y 0 - 2
+  Assert.assertEquals(9.5f, reduced.getPixelFloat(0, 0, 0), 0.0f);
+  Assert.assertEquals(37.5f, reduced.getPixelFloat(1, 1, 0), 0.0f);
+  Assert.assertEquals(137.5f, reduced.getPixelFloat(1, 1, 1), 0.0f);
+}
+}
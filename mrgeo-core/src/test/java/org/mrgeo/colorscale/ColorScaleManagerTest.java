@@ -22,14 +22,19 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
 import org.mrgeo.core.MrGeoConstants;
 import org.mrgeo.core.MrGeoProperties;
 import org.mrgeo.junit.UnitTest;
 import org.mrgeo.test.TestUtils;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -38,6 +43,8 @@ import java.util.Properties;
 @SuppressWarnings("all") // test code, not included in production
 public class ColorScaleManagerTest
 {
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
 
 //String oldbase;
 
@@ -115,6 +122,31 @@ public void testGetColorScale_WithColorScaleNameNotExist() throws Exception
       ColorScaleManager.fromName("ColorScaleTest123"));
 }
 
+@Test
+@Category(UnitTest.class)
+public void testGetVersion() throws Exception
+{
+  File xml = folder.newFile("ColorScaleTest.xml");
+  Files.copy(new File(TestUtils.composeInputDir(ColorScaleManagerTest.class), "ColorScaleTest.xml").toPath(),
+      xml.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+  MrGeoProperties.getInstance().put(MrGeoConstants.MRGEO_HDFS_COLORSCALE, folder.getRoot().toURI().toString());
+  ColorScaleManager.resetColorscales();
+
+  String version = ColorScaleManager.getVersion("ColorScaleTest");
+  Assert.assertNotNull(version);
+  Assert.assertEquals(version, ColorScaleManager.getVersion("ColorScaleTest"));
+  Assert.assertNull(ColorScaleManager.getVersion("ColorScaleTest123"));
+
+  // editing the file gives a new version
+  String contents = new String(Files.readAllBytes(xml.toPath()), StandardCharsets.UTF_8);
+  Files.write(xml.toPath(), contents.replaceFirst("<Color ", "<Color  ").getBytes(StandardCharsets.UTF_8));
+  ColorScaleManager.resetColorscales();
+
+  Assert.assertNotNull(ColorScaleManager.fromName("ColorScaleTest"));
+  Assert.assertNotEquals(version, ColorScaleManager.getVersion("ColorScaleTest"));
+}
+
 @Test
 @Category(UnitTest.class)
 public void testGetColorScale_WithJSON() throws Exception
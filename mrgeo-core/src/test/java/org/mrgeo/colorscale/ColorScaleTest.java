@@ -675,6 +675,51 @@ public void testQuantilesFive() throws Exception
   check(cs.lookup(30.0), new int[]{234, 0, 21, 43});
 }
 
+@Test
+@Category(UnitTest.class)
+public void testQuantileBins() throws Exception
+{
+  ColorScale cs = ColorScale.createDefault();
+  cs.setScaling(ColorScale.Scaling.Quantile);
+  double[] quantiles = { 10.0, 10.001, 33.3, 50.0, 99.99 };
+  cs.setScaleRangeWithQuantiles(0, 100, quantiles);
+
+  // A clone doesn't have the bins, and finds every sub-scale with a search of the quantiles
+  ColorScale searched = (ColorScale) cs.clone();
+
+  for (double v = -1.0; v <= 101.0; v += 0.0625)
+  {
+    check(cs.lookup(v), searched.lookup(v));
+  }
+  for (double q : quantiles)
+  {
+    for (double v : new double[]{Math.nextDown(q), q, Math.nextUp(q)})
+    {
+      check(cs.lookup(v), searched.lookup(v));
+      Assert.assertEquals(cs.lookupPacked(v), searched.lookupPacked(v));
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void testLookupPacked() throws Exception
+{
+  ColorScale cs = ColorScale.createDefault();
+  cs.setScaling(ColorScale.Scaling.MinMax);
+  cs.setScaleRange(-10, 10);
+  cs.setTransparent(0.0);
+
+  for (double v = -12.0; v <= 12.0; v += 0.25)
+  {
+    int[] color = cs.lookup(v);
+    Assert.assertEquals((color[0] << 24) | (color[1] << 16) | (color[2] << 8) | color[3],
+        cs.lookupPacked(v));
+  }
+  Assert.assertEquals(0, cs.lookupPacked(0.0));
+  Assert.assertEquals(0, cs.lookupPacked(Double.NaN));
+}
+
 //private void dump(double value, int[] color)
 //{
 //  System.out.println("Color for value " + value + " is " +  color[0] + ", " + color[1] + ", " + color[2]);
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.colorscale.applier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.colorscale.ColorScale;
+import org.mrgeo.data.raster.MrGeoRaster;
+import org.mrgeo.junit.UnitTest;
+
+import java.awt.image.DataBuffer;
+import java.util.Random;
+
+@SuppressWarnings("all") // test code, not included in production
+public class ColorScaleApplierTest
+{
+private static final int width = 53;
+private static final int height = 37;
+
+private static final int[] datatypes = {DataBuffer.TYPE_BYTE, DataBuffer.TYPE_SHORT,
+    DataBuffer.TYPE_USHORT, DataBuffer.TYPE_INT, DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE};
+
+// random values from 0 - 255, with every 7th pixel nodata
+private static MrGeoRaster raster(int datatype, double nodata) throws Exception
+{
+  Random rand = new Random(datatype);
+  MrGeoRaster raster = MrGeoRaster.createEmptyRaster(width, height, 1, datatype);
+  for (int y = 0; y < height; y++)
+  {
+    for (int x = 0; x < width; x++)
+    {
+      if ((x + y * width) % 7 == 0)
+      {
+        raster.setPixel(x, y, 0, nodata);
+      }
+      else if (datatype == DataBuffer.TYPE_FLOAT || datatype == DataBuffer.TYPE_DOUBLE)
+      {
+        raster.setPixel(x, y, 0, rand.nextDouble() * 255.0);
+      }
+      else
+      {
+        raster.setPixel(x, y, 0, rand.nextInt(256));
+      }
+    }
+  }
+  return raster;
+}
+
+// every pixel is the color the color scale's lookup() gives
+private static void compare(MrGeoRaster raster, MrGeoRaster colored, ColorScale colorScale)
+{
+  for (int y = 0; y < height; y++)
+  {
+    for (int x = 0; x < width; x++)
+    {
+      int[] color = colorScale.lookup(raster.getPixelDouble(x, y, 0));
+      for (int b = 0; b < colored.bands(); b++)
+      {
+        Assert.assertEquals("(" + x + ", " + y + ") band " + b, color[b], colored.getPixelInt(x, y, b));
+      }
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void minMax() throws Exception
+{
+  for (int datatype : datatypes)
+  {
+    for (boolean force : new boolean[]{false, true})
+    {
+      MrGeoRaster raster = raster(datatype, 7);
+      ColorScale colorScale = ColorScale.createDefault();
+      colorScale.setScaling(ColorScale.Scaling.MinMax);
+      colorScale.setForceValuesIntoRange(force);
+
+      MrGeoRaster colored = new PngColorScaleApplier().applyColorScale(raster, colorScale,
+          new double[]{20, 200}, new double[]{7}, null);
+
+      Assert.assertEquals(4, colored.bands());
+      Assert.assertEquals(0, colored.getPixelInt(0, 0, 3));
+      compare(raster, colored, colorScale);
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void quantile() throws Exception
+{
+  for (int datatype : datatypes)
+  {
+    MrGeoRaster raster = raster(datatype, 100);
+    ColorScale colorScale = ColorScale.createDefault();
+    colorScale.setScaling(ColorScale.Scaling.Quantile);
+
+    MrGeoRaster colored = new PngColorScaleApplier().applyColorScale(raster, colorScale,
+        new double[]{0, 255}, new double[]{100}, new double[][]{{10, 50, 100, 180, 230}});
+
+    // nodata is transparent, even in the middle of the quantiles
+    Assert.assertEquals(0, colored.getPixelInt(0, 0, 3));
+    compare(raster, colored, colorScale);
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void jpeg() throws Exception
+{
+  MrGeoRaster raster = raster(DataBuffer.TYPE_FLOAT, Double.NaN);
+  ColorScale colorScale = ColorScale.createDefault();
+  MrGeoRaster colored = new JpegColorScaleApplier().applyColorScale(raster, colorScale,
+      new double[]{0, 255}, new double[]{Double.NaN}, null);
+
+  Assert.assertEquals(3, colored.bands());
+  compare(raster, colored, colorScale);
+}
+
+@Test
+@Category(UnitTest.class)
+public void valueRuns() throws Exception
+{
+  // runs of NaN nodata (with other NaN bit patterns among them), of signed zeros, and of values
+  double[] values = {Double.NaN, Double.NaN, 10, 10, Double.NaN, Double.longBitsToDouble(0x7ff0000000000001L),
+      Double.NaN, 0.0, -0.0, -0.0, 0.0, 200, 200, 200, Double.NaN};
+  for (int datatype : new int[]{DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE})
+  {
+    MrGeoRaster raster = MrGeoRaster.createEmptyRaster(values.length, 1, 1, datatype);
+    for (int x = 0; x < values.length; x++)
+    {
+      raster.setPixel(x, 0, 0, values[x]);
+    }
+
+    ColorScale colorScale = ColorScale.createDefault();
+    colorScale.setScaleRange(0, 255);
+
+    int[] colors = ColorScaleApplier.colorize(raster, colorScale);
+    for (int x = 0; x < values.length; x++)
+    {
+      Assert.assertEquals("type " + datatype + " pixel " + x, colorScale.lookupPacked(raster.getPixelDouble(x, 0, 0)),
+          colors[x]);
+    }
+  }
+}
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.raster;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.junit.UnitTest;
+import org.mrgeo.utils.tms.Bounds;
+
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+@SuppressWarnings("all") // test code, not included in production
+public class GeotiffStripWriterTest
+{
+private static final int width = 37;
+private static final int height = 23;
+private static final Bounds bounds = new Bounds(10, 20, 13.7, 22.3);
+
+// Every pixel (and band) gets a different value, as far as the data type allows
+private static MrGeoRaster image(int bands, int datatype) throws IOException
+{
+  MrGeoRaster image = MrGeoRaster.createEmptyRaster(width, height, bands, datatype);
+  for (int b = 0; b < bands; b++)
+  {
+    for (int y = 0; y < height; y++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        image.setPixel(x, y, b, (y * width + x + b * 1000) % ((datatype == DataBuffer.TYPE_BYTE) ? 256 : 100000));
+      }
+    }
+  }
+  return image;
+}
+
+// Writes the image a strip at a time, and checks the result
+private static byte[] write(int bands, int datatype, int rowsPerStrip, boolean big) throws IOException
+{
+  MrGeoRaster image = image(bands, datatype);
+
+  double[] nodatas = new double[bands];
+  Arrays.fill(nodatas, -9999);
+
+  ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  GeotiffStripWriter writer = new GeotiffStripWriter(width, height, bands, datatype, rowsPerStrip,
+      bounds, 4326, true, nodatas, big);
+
+  for (int y = 0; y < height; y += rowsPerStrip)
+  {
+    int rows = Math.min(rowsPerStrip, height - y);
+    writer.writeStrip(image.clip(0, y, width, rows), stream);
+  }
+  writer.finish(stream);
+
+  byte[] tiff = stream.toByteArray();
+  Assert.assertEquals(writer.getLength(), tiff.length);
+
+  compare(image, new Tiff(tiff));
+  return tiff;
+}
+
+private static void compare(MrGeoRaster image, Tiff tiff)
+{
+  Assert.assertEquals(width, tiff.value(256));
+  Assert.assertEquals(height, tiff.value(257));
+  Assert.assertEquals(1, tiff.value(259));
+  Assert.assertEquals(2, tiff.value(284));
+  Assert.assertEquals(image.bands(), tiff.value(277));
+  Assert.assertEquals(image.bytesPerPixel() * 8, tiff.value(258));
+
+  long rowsPerStrip = tiff.value(278);
+  long[] offsets = tiff.values(273);
+  long[] counts = tiff.values(279);
+  long strips = (height + rowsPerStrip - 1) / rowsPerStrip;
+  Assert.assertEquals(strips * image.bands(), offsets.length);
+
+  ByteBuffer data = ByteBuffer.wrap(tiff.bytes).order(ByteOrder.LITTLE_ENDIAN);
+  int bpp = image.bytesPerPixel();
+  for (int b = 0; b < image.bands(); b++)
+  {
+    for (int y = 0; y < height; y++)
+    {
+      int strip = (int) (y / rowsPerStrip);
+      int ndx = b * (int) strips + strip;
+      Assert.assertEquals(Math.min(rowsPerStrip, height - strip * rowsPerStrip) * width * bpp, counts[ndx]);
+      for (int x = 0; x < width; x++)
+      {
+        int offset = (int) (offsets[ndx] + ((y - strip * rowsPerStrip) * width + x) * bpp);
+        Assert.assertEquals("(" + x + ", " + y + ", " + b + ")", image.getPixelDouble(x, y, b),
+            read(data, offset, image.datatype()), 0);
+      }
+    }
+  }
+
+  // georeferencing
+  double[] scale = tiff.doubles(33550);
+  Assert.assertEquals(bounds.width() / width, scale[0], 1e-12);
+  Assert.assertEquals(bounds.height() / height, scale[1], 1e-12);
+  double[] tiepoint = tiff.doubles(33922);
+  Assert.assertEquals(bounds.w, tiepoint[3], 0);
+  Assert.assertEquals(bounds.n, tiepoint[4], 0);
+  long[] geokeys = tiff.values(34735);
+  Assert.assertEquals(2048, geokeys[12]);
+  Assert.assertEquals(4326, geokeys[15]);
+  Assert.assertEquals("-9999", tiff.string(42113));
+}
+
+private static double read(ByteBuffer data, int offset, int datatype)
+{
+  switch (datatype)
+  {
+  case DataBuffer.TYPE_BYTE:
+    return data.get(offset) & 0xff;
+  case DataBuffer.TYPE_SHORT:
+    return data.getShort(offset);
+  case DataBuffer.TYPE_USHORT:
+    return data.getShort(offset) & 0xffff;
+  case DataBuffer.TYPE_INT:
+    return data.getInt(offset);
+  case DataBuffer.TYPE_FLOAT:
+    return data.getFloat(offset);
+  default:
+    return data.getDouble(offset);
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void strips() throws IOException
+{
+  write(1, DataBuffer.TYPE_FLOAT, 5, false);
+  write(3, DataBuffer.TYPE_BYTE, 7, false);
+  write(2, DataBuffer.TYPE_SHORT, 1, false);
+  write(1, DataBuffer.TYPE_DOUBLE, 4, false);
+}
+
+@Test
+@Category(UnitTest.class)
+public void singleStrip() throws IOException
+{
+  write(4, DataBuffer.TYPE_INT, height, false);
+  write(1, DataBuffer.TYPE_USHORT, height * 10, false);
+}
+
+@Test
+@Category(UnitTest.class)
+public void bigTiff() throws IOException
+{
+  byte[] tiff = write(2, DataBuffer.TYPE_FLOAT, 6, true);
+  Assert.assertEquals(43, tiff[2]);
+}
+
+@Test
+@Category(UnitTest.class)
+public void bandNodata() throws IOException
+{
+  MrGeoRaster image = image(3, DataBuffer.TYPE_FLOAT);
+  image.setPixel(2, 3, 0, -9999);
+  image.setPixel(4, 5, 1, 0);
+  image.setPixel(6, 7, 2, Float.NaN);
+
+  ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  GeotiffStripWriter writer = new GeotiffStripWriter(width, height, 3, DataBuffer.TYPE_FLOAT, 4,
+      bounds, 4326, true, new double[]{-9999, 0, Double.NaN});
+  for (int y = 0; y < height; y += 4)
+  {
+    writer.writeStrip(image.clip(0, y, width, Math.min(4, height - y)), stream);
+  }
+  writer.finish(stream);
+
+  // the file's nodata is the first band's, the other bands' nodata pixels are changed to it
+  image.setPixel(4, 5, 1, -9999);
+  image.setPixel(6, 7, 2, -9999);
+  compare(image, new Tiff(stream.toByteArray()));
+}
+
+@Test
+@Category(UnitTest.class)
+public void badStrip() throws IOException
+{
+  ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  GeotiffStripWriter writer = new GeotiffStripWriter(width, height, 1, DataBuffer.TYPE_BYTE, 10,
+      bounds, 4326, true, 0);
+  try
+  {
+    writer.writeStrip(MrGeoRaster.createEmptyRaster(width, 9, 1, DataBuffer.TYPE_BYTE), stream);
+    Assert.fail("Expected an IOException");
+  }
+  catch (IOException ignored)
+  {
+  }
+
+  writer.writeStrip(MrGeoRaster.createEmptyRaster(width, 10, 1, DataBuffer.TYPE_BYTE), stream);
+  try
+  {
+    writer.finish(stream);
+    Assert.fail("Expected an IOException");
+  }
+  catch (IOException ignored)
+  {
+  }
+}
+
+// Just enough of a TIFF reader to check the tags
+private static class Tiff
+{
+  final byte[] bytes;
+  final Map<Integer, Object> tags = new HashMap<>();
+
+  Tiff(byte[] bytes)
+  {
+    this.bytes = bytes;
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    Assert.assertEquals('I', buffer.get(0));
+    Assert.assertEquals('I', buffer.get(1));
+
+    boolean big = buffer.getShort(2) == 43;
+    int pos = (int) (big ? buffer.getLong(8) : buffer.getInt(4));
+    long entries = big ? buffer.getLong(pos) : buffer.getShort(pos);
+    pos += big ? 8 : 2;
+
+    int last = 0;
+    for (int i = 0; i < entries; i++)
+    {
+      int tag = buffer.getShort(pos) & 0xffff;
+      int type = buffer.getShort(pos + 2);
+      int count = (int) (big ? buffer.getLong(pos + 4) : buffer.getInt(pos + 4));
+      int valuepos = pos + (big ? 12 : 8);
+
+      Assert.assertTrue("tags out of order", tag > last);
+      last = tag;
+
+      int size = count * ((type == 3) ? 2 : (type == 4) ? 4 : (type == 2) ? 1 : 8);
+      if (size > (big ? 8 : 4))
+      {
+        valuepos = (int) (big ? buffer.getLong(valuepos) : buffer.getInt(valuepos));
+      }
+
+      if (type == 2)
+      {
+        tags.put(tag, new String(bytes, valuepos, count - 1, StandardCharsets.US_ASCII));
+      }
+      else if (type == 12)
+      {
+        double[] values = new double[count];
+        for (int v = 0; v < count; v++)
+        {
+          values[v] = buffer.getDouble(valuepos + v * 8);
+        }
+        tags.put(tag, values);
+      }
+      else
+      {
+        long[] values = new long[count];
+        for (int v = 0; v < count; v++)
+        {
+          values[v] = (type == 3) ? buffer.getShort(valuepos + v * 2) & 0xffff :
+              (type == 4) ? buffer.getInt(valuepos + v * 4) & 0xffffffffL : buffer.getLong(valuepos + v * 8);
+        }
+        tags.put(tag, values);
+      }
+      pos += big ? 20 : 12;
+    }
+  }
+
+  long[] values(int tag)
+  {
+    return (long[]) tags.get(tag);
+  }
+
+  long value(int tag)
+  {
+    return values(tag)[0];
+  }
+
+  double[] doubles(int tag)
+  {
+    return (double[]) tags.get(tag);
+  }
+
+  String string(int tag)
+  {
+    return (String) tags.get(tag);
+  }
+}
+}
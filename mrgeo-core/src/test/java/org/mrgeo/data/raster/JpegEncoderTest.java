@@ -0,0 +1,112 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.raster;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.junit.UnitTest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+@SuppressWarnings("all") // test code, not included in production
+public class JpegEncoderTest
+{
+private static final int width = 96;
+private static final int height = 64;
+
+// smooth gradients, that a JPEG keeps close to the original
+private static MrGeoRaster raster(int bands) throws IOException
+{
+  MrGeoRaster raster = MrGeoRaster.createEmptyRaster(width, height, bands, DataBuffer.TYPE_BYTE);
+  for (int y = 0; y < height; y++)
+  {
+    for (int x = 0; x < width; x++)
+    {
+      raster.setPixel(x, y, 0, x * 2);
+      for (int b = 1; b < bands; b++)
+      {
+        raster.setPixel(x, y, b, (b == 1) ? y * 3 : (b == 2) ? 255 - x - y : 128);
+      }
+    }
+  }
+  return raster;
+}
+
+private static BufferedImage roundTrip(MrGeoRaster raster) throws IOException
+{
+  ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  new JpegEncoder(90).encode(raster, stream);
+  return ImageIO.read(new ByteArrayInputStream(stream.toByteArray()));
+}
+
+@Test
+@Category(UnitTest.class)
+public void rgb() throws IOException
+{
+  for (int bands : new int[]{3, 4})
+  {
+    MrGeoRaster raster = raster(bands);
+    BufferedImage image = roundTrip(raster);
+    Assert.assertEquals(width, image.getWidth());
+    Assert.assertEquals(height, image.getHeight());
+
+    double error = 0;
+    for (int y = 0; y < height; y++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        int rgb = image.getRGB(x, y);
+        error += Math.abs(((rgb >> 16) & 0xff) - raster.getPixelInt(x, y, 0));
+        error += Math.abs(((rgb >> 8) & 0xff) - raster.getPixelInt(x, y, 1));
+        error += Math.abs((rgb & 0xff) - raster.getPixelInt(x, y, 2));
+      }
+    }
+    Assert.assertTrue("mean error " + error / (width * height * 3), error / (width * height * 3) < 2.0);
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void gray() throws IOException
+{
+  MrGeoRaster raster = raster(1);
+  BufferedImage image = roundTrip(raster);
+  Assert.assertEquals(1, image.getRaster().getNumBands());
+
+  for (int y = 0; y < height; y += 5)
+  {
+    for (int x = 0; x < width; x += 5)
+    {
+      Assert.assertEquals(raster.getPixelInt(x, y, 0), image.getRaster().getSample(x, y, 0), 3);
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void canEncode() throws IOException
+{
+  Assert.assertTrue(JpegEncoder.canEncode(MrGeoRaster.createEmptyRaster(4, 4, 3, DataBuffer.TYPE_BYTE)));
+  Assert.assertFalse(JpegEncoder.canEncode(MrGeoRaster.createEmptyRaster(4, 4, 2, DataBuffer.TYPE_BYTE)));
+  Assert.assertFalse(JpegEncoder.canEncode(MrGeoRaster.createEmptyRaster(4, 4, 3, DataBuffer.TYPE_SHORT)));
+}
+}
@@ -213,6 +213,40 @@ public void scaleRasterNearestDouble() throws IOException
   }
 }
 
+@Test
+@Category(UnitTest.class)
+public void scaleRasterNearestMultiband() throws IOException
+{
+  // int, float and double rasters each have their own nearest neighbor loop
+  for (int type : new int[]{DataBuffer.TYPE_INT, DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE})
+  {
+    MrGeoRaster multiband = MrGeoRaster.createEmptyRaster(width, height, 3, type);
+    for (int b = 0; b < 3; b++)
+    {
+      for (int y = 0; y < height; y++)
+      {
+        for (int x = 0; x < width; x++)
+        {
+          multiband.setPixel(x, y, b, x + y * width + b * 1000);
+        }
+      }
+    }
+
+    // every band scales the same as it would on its own
+    for (int[] size : new int[][]{{width * 3, height * 3}, {width / 2, height / 2}, {width / 3, height / 3}})
+    {
+      MrGeoRaster scaled = multiband.scale(size[0], size[1], false,
+          new double[]{Double.NaN, Double.NaN, Double.NaN});
+      for (int b = 0; b < 3; b++)
+      {
+        MrGeoRaster band = multiband.clip(0, 0, width, height, b).scale(size[0], size[1], false,
+            new double[]{Double.NaN});
+        TestUtils.compareRasters(band, scaled.clip(0, 0, size[0], size[1], b));
+      }
+    }
+  }
+}
+
 @Test
 @Category(UnitTest.class)
 public void toRasterByte() throws IOException
@@ -273,6 +307,90 @@ public void toRasterDouble() throws IOException
   compareRaster(numberedDouble, raster);
 }
 
+@Test
+@Category(UnitTest.class)
+public void readWriteBand() throws IOException
+{
+  int[] types = {DataBuffer.TYPE_BYTE, DataBuffer.TYPE_SHORT, DataBuffer.TYPE_USHORT,
+      DataBuffer.TYPE_INT, DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE};
+
+  for (int type : types)
+  {
+    MrGeoRaster numbered = TestUtils.createNumberedRaster(width, height, type);
+
+    double[] samples = new double[width * height];
+    numbered.readBand(0, samples);
+
+    for (int y = 0; y < height; y++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        Assert.assertEquals("Bad pixel (type " + type + ") px: " + x + " py: " + y,
+            numbered.getPixelDouble(x, y, 0), samples[y * width + x], 0);
+      }
+    }
+
+    MrGeoRaster copy = numbered.createCompatibleRaster(width, height);
+    copy.writeBand(0, samples);
+
+    TestUtils.compareRasters(numbered, copy);
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void mapBand() throws IOException
+{
+  MrGeoRaster raster = TestUtils.createNumberedRaster(width, height, DataBuffer.TYPE_FLOAT);
+  raster.mapBand(0, v -> v * 2);
+
+  for (int y = 0; y < height; y++)
+  {
+    for (int x = 0; x < width; x++)
+    {
+      Assert.assertEquals("Bad pixel px: " + x + " py: " + y,
+          numberedFloat.getPixelFloat(x, y, 0) * 2, raster.getPixelFloat(x, y, 0), 0);
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void mosaicFloat() throws IOException
+{
+  double nodata = Double.NaN;
+  MrGeoRaster dst = MrGeoRaster.createEmptyRaster(width, height, 1, DataBuffer.TYPE_FLOAT, nodata);
+  MrGeoRaster src = TestUtils.createNumberedRaster(width, height, DataBuffer.TYPE_FLOAT);
+  src.setPixel(0, 0, 0, Float.NaN);
+
+  dst.mosaic(src, new double[]{nodata});
+
+  Assert.assertTrue(Float.isNaN(dst.getPixelFloat(0, 0, 0)));
+  for (int y = 0; y < height; y++)
+  {
+    for (int x = (y == 0 ? 1 : 0); x < width; x++)
+    {
+      Assert.assertEquals(src.getPixelFloat(x, y, 0), dst.getPixelFloat(x, y, 0), 0);
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void mosaicByte() throws IOException
+{
+  double nodata = 255;
+  MrGeoRaster dst = MrGeoRaster.createEmptyRaster(width, height, 1, DataBuffer.TYPE_BYTE, nodata);
+  dst.setPixel(0, 0, 0, (byte) 7);
+  MrGeoRaster src = TestUtils.createConstRaster(width, height, DataBuffer.TYPE_BYTE, 3);
+
+  dst.mosaic(src, new double[]{nodata});
+
+  Assert.assertEquals(7, dst.getPixelInt(0, 0, 0));
+  Assert.assertEquals(3, dst.getPixelInt(1, 0, 0));
+  Assert.assertEquals(3, dst.getPixelInt(width - 1, height - 1, 0));
+}
+
 private void compareRaster(MrGeoRaster mrgeoraster, Raster raster)
 {
   boolean intish = mrgeoraster.datatype() == DataBuffer.TYPE_BYTE || mrgeoraster.datatype() == DataBuffer.TYPE_INT
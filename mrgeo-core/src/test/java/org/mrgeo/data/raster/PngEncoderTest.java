@@ -0,0 +1,241 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.raster;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.junit.UnitTest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+@SuppressWarnings("all") // test code, not included in production
+public class PngEncoderTest
+{
+private static final int width = 67;
+private static final int height = 45;
+
+// colors random values, otherwise one of 5 colors
+private static MrGeoRaster raster(int bands, boolean random) throws IOException
+{
+  Random rand = new Random(bands);
+  MrGeoRaster raster = MrGeoRaster.createEmptyRaster(width, height, bands, DataBuffer.TYPE_BYTE);
+  for (int y = 0; y < height; y++)
+  {
+    for (int x = 0; x < width; x++)
+    {
+      int color = random ? rand.nextInt() : ((x / 10 + y / 10) % 5) * 0x30405060;
+      for (int b = 0; b < bands; b++)
+      {
+        raster.setPixel(x, y, b, (color >>> (b * 8)) & 0xff);
+      }
+    }
+  }
+  return raster;
+}
+
+private static byte[] encode(PngEncoder encoder, MrGeoRaster raster, double[] nodatas) throws IOException
+{
+  ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  encoder.encode(raster, nodatas, stream);
+  return stream.toByteArray();
+}
+
+private static int colorType(byte[] png)
+{
+  // signature (8), IHDR length and type (8), width and height (8), bit depth (1)
+  return png[25];
+}
+
+private static boolean hasChunk(byte[] png, String type)
+{
+  return new String(png, StandardCharsets.ISO_8859_1).contains(type);
+}
+
+private static void compare(MrGeoRaster raster, byte[] png, int[] transparent) throws IOException
+{
+  BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+  Assert.assertEquals(width, image.getWidth());
+  Assert.assertEquals(height, image.getHeight());
+
+  int bands = raster.bands();
+  for (int y = 0; y < height; y++)
+  {
+    for (int x = 0; x < width; x++)
+    {
+      int r = raster.getPixelInt(x, y, 0);
+      int g = (bands >= 3) ? raster.getPixelInt(x, y, 1) : r;
+      int b = (bands >= 3) ? raster.getPixelInt(x, y, 2) : r;
+      int a = (bands == 4) ? raster.getPixelInt(x, y, 3) : (bands == 2) ? raster.getPixelInt(x, y, 1) : 255;
+      if (transparent != null && r == transparent[0] && g == transparent[1] && b == transparent[2])
+      {
+        a = 0;
+      }
+
+      if (bands < 3)
+      {
+        // getRGB() would convert the gray color space to sRGB
+        Assert.assertEquals("gray (" + x + ", " + y + ")", r, image.getRaster().getSample(x, y, 0));
+        if (bands == 2)
+        {
+          Assert.assertEquals("alpha (" + x + ", " + y + ")", a, image.getRaster().getSample(x, y, 1));
+        }
+        continue;
+      }
+
+      int argb = image.getRGB(x, y);
+      Assert.assertEquals("alpha (" + x + ", " + y + ")", a, argb >>> 24);
+      if (a != 0)
+      {
+        Assert.assertEquals("color (" + x + ", " + y + ")", (r << 16) | (g << 8) | b, argb & 0xffffff);
+      }
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void rgba() throws IOException
+{
+  MrGeoRaster raster = raster(4, true);
+  byte[] png = encode(new PngEncoder(), raster, null);
+
+  Assert.assertEquals(6, colorType(png));
+  compare(raster, png, null);
+}
+
+@Test
+@Category(UnitTest.class)
+public void rgb() throws IOException
+{
+  MrGeoRaster raster = raster(3, true);
+  byte[] png = encode(new PngEncoder(), raster, null);
+
+  Assert.assertEquals(2, colorType(png));
+  Assert.assertFalse(hasChunk(png, "tRNS"));
+  compare(raster, png, null);
+
+  // the nodata color is transparent
+  png = encode(new PngEncoder(), raster, new double[]{1, 2, 3});
+  Assert.assertEquals(2, colorType(png));
+  Assert.assertTrue(hasChunk(png, "tRNS"));
+
+  // not every band has a byte nodata value
+  png = encode(new PngEncoder(), raster, new double[]{1, 2, Double.NaN});
+  Assert.assertFalse(hasChunk(png, "tRNS"));
+}
+
+@Test
+@Category(UnitTest.class)
+public void grayAndAlpha() throws IOException
+{
+  for (int bands = 1; bands <= 2; bands++)
+  {
+    MrGeoRaster raster = raster(bands, true);
+    byte[] png = encode(new PngEncoder(), raster, null);
+
+    Assert.assertEquals(bands == 1 ? 0 : 4, colorType(png));
+    compare(raster, png, null);
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void palette() throws IOException
+{
+  MrGeoRaster raster = raster(4, false);
+  byte[] png = encode(new PngEncoder(), raster, null);
+
+  Assert.assertEquals(3, colorType(png));
+  Assert.assertTrue(hasChunk(png, "tRNS"));
+  compare(raster, png, null);
+
+  raster = raster(3, false);
+  int[] nodata = {0xc0, 0xa0, 0x80}; // the color of (20, 0), 0x30405060 * 2
+  png = encode(new PngEncoder(), raster, new double[]{nodata[0], nodata[1], nodata[2]});
+
+  Assert.assertEquals(3, colorType(png));
+  Assert.assertEquals(0, ImageIO.read(new ByteArrayInputStream(png)).getRGB(20, 0) >>> 24);
+  compare(raster, png, nodata);
+
+  // without the palette
+  png = encode(new PngEncoder(6, PngEncoder.Filter.UP, false), raster, null);
+  Assert.assertEquals(2, colorType(png));
+  compare(raster, png, null);
+}
+
+@Test
+@Category(UnitTest.class)
+public void filters() throws IOException
+{
+  MrGeoRaster raster = raster(4, true);
+  for (PngEncoder.Filter filter : PngEncoder.Filter.values())
+  {
+    for (int level = 0; level <= 9; level += 3)
+    {
+      compare(raster, encode(new PngEncoder(level, filter, false), raster, null), null);
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void largeImage() throws IOException
+{
+  // more than one IDAT chunk
+  MrGeoRaster raster = MrGeoRaster.createEmptyRaster(512, 512, 3, DataBuffer.TYPE_BYTE);
+  Random rand = new Random(1);
+  for (int b = 0; b < 3; b++)
+  {
+    for (int y = 0; y < 512; y++)
+    {
+      for (int x = 0; x < 512; x++)
+      {
+        raster.setPixel(x, y, b, rand.nextInt(256));
+      }
+    }
+  }
+
+  ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  new PngEncoder().encode(raster, null, stream);
+
+  BufferedImage image = ImageIO.read(new ByteArrayInputStream(stream.toByteArray()));
+  for (int y = 0; y < 512; y += 7)
+  {
+    for (int x = 0; x < 512; x += 5)
+    {
+      Assert.assertEquals((raster.getPixelInt(x, y, 0) << 16) | (raster.getPixelInt(x, y, 1) << 8) |
+          raster.getPixelInt(x, y, 2), image.getRGB(x, y) & 0xffffff);
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void canEncode() throws IOException
+{
+  Assert.assertTrue(PngEncoder.canEncode(MrGeoRaster.createEmptyRaster(4, 4, 4, DataBuffer.TYPE_BYTE)));
+  Assert.assertFalse(PngEncoder.canEncode(MrGeoRaster.createEmptyRaster(4, 4, 5, DataBuffer.TYPE_BYTE)));
+  Assert.assertFalse(PngEncoder.canEncode(MrGeoRaster.createEmptyRaster(4, 4, 1, DataBuffer.TYPE_FLOAT)));
+}
+}
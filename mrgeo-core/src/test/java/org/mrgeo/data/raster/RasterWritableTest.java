@@ -31,6 +31,8 @@ import org.mrgeo.test.TestUtils;
 
 import java.awt.image.DataBuffer;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
 
 /* This test handles all four cases of RasterWritable:
  * 1. No Compression and No Payload
@@ -80,6 +82,172 @@ public void testNoCompressNoPayloadRaster() throws IOException
   testRaster("testNoCompressNoPayloadRaster");
 }
 
+@Test
+@Category(UnitTest.class)
+public void testCodecsRoundTrip() throws IOException
+{
+  int[] types = {DataBuffer.TYPE_BYTE, DataBuffer.TYPE_SHORT, DataBuffer.TYPE_USHORT,
+      DataBuffer.TYPE_INT, DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE};
+
+  Random rand = new Random(42);
+  for (int type : types)
+  {
+    MrGeoRaster smooth = MrGeoRaster.createEmptyRaster(64, 48, 2, type);
+    MrGeoRaster noisy = MrGeoRaster.createEmptyRaster(64, 48, 2, type);
+    for (int b = 0; b < 2; b++)
+    {
+      for (int y = 0; y < 48; y++)
+      {
+        for (int x = 0; x < 64; x++)
+        {
+          smooth.setPixel(x, y, b, 20 + x * 0.5 + y * 0.25 + b);
+          noisy.setPixel(x, y, b, rand.nextInt(120));
+        }
+      }
+    }
+
+    for (RasterCodec codec : RasterCodec.values())
+    {
+      for (boolean predictor : new boolean[]{false, true})
+      {
+        for (MrGeoRaster raster : new MrGeoRaster[]{smooth, noisy})
+        {
+          RasterWritable rw = RasterWritable.toWritable(raster, codec, predictor);
+          Assert.assertTrue(codec + " grew the tile", rw.getSize() <= raster.datalength());
+
+          MrGeoRaster decoded = RasterWritable.toMrGeoRaster(rw);
+          TestUtils.compareRasters(raster, decoded);
+        }
+      }
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void testCodecsShrinkTiles() throws IOException
+{
+  MrGeoRaster smooth = MrGeoRaster.createEmptyRaster(128, 128, 1, DataBuffer.TYPE_FLOAT);
+  for (int y = 0; y < 128; y++)
+  {
+    for (int x = 0; x < 128; x++)
+    {
+      smooth.setPixel(x, y, 0, 1000 + x + 2 * y);
+    }
+  }
+
+  int raw = RasterWritable.toWritable(smooth, RasterCodec.NONE, false).getSize();
+  Assert.assertEquals(smooth.datalength(), raw);
+
+  // a smooth surface compresses much better with the predictor
+  int deflated = RasterWritable.toWritable(smooth, RasterCodec.DEFLATE, false).getSize();
+  int predicted = RasterWritable.toWritable(smooth, RasterCodec.DEFLATE, true).getSize();
+  Assert.assertTrue(deflated < raw);
+  Assert.assertTrue(predicted < deflated);
+  Assert.assertTrue(RasterWritable.toWritable(smooth, RasterCodec.LZ4, true).getSize() < raw);
+
+  // the constant short form is only the header and a value per band
+  for (RasterCodec codec : new RasterCodec[]{RasterCodec.CONSTANT, RasterCodec.LZ4, RasterCodec.DEFLATE})
+  {
+    RasterWritable rw = RasterWritable.toWritable(srcRaster, codec, true);
+    Assert.assertTrue(codec.toString(), rw.getSize() < 32);
+    TestUtils.compareRasterToConstant(RasterWritable.toMrGeoRaster(rw), PIXEL_VALUE, -1);
+  }
+
+  // a non-constant tile with CONSTANT is left raw
+  Assert.assertEquals(raw, RasterWritable.toWritable(smooth, RasterCodec.CONSTANT, true).getSize());
+}
+
+@Test
+@Category(UnitTest.class)
+public void testEncodedSequenceFile() throws IOException
+{
+  Path rasterFilePath = new Path(outputHdfs, "rasterEncoded.seq");
+
+  FileSystem fs = rasterFilePath.getFileSystem(conf);
+  SequenceFile.Writer writer =
+      SequenceFile.createWriter(fs, conf, rasterFilePath, TileIdWritable.class, RasterWritable.class);
+
+  RasterCodec[] codecs = RasterCodec.values();
+  for (int i = 0; i < codecs.length; i++)
+  {
+    writer.append(new TileIdWritable(i), RasterWritable.toWritable(TestUtils.createConstRaster(RASTER_SIZE,
+        RASTER_SIZE, DataBuffer.TYPE_FLOAT, i), codecs[i], true));
+  }
+  writer.close();
+
+  TileIdWritable foundKey = new TileIdWritable();
+  RasterWritable foundValue = new RasterWritable();
+  SequenceFile.Reader reader = new SequenceFile.Reader(fs, rasterFilePath, conf);
+  int found = 0;
+  while (reader.next(foundKey, foundValue))
+  {
+    Assert.assertEquals(found, foundKey.get());
+    TestUtils.compareRasterToConstant(RasterWritable.toMrGeoRaster(foundValue), found, -1);
+    found++;
+  }
+  reader.close();
+  Assert.assertEquals(codecs.length, found);
+}
+
+@Test
+@Category(UnitTest.class)
+public void testConstantPixel() throws IOException
+{
+  // the constant codec writes constant tiles in their short form
+  RasterWritable rw = RasterWritable.toWritable(srcRaster, RasterCodec.CONSTANT, false);
+  Assert.assertTrue(rw.getSize() < 32);
+  Assert.assertEquals(RASTER_SIZE, RasterWritable.getWidth(rw));
+  Assert.assertEquals(RASTER_SIZE, RasterWritable.getHeight(rw));
+
+  MrGeoRaster pixel = RasterWritable.toConstantPixel(rw);
+  Assert.assertNotNull(pixel);
+  Assert.assertEquals(1, pixel.width());
+  Assert.assertEquals(1, pixel.height());
+  Assert.assertEquals(DataBuffer.TYPE_FLOAT, pixel.datatype());
+  Assert.assertEquals(PIXEL_VALUE, pixel.getPixelDouble(0, 0, 0), 0.0);
+
+  // the pixel expands back to a full tile of any size
+  RasterWritable wide = RasterWritable.fromConstantPixel(pixel, 20, 7);
+  Assert.assertEquals(20, RasterWritable.getWidth(wide));
+  Assert.assertEquals(7, RasterWritable.getHeight(wide));
+  MrGeoRaster expanded = RasterWritable.toMrGeoRaster(wide);
+  Assert.assertEquals(20, expanded.width());
+  Assert.assertEquals(7, expanded.height());
+  TestUtils.compareRasterToConstant(expanded, PIXEL_VALUE, -1);
+
+  // non-constant (and unencoded) tiles have no constant pixel
+  MrGeoRaster ramp = MrGeoRaster.createEmptyRaster(RASTER_SIZE, RASTER_SIZE, 1, DataBuffer.TYPE_FLOAT);
+  for (int x = 0; x < RASTER_SIZE; x++)
+  {
+    ramp.setPixel(x, 0, 0, x);
+  }
+  Assert.assertNull(RasterWritable.toConstantPixel(RasterWritable.toWritable(ramp)));
+  RasterWritable raw = RasterWritable.toWritable(srcRaster, RasterCodec.NONE, false);
+  Assert.assertNull(RasterWritable.toConstantPixel(raw));
+  Assert.assertEquals(RASTER_SIZE, RasterWritable.getWidth(raw));
+}
+
+@Test
+@Category(UnitTest.class)
+public void testStored() throws IOException
+{
+  // tiles are written raw by default
+  Assert.assertEquals(RasterCodec.NONE, RasterWritable.getDefaultCodec());
+  Assert.assertNull(RasterWritable.toConstantPixel(RasterWritable.toWritable(srcRaster)));
+
+  // a constant tile made by an op is stored raw, unless the codec uses the short form
+  RasterWritable constant = RasterWritable.toWritable(srcRaster, RasterCodec.CONSTANT, false);
+  RasterWritable stored = RasterWritable.toStored(constant, RasterCodec.NONE);
+  Assert.assertNull(RasterWritable.toConstantPixel(stored));
+  Assert.assertTrue(Arrays.equals(RasterWritable.toWritable(srcRaster, RasterCodec.NONE, false).copyBytes(),
+      stored.copyBytes()));
+  Assert.assertSame(constant, RasterWritable.toStored(constant, RasterCodec.CONSTANT));
+
+  RasterWritable raw = RasterWritable.toWritable(srcRaster, RasterCodec.NONE, false);
+  Assert.assertSame(raw, RasterWritable.toStored(raw, RasterCodec.NONE));
+}
+
 private void testRaster(String testName) throws IOException
 {
   Path rasterFilePath = new Path(outputHdfs, "raster" + testName + ".seq");
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.data.rdd;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.data.tile.TileIdWritable;
+import org.mrgeo.junit.UnitTest;
+
+import java.io.*;
+
+@SuppressWarnings("all") // test code, not included in production
+public class TileRangePartitionerTest
+{
+static private long[] starts = new long[]{1L, 6L, 20L, 31L};
+static private long[] ends = new long[]{5L, 15L, 30L, 50L};
+
+@Test
+@Category(UnitTest.class)
+public void numPartitions()
+{
+  TileRangePartitioner partitioner = new TileRangePartitioner(starts, ends);
+
+  Assert.assertEquals("Partitions not correct", starts.length, partitioner.numPartitions());
+}
+
+@Test
+@Category(UnitTest.class)
+public void getPartition()
+{
+  TileRangePartitioner partitioner = new TileRangePartitioner(starts, ends);
+
+  Assert.assertEquals(0, partitioner.getPartition(new TileIdWritable(0)));
+  Assert.assertEquals(0, partitioner.getPartition(new TileIdWritable(1)));
+  Assert.assertEquals(0, partitioner.getPartition(new TileIdWritable(5)));
+  Assert.assertEquals(1, partitioner.getPartition(new TileIdWritable(6)));
+  Assert.assertEquals(1, partitioner.getPartition(new TileIdWritable(15)));
+  Assert.assertEquals(2, partitioner.getPartition(new TileIdWritable(16)));
+  Assert.assertEquals(2, partitioner.getPartition(new TileIdWritable(30)));
+  Assert.assertEquals(3, partitioner.getPartition(new TileIdWritable(31)));
+  Assert.assertEquals(3, partitioner.getPartition(new TileIdWritable(50)));
+  Assert.assertEquals(3, partitioner.getPartition(new TileIdWritable(1000)));
+}
+
+@Test
+@Category(UnitTest.class)
+public void equality()
+{
+  TileRangePartitioner partitioner = new TileRangePartitioner(starts, ends);
+  TileRangePartitioner same = new TileRangePartitioner(starts.clone(), ends.clone());
+  TileRangePartitioner different = new TileRangePartitioner(new long[]{1L, 6L}, new long[]{5L, 50L});
+
+  Assert.assertEquals(partitioner, same);
+  Assert.assertEquals(partitioner.hashCode(), same.hashCode());
+  Assert.assertFalse(partitioner.equals(different));
+}
+
+@Test
+@Category(UnitTest.class)
+public void externalizable() throws IOException, ClassNotFoundException
+{
+  TileRangePartitioner partitioner = new TileRangePartitioner(starts, ends);
+
+  ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  ObjectOutputStream out = new ObjectOutputStream(bytes);
+  out.writeObject(partitioner);
+  out.close();
+
+  ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+  TileRangePartitioner read = (TileRangePartitioner) in.readObject();
+  in.close();
+
+  Assert.assertEquals(partitioner, read);
+  Assert.assertEquals(2, read.getPartition(new TileIdWritable(25)));
+}
+}
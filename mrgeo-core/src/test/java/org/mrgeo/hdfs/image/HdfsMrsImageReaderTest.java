@@ -35,6 +35,7 @@ import org.mrgeo.utils.tms.Bounds;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
 @SuppressWarnings("all") // test code, not included in production
 public class HdfsMrsImageReaderTest extends LocalRunnerTest
@@ -108,6 +109,34 @@ public void testGetZoomlevel() throws Exception
   Assert.assertEquals("Bad zoom level!", zoomlevel, reader.getZoomlevel());
 }
 
+@Test
+@Category(UnitTest.class)
+public void testGetBatch() throws Exception
+{
+  // all the tiles (over several partitions), out of order, and a couple that don't exist
+  long[] tileids = new long[resultTiles.length + 2];
+  for (int i = 0; i < resultTiles.length; i++)
+  {
+    tileids[i] = resultTiles[resultTiles.length - 1 - i];
+  }
+  tileids[resultTiles.length] = 1;
+  tileids[resultTiles.length + 1] = 209814;
+
+  Assert.assertTrue("Expected several partitions", reader.getMaxPartitions() > 1);
+
+  Map<Long, MrGeoRaster> tiles = reader.get(tileids);
+  Assert.assertEquals("Wrong number of items", resultTiles.length, tiles.size());
+
+  for (long tileid : resultTiles)
+  {
+    MrGeoRaster expected = reader.get(new TileIdWritable(tileid));
+    MrGeoRaster tile = tiles.get(tileid);
+
+    Assert.assertNotNull("Missing tileid: " + tileid, tile);
+    TestUtils.compareRasters(expected, tile);
+  }
+}
+
 @Test
 @Category(UnitTest.class)
 public void testGetAllRect() throws Exception
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.hdfs.image;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.junit.UnitTest;
+
+@SuppressWarnings("all") // test code, not included in production
+public class HdfsTileCacheTest
+{
+
+@Test
+@Category(UnitTest.class)
+public void getPut()
+{
+  HdfsTileCache cache = new HdfsTileCache(1024, false);
+
+  Assert.assertNull(cache.get("pyramid", 10, 1));
+
+  cache.put("pyramid", 10, 1, new byte[]{1, 2, 3});
+
+  byte[] bytes = cache.get("pyramid", 10, 1);
+  Assert.assertEquals(3, bytes.length);
+  Assert.assertEquals(2, bytes[1]);
+
+  Assert.assertNull(cache.get("pyramid", 11, 1));
+  Assert.assertNull(cache.get("other", 10, 1));
+
+  Assert.assertEquals(1, cache.stats().hitCount());
+  Assert.assertEquals(3, cache.stats().missCount());
+}
+
+@Test
+@Category(UnitTest.class)
+public void getReturnsCopy()
+{
+  HdfsTileCache cache = new HdfsTileCache(1024, false);
+  cache.put("pyramid", 10, 1, new byte[]{1, 2, 3});
+
+  cache.get("pyramid", 10, 1)[0] = 42;
+  Assert.assertEquals(1, cache.get("pyramid", 10, 1)[0]);
+}
+
+@Test
+@Category(UnitTest.class)
+public void offheap()
+{
+  HdfsTileCache cache = new HdfsTileCache(1024, true);
+  cache.put("pyramid", 10, 1, new byte[]{1, 2, 3});
+
+  byte[] bytes = cache.get("pyramid", 10, 1);
+  Assert.assertEquals(3, bytes.length);
+  Assert.assertEquals(3, bytes[2]);
+
+  // reading twice needs to give back the same data
+  Assert.assertEquals(3, cache.get("pyramid", 10, 1).length);
+}
+
+@Test
+@Category(UnitTest.class)
+public void evictsBySize()
+{
+  // a single segment, otherwise each segment only gets a share of the bytes
+  HdfsTileCache cache = new HdfsTileCache(1000, false, 1);
+
+  for (int i = 0; i < 10; i++)
+  {
+    cache.put("pyramid", 10, i, new byte[300]);
+  }
+
+  // the last 3 fit
+  Assert.assertEquals(3, cache.size());
+  Assert.assertEquals(7, cache.stats().evictionCount());
+  for (int i = 0; i < 7; i++)
+  {
+    Assert.assertNull("Tile " + i + " should have been evicted", cache.get("pyramid", 10, i));
+  }
+
+  // the least recently used goes first
+  Assert.assertNotNull(cache.get("pyramid", 10, 7));
+  cache.put("pyramid", 10, 10, new byte[300]);
+
+  Assert.assertNotNull(cache.get("pyramid", 10, 7));
+  Assert.assertNull(cache.get("pyramid", 10, 8));
+  Assert.assertNotNull(cache.get("pyramid", 10, 9));
+  Assert.assertNotNull(cache.get("pyramid", 10, 10));
+
+  // too big to cache at all
+  cache.put("pyramid", 10, 11, new byte[1001]);
+  Assert.assertNull(cache.get("pyramid", 10, 11));
+  Assert.assertEquals(3, cache.size());
+}
+
+@Test
+@Category(UnitTest.class)
+public void invalidate()
+{
+  HdfsTileCache cache = new HdfsTileCache(1024, false);
+  cache.put("pyramid", 10, 1, new byte[]{1});
+  cache.put("pyramid", 11, 1, new byte[]{1});
+  cache.put("other", 10, 1, new byte[]{1});
+
+  cache.invalidate("pyramid");
+
+  Assert.assertNull(cache.get("pyramid", 10, 1));
+  Assert.assertNull(cache.get("pyramid", 11, 1));
+  Assert.assertNotNull(cache.get("other", 10, 1));
+}
+}
@@ -16,6 +16,8 @@ import org.mrgeo.hdfs.utils.FileStatusBuilder;
 import org.mrgeo.hdfs.utils.FileSystemBuilder;
 import org.mrgeo.hdfs.utils.MapFileReaderBuilder;
 import org.mrgeo.junit.UnitTest;
+import org.mrgeo.utils.tms.TMSUtils;
+import org.mrgeo.utils.tms.TileOrder;
 
 import java.io.*;
 import java.nio.ByteBuffer;
@@ -216,6 +218,73 @@ public void testReadSplitsVersion3() throws Exception
   verifySplit(split3, splits, 1);
 }
 
+@Test
+@Category(UnitTest.class)
+public void testWriteAndReadSplitsTileOrder() throws Exception
+{
+  // z-order at zoom 3, split1 is the lower left 4x4 block, split2 the lower right one
+  int zoom = 3;
+  subject = new FileSplit();
+  subject.generateSplits(new long[]{0, 16}, new long[]{15, 31}, new String[]{"split1", "split2"});
+  subject.setTileOrder(TileOrder.ZORDER, zoom);
+
+  ByteArrayOutputStream out = new ByteArrayOutputStream();
+  subject.writeSplits(out);
+
+  FileSplit read = new FileSplit();
+  read.readSplits(new ByteArrayInputStream(out.toByteArray()));
+
+  Assert.assertEquals(TileOrder.ZORDER, read.getTileOrder());
+  Assert.assertEquals(zoom, read.getZoomLevel());
+  Assert.assertEquals(2, read.getSplits().length);
+
+  // lookups are by (row major) tile id
+  Assert.assertEquals(0, read.getSplitIndex(TMSUtils.tileid(3, 3, zoom)));
+  Assert.assertEquals(1, read.getSplitIndex(TMSUtils.tileid(4, 0, zoom)));
+  Assert.assertEquals(1, read.getSplitIndex(TMSUtils.tileid(7, 3, zoom)));
+}
+
+@Test
+@Category(UnitTest.class)
+public void testExternalizeTileOrder() throws Exception
+{
+  int zoom = 3;
+  subject = new FileSplit();
+  subject.generateSplits(new long[]{0, 16}, new long[]{15, 31}, new String[]{"split1", "split2"});
+  subject.setTileOrder(TileOrder.ZORDER, zoom);
+
+  ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+  {
+    subject.writeExternal(out);
+  }
+
+  FileSplit read = new FileSplit();
+  try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+  {
+    read.readExternal(in);
+  }
+
+  Assert.assertEquals(TileOrder.ZORDER, read.getTileOrder());
+  Assert.assertEquals(zoom, read.getZoomLevel());
+  Assert.assertEquals(2, read.getSplits().length);
+  Assert.assertEquals(1, read.getSplitIndex(TMSUtils.tileid(4, 0, zoom)));
+}
+
+@Test
+@Category(UnitTest.class)
+public void testWriteSplitsRowMajorIsVersion3() throws Exception
+{
+  subject = new FileSplit();
+  subject.generateSplits(new long[]{0}, new long[]{15}, new String[]{"split1"});
+
+  ByteArrayOutputStream out = new ByteArrayOutputStream();
+  subject.writeSplits(out);
+
+  Scanner scanner = new Scanner(new ByteArrayInputStream(out.toByteArray()));
+  Assert.assertEquals("v3", scanner.nextLine());
+}
+
 @Test
 @Category(UnitTest.class)
 public void testReadSplitsByStreamVersion2()
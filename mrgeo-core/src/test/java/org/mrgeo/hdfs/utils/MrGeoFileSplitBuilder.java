@@ -2,6 +2,7 @@ package org.mrgeo.hdfs.utils;
 
 import org.mrgeo.hdfs.tile.FileSplit;
 import org.mrgeo.hdfs.tile.FileSplit.FileSplitInfo;
+import org.mrgeo.utils.tms.TileOrder;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -33,6 +34,7 @@ public FileSplit build()
 {
   FileSplitInfo[] splitsArray = new FileSplitInfo[splits.size()];
   when(fileSplit.getSplits()).thenReturn(splits.toArray(splitsArray));
+  when(fileSplit.getTileOrder()).thenReturn(TileOrder.ROW_MAJOR);
   return fileSplit;
 }
 }
@@ -16,6 +16,7 @@ import org.mrgeo.utils.GDALUtils;
 import org.mrgeo.utils.LongRectangle;
 import org.mrgeo.utils.tms.Bounds;
 import org.mrgeo.utils.tms.TMSUtils;
+import org.mrgeo.utils.tms.TileBounds;
 
 import java.awt.image.DataBuffer;
 import java.io.IOException;
@@ -264,4 +265,75 @@ public void ingestBigtile() throws IOException
   }
 }
 
+@Test
+@Category(UnitTest.class)
+public void splitWindowsOnBlocks() throws IOException
+{
+  TileBounds tiles = new TileBounds(10, 20, 109, 119);
+  TileBounds[] windows = IngestImage.splitWindows(tiles, 4, 4, false, 100);
+
+  // 8 x 12 windows (multiples of the 4 x 4 blocks), the last row and column are cut off by the tiles
+  Assert.assertEquals(13 * 9, windows.length);
+  for (TileBounds window : windows)
+  {
+    Assert.assertTrue("too big: " + window, window.width() * window.height() <= 100);
+    Assert.assertEquals(0, (window.w - tiles.w) % 8);
+    Assert.assertEquals(0, (tiles.n - window.n) % 12);
+  }
+  verifyCoverage(tiles, windows);
+}
+
+@Test
+@Category(UnitTest.class)
+public void splitWindowsOnStrips() throws IOException
+{
+  TileBounds tiles = new TileBounds(10, 20, 109, 119);
+  TileBounds[] windows = IngestImage.splitWindows(tiles, 100, 1, true, 250);
+
+  // full width strips, 2 tiles high
+  Assert.assertEquals(50, windows.length);
+  for (TileBounds window : windows)
+  {
+    Assert.assertEquals(tiles.width(), window.width());
+    Assert.assertEquals(2, window.height());
+  }
+  verifyCoverage(tiles, windows);
+}
+
+@Test
+@Category(UnitTest.class)
+public void splitWindowsSmallerThanBlock() throws IOException
+{
+  TileBounds tiles = new TileBounds(0, 0, 9, 4);
+  TileBounds[] windows = IngestImage.splitWindows(tiles, 4, 4, false, 1);
+
+  // the budget wins over the blocks, a tile at a time
+  Assert.assertEquals(50, windows.length);
+  verifyCoverage(tiles, windows);
+}
+
+// every tile is in exactly one window
+private static void verifyCoverage(TileBounds tiles, TileBounds[] windows)
+{
+  int[][] count = new int[(int) tiles.height()][(int) tiles.width()];
+  for (TileBounds window : windows)
+  {
+    for (long ty = window.s; ty <= window.n; ty++)
+    {
+      for (long tx = window.w; tx <= window.e; tx++)
+      {
+        Assert.assertTrue("outside: " + window, tiles.contains(tx, ty));
+        count[(int) (ty - tiles.s)][(int) (tx - tiles.w)]++;
+      }
+    }
+  }
+  for (int[] row : count)
+  {
+    for (int c : row)
+    {
+      Assert.assertEquals(1, c);
+    }
+  }
+}
+
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.quantiles;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.junit.UnitTest;
+
+import java.io.*;
+import java.util.Random;
+
+@SuppressWarnings("all") // test code, not included in production
+public class QuantileSketchTest
+{
+private static final int COUNT = 1000000;
+private static final double ACCURACY = 0.001;
+
+// a shuffled 0 .. COUNT - 1, so the value at each rank is the rank itself
+private static double[] shuffled(long seed)
+{
+  double[] values = new double[COUNT];
+  for (int i = 0; i < COUNT; i++)
+  {
+    values[i] = i;
+  }
+
+  Random random = new Random(seed);
+  for (int i = COUNT - 1; i > 0; i--)
+  {
+    int j = random.nextInt(i + 1);
+    double t = values[i];
+    values[i] = values[j];
+    values[j] = t;
+  }
+  return values;
+}
+
+private static long[] deciles()
+{
+  long[] indices = new long[9];
+  for (int i = 0; i < indices.length; i++)
+  {
+    indices[i] = (long) COUNT * (i + 1) / 10;
+  }
+  return indices;
+}
+
+@Test
+@Category(UnitTest.class)
+public void exactWhenSmall()
+{
+  QuantileSketch sketch = QuantileSketch.apply(ACCURACY);
+  for (int i = 99; i >= 0; i--)
+  {
+    sketch.add(i);
+  }
+
+  Assert.assertEquals(100, sketch.count());
+  Assert.assertEquals(0.0, sketch.quantile(0), 0.0);
+  Assert.assertEquals(25.0, sketch.quantile(25), 0.0);
+  Assert.assertEquals(99.0, sketch.quantile(99), 0.0);
+}
+
+@Test
+@Category(UnitTest.class)
+public void accuracy()
+{
+  QuantileSketch sketch = QuantileSketch.apply(ACCURACY);
+  for (double v : shuffled(1))
+  {
+    sketch.add(v);
+  }
+
+  Assert.assertEquals(COUNT, sketch.count());
+
+  long[] indices = deciles();
+  double[] quantiles = sketch.quantiles(indices);
+  for (int i = 0; i < indices.length; i++)
+  {
+    // the values are the ranks, so the rank error is the difference
+    Assert.assertEquals("Bad quantile " + i, indices[i], quantiles[i], 4 * ACCURACY * COUNT);
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void merge()
+{
+  double[] values = shuffled(2);
+
+  QuantileSketch[] sketches = new QuantileSketch[8];
+  for (int s = 0; s < sketches.length; s++)
+  {
+    sketches[s] = QuantileSketch.apply(ACCURACY);
+  }
+  for (int i = 0; i < values.length; i++)
+  {
+    sketches[i % sketches.length].add(values[i]);
+  }
+
+  QuantileSketch merged = sketches[0];
+  for (int s = 1; s < sketches.length; s++)
+  {
+    merged = merged.merge(sketches[s]);
+  }
+
+  Assert.assertEquals(COUNT, merged.count());
+
+  long[] indices = deciles();
+  double[] quantiles = merged.quantiles(indices);
+  for (int i = 0; i < indices.length; i++)
+  {
+    Assert.assertEquals("Bad quantile " + i, indices[i], quantiles[i], 4 * ACCURACY * COUNT);
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void serialize() throws IOException, ClassNotFoundException
+{
+  QuantileSketch sketch = QuantileSketch.apply(0.01);
+  for (double v : shuffled(3))
+  {
+    sketch.add(v);
+  }
+
+  ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  ObjectOutputStream out = new ObjectOutputStream(bytes);
+  out.writeObject(sketch);
+  out.close();
+
+  ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+  QuantileSketch copy = (QuantileSketch) in.readObject();
+
+  Assert.assertEquals(sketch.count(), copy.count());
+  Assert.assertEquals(sketch.quantile(COUNT / 2), copy.quantile(COUNT / 2), 0.0);
+}
+}
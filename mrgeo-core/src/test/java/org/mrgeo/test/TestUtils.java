@@ -43,6 +43,7 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Random;
 
 @SuppressWarnings("all") // test code, not included in production
 public class TestUtils
@@ -335,6 +336,41 @@ public static MrGeoRaster createNumberedRasterWithNodata(int width, int height,
   return raster;
 }
 
+/**
+ * A raster of random values (around 1000 for floating point types, -100 to 100 for integer types), with
+ * about one in nodataFrequency pixels set to nodata.  The same seed always makes the same raster.
+ */
+public static MrGeoRaster createRandomRasterWithNodata(int width, int height, int datatype, double nodata,
+    int nodataFrequency, long seed) throws MrGeoRaster.MrGeoRasterException
+{
+  MrGeoRaster raster = MrGeoRaster.createEmptyRaster(width, height, 1, datatype);
+  boolean floating = datatype == DataBuffer.TYPE_FLOAT || datatype == DataBuffer.TYPE_DOUBLE;
+
+  Random random = new Random(seed);
+  for (int y = 0; y < height; y++)
+  {
+    for (int x = 0; x < width; x++)
+    {
+      double v;
+      if (random.nextInt(nodataFrequency) == 0)
+      {
+        v = nodata;
+      }
+      else if (floating)
+      {
+        v = 1000.0 + random.nextGaussian() * 10.0;
+      }
+      else
+      {
+        v = random.nextInt(200) - 100;
+      }
+      raster.setPixel(x, y, 0, v);
+    }
+  }
+
+  return raster;
+}
+
 public static void compareTextFiles(File f1, File f2) throws IOException
 {
   compareTextFiles(f1.getCanonicalPath(), f2.getCanonicalPath(), true);
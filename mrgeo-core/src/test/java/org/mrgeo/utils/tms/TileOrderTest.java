@@ -0,0 +1,117 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.utils.tms;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.junit.UnitTest;
+
+@SuppressWarnings("all") // test code, not included in production
+public class TileOrderTest
+{
+private static final int zoom = 5;
+
+@Test
+@Category(UnitTest.class)
+public void roundTrip()
+{
+  for (TileOrder order : TileOrder.values())
+  {
+    for (long ty = 0; ty < TMSUtils.numYTiles(zoom); ty++)
+    {
+      for (long tx = 0; tx < TMSUtils.numXTiles(zoom); tx++)
+      {
+        long tileid = TMSUtils.tileid(tx, ty, zoom);
+        long index = order.index(tileid, zoom);
+
+        Assert.assertEquals(order + " index", order.index(tx, ty, zoom), index);
+        Assert.assertEquals(order + " tile", new Tile(tx, ty), order.tile(index, zoom));
+        Assert.assertEquals(order + " tileid", tileid, order.tileid(index, zoom));
+      }
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void zorder()
+{
+  Assert.assertEquals(0, TileOrder.ZORDER.index(0, 0, zoom));
+  Assert.assertEquals(1, TileOrder.ZORDER.index(1, 0, zoom));
+  Assert.assertEquals(2, TileOrder.ZORDER.index(0, 1, zoom));
+  Assert.assertEquals(3, TileOrder.ZORDER.index(1, 1, zoom));
+  Assert.assertEquals(4, TileOrder.ZORDER.index(2, 0, zoom));
+  Assert.assertEquals(15, TileOrder.ZORDER.index(3, 3, zoom));
+}
+
+@Test
+@Category(UnitTest.class)
+public void hilbertIsContinuous()
+{
+  // every step along the curve moves to an adjacent tile
+  long size = TMSUtils.numXTiles(zoom);
+  Tile last = TileOrder.HILBERT.tile(0, zoom);
+  for (long index = 1; index < size * size; index++)
+  {
+    Tile t = TileOrder.HILBERT.tile(index, zoom);
+    Assert.assertEquals("step " + index, 1, Math.abs(t.tx - last.tx) + Math.abs(t.ty - last.ty));
+    last = t;
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void intersects()
+{
+  TileBounds bounds = new TileBounds(5, 3, 11, 8);
+  long size = TMSUtils.numXTiles(zoom);
+  long[][] ranges = {{0, 0}, {0, 40}, {40, 60}, {100, 140}, {37, 37}, {200, 700}, {300, 1023}, {5, 4}};
+
+  for (TileOrder order : TileOrder.values())
+  {
+    long max = (order == TileOrder.ROW_MAJOR) ? TMSUtils.maxTileId(zoom) : size * size - 1;
+    for (long[] range : ranges)
+    {
+      long end = Math.min(range[1], max);
+
+      boolean expected = false;
+      for (long index = range[0]; index <= end; index++)
+      {
+        Tile t = order.tile(index, zoom);
+        if (t.tx >= bounds.w && t.tx <= bounds.e && t.ty >= bounds.s && t.ty <= bounds.n)
+        {
+          expected = true;
+        }
+      }
+
+      Assert.assertEquals(order + " " + range[0] + " - " + end, expected,
+          order.intersects(range[0], end, bounds, zoom));
+    }
+  }
+}
+
+@Test
+@Category(UnitTest.class)
+public void fromName()
+{
+  Assert.assertEquals(TileOrder.ROW_MAJOR, TileOrder.fromName(null));
+  Assert.assertEquals(TileOrder.ROW_MAJOR, TileOrder.fromName("rowmajor"));
+  Assert.assertEquals(TileOrder.ROW_MAJOR, TileOrder.fromName("ROW_MAJOR"));
+  Assert.assertEquals(TileOrder.ZORDER, TileOrder.fromName("z-order"));
+  Assert.assertEquals(TileOrder.HILBERT, TileOrder.fromName("Hilbert"));
+}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.buildpyramid
+
+import java.awt.image.DataBuffer
+import java.util.Random
+
+import junit.framework.Assert
+import org.apache.spark.{SparkConf, SparkContext}
+import org.junit.experimental.categories.Category
+import org.junit.{After, Before, Test}
+import org.mrgeo.aggregators.MeanAggregator
+import org.mrgeo.data.raster.{MrGeoRaster, RasterCodec, RasterWritable}
+import org.mrgeo.data.rdd.RasterRDD
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.junit.UnitTest
+import org.mrgeo.utils.tms.{TMSUtils, TileBounds}
+import org.scalatest.junit.AssertionsForJUnit
+
+// These are used in Spark closures, so they can't be in the (not serializable) test class
+object BuildPyramidTest {
+  val zoom = 10
+  val tilesize = 16
+  val nodata = -9999.0
+
+  // not aligned to the 8 x 8 blocks under a tile 3 levels up, so some of the groups are partial
+  val tiles = new TileBounds(101, 203, 113, 212)
+}
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class BuildPyramidTest extends AssertionsForJUnit {
+  import BuildPyramidTest._
+
+  private var context:SparkContext = _
+
+  @Before
+  def setup():Unit = {
+    context = new SparkContext(new SparkConf()
+        .setMaster("local")
+        .setAppName("BuildPyramidTest")
+        .set("spark.ui.enabled", "false"))
+  }
+
+  @After
+  def teardown():Unit = {
+    context.stop()
+  }
+
+  // Tiles with a sprinkling of nodata, constant tiles (some of them all nodata), and a few missing
+  private def input():RasterRDD = {
+    val random = new Random(7)
+
+    val rasters = for (ty <- tiles.s to tiles.n; tx <- tiles.w to tiles.e;
+                       kind = random.nextInt(10) if kind != 0) yield {
+      val writable = kind match {
+        case 1 | 2 =>
+          val pixel = MrGeoRaster.createEmptyRaster(1, 1, 1, DataBuffer.TYPE_FLOAT)
+          pixel.setPixel(0, 0, 0, if (kind == 1) nodata else random.nextInt(100))
+          RasterWritable.fromConstantPixel(pixel, tilesize, tilesize)
+        case _ =>
+          val raster = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 1, DataBuffer.TYPE_FLOAT)
+          for (y <- 0 until tilesize; x <- 0 until tilesize) {
+            raster.setPixel(x, y, 0, if (random.nextInt(8) == 0) nodata else random.nextInt(1000))
+          }
+          RasterWritable.toWritable(raster)
+      }
+      (new TileIdWritable(TMSUtils.tileid(tx, ty, zoom)), writable)
+    }
+    RasterRDD(context.parallelize(rasters, 3))
+  }
+
+  // The same tiles, with the constant ones expanded to full size
+  private def expand(pyramid:RasterRDD):RasterRDD = {
+    RasterRDD(pyramid.map(tile => {
+      (tile._1, RasterWritable.toWritable(RasterWritable.toMrGeoRaster(tile._2), RasterCodec.NONE, false))
+    }))
+  }
+
+  private def collect(builder:BuildPyramid, pyramid:RasterRDD, fromlevel:Int,
+                      tolevel:Int):Map[(Int, Long), RasterWritable] = {
+    builder.buildlevels(pyramid, fromlevel, tolevel, tilesize, Array(nodata)).collect()
+        .map(tile => ((tile._1, tile._2._1.get()), tile._2._2)).toMap
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def levelsPerPass():Unit = {
+    val builder = new BuildPyramid("test", new MeanAggregator, null)
+    val pyramid = input()
+
+    // one level per pass, each built from the one before
+    var single = Map.empty[(Int, Long), RasterWritable]
+    var from = pyramid
+    for (level <- zoom - 1 to zoom - 3 by -1) {
+      val built = collect(builder, from, level + 1, level)
+      single ++= built
+      from = RasterRDD(context.parallelize(built.toSeq.map(tile => (new TileIdWritable(tile._1._2), tile._2))))
+    }
+
+    // all three levels in one pass
+    val multi = collect(builder, pyramid, zoom, zoom - 3)
+
+    compare(single, multi)
+    for (level <- zoom - 3 until zoom) {
+      Assert.assertTrue("no tiles at level " + level, multi.keySet.exists(_._1 == level))
+    }
+
+    // the constant tiles reduce to the same thing as their full size tiles
+    compare(collect(builder, expand(pyramid), zoom, zoom - 3), multi)
+  }
+
+  private def compare(expectedTiles:Map[(Int, Long), RasterWritable],
+                      actualTiles:Map[(Int, Long), RasterWritable]):Unit = {
+    Assert.assertEquals(expectedTiles.keySet, actualTiles.keySet)
+
+    for ((key, writable) <- expectedTiles) {
+      val expected = RasterWritable.toMrGeoRaster(writable)
+      val actual = RasterWritable.toMrGeoRaster(actualTiles(key))
+
+      Assert.assertEquals(tilesize, actual.width())
+      Assert.assertEquals(tilesize, actual.height())
+      for (y <- 0 until tilesize; x <- 0 until tilesize) {
+        Assert.assertEquals("level " + key._1 + " tile " + key._2 + " pixel " + x + ", " + y,
+          expected.getPixelDouble(x, y, 0), actual.getPixelDouble(x, y, 0), 1e-4)
+      }
+    }
+  }
+}
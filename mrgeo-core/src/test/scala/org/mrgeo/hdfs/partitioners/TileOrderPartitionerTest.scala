@@ -0,0 +1,110 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.hdfs.partitioners
+
+import java.awt.image.DataBuffer
+
+import junit.framework.Assert
+import org.apache.spark.{SparkConf, SparkContext}
+import org.junit.experimental.categories.Category
+import org.junit.{After, Before, Test}
+import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
+import org.mrgeo.data.rdd.RasterRDD
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.junit.UnitTest
+import org.mrgeo.utils.tms.{TMSUtils, TileOrder}
+import org.scalatest.junit.AssertionsForJUnit
+
+// These are used in Spark closures, so they can't be in the (not serializable) test class
+object TileOrderPartitionerTest {
+  val zoom = 8
+  // a 32 x 32 block of tiles
+  val size = 32
+}
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class TileOrderPartitionerTest extends AssertionsForJUnit {
+  import TileOrderPartitionerTest._
+
+  private var context:SparkContext = _
+
+  @Before
+  def setup():Unit = {
+    context = new SparkContext(new SparkConf()
+        .setMaster("local")
+        .setAppName("TileOrderPartitionerTest")
+        .set("spark.ui.enabled", "false"))
+  }
+
+  @After
+  def teardown():Unit = {
+    context.stop()
+  }
+
+  private def ids(width:Int = size, height:Int = size):Seq[Long] = {
+    for (ty <- 0 until height; tx <- 0 until width) yield TMSUtils.tileid(tx, ty, zoom)
+  }
+
+  private def input(partitions:Int, tiles:Seq[Long] = ids()):RasterRDD = {
+    RasterRDD(context.parallelize(tiles, partitions).map(id => {
+      (new TileIdWritable(id), RasterWritable.toWritable(MrGeoRaster.createEmptyRaster(1, 1, 1,
+        DataBuffer.TYPE_BYTE)))
+    }))
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def balanced():Unit = {
+    val partitions = 8
+    val partitioner = new TileOrderPartitioner(input(3), TileOrder.HILBERT, zoom, partitions)
+
+    Assert.assertEquals(partitions, partitioner.numPartitions)
+
+    val counts = new Array[Int](partitions)
+    ids().foreach(id => counts(partitioner.getPartition(new TileIdWritable(id))) += 1)
+
+    // the bounds come from a sample, so the partitions are only about the same size
+    val expected = size * size / partitions
+    counts.foreach(count => Assert.assertTrue("partition has " + count + " tiles",
+      count > expected / 2 && count < expected * 2))
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def contiguous():Unit = {
+    val partitioner = new TileOrderPartitioner(input(4), TileOrder.ZORDER, zoom, 5)
+
+    // the partitions are ranges of the curve
+    val inOrder = ids().sortBy(id => TileOrder.ZORDER.index(id, zoom))
+        .map(id => partitioner.getPartition(new TileIdWritable(id)))
+    Assert.assertEquals(inOrder.sorted, inOrder)
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def morePartitionsThanTiles():Unit = {
+    val partitioner = new TileOrderPartitioner(input(2, ids(2, 1)), TileOrder.ZORDER, zoom, 10)
+
+    // only 2 tiles, so at most 2 (non-empty) partitions
+    Assert.assertTrue(partitioner.numPartitions <= 2)
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.job
+
+import java.awt.image.DataBuffer
+
+import junit.framework.Assert
+import org.apache.spark.SparkConf
+import org.apache.spark.serializer.{KryoSerializer, SerializerInstance}
+import org.junit.experimental.categories.Category
+import org.junit.{Before, Test}
+import org.mrgeo.data.raster.{MrGeoRaster, RasterCodec, RasterWritable}
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.data.vector.FeatureIdWritable
+import org.mrgeo.geometry.{Geometry, GeometryFactory}
+import org.mrgeo.junit.UnitTest
+import org.mrgeo.test.TestUtils
+import org.mrgeo.utils.tms.{Bounds, Pixel}
+import org.scalatest.junit.AssertionsForJUnit
+
+import scala.reflect.ClassTag
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class KryoRegistrarTest extends AssertionsForJUnit {
+  private var serializer:SerializerInstance = _
+
+  // registrationRequired makes kryo fail on any class the registrar missed
+  @Before
+  def setup():Unit = {
+    val conf = new SparkConf()
+        .set("spark.kryo.registrator", classOf[KryoRegistrar].getName)
+        .set("spark.kryo.registrationRequired", "true")
+    serializer = new KryoSerializer(conf).newInstance()
+  }
+
+  private def roundTrip[T:ClassTag](t:T):T = {
+    serializer.deserialize[T](serializer.serialize(t))
+  }
+
+  private def raster(datatype:Int):MrGeoRaster = {
+    val raster = MrGeoRaster.createEmptyRaster(16, 12, 2, datatype)
+    for (b <- 0 until 2; y <- 0 until 12; x <- 0 until 16) {
+      raster.setPixel(x, y, b, x + y * 3 + b)
+    }
+    raster
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def rasterWritable():Unit = {
+    for (codec <- RasterCodec.values()) {
+      val rw = RasterWritable.toWritable(raster(DataBuffer.TYPE_FLOAT), codec, true)
+      val copy = roundTrip(rw)
+      Assert.assertEquals(rw, copy)
+      TestUtils.compareRasters(RasterWritable.toMrGeoRaster(rw), RasterWritable.toMrGeoRaster(copy))
+    }
+
+    Assert.assertEquals(0, roundTrip(new RasterWritable()).getSize)
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def mrgeoRaster():Unit = {
+    for (datatype <- Seq(DataBuffer.TYPE_BYTE, DataBuffer.TYPE_SHORT, DataBuffer.TYPE_USHORT,
+      DataBuffer.TYPE_INT, DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE)) {
+      val src = raster(datatype)
+      TestUtils.compareRasters(src, roundTrip(src))
+    }
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def ids():Unit = {
+    Assert.assertEquals(new TileIdWritable(123456789L), roundTrip(new TileIdWritable(123456789L)))
+    Assert.assertEquals(42L, roundTrip(new FeatureIdWritable(42L)).get)
+
+    val tiles = roundTrip(Array(new TileIdWritable(1), new TileIdWritable(2)))
+    Assert.assertEquals(2L, tiles(1).get)
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def geometries():Unit = {
+    val attrs = new java.util.HashMap[String, String]()
+    attrs.put("name", "test")
+
+    val point = GeometryFactory.createPoint(1.5, 2.5, attrs)
+    val polygon = GeometryFactory.createPolygon(GeometryFactory.createPoint(0, 0),
+      GeometryFactory.createPoint(4, 0), GeometryFactory.createPoint(4, 3), GeometryFactory.createPoint(0, 0))
+    polygon.setAttribute("id", "7")
+    val line = GeometryFactory.createLineString(GeometryFactory.createPoint(0, 0), GeometryFactory.createPoint(1, 1))
+    val collection = GeometryFactory.createGeometryCollection()
+    collection.addGeometry(point)
+    collection.addGeometry(polygon)
+
+    for (geom <- Seq[Geometry](point, polygon, line, collection)) {
+      val copy = roundTrip(geom)
+      Assert.assertEquals(geom.getClass, copy.getClass)
+      Assert.assertTrue(geom.toJTS.equalsExact(copy.toJTS))
+      Assert.assertEquals(geom.getAllAttributes, copy.getAllAttributes)
+    }
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def common():Unit = {
+    Assert.assertEquals(new Bounds(-10, -5, 20, 15), roundTrip(new Bounds(-10, -5, 20, 15)))
+    Assert.assertEquals(new Pixel(3, 4), roundTrip(new Pixel(3, 4)))
+
+    val nodatas = roundTrip(Array(-9999.0, Double.NaN))
+    Assert.assertEquals(-9999.0, nodatas(0))
+    Assert.assertTrue(nodatas(1).isNaN)
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.quantiles
+
+import java.awt.image.DataBuffer
+import java.util.Random
+
+import junit.framework.Assert
+import org.apache.spark.{SparkConf, SparkContext}
+import org.junit.experimental.categories.Category
+import org.junit.{After, Before, Test}
+import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
+import org.mrgeo.data.rdd.RasterRDD
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.junit.UnitTest
+import org.mrgeo.utils.SparkUtils
+import org.mrgeo.utils.tms.{TMSUtils, TileBounds}
+import org.scalatest.junit.AssertionsForJUnit
+
+object QuantilesTest {
+  val zoom = 10
+  val tilesize = 16
+  val tiles = new TileBounds(100, 200, 102, 201)
+}
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class QuantilesTest extends AssertionsForJUnit {
+  import QuantilesTest._
+
+  private var context:SparkContext = _
+
+  @Before
+  def setup():Unit = {
+    context = new SparkContext(new SparkConf()
+        .setMaster("local")
+        .setAppName("QuantilesTest")
+        .set("spark.ui.enabled", "false"))
+  }
+
+  @After
+  def teardown():Unit = {
+    context.stop()
+  }
+
+  // Random values from min to max (inclusive) in 2 bands, with a sprinkling of the nodata value
+  private def input(datatype:Int, min:Int, max:Int, nodata:Double, seed:Long):RasterRDD = {
+    val random = new Random(seed)
+    val rasters = for (ty <- tiles.s to tiles.n; tx <- tiles.w to tiles.e) yield {
+      val raster = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 2, datatype)
+      for (b <- 0 until 2; y <- 0 until tilesize; x <- 0 until tilesize) {
+        val v = if (!nodata.isNaN && random.nextInt(10) == 0) nodata.toInt else min + random.nextInt(max - min + 1)
+        raster.setPixel(x, y, b, v)
+      }
+      (new TileIdWritable(TMSUtils.tileid(tx, ty, zoom)), RasterWritable.toWritable(raster))
+    }
+    RasterRDD(context.parallelize(rasters, 2))
+  }
+
+  private def compare(datatype:Int, min:Int, max:Int, nodata:Double):Unit = {
+    val rdd = input(datatype, min, max, nodata, datatype + min)
+    val meta = SparkUtils.calculateMetadata(zoom, tilesize, 2, datatype, Array(nodata, nodata),
+      TMSUtils.tileToBounds(tiles, zoom, tilesize))
+
+    for (quantiles <- Seq(4, 10, 100)) {
+      val expected = Quantiles.sortedQuantiles(rdd, quantiles, None, meta)
+      val actual = Quantiles.histogramQuantiles(rdd, quantiles, None, meta)
+
+      Assert.assertEquals(expected.length, actual.length)
+      for (b <- expected.indices) {
+        val msg = "type " + datatype + " nodata " + nodata + " " + quantiles + " quantiles, band " + b
+        Assert.assertEquals(msg, expected(b).toSeq, actual(b).toSeq)
+
+        // the nodata value never counts
+        if (!nodata.isNaN) {
+          Assert.assertFalse(msg, actual(b).contains(nodata))
+        }
+        Assert.assertTrue(msg, actual(b).forall(q => q >= min && q <= max))
+      }
+    }
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def bytes():Unit = {
+    // bytes are unsigned, including the values above 127, and a nodata of 255
+    compare(DataBuffer.TYPE_BYTE, 0, 254, 255)
+    compare(DataBuffer.TYPE_BYTE, 100, 255, Double.NaN)
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def shorts():Unit = {
+    compare(DataBuffer.TYPE_SHORT, -32767, 32767, -32768)
+    compare(DataBuffer.TYPE_SHORT, -500, 300, Double.NaN)
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def ushorts():Unit = {
+    compare(DataBuffer.TYPE_USHORT, 0, 65534, 65535)
+    compare(DataBuffer.TYPE_USHORT, 30000, 65535, Double.NaN)
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.spark
+
+import java.awt.image.DataBuffer
+
+import junit.framework.Assert
+import org.apache.spark.rdd.RDD
+import org.apache.spark.{HashPartitioner, SparkConf, SparkContext}
+import org.junit.experimental.categories.Category
+import org.junit.{After, Before, Test}
+import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.junit.UnitTest
+import org.mrgeo.utils.tms.{Bounds, TMSUtils, TileBounds}
+import org.scalatest.junit.AssertionsForJUnit
+
+// These are used in Spark closures, so they can't be in the (not serializable) test class
+object FocalBuilderTest {
+  val zoom = 6
+  val tilesize = 8
+  val nodata = -1.0
+
+  // a 5 x 4 block of tiles, with one missing
+  val tiles = new TileBounds(20, 10, 24, 13)
+  val missing = TMSUtils.tileid(22, 11, zoom)
+
+  // Each pixel's value encodes its position in the world (x + y * 10000, y going down)
+  def value(tx:Long, ty:Long, x:Int, y:Int):Double = {
+    (tx * tilesize + x) + ((tiles.n - ty) * tilesize + y) * 10000.0
+  }
+}
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class FocalBuilderTest extends AssertionsForJUnit {
+  import FocalBuilderTest._
+
+  private var context:SparkContext = _
+
+  @Before
+  def setup():Unit = {
+    context = new SparkContext(new SparkConf()
+        .setMaster("local")
+        .setAppName("FocalBuilderTest")
+        .set("spark.ui.enabled", "false"))
+  }
+
+  @After
+  def teardown():Unit = {
+    context.stop()
+  }
+
+  private def input(partitions:Int):RDD[(TileIdWritable, RasterWritable)] = {
+    val ids = for (ty <- tiles.s to tiles.n; tx <- tiles.w to tiles.e) yield TMSUtils.tileid(tx, ty, zoom)
+
+    context.parallelize(ids.filter(_ != missing), partitions).map(id => {
+      val tile = TMSUtils.tileid(id, zoom)
+      val raster = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 1, DataBuffer.TYPE_DOUBLE)
+      for (y <- 0 until tilesize; x <- 0 until tilesize) {
+        raster.setPixel(x, y, 0, value(tile.tx, tile.ty, x, y))
+      }
+      (new TileIdWritable(id), RasterWritable.toWritable(raster))
+    })
+  }
+
+  private def bounds():Bounds = {
+    // pull the edges in a bit, so the neighboring tiles aren't included
+    val b = TMSUtils.tileToBounds(tiles, zoom, tilesize)
+    val epsilon = TMSUtils.resolution(zoom, tilesize) / 2
+    new Bounds(b.w + epsilon, b.s + epsilon, b.e - epsilon, b.n - epsilon)
+  }
+
+  private def verify(focal:Array[(Long, MrGeoRaster)], bufferX:Int, bufferY:Int):Unit = {
+    Assert.assertEquals(tiles.width() * tiles.height(), focal.length.toLong)
+
+    focal.foreach(tile => {
+      val t = TMSUtils.tileid(tile._1, zoom)
+      val raster = tile._2
+
+      Assert.assertEquals(tilesize + bufferX * 2, raster.width())
+      Assert.assertEquals(tilesize + bufferY * 2, raster.height())
+
+      for (y <- 0 until raster.height(); x <- 0 until raster.width()) {
+        // which tile (and pixel in it) this is
+        val px = x - bufferX
+        val py = y - bufferY
+        val tx = t.tx + Math.floorDiv(px, tilesize)
+        val ty = t.ty - Math.floorDiv(py, tilesize)
+
+        val expected = if (tiles.contains(tx, ty) && TMSUtils.tileid(tx, ty, zoom) != missing) {
+          value(tx, ty, Math.floorMod(px, tilesize), Math.floorMod(py, tilesize))
+        }
+        else {
+          nodata
+        }
+        Assert.assertEquals("tile " + t + " pixel " + x + ", " + y, expected, raster.getPixelDouble(x, y, 0))
+      }
+    })
+  }
+
+  private def create(rdd:RDD[(TileIdWritable, RasterWritable)], bufferX:Int, bufferY:Int):Unit = {
+    val focal = FocalBuilder.create(rdd, bufferX, bufferY, bounds(), zoom, tilesize, Array(nodata), context)
+        .map(tile => (tile._1.get(), RasterWritable.toMrGeoRaster(tile._2))).collect()
+    verify(focal, bufferX, bufferY)
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def unpartitioned():Unit = {
+    create(input(3), 2, 3)
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def partitioned():Unit = {
+    val rdd = input(3).partitionBy(new HashPartitioner(4))
+    val focal = FocalBuilder.create(rdd, 2, 3, bounds(), zoom, tilesize, Array(nodata), context)
+
+    Assert.assertEquals(rdd.partitioner, focal.partitioner)
+    create(rdd, 2, 3)
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def bufferWiderThanTile():Unit = {
+    create(input(2), 11, 8)
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def buffered():Unit = {
+    val bufferX = 3
+    val bufferY = 1
+    // the rasters are reused, so they need to be copied to be kept
+    val focal = FocalBuilder.buffered(input(2), bufferX, bufferY, bounds(), zoom, tilesize, Array(nodata), context)
+        .map(tile => (tile._1.get(), tile._2.clip(0, 0, tile._2.width(), tile._2.height()))).collect()
+    verify(focal, bufferX, bufferY)
+  }
+}
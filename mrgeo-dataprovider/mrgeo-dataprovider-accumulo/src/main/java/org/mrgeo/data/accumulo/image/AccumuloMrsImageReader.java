@@ -50,7 +50,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -446,6 +449,52 @@ public MrGeoRaster get(final TileIdWritable key)
   }
 } // end get
 
+/**
+ * Retrieve a batch of tiles with the batch scanner, which looks up the rows in parallel across
+ * the tablet servers holding them.
+ *
+ * @param tileids the tiles to get
+ * @return the tiles found, by tile id.  Tiles that don't exist are left out
+ */
+@Override
+public Map<Long, MrGeoRaster> get(final long[] tileids)
+{
+  Map<Long, MrGeoRaster> tiles = new HashMap<>();
+  if (tileids.length == 0)
+  {
+    return tiles;
+  }
+
+  List<Range> ranges = new ArrayList<>(tileids.length);
+  for (long tileid : tileids)
+  {
+    ranges.add(new Range(AccumuloUtils.toRowId(tileid)));
+  }
+
+  batchScanner.setRanges(ranges);
+  batchScanner.clearColumns();
+  if (zoomLevel != -1)
+  {
+    batchScanner.fetchColumnFamily(new Text(Integer.toString(zoomLevel)));
+  }
+
+  try
+  {
+    // the batch scanner returns the tiles in no particular order
+    for (Map.Entry<Key, Value> ent : batchScanner)
+    {
+      tiles.put(AccumuloUtils.toLong(ent.getKey().getRow()),
+          toNonWritable(ent.getValue().get(), codec, decompressor));
+    }
+  }
+  catch (final IOException e)
+  {
+    throw new MrsImageException(e);
+  }
+
+  return tiles;
+} // end get
+
 /**
  * Retrieve a series of tiles from the Accumulo store.
  *
@@ -22,6 +22,7 @@ import java.util
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings
 import org.apache.commons.lang3.builder.HashCodeBuilder
+import org.apache.hadoop.conf.Configuration
 import org.apache.spark._
 import org.apache.spark.rdd.RDD
 import org.apache.spark.storage.StorageLevel
@@ -31,6 +32,7 @@ import org.mrgeo.data.rdd.{RasterRDD, VectorRDD}
 import org.mrgeo.data.tile.TileIdWritable
 import org.mrgeo.data.vector.FeatureIdWritable
 import org.mrgeo.geometry.{Geometry, GeometryFactory, Point}
+import org.mrgeo.hdfs.utils.HadoopFileUtils
 import org.mrgeo.job.JobArguments
 import org.mrgeo.mapalgebra.parser.{ParserException, ParserNode}
 import org.mrgeo.mapalgebra.raster.RasterMapOp
@@ -64,22 +66,24 @@ import scala.collection.mutable.ListBuffer
   * processing is implemented with Spark. Initially, a Spark RDD is constructed
   * that copies the original friction tiles into new tiles where the first
   * bands contain those friction values, and the last band contains the current
-  * cost to reach that pixel from the source point. The source point and the tile
-  * it resides in are included in the set of changed pixels. The code loops until
-  * there are no more changed pixels. Each pass through the loop performs a Spark
-  * "map" operation over the tiles. If there are no pixel changes for that
-  * tile, the original tile is simply returned. If there are changes, the tile
-  * is re-computed based on the algorithm described above to update other pixels
-  * within that tile. If any edge pixels in that tile change, they are added to
-  * the accumulator. After the map operation completes, the content of the
-  * accumulator becomes the list of changed pixels to process during the next
-  * pass through the loop. This is continued until there are no more pixels
-  * to process. Note that the result of each pass through the loop can result in
+  * cost to reach that pixel from the source point. That RDD is hash partitioned
+  * by tile id. The source points are the initial set of changed pixels, in an RDD
+  * keyed (and partitioned) the same way. The code loops until there are no more
+  * changed pixels. Each pass through the loop zips the partitions of the tiles with
+  * the partitions of the changes, so only the tiles with changes (the active tiles)
+  * are re-computed, based on the algorithm described above, and the others are
+  * passed through as they are. Any edge pixels in a re-computed tile that change
+  * are emitted as changes to the neighbor tiles, and shuffled (grouped by tile id)
+  * into the changes to process during the next pass through the loop. Only those
+  * changes, never the tiles, move between executors, and nothing goes through the
+  * driver. Note that the result of each pass through the loop can result in
   * pixel changes across many tiles (which get processed in the next pass).
   * Note that the same tile can get processed multiple times before the
   * algorithm completes.
   */
 object CostDistanceMapOp extends MapOpRegistrar {
+  // iterations between checkpoints of the cost tiles, so their lineage doesn't grow without bound
+  val CheckpointInterval = 10
 
   override def register:Array[String] = {
     Array[String]("costDistance", "cd")
@@ -108,6 +112,11 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
   var providerProperties:ProviderProperties = _
   private var rasterRDD:Option[RasterRDD] = None
 
+  // the op's checkpoint directory and its last iteration (cached for the save), both are let go in teardown
+  private var checkpointDir:Option[String] = None
+  private var hadoopConf:Configuration = _
+  private var cached:Option[RDD[_]] = None
+
   override def rdd():Option[RasterRDD] = rasterRDD
 
   override def setup(job:JobArguments, conf:SparkConf):Boolean = {
@@ -119,7 +128,14 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
     true
   }
 
-  override def teardown(job:JobArguments, conf:SparkConf):Boolean = true
+  override def teardown(job:JobArguments, conf:SparkConf):Boolean = {
+    cached.foreach(_.unpersist())
+    cached = None
+
+    checkpointDir.foreach(dir => HadoopFileUtils.delete(hadoopConf, dir))
+    checkpointDir = None
+    true
+  }
 
   override def getZoomLevel(): Int = {
     frictionZoom.getOrElse(friction.getOrElse(throw new IOException("Raster input was not specified")).getZoomLevel())
@@ -240,102 +256,108 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
     // job.
     val numTasks = numExecutors * numCoresPerExecutor
     val isDynamicAlloc = context.getConf.getBoolean("spark.dynamicAllocation.enabled", defaultValue = false)
-    val repartitioned = if (!isDynamicAlloc && numTasks > 1) {
-      logInfo("Repartitioning to " + numTasks + " partitions")
-      val partitions = frictionRDD.partitions.length
-      if (partitions < numTasks) {
-        frictionRDD.repartition(numTasks)
-      }
-      else if (partitions > numTasks) {
-        frictionRDD.coalesce(numTasks)
-      }
-      else {
-        frictionRDD
-      }
+    val partitions = if (!isDynamicAlloc && numTasks > 1) {
+      logInfo("Partitioning to " + numTasks + " partitions")
+      numTasks
     }
     else {
-      //      logInfo("No need to repartition")
-      frictionRDD
+      frictionRDD.partitions.length
     }
 
-    val pixelSizeMeters = (res * LatLng.METERS_PER_DEGREE).toFloat
+    // The cost tiles and the edge changes sent to them are partitioned alike, so each
+    // iteration can pair them up partition by partition without shuffling the tiles
+    val partitioner = new HashPartitioner(partitions)
 
+    val pixelSizeMeters = (res * LatLng.METERS_PER_DEGREE).toFloat
 
-    var costs = makeRasters(repartitioned)
-    var changes = buildInitialPoints(costs, frictionNoDatas, startPts, context, pixelSizeMeters)
-
-    // Force the RDD to materialize
-    costs.count()
+    // The iterations are checkpointed to a directory of the op's own, deleted in teardown.  When the
+    // job has a checkpoint directory, the op's is inside it, so it goes with the job even if the op
+    // fails.  A checkpoint directory can't be unset, so afterwards the job's directory is set again
+    // (which makes a new directory inside it)
+    val jobCheckpointDir = context.getCheckpointDir
+    hadoopConf = context.hadoopConfiguration
+    jobCheckpointDir match {
+      case Some(dir) =>
+        context.setCheckpointDir(dir)
+        checkpointDir = context.getCheckpointDir
+      case None =>
+        val dir = HadoopFileUtils.createJobTmp(hadoopConf).toString
+        context.setCheckpointDir(dir)
+        checkpointDir = Some(dir)
+    }
 
+    var costs = makeRasters(frictionRDD).partitionBy(partitioner).persist(StorageLevel.MEMORY_AND_DISK)
+    var changes = buildInitialPoints(costs, frictionNoDatas, startPts, pixelSizeMeters, partitioner)
+        .persist(StorageLevel.MEMORY_AND_DISK)
 
-    // Process changes until there aren't any more
+    // Process changes until there aren't any more.  Only the tiles with changes (the active
+    // tiles) are processed, the rest are passed through untouched.  The RasterWritables are
+    // already serialized bytes, so the unchanged tiles are shared between iterations rather
+    // than copied.  A changed tile is copied before it is updated, the previous iteration's
+    // cached tile must stay as it was, since a retried (or recomputed) task starts from it.
+    var active = changes.count()
     var counter:Long = 0
-    do {
-//      val t0 = System.currentTimeMillis()
-      // Use an accumulator to capture changes for the neighbor tiles as we process.
-      val changesAccum = context.accumulator(new NeighborChangedPoints)(NeighborChangesAccumulator)
-
-      val previous = costs
-
-      var mapAccum = context.accumulator(0, "Tiles Mapped")
-      var processedAccum = context.accumulator(0, "Tiles Processed")
-
-      //      costs.foreach(tile => {
-      //        val raster = RasterWritable.toRaster(tile._2)
-      //
-      //        val t = TMSUtils.tileid(tile._1.get, zoom)
-      //        GDALUtils.saveRasterTile(raster, "/data/export/costs/tile-" + tile._1.get,
-      //          t.tx, t.ty, zoom, Float.NaN)
-      //      })
-
-      costs = previous.map(tile => {
-        mapAccum += 1
-        val tileid = tile._1.get
-//        val t2 = System.currentTimeMillis()
-        val tileChanges = changes.get(tileid)
-//        logError("Looking up changes took " + (System.currentTimeMillis() - t2))
-        if (tileChanges != null) {
-          processedAccum += 1
-          //          changesToProcess.dump(zoomLevel)
-
-          // This tile has changes to process. Update the pixel values within the
-          // tile accordingly while accumulating changes to this tile's neighbors.
-          val raster = RasterWritable.toMrGeoRaster(tile._2)
-
-//          val t1 = System.currentTimeMillis()
-          processTile(tileid, raster, frictionNoDatas, tileChanges, changesAccum, zoom, pixelSizeMeters, tileBounds)
-//          logError("Time for processTile on " + tileid + " is " + (System.currentTimeMillis() - t1))
-
-          (tile._1, RasterWritable.toWritable(raster))
-        }
-        else {
-          (tile._1, tile._2.copy())
-        }
-      }).persist(StorageLevel.MEMORY_AND_DISK_SER)
+    var last:RDD[_] = costs
+    try {
+      while (active > 0) {
+        val previous = last
+        val previousChanges = changes
+
+        val processed = costs.zipPartitions(changes, preservesPartitioning = true)((tiles, updates) => {
+          val tileChanges = updates.toMap
+          tiles.map(tile => {
+            tileChanges.get(tile._1) match {
+              case Some(points) =>
+                // This tile has changes to process. Update the pixel values within the
+                // tile accordingly while collecting changes to this tile's neighbors.
+                val raster = RasterWritable.toMrGeoRaster(tile._2.copy())
+                val edgePoints = processTile(tile._1, raster, frictionNoDatas, points, zoom, pixelSizeMeters,
+                  tileBounds)
+
+                (tile._1, (RasterWritable.toWritable(raster), edgePoints.keySet().map(tileid =>
+                  (tileid, edgePoints.get(tileid).toArray)).toArray))
+              case None =>
+                (tile._1, (tile._2, null))
+            }
+          })
+        }).persist(StorageLevel.MEMORY_AND_DISK)
 
-      // Force the rdd to materialize
-      costs.count()
+        if ((counter + 1) % CostDistanceMapOp.CheckpointInterval == 0) {
+          processed.checkpoint()
+        }
 
-      previous.unpersist()
+        last = processed
+        costs = processed.mapValues(_._1)
 
-      //      costs.foreach(tile => {
-      //        val raster = RasterWritable.toRaster(tile._2)
-      //
-      //        val t = TMSUtils.tileid(tile._1.get, zoom)
-      //        GDALUtils.saveRasterTile(raster, "/data/export/costs/tile-" + tile._1.get,
-      //          t.tx, t.ty, zoom, Float.NaN)
-      //      })
+        // Send the changed edge points to the neighbor tiles
+        changes = processed.flatMap(tile => {
+          if (tile._2._2 == null) {
+            Array.empty[(Long, Array[CostPoint])]
+          }
+          else {
+            tile._2._2
+          }
+        }).reduceByKey(partitioner, _ ++ _).persist(StorageLevel.MEMORY_AND_DISK)
 
-      changes = changesAccum.value
+        // Force the rdds to materialize
+        active = changes.count()
 
+        previous.unpersist()
+        previousChanges.unpersist()
 
-      logInfo("Changes after iteration " + counter + ": " + changes.totalCount())
-      counter += 1
-//      logError("Processing time for loop iteration is " + (System.currentTimeMillis() - t0))
-    } while (changes.size() > 0)
+        logInfo("Active tiles after iteration " + counter + ": " + active)
+        counter += 1
+      }
+    }
+    finally {
+      jobCheckpointDir.foreach(dir => context.setCheckpointDir(dir))
+    }
+    changes.unpersist()
 
+    // the last iteration stays cached for the save, until teardown
+    cached = Some(last)
 
-    rasterRDD = Some(RasterRDD(costs.map(tile => {
+    val result = costs.map(tile => {
       val sourceRaster = RasterWritable.toMrGeoRaster(tile._2)
 
       // Need to convert our raster to a single band raster for output.
@@ -355,11 +377,12 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
       }
 
       (new TileIdWritable(tile._1), RasterWritable.toWritable(singleBandRaster))
-    })))
+    })
 
-    rasterRDD.get.count()
+    rasterRDD = Some(RasterRDD(result))
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, Float.NaN, bounds = outputBounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, tilesize, 1, DataBuffer.TYPE_FLOAT, Array[Double](Float.NaN),
+      outputBounds))
     true
   }
 
@@ -426,13 +449,10 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
   def processTile(tileid:Long,
                   raster:MrGeoRaster,
                   frictionNoData: Array[Float],
-                  changes:List[CostPoint],
-                  changesAccum:Accumulator[NeighborChangedPoints],
+                  changes:Array[CostPoint],
                   zoom:Int,
                   pixelsize:Float,
-                  tileBounds:TileBounds):Unit = {
-    val startTime = System.nanoTime()
-
+                  tileBounds:TileBounds):NeighborChangedPoints = {
     val tile = TMSUtils.tileid(tileid, zoom)
 
     // length of the pixel diagonal
@@ -527,8 +547,6 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
     val origLeftEdgeValues:Array[Float] = new Array[Float](height)
     val origRightEdgeValues:Array[Float] = new Array[Float](height)
 
-    val preStart:Double = System.nanoTime()
-
     var px:Int = 0
     while (px < width) {
       origTopEdgeValues(px) = raster.getPixelFloat(px, 0, costBand)
@@ -543,8 +561,11 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
       py += 1
     }
 
+    // The bucket width is the cheapest possible step between two pixels, so the points in
+    // a bucket can't lower each other's cost, and are popped in (effectively) cost order
+    val queue = new CostQueue(minimumFriction(raster, frictionNoData, multiband) * pixelsize)
+
     // apply the incoming values...
-    val queue = new java.util.PriorityQueue[CostPoint]()
     changes.foreach(pt => {
       // we'll do the cost check here since maintaining the priority queue is expensive
       val currentCost = raster.getPixelFloat(pt.px, pt.py, costBand)
@@ -555,22 +576,22 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
         val newCost = pt.cost + pt.pixelCost
 
         if (isSmallerMaxCost(newCost, currentCost)) {
-          queue.add(pt)
+          queue.add(pt.py * width + pt.px, pt.cost, pt.pixelCost)
         }
       }
       else {
         val friction = raster.getPixelFloat(pt.px, pt.py, 0)
         if (!isNoData(friction, frictionNoData(0))) {
-          pt.pixelCost += (friction * (if (pt.diagonal) {
+          val pixelCost = pt.pixelCost + (friction * (if (pt.diagonal) {
             pixelsizediag
           }
           else {
             pixelsize
           }) * 0.5f)
-          val newCost = pt.cost + pt.pixelCost
+          val newCost = pt.cost + pixelCost
 
           if (isSmallerMaxCost(newCost, currentCost)) {
-            queue.add(pt)
+            queue.add(pt.py * width + pt.px, pt.cost, pixelCost)
           }
         }
       }
@@ -584,49 +605,17 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
     // than the neighbor's current cost, and add a new entry to the queue
     // for the neighbor point. If a point around the perimeter of the tile
     // changes, then add an entry to local changedPoints.
-
-    // val preProcessingTime:Double = System.nanoTime() - preStart
-    var totalEnqueue:Double = 0.0
-    var totalDequeue:Double = 0.0
-    // var counter:Long = 0L
-
-    val costPointPool = new mutable.Queue[CostPoint]()
-//    var reuseCount:Long = 0
-//    var newCount:Long = 0
-    // Process the queue of changed points until it is empty
     while (!queue.isEmpty) {
-      //      counter += 1
-      //      println("pass: " + counter + " queue size: " + queue.size())
-      //      val q = new java.util.PriorityQueue[CostPoint]()
-      //      for (p <- queue.toArray) {
-      //        p match {
-      //        case cp: CostPoint => q.add(cp)
-      //        case _ =>
-      //        }
-      //      }
-      //
-      //      var cnt = 0
-      //
-      //      while (!q.isEmpty) {
-      //        val cp = q.poll()
-      //        println("  " + cnt + " x: " + (cp.px - 74) + " y: " + (cp.py - 197) + " cost: " +
-      //            cp.cost + " pc: " + cp.pixelCost + " tot: " + (cp.cost + cp.pixelCost))
-      ////        println("%2d\t%2d\t%6.3f".format(cp.px - 74, cp.py - 197, cp.cost + cp.pixelCost))
-      //        cnt += 1
-      //      }
-
-      var t0 = System.nanoTime()
-
-      val point = queue.poll()
-
-      totalDequeue = totalDequeue + (System.nanoTime() - t0)
-
-      val newCost = point.cost + point.pixelCost
-      val currentCost = raster.getPixelFloat(point.px, point.py, costBand)
+      val pixel = queue.poll()
+      val pointX = pixel % width
+      val pointY = pixel / width
+
+      val newCost = queue.polledCost + queue.polledPixelCost
+      val currentCost = raster.getPixelFloat(pointX, pointY, costBand)
 
       // check for a lower cost
       if (isSmallerMaxCost(newCost, currentCost)) {
-        raster.setPixel(point.px, point.py, costBand, newCost)
+        raster.setPixel(pointX, pointY, costBand, newCost)
 
         // Since this point has a new cost, check to see if the cost to each
         // of its neighbors is smaller than the current cost assigned to those
@@ -637,79 +626,48 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
         while (neighbor < neighborData.length) {
           val direction = neighborData(neighbor)
 
-          val pxNeighbor = (point.px + direction.dx).toShort
-          val pyNeighbor = (point.py + direction.dy).toShort
+          val pxNeighbor = pointX + direction.dx
+          val pyNeighbor = pointY + direction.dy
 
           // check for edge of the image
           if (pxNeighbor >= 0 && pxNeighbor < width && pyNeighbor >= 0 && pyNeighbor < height) {
             // compute the new cost to the neighbor
             val friction = if (multiband) {
               // multiband friction
-              val f = raster.getPixelFloat(point.px, point.py, direction.multibandNdx)
+              val f = raster.getPixelFloat(pointX, pointY, direction.multibandNdx)
               if (isNoData(f, frictionNoData(direction.multibandNdx))) {
-                None
+                Float.NaN
               }
               else {
-                Some(f)
+                f
               }
             }
             else {
               val neighborFriction = raster.getPixelFloat(pxNeighbor, pyNeighbor, 0)
               if (isNoData(neighborFriction, frictionNoData(0))) {
-                None
+                Float.NaN
               }
               else {
-                Some((raster.getPixelFloat(point.px, point.py, 0) +
-                  neighborFriction) * 0.5f)
+                (raster.getPixelFloat(pointX, pointY, 0) + neighborFriction) * 0.5f
               }
             }
 
-            friction match {
-              case Some(f) =>
-                val currentNeighborCost = raster.getPixelFloat(pxNeighbor, pyNeighbor, costBand)
-                val pixelCost = f * direction.dist
-                val neighborCost = newCost + pixelCost
-
-                if (isSmallerMaxCost(neighborCost, currentNeighborCost)) {
-                  // the costpoint contains the current friction and cost to get to the neighbor
-                  val neighborPoint = {
-                    if (costPointPool.isEmpty) {
-                      //                    newCount += 1
-                      new CostPoint(pxNeighbor, pyNeighbor, newCost, pixelCost)
-                    }
-                    else {
-                      //                    reuseCount += 1
-                      val cp = costPointPool.dequeue()
-                      cp.px = pxNeighbor
-                      cp.py = pyNeighbor
-                      cp.cost = newCost
-                      cp.pixelCost = pixelCost
-                      cp.diagonal = false
-                      cp
-                    }
-                  }
-
-                  t0 = System.nanoTime()
-
-                  queue.add(neighborPoint)
-
-                  totalEnqueue = totalEnqueue + (System.nanoTime() - t0)
-                }
-              case None => // do nothing
+            if (!friction.isNaN) {
+              val currentNeighborCost = raster.getPixelFloat(pxNeighbor, pyNeighbor, costBand)
+              val pixelCost = friction * direction.dist
+              val neighborCost = newCost + pixelCost
+
+              if (isSmallerMaxCost(neighborCost, currentNeighborCost)) {
+                // the queue entry contains the current friction and cost to get to the neighbor
+                queue.add(pyNeighbor * width + pxNeighbor, newCost, pixelCost)
+              }
             }
           }
           neighbor += 1
         }
-        costPointPool.enqueue(point)
       }
     }
 
-
-//    logError("reuseCount = " + reuseCount)
-//    logError("newCount = " + newCount)
-//    logError("totalDequeue = " + totalDequeue)
-//    logError("totalEnqueue = " + totalEnqueue)
-    val t0 = System.nanoTime()
     val edgePoints = new NeighborChangedPoints
 
     val neighborTileIds = Array.ofDim[Long](neighborData.length)
@@ -884,12 +842,29 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
       })
     }
 
-    if (edgePoints.size() > 0) {
-      changesAccum.add(edgePoints)
-    }
+    edgePoints
+  }
 
-    // val postProcessingTime:Double = System.nanoTime() - t0
-    // val totalTime:Double = System.nanoTime() - startTime
+  // The smallest (positive) friction value in the tile
+  def minimumFriction(raster:MrGeoRaster, frictionNoData:Array[Float], multiband:Boolean):Float = {
+    val bands = if (multiband) frictionNoData.length else 1
+    val samples = new Array[Double](raster.width() * raster.height())
+
+    var min = Float.PositiveInfinity
+    var b:Int = 0
+    while (b < bands) {
+      raster.readBand(b, samples)
+      var i:Int = 0
+      while (i < samples.length) {
+        val f = samples(i).toFloat
+        if (f > 0 && f < min && !isNoData(f, frictionNoData(b))) {
+          min = f
+        }
+        i += 1
+      }
+      b += 1
+    }
+    min
   }
 
   override def writeExternal(out:ObjectOutput):Unit = {
@@ -901,40 +876,17 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
   }
 
   override def registerClasses():Array[Class[_]] = {
-    GeometryFactory.getClasses ++ Array[Class[_]](classOf[FeatureIdWritable], classOf[Pixel])
+    GeometryFactory.getClasses ++ Array[Class[_]](classOf[FeatureIdWritable], classOf[Pixel],
+      classOf[CostPoint], classOf[Array[CostPoint]])
   }
 
-  def buildInitialPoints(frictionRDD:RDD[(TileIdWritable, RasterWritable)],
+  def buildInitialPoints(costs:RDD[(Long, RasterWritable)],
                          nodataValues: Array[Float],
                          startingPts:mutable.Map[Long, mutable.Set[(Pixel, Point)]],
-                         context:SparkContext, pixelsize:Float):NeighborChangedPoints = {
-
-    val initialChangesAccum = context.accumulator(new NeighborChangedPoints)(NeighborChangesAccumulator)
-
-//    val dp = DataProviderFactory.getMrsImageDataProvider(imageName, DataProviderFactory.AccessMode.READ,
-//      providerProperties)
-//    val tileReader= dp.getMrsTileReader(zoom)
-//    val ncp = new NeighborChangedPoints
-//    startingPts.foreach(U => {
-//      val raster = tileReader.get(new TileIdWritable(U._1))
-//      val pointsInTile = startingPts.get(U._1).get
-//      for (startPixel <- pointsInTile) {
-//        val pixelcost = if (raster.bands() > 2) {
-//          0.0f
-//        }
-//        else {
-//          // add a negative 1/2 friction, so the start point cost calculatation will be zero
-//          -raster.getPixelFloat(startPixel.px.toInt, startPixel.py.toInt, 0) * pixelsize * 0.5f
-//        }
-//
-//        // starting pixel has no initial cost and no friction to get to that point
-//        logInfo("Start tile " + U._1 + " and point " + startPixel.px + ", " + startPixel.py)
-//        ncp.add(U._1, new CostPoint(startPixel.px.toShort, startPixel.py.toShort, 0.0f, pixelcost))
-//      }
-//    })
-//    ncp
-    frictionRDD.foreach(tile => {
-      val tileid = tile._1.get()
+                         pixelsize:Float, partitioner:Partitioner):RDD[(Long, Array[CostPoint])] = {
+
+    costs.flatMap(tile => {
+      val tileid = tile._1
       if (startingPts.contains(tileid)) {
         val raster = RasterWritable.toMrGeoRaster(tile._2)
         val pointsInTile = startingPts(tileid)
@@ -961,21 +913,20 @@ class CostDistanceMapOp extends RasterMapOp with Externalizable with Logging {
             }
           }
         }
-        val ncp = new NeighborChangedPoints
-        ncp.addPoints(tileid, costPoints.toList)
-        initialChangesAccum.add(ncp)
+        Array((tileid, costPoints.toArray))
       }
-    })
-
-    initialChangesAccum.value
+      else {
+        Array.empty[(Long, Array[CostPoint])]
+      }
+    }).partitionBy(partitioner)
   }
 
-  def makeRasters(frictionRDD:RDD[(TileIdWritable, RasterWritable)]):RDD[(TileIdWritable, RasterWritable)] = {
+  def makeRasters(frictionRDD:RDD[(TileIdWritable, RasterWritable)]):RDD[(Long, RasterWritable)] = {
     frictionRDD.map(tile => {
       val tileid = tile._1.get()
       val raster = RasterWritable.toMrGeoRaster(tile._2)
 
-      (new TileIdWritable(tileid), RasterWritable.toWritable(addCostBand(raster)))
+      (tileid, RasterWritable.toWritable(addCostBand(raster)))
     })
   }
 
@@ -1134,9 +1085,141 @@ class CostPoint(var px:Short, var py:Short, var cost:Float, var pixelCost:Float,
   }
 }
 
+// A priority queue of pixels to visit within a tile, ordered by total cost (cost + pixelCost).
+// The entries are kept in primitive arrays and grouped into buckets of costs that are width
+// apart (Dial's algorithm), so adding and polling don't need any comparisons or objects. The
+// buckets cover a window of costs, entries past the end of the window go into an overflow
+// list that is spread into a new window when the current one is used up. Entries cheaper
+// than the current bucket (which can only happen if width is larger than the actual step
+// between pixels) go into the current bucket.
+class CostQueue(bucketWidth:Float) {
+  private val Buckets = 1024
+  private val width:Double = if (bucketWidth > 0 && !bucketWidth.isInfinite) bucketWidth else 1.0
+
+  private var pixels = new Array[Int](Buckets)
+  private var costs = new Array[Float](Buckets)
+  private var pixelCosts = new Array[Float](Buckets)
+  private var next = new Array[Int](Buckets)
+
+  // unused entries, linked through next
+  private var free:Int = -1
+  private var used:Int = 0
+
+  private val heads = Array.fill[Int](Buckets)(-1)
+  private var overflow:Int = -1
+
+  private var base:Double = 0.0
+  private var current:Int = Buckets
+  private var count:Int = 0
+
+  var polledCost:Float = 0.0f
+  var polledPixelCost:Float = 0.0f
+
+  def isEmpty:Boolean = count == 0
+
+  def add(pixel:Int, cost:Float, pixelCost:Float):Unit = {
+    val entry = allocate()
+    pixels(entry) = pixel
+    costs(entry) = cost
+    pixelCosts(entry) = pixelCost
+
+    if (count == 0) {
+      // the window starts at the cheapest entry, which isn't known until the first poll
+      current = Buckets
+    }
+
+    if (current == Buckets) {
+      next(entry) = overflow
+      overflow = entry
+    }
+    else {
+      insert(entry, cost.toDouble + pixelCost)
+    }
+    count += 1
+  }
+
+  // Remove the cheapest entry, returning its pixel.  The entry's costs are in polledCost
+  // and polledPixelCost
+  def poll():Int = {
+    if (current == Buckets) {
+      rebase()
+    }
+    while (heads(current) < 0) {
+      current += 1
+      if (current == Buckets) {
+        rebase()
+      }
+    }
+
+    val entry = heads(current)
+    heads(current) = next(entry)
+
+    polledCost = costs(entry)
+    polledPixelCost = pixelCosts(entry)
+
+    next(entry) = free
+    free = entry
+    count -= 1
+
+    pixels(entry)
+  }
+
+  private def insert(entry:Int, total:Double):Unit = {
+    val bucket = math.max(current.toDouble, math.floor((total - base) / width))
+    if (bucket < Buckets) {
+      next(entry) = heads(bucket.toInt)
+      heads(bucket.toInt) = entry
+    }
+    else {
+      next(entry) = overflow
+      overflow = entry
+    }
+  }
+
+  // Start a new window of buckets at the cheapest overflow entry
+  private def rebase():Unit = {
+    var min = Double.MaxValue
+    var entry = overflow
+    while (entry >= 0) {
+      min = math.min(min, costs(entry).toDouble + pixelCosts(entry))
+      entry = next(entry)
+    }
+
+    base = min
+    current = 0
+
+    entry = overflow
+    overflow = -1
+    while (entry >= 0) {
+      val following = next(entry)
+      insert(entry, costs(entry).toDouble + pixelCosts(entry))
+      entry = following
+    }
+  }
+
+  private def allocate():Int = {
+    if (free >= 0) {
+      val entry = free
+      free = next(entry)
+      entry
+    }
+    else {
+      if (used == pixels.length) {
+        val size = used * 2
+        pixels = java.util.Arrays.copyOf(pixels, size)
+        costs = java.util.Arrays.copyOf(costs, size)
+        pixelCosts = java.util.Arrays.copyOf(pixelCosts, size)
+        next = java.util.Arrays.copyOf(next, size)
+      }
+      used += 1
+      used - 1
+    }
+  }
+}
+
 // Stores points from a source tile that changed value and forced
 // the target tile to be recomputed. The key in the hash map is the
-// direction from the source tile to the target tile.
+// id of the target tile.
 class NeighborChangedPoints extends Externalizable with Logging {
   // The collection of point changes is keyed on tile id. The value is a
   // a pair containing the direction and the list of changed points. The
@@ -1269,16 +1352,3 @@ class NeighborChangedPoints extends Externalizable with Logging {
     changes.hashCode
   }
 }
-
-// An accumulator used within Spark to accumulate changes to all of the tiles
-// processed during a single map pass of the cost distance algorithm.
-object NeighborChangesAccumulator extends AccumulatorParam[NeighborChangedPoints] {
-  override def addInPlace(r1:NeighborChangedPoints,
-                          r2:NeighborChangedPoints):NeighborChangedPoints = {
-    r1 += r2
-  }
-
-  override def zero(initialValue:NeighborChangedPoints):NeighborChangedPoints = {
-    new NeighborChangedPoints
-  }
-}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.mapalgebra
+
+import java.util.Random
+
+import junit.framework.Assert
+import org.junit.Test
+import org.junit.experimental.categories.Category
+import org.mrgeo.junit.UnitTest
+import org.scalatest.junit.AssertionsForJUnit
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class CostQueueTest extends AssertionsForJUnit {
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def pollsInBucketOrder():Unit = {
+    val width = 0.5f
+    val queue = new CostQueue(width)
+    val random = new Random(1)
+
+    // spread well past one window of buckets, so the overflow gets used
+    val count = 10000
+    val totals = new Array[Float](count)
+    var i:Int = 0
+    while (i < count) {
+      totals(i) = random.nextFloat() * 5000.0f
+      queue.add(i, totals(i) * 0.75f, totals(i) * 0.25f)
+      i += 1
+    }
+
+    val seen = new Array[Boolean](count)
+    var last = Float.NegativeInfinity
+    var polled:Int = 0
+    while (!queue.isEmpty) {
+      val pixel = queue.poll()
+      val total = queue.polledCost + queue.polledPixelCost
+
+      Assert.assertFalse("Pixel " + pixel + " polled twice", seen(pixel))
+      seen(pixel) = true
+      Assert.assertEquals(totals(pixel), total, 1e-3f)
+      Assert.assertTrue("Pixel " + pixel + " (" + total + ") polled after " + last, total > last - width)
+
+      last = math.max(last, total)
+      polled += 1
+    }
+
+    Assert.assertEquals(count, polled)
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def addWhilePolling():Unit = {
+    val queue = new CostQueue(1.0f)
+
+    queue.add(0, 10.0f, 0.0f)
+    queue.add(1, 5000.0f, 0.0f)
+
+    Assert.assertEquals(0, queue.poll())
+
+    // cheaper than anything left, but after what has already been polled
+    queue.add(2, 10.0f, 3.0f)
+    queue.add(3, 2000.0f, 0.0f)
+
+    Assert.assertEquals(2, queue.poll())
+    Assert.assertEquals(13.0f, queue.polledCost + queue.polledPixelCost, 0.0f)
+    Assert.assertEquals(3, queue.poll())
+    Assert.assertEquals(1, queue.poll())
+    Assert.assertTrue(queue.isEmpty)
+
+    // an empty queue starts over
+    queue.add(4, 1.0f, 0.0f)
+    Assert.assertEquals(4, queue.poll())
+    Assert.assertEquals(1.0f, queue.polledCost, 0.0f)
+  }
+
+  @Test
+  @Category(Array[Class[_]] { classOf[UnitTest] })
+  def invalidWidth():Unit = {
+    val queue = new CostQueue(Float.PositiveInfinity)
+
+    queue.add(0, 3.0f, 0.0f)
+    queue.add(1, 1.0f, 0.0f)
+    queue.add(2, 2.0f, 0.0f)
+
+    Assert.assertEquals(1, queue.poll())
+    Assert.assertEquals(2, queue.poll())
+    Assert.assertEquals(0, queue.poll())
+  }
+}
@@ -30,6 +30,19 @@ class GaussianGeographicKernel(sigma:Double, zoom:Int, tilesize:Int) extends Gau
     this(0, 0, 0)
   }
 
+  // The 1D gaussian weights GaussianBlur uses in runKernel (calculated the same way as
+  // getGaussianKernel), in both directions
+  override def getSeparableKernel:Option[(Array[Float], Array[Float])] = {
+    val center = (kernelWidth - 1) / 2.0
+    val scale = -0.5 / (pixelSigma * pixelSigma)
+
+    val weights = Array.tabulate[Float](kernelWidth)(i => Math.exp(scale * (i - center) * (i - center)).toFloat)
+    val sum = weights.foldLeft(0.0)(_ + _)
+
+    val normalized = weights.map(w => (w / sum).toFloat)
+    Some((normalized, normalized))
+  }
+
   override def runKernel(data:Mat):Unit = {
     Imgproc.GaussianBlur(data, data, new Size(kernelWidth, kernelWidth), pixelSigma) // sigma in pixel space
   }
@@ -30,6 +30,10 @@ abstract class Kernel(var kernelWidth:Int, var kernelHeight:Int) extends Externa
 
   def get2DKernel:Option[Array[Array[Float]]]
 
+  // The row and column weights of a kernel that is their outer product.  A separable kernel is applied
+  // as two 1D passes, giving the same result as calculate()
+  def getSeparableKernel:Option[(Array[Float], Array[Float])] = None
+
   def calculate(tileId:Long, tile:MrGeoRaster, nodatas:Array[Double]):Option[MrGeoRaster]
 
   def this() = {
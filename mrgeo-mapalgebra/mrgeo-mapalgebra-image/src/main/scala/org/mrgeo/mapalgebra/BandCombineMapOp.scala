@@ -19,7 +19,7 @@ import java.io.{Externalizable, IOException, ObjectInput, ObjectOutput}
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings
 import org.apache.spark.rdd.CoGroupedRDD
-import org.apache.spark.{HashPartitioner, SparkConf, SparkContext}
+import org.apache.spark.{SparkConf, SparkContext}
 import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
 import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.data.tile.TileIdWritable
@@ -152,15 +152,7 @@ class BandCombineMapOp extends RasterMapOp with Externalizable {
 
     val nodata = nodatabuilder.result()
 
-    // cogroup needs a partitioner, so we'll give one here...
-    var maxpartitions = 0
-    val partitions = pyramids.foreach(p => {
-      if (p.partitions.length > maxpartitions) {
-        maxpartitions = p.partitions.length
-      }
-    })
-
-    val groups = new CoGroupedRDD(pyramids, new HashPartitioner(maxpartitions))
+    val groups = new CoGroupedRDD(pyramids, SparkUtils.joinPartitioner(pyramids))
 
     rasterRDD = Some(RasterRDD(groups.map(group => {
 
@@ -194,7 +186,7 @@ class BandCombineMapOp extends RasterMapOp with Externalizable {
       (group._1, RasterWritable.toWritable(dst))
     })))
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, nodata, bounds = bounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, tilesize, totalbands, tiletype, nodata, bounds))
 
     true
   }
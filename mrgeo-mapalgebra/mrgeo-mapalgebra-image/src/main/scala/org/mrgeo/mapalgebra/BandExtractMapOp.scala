@@ -77,8 +77,8 @@ class BandExtractMapOp extends RasterMapOp with Externalizable {
           (U._1, RasterWritable.toWritable(dst))
         })))
 
-        metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, meta.getDefaultValue(band),
-          bounds = meta.getBounds, calcStats = false))
+        metadata(SparkUtils.calculateMetadata(zoom, meta.getTilesize, 1, meta.getTileType,
+          Array[Double](meta.getDefaultValue(band)), meta.getBounds))
         true
       case _ =>
         throw new IOException("Can't work with input raster! Ouch!")
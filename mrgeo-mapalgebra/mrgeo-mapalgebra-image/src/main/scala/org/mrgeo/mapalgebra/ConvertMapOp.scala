@@ -22,7 +22,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings
 import org.apache.spark.{SparkConf, SparkContext}
 import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
 import org.mrgeo.data.rdd.RasterRDD
-import org.mrgeo.image.MrsPyramidMetadata
+import org.mrgeo.image.{ImageStats, MrsPyramidMetadata}
 import org.mrgeo.job.JobArguments
 import org.mrgeo.mapalgebra.parser.{ParserException, ParserNode}
 import org.mrgeo.mapalgebra.raster.RasterMapOp
@@ -240,10 +240,15 @@ class ConvertMapOp extends RasterMapOp with Externalizable {
       oldNodata.zipWithIndex.foreach(U => {
         oldNodataIsNan(U._2) = java.lang.Double.isNaN(U._1)
       })
-      var stats = meta.getStats
-      if (stats == null) {
-        stats = SparkUtils.calculateStats(rdd, meta.getBands,
-          meta.getDefaultValues)
+      // only fit uses the input's range, so only it needs to run a job to get the stats
+      val stats = if (meta.getStats != null) {
+        meta.getStats
+      }
+      else if (cm.equalsIgnoreCase("fit")) {
+        SparkUtils.calculateStats(rdd, meta.getBands, meta.getDefaultValues)
+      }
+      else {
+        Array.fill(meta.getBands)(new ImageStats(0, 0, 0, 0))
       }
       val result = rdd.map(U => {
         val src = RasterWritable.toMrGeoRaster(U._2)
@@ -295,8 +300,8 @@ class ConvertMapOp extends RasterMapOp with Externalizable {
         (U._1, RasterWritable.toWritable(dst))
       })
       rasterRDD = Some(RasterRDD(result))
-      metadata(SparkUtils.calculateMetadata(rasterRDD.get, meta.getMaxZoomLevel, newNodata,
-        bounds = meta.getBounds, calcStats = false))
+      metadata(SparkUtils.calculateMetadata(meta.getMaxZoomLevel, meta.getTilesize, meta.getBands, newTileType,
+        newNodata.map(_.doubleValue()), meta.getBounds))
     }
     true
   }
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.mapalgebra
+
+// Convolution (strictly, correlation) of buffered tiles with large kernels.  Separable kernels are
+// applied as two 1D passes, and each pass (or a whole 2D kernel) can be done with an FFT, which costs
+// the same no matter how big the kernel is.
+object Convolution {
+
+  def pow2(n:Int):Int = {
+    var size:Int = 1
+    while (size < n) {
+      size <<= 1
+    }
+    size
+  }
+
+  // Reflect an out of range index back into [0, n), without repeating the edge value (like OpenCV's
+  // default BORDER_REFLECT_101)
+  def reflect(i:Int, n:Int):Int = {
+    if (n == 1) {
+      0
+    }
+    else {
+      var r = i
+      while (r < 0 || r >= n) {
+        r = if (r < 0) -r else 2 * n - 2 - r
+      }
+      r
+    }
+  }
+
+  // Is an FFT cheaper than applying taps weights directly to each of n outputs of a line?  Rough flop
+  // counts: the direct sum is 2 flops per tap, while a pair of lines shares one complex FFT of ~5 N log2(N)
+  // flops each way.
+  def fftCheaper(n:Int, taps:Int):Boolean = {
+    val size = pow2(n + taps - 1)
+    2.0 * n * taps > 5.0 * size * log2(size)
+  }
+
+  // Same as above, for a (non-separable) 2D kernel, where every output needs kernelW * kernelH taps
+  def fftCheaper(width:Int, height:Int, kernelW:Int, kernelH:Int):Boolean = {
+    val size = pow2(width).toDouble * pow2(height)
+    val outputs = (width - kernelW + 1).toDouble * (height - kernelH + 1)
+    2.0 * outputs * kernelW * kernelH > 10.0 * size * log2(size)
+  }
+
+  // Sum the kernelW x kernelH window of weights (row major) times the values, for every window that
+  // fits inside the width x height values.  The result is (width - kernelW + 1) x (height - kernelH + 1),
+  // with each window sum at the window's top left corner.
+  def correlate(values:Array[Double], width:Int, height:Int,
+                weights:Array[Float], kernelW:Int, kernelH:Int):Array[Double] = {
+    val outW = width - kernelW + 1
+    val outH = height - kernelH + 1
+
+    val sizeX = pow2(width)
+    val sizeY = pow2(height)
+    val rows = new FFT(sizeX)
+    val cols = new FFT(sizeY)
+
+    def transform(re:Array[Double], im:Array[Double], inverse:Boolean):Unit = {
+      var y:Int = 0
+      while (y < sizeY) {
+        rows.transform(re, im, y * sizeX, 1, inverse)
+        y += 1
+      }
+      var x:Int = 0
+      while (x < sizeX) {
+        cols.transform(re, im, x, sizeX, inverse)
+        x += 1
+      }
+    }
+
+    val re = new Array[Double](sizeX * sizeY)
+    val im = new Array[Double](sizeX * sizeY)
+    var y:Int = 0
+    while (y < height) {
+      System.arraycopy(values, y * width, re, y * sizeX, width)
+      y += 1
+    }
+
+    val kre = new Array[Double](sizeX * sizeY)
+    val kim = new Array[Double](sizeX * sizeY)
+    var ky:Int = 0
+    while (ky < kernelH) {
+      var kx:Int = 0
+      while (kx < kernelW) {
+        kre(ky * sizeX + kx) = weights(ky * kernelW + kx)
+        kx += 1
+      }
+      ky += 1
+    }
+
+    transform(re, im, inverse = false)
+    transform(kre, kim, inverse = false)
+
+    // correlation is multiplication by the conjugate of the kernel's spectrum
+    multiplyConjugate(re, im, kre, kim, 1.0 / (sizeX.toDouble * sizeY))
+
+    transform(re, im, inverse = true)
+
+    val out = new Array[Double](outW * outH)
+    y = 0
+    while (y < outH) {
+      System.arraycopy(re, y * sizeX, out, y * outW, outW)
+      y += 1
+    }
+    out
+  }
+
+  private def log2(n:Double):Double = math.log(n) / math.log(2)
+
+  private def multiplyConjugate(re:Array[Double], im:Array[Double], kre:Array[Double], kim:Array[Double],
+                                scale:Double):Unit = {
+    var i:Int = 0
+    while (i < re.length) {
+      val r = re(i) * kre(i) + im(i) * kim(i)
+      val m = im(i) * kre(i) - re(i) * kim(i)
+      re(i) = r * scale
+      im(i) = m * scale
+      i += 1
+    }
+  }
+
+  // One pass of a separable kernel.  Each line of length srcLen is filtered into n outputs, output i
+  // being the sum of weights(t) * line(first + i - weights.length / 2 + t), with out of range positions
+  // reflected back into the line.
+  class Line(weights:Array[Float], srcLen:Int, first:Int, n:Int, useFFT:Boolean) {
+    private val taps = weights.length
+    private val extLen = n + taps - 1
+
+    // the line positions the outputs read from, reflected
+    private val positions = Array.tabulate[Int](extLen)(j => reflect(first - taps / 2 + j, srcLen))
+
+    private val fft = if (useFFT) new FFT(pow2(extLen)) else null
+    private val (kre, kim) = if (useFFT) {
+      val kre = new Array[Double](fft.size)
+      val kim = new Array[Double](fft.size)
+      var t:Int = 0
+      while (t < taps) {
+        kre(t) = weights(t)
+        t += 1
+      }
+      fft.transform(kre, kim, 0, 1, inverse = false)
+      (kre, kim)
+    }
+    else {
+      (null, null)
+    }
+    private val re = if (useFFT) new Array[Double](fft.size) else null
+    private val im = if (useFFT) new Array[Double](fft.size) else null
+
+    // Filter count lines of src, line l starting at srcOffset + l * srcLineStep and stepping by
+    // srcStride, into dst, starting at dstOffset + l * dstLineStep and stepping by dstStride
+    def filter(src:Array[Double], srcOffset:Int, srcStride:Int, srcLineStep:Int, count:Int,
+               dst:Array[Double], dstOffset:Int, dstStride:Int, dstLineStep:Int):Unit = {
+      var l:Int = 0
+      if (useFFT) {
+        // real kernel, so two lines can share one complex transform, one as the real part, the
+        // other as the imaginary part
+        while (l < count) {
+          val pair = l + 1 < count
+          java.util.Arrays.fill(re, 0.0)
+          java.util.Arrays.fill(im, 0.0)
+
+          var j:Int = 0
+          while (j < extLen) {
+            re(j) = src(srcOffset + l * srcLineStep + positions(j) * srcStride)
+            if (pair) {
+              im(j) = src(srcOffset + (l + 1) * srcLineStep + positions(j) * srcStride)
+            }
+            j += 1
+          }
+
+          fft.transform(re, im, 0, 1, inverse = false)
+          multiplyConjugate(re, im, kre, kim, 1.0 / fft.size)
+          fft.transform(re, im, 0, 1, inverse = true)
+
+          var i:Int = 0
+          while (i < n) {
+            dst(dstOffset + l * dstLineStep + i * dstStride) = re(i)
+            if (pair) {
+              dst(dstOffset + (l + 1) * dstLineStep + i * dstStride) = im(i)
+            }
+            i += 1
+          }
+          l += 2
+        }
+      }
+      else {
+        while (l < count) {
+          val s = srcOffset + l * srcLineStep
+          var i:Int = 0
+          while (i < n) {
+            var sum = 0.0
+            var t:Int = 0
+            while (t < taps) {
+              sum += weights(t) * src(s + positions(i + t) * srcStride)
+              t += 1
+            }
+            dst(dstOffset + l * dstLineStep + i * dstStride) = sum
+            i += 1
+          }
+          l += 1
+        }
+      }
+    }
+  }
+
+  // Iterative radix-2 FFT of a fixed (power of 2) size, with precomputed twiddle factors.  The
+  // inverse is unscaled.
+  class FFT(val size:Int) {
+    private val cos = Array.tabulate[Double](size / 2)(k => math.cos(2.0 * math.Pi * k / size))
+    private val sin = Array.tabulate[Double](size / 2)(k => math.sin(2.0 * math.Pi * k / size))
+
+    // Transform the size values starting at offset, stepping by stride, in place
+    def transform(re:Array[Double], im:Array[Double], offset:Int, stride:Int, inverse:Boolean):Unit = {
+      // bit reversed reordering
+      var i:Int = 1
+      var j:Int = 0
+      while (i < size) {
+        var bit = size >> 1
+        while ((j & bit) != 0) {
+          j ^= bit
+          bit >>= 1
+        }
+        j |= bit
+        if (i < j) {
+          val a = offset + i * stride
+          val b = offset + j * stride
+          val tr = re(a)
+          re(a) = re(b)
+          re(b) = tr
+          val ti = im(a)
+          im(a) = im(b)
+          im(b) = ti
+        }
+        i += 1
+      }
+
+      val sign = if (inverse) 1.0 else -1.0
+      var len:Int = 2
+      while (len <= size) {
+        val half = len / 2
+        val step = size / len
+        var start:Int = 0
+        while (start < size) {
+          var k:Int = 0
+          while (k < half) {
+            val wr = cos(k * step)
+            val wi = sign * sin(k * step)
+            val a = offset + (start + k) * stride
+            val b = a + half * stride
+            val tr = re(b) * wr - im(b) * wi
+            val ti = re(b) * wi + im(b) * wr
+            re(b) = re(a) - tr
+            im(b) = im(a) - ti
+            re(a) += tr
+            im(a) += ti
+            k += 1
+          }
+          start += len
+        }
+        len <<= 1
+      }
+    }
+  }
+
+}
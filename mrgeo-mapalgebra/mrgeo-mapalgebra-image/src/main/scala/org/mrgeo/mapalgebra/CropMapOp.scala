@@ -128,8 +128,8 @@ class CropMapOp extends RasterMapOp with Externalizable {
 
     val b = getOutputBounds(zoom, tilesize)
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, meta.getDefaultValues,
-      bounds = b, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, tilesize, meta.getBands, meta.getTileType, meta.getDefaultValues,
+      b))
 
     true
   }
@@ -19,7 +19,7 @@ import java.io.{Externalizable, IOException, ObjectInput, ObjectOutput}
 
 import org.apache.spark.rdd.PairRDDFunctions
 import org.apache.spark.{SparkConf, SparkContext}
-import org.mrgeo.data.raster.RasterWritable
+import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
 import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.image.MrsPyramidMetadata
 import org.mrgeo.job.JobArguments
@@ -78,8 +78,8 @@ class FillMapOp extends RasterMapOp with Externalizable {
 
     rasterRDD = Some(RasterRDD(constFill match {
       case Some(const) =>
-        val src = RasterWritable.toMrGeoRaster(rdd.first()._2)
-        val constRaster = src.createCompatibleRaster(src.width(), src.height())
+        val constRaster = MrGeoRaster.createEmptyRaster(meta.getTilesize, meta.getTilesize, meta.getBands,
+          meta.getTileType)
         constRaster.fill(const)
 
         val joined = new PairRDDFunctions(test).leftOuterJoin(rdd)
@@ -97,8 +97,8 @@ class FillMapOp extends RasterMapOp with Externalizable {
         val fillrdd = fill.rdd() getOrElse
                       (throw new IOException("Can't load RDD! Ouch! " + inputMapOp.getClass.getName))
 
-        val src = RasterWritable.toMrGeoRaster(rdd.first()._2)
-        val nodataRaster = src.createCompatibleEmptyRaster(src.width(), src.height(), nodata)
+        val nodataRaster = MrGeoRaster.createEmptyRaster(meta.getTilesize, meta.getTilesize, meta.getBands,
+          meta.getTileType, nodata)
 
         val joined = new PairRDDFunctions(test).cogroup(rdd, fillrdd)
         joined.map(tile => {
@@ -118,8 +118,8 @@ class FillMapOp extends RasterMapOp with Externalizable {
         })
     }))
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, meta.getDefaultValues,
-      bounds = TMSUtils.tileToBounds(tb, zoom, meta.getTilesize), calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, meta.getTilesize, meta.getBands, meta.getTileType,
+      meta.getDefaultValues, TMSUtils.tileToBounds(tb, zoom, meta.getTilesize)))
 
     true
   }
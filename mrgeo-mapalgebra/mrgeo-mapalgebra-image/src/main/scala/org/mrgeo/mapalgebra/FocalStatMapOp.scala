@@ -149,6 +149,41 @@ class FocalStatMapOp extends RawFocalMapOp with Externalizable {
     }
   }
 
+  // Everything but the median of floating point data can be computed with running aggregates
+  override def computeBand(raster:MrGeoRaster, band:Int, nodata:Double, outNoData:Double,
+                           bufferX:Int, bufferY:Int,
+                           xLeftOffset:Int, neighborhoodWidth:Int,
+                           yAboveOffset:Int, neighborhoodHeight:Int,
+                           answer:MrGeoRaster, tileId:Long):Boolean = {
+    val tilesize = answer.width()
+    val window = new FocalWindow(raster, band, nodata, bufferX, bufferY, xLeftOffset, yAboveOffset,
+      neighborhoodWidth, neighborhoodHeight, tilesize, ignoreNoData, outNoData)
+    val out = new Array[Double](tilesize * answer.height())
+
+    val computed = stat match {
+      case FocalStatMapOp.Count =>
+        window.count(out)
+        true
+      case FocalStatMapOp.Max | FocalStatMapOp.Min | FocalStatMapOp.Range =>
+        window.extremes(out, stat)
+        true
+      case FocalStatMapOp.Mean | FocalStatMapOp.StdDev | FocalStatMapOp.Sum | FocalStatMapOp.Variance =>
+        window.moments(out, stat)
+        true
+      case FocalStatMapOp.Median =>
+        raster.datatype() match {
+          case DataBuffer.TYPE_FLOAT | DataBuffer.TYPE_DOUBLE => false
+          case _ => window.median(out)
+        }
+      case _ => false
+    }
+
+    if (computed) {
+      answer.writeBand(band, out)
+    }
+    computed
+  }
+
   // The following was adapted from http://www.johndcook.com/blog/standard_deviation/ which in
   // turn came from Donald Knuth’s Art of Computer Programming, Vol 2, page 232, 3rd edition
   def computeStat(values:Array[Double], maxIndex:Int, stat:String):Double = {
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.mapalgebra
+
+import org.mrgeo.data.raster.MrGeoRaster
+
+object FocalWindow {
+  // number of histogram bins summarized by each coarse bin of the median histogram
+  private val CoarseBins = 256
+
+  // largest range of values the median histogram will handle
+  private val MaxHistogramBins = 65536
+
+  // van Herk/Gil-Werman running minimum.  For each of the n - w + 1 runs of w values in src (starting
+  // at srcOffset, stepping by srcStride), write the minimum to dst (starting at dstOffset, stepping by
+  // dstStride).  Uses ~3 comparisons per value, no matter how big w is.  prefix and suffix are
+  // scratch space, at least n long.
+  private def runningMin(src:Array[Double], srcOffset:Int, srcStride:Int, n:Int, w:Int,
+                         dst:Array[Double], dstOffset:Int, dstStride:Int,
+                         prefix:Array[Double], suffix:Array[Double]):Unit = {
+    // minimums from the start of each block of w values
+    var i:Int = 0
+    while (i < n) {
+      val v = src(srcOffset + i * srcStride)
+      prefix(i) = if (i % w == 0) v else math.min(prefix(i - 1), v)
+      i += 1
+    }
+
+    // minimums to the end of each block of w values
+    i = n - 1
+    while (i >= 0) {
+      val v = src(srcOffset + i * srcStride)
+      suffix(i) = if (i == n - 1 || (i + 1) % w == 0) v else math.min(suffix(i + 1), v)
+      i -= 1
+    }
+
+    // every run spans (at most) the end of one block and the start of the next
+    i = 0
+    while (i <= n - w) {
+      dst(dstOffset + i * dstStride) = math.min(suffix(i), prefix(i + w - 1))
+      i += 1
+    }
+  }
+}
+
+// Whole-tile, incremental evaluation of neighborhood statistics over one band of a buffered tile
+// (as built by FocalBuilder).  Rather than re-reading the neighborhood of every output pixel, the
+// band is read once into running aggregates:
+//   - summed-area tables for count, sum, mean, variance and stddev
+//   - van Herk/Gil-Werman running minimums for min, max and range
+//   - a sliding histogram for the median of integer data
+// so the cost per output pixel doesn't depend on the size of the neighborhood.
+//
+// The geometry is the same as RawFocalMapOp.computePixelValue: the output pixel (px, py) is the
+// source pixel (px + bufferX, py + bufferY), and its neighborhood starts xLeftOffset pixels to the
+// left and yAboveOffset pixels above it.  Pixels whose source pixel is nodata are nodata, as are
+// pixels with any nodata in their neighborhood, unless ignoreNoData is set.
+class FocalWindow(raster:MrGeoRaster, band:Int, nodata:Double,
+                  bufferX:Int, bufferY:Int, xLeftOffset:Int, yAboveOffset:Int,
+                  neighborhoodWidth:Int, neighborhoodHeight:Int,
+                  tilesize:Int, ignoreNoData:Boolean, outNoData:Double) {
+  private val width = raster.width()
+  private val height = raster.height()
+
+  private val values = new Array[Double](width * height)
+  raster.readBand(band, values)
+
+  private val valid = {
+    val v = new Array[Boolean](values.length)
+    var i:Int = 0
+    while (i < values.length) {
+      v(i) = if (nodata.isNaN) !values(i).isNaN else values(i) != nodata
+      i += 1
+    }
+    v
+  }
+
+  private val neighborhoodPixels = neighborhoodWidth * neighborhoodHeight
+
+  // summed-area table of the number of valid pixels, (width + 1) x (height + 1)
+  private lazy val counts:Array[Int] = {
+    val table = new Array[Int]((width + 1) * (height + 1))
+    val stride = width + 1
+    var y:Int = 0
+    while (y < height) {
+      var row:Int = 0
+      var x:Int = 0
+      while (x < width) {
+        if (valid(y * width + x)) {
+          row += 1
+        }
+        table((y + 1) * stride + x + 1) = table(y * stride + x + 1) + row
+        x += 1
+      }
+      y += 1
+    }
+    table
+  }
+
+  def count(out:Array[Double]):Unit = {
+    val table = counts
+    var py:Int = 0
+    while (py < tilesize) {
+      var px:Int = 0
+      while (px < tilesize) {
+        val n = rectangle(table, px + bufferX - xLeftOffset, py + bufferY - yAboveOffset)
+        out(py * tilesize + px) = if (isNoData(px, py, n)) outNoData else n
+        px += 1
+      }
+      py += 1
+    }
+  }
+
+  // sum, mean, variance or stddev
+  def moments(out:Array[Double], stat:String):Unit = {
+    // accumulate relative to a valid value from the tile, so the sum of squares doesn't swamp
+    // the variance of data far from 0
+    val shift = {
+      var i:Int = 0
+      while (i < values.length && !valid(i)) {
+        i += 1
+      }
+      if (i < values.length) values(i) else 0.0
+    }
+
+    val stride = width + 1
+    val sums = new Array[Double](stride * (height + 1))
+    val squares = new Array[Double](stride * (height + 1))
+    var y:Int = 0
+    while (y < height) {
+      var rowSum:Double = 0.0
+      var rowSquares:Double = 0.0
+      var x:Int = 0
+      while (x < width) {
+        val ndx = y * width + x
+        if (valid(ndx)) {
+          val v = values(ndx) - shift
+          rowSum += v
+          rowSquares += v * v
+        }
+        val t = (y + 1) * stride + x + 1
+        sums(t) = sums(t - stride) + rowSum
+        squares(t) = squares(t - stride) + rowSquares
+        x += 1
+      }
+      y += 1
+    }
+
+    val table = counts
+    var py:Int = 0
+    while (py < tilesize) {
+      val ny = py + bufferY - yAboveOffset
+      var px:Int = 0
+      while (px < tilesize) {
+        val nx = px + bufferX - xLeftOffset
+        val n = rectangle(table, nx, ny)
+        out(py * tilesize + px) = if (isNoData(px, py, n)) {
+          outNoData
+        }
+        else {
+          val s = rectangle(sums, nx, ny)
+          stat match {
+            case FocalStatMapOp.Sum => s + n * shift
+            case FocalStatMapOp.Mean => s / n + shift
+            case _ =>
+              val variance = if (n > 1) {
+                math.max(0.0, (rectangle(squares, nx, ny) - s * s / n) / (n - 1))
+              }
+              else {
+                0.0
+              }
+              if (stat == FocalStatMapOp.StdDev) math.sqrt(variance) else variance
+          }
+        }
+        px += 1
+      }
+      py += 1
+    }
+  }
+
+  // min, max or range
+  def extremes(out:Array[Double], stat:String):Unit = {
+    val cols = width - neighborhoodWidth + 1
+
+    // nodata never wins a minimum.  The maximum is the (negated) minimum of the negated values
+    def runningMinimum(negate:Boolean):Array[Double] = {
+      val source = new Array[Double](values.length)
+      var i:Int = 0
+      while (i < values.length) {
+        source(i) = if (!valid(i)) Double.PositiveInfinity else if (negate) -values(i) else values(i)
+        i += 1
+      }
+
+      val scratch1 = new Array[Double](math.max(width, height))
+      val scratch2 = new Array[Double](math.max(width, height))
+
+      val rows = new Array[Double](cols * height)
+      var y:Int = 0
+      while (y < height) {
+        FocalWindow.runningMin(source, y * width, 1, width, neighborhoodWidth, rows, y * cols, 1, scratch1, scratch2)
+        y += 1
+      }
+
+      val mins = new Array[Double](cols * (height - neighborhoodHeight + 1))
+      var x:Int = 0
+      while (x < cols) {
+        FocalWindow.runningMin(rows, x, cols, height, neighborhoodHeight, mins, x, cols, scratch1, scratch2)
+        x += 1
+      }
+      mins
+    }
+
+    val mins = if (stat != FocalStatMapOp.Max) runningMinimum(negate = false) else null
+    val maxes = if (stat != FocalStatMapOp.Min) runningMinimum(negate = true) else null
+
+    val table = counts
+    var py:Int = 0
+    while (py < tilesize) {
+      val ny = py + bufferY - yAboveOffset
+      var px:Int = 0
+      while (px < tilesize) {
+        val nx = px + bufferX - xLeftOffset
+        val ndx = ny * cols + nx
+        out(py * tilesize + px) = if (isNoData(px, py, rectangle(table, nx, ny))) {
+          outNoData
+        }
+        else {
+          stat match {
+            case FocalStatMapOp.Min => mins(ndx)
+            case FocalStatMapOp.Max => -maxes(ndx)
+            case _ => -maxes(ndx) - mins(ndx)
+          }
+        }
+        px += 1
+      }
+      py += 1
+    }
+  }
+
+  // The median, using a histogram of the neighborhood that slides along each row.  Only works for
+  // integer data with a limited range of values, returns false (without touching out) otherwise.
+  def median(out:Array[Double]):Boolean = {
+    var min = Double.MaxValue
+    var max = -Double.MaxValue
+    var i:Int = 0
+    while (i < values.length) {
+      if (valid(i)) {
+        min = math.min(min, values(i))
+        max = math.max(max, values(i))
+      }
+      i += 1
+    }
+
+    if (max < min) {
+      // no valid values, everything is nodata
+      java.util.Arrays.fill(out, outNoData)
+      return true
+    }
+
+    if (max - min >= FocalWindow.MaxHistogramBins) {
+      return false
+    }
+
+    val base = min.toInt
+    val histogram = new Array[Int]((max - min).toInt + 1)
+    val coarse = new Array[Int](histogram.length / FocalWindow.CoarseBins + 1)
+
+    def column(x:Int, y:Int, add:Int):Unit = {
+      var r:Int = 0
+      while (r < neighborhoodHeight) {
+        val ndx = (y + r) * width + x
+        if (valid(ndx)) {
+          val bin = values(ndx).toInt - base
+          histogram(bin) += add
+          coarse(bin / FocalWindow.CoarseBins) += add
+        }
+        r += 1
+      }
+    }
+
+    // the k-th (0-based) smallest value in the histogram
+    def kth(k:Int):Double = {
+      var cumulative:Int = 0
+      var c:Int = 0
+      while (cumulative + coarse(c) <= k) {
+        cumulative += coarse(c)
+        c += 1
+      }
+      var bin = c * FocalWindow.CoarseBins
+      while (cumulative + histogram(bin) <= k) {
+        cumulative += histogram(bin)
+        bin += 1
+      }
+      bin + base
+    }
+
+    val table = counts
+    var py:Int = 0
+    while (py < tilesize) {
+      val ny = py + bufferY - yAboveOffset
+
+      var x:Int = bufferX - xLeftOffset
+      while (x < bufferX - xLeftOffset + neighborhoodWidth) {
+        column(x, ny, 1)
+        x += 1
+      }
+
+      var px:Int = 0
+      while (px < tilesize) {
+        val nx = px + bufferX - xLeftOffset
+        if (px > 0) {
+          column(nx - 1, ny, -1)
+          column(nx + neighborhoodWidth - 1, ny, 1)
+        }
+
+        val n = rectangle(table, nx, ny)
+        out(py * tilesize + px) =
+            if (isNoData(px, py, n)) {
+              outNoData
+            }
+            else if ((n & 1) == 1) {
+              kth(n / 2)
+            }
+            else {
+              (kth(n / 2 - 1) + kth(n / 2)) / 2.0
+            }
+        px += 1
+      }
+
+      // empty the histogram for the next row
+      x = tilesize - 1 + bufferX - xLeftOffset
+      while (x < tilesize - 1 + bufferX - xLeftOffset + neighborhoodWidth) {
+        column(x, ny, -1)
+        x += 1
+      }
+
+      py += 1
+    }
+
+    true
+  }
+
+  // An output pixel is nodata if its source pixel is, or if any of its neighborhood (n valid pixels) is,
+  // unless nodata is ignored
+  private def isNoData(px:Int, py:Int, n:Int):Boolean = {
+    !valid((py + bufferY) * width + px + bufferX) || (!ignoreNoData && n < neighborhoodPixels)
+  }
+
+  // the sum of the neighborhood starting at nx, ny from a summed-area table
+  private def rectangle(table:Array[Int], nx:Int, ny:Int):Int = {
+    val stride = width + 1
+    val top = ny * stride
+    val bottom = (ny + neighborhoodHeight) * stride
+    table(bottom + nx + neighborhoodWidth) - table(top + nx + neighborhoodWidth) - table(bottom + nx) +
+    table(top + nx)
+  }
+
+  private def rectangle(table:Array[Double], nx:Int, ny:Int):Double = {
+    val stride = width + 1
+    val top = ny * stride
+    val bottom = (ny + neighborhoodHeight) * stride
+    table(bottom + nx + neighborhoodWidth) - table(top + nx + neighborhoodWidth) - table(bottom + nx) +
+    table(top + nx)
+  }
+}
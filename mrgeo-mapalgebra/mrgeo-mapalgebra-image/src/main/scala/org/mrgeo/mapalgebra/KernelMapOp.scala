@@ -48,6 +48,117 @@ object KernelMapOp extends MapOpRegistrar {
 
   override def apply(node:ParserNode, variables:String => Option[ParserNode]):MapOp =
     new KernelMapOp(node, variables)
+
+  // Apply a separable kernel to a buffered tile as a row pass followed by a column pass, each done
+  // directly or with an FFT, whichever is cheaper for the kernel size.  This gives the same result as the
+  // kernel's calculate(): nodata values count as 0, the edges of the buffered tile are reflected, and
+  // output pixels are nodata where the source pixel is.
+  def separable(src:MrGeoRaster, rowWeights:Array[Float], colWeights:Array[Float], kernelW:Int, kernelH:Int,
+                nodata:Double):MrGeoRaster = {
+    val width = src.width()
+    val height = src.height()
+    val tilesize = width - kernelW + 1
+
+    // calculate() samples the blurred tile at this offset
+    val halfKernelW = kernelW / 2 + 1
+    val halfKernelH = kernelH / 2 + 1
+
+    val source = new Array[Double](width * height)
+    src.readBand(0, source)
+    val values = zeroNodata(source, nodata)
+
+    // filter every row, but only the columns that are output
+    val rows = new Convolution.Line(rowWeights, width, halfKernelW, tilesize,
+      Convolution.fftCheaper(tilesize, rowWeights.length))
+    val filtered = new Array[Double](height * tilesize)
+    rows.filter(values, 0, 1, width, height, filtered, 0, 1, tilesize)
+
+    val cols = new Convolution.Line(colWeights, height, halfKernelH, tilesize,
+      Convolution.fftCheaper(tilesize, colWeights.length))
+    val answer = new Array[Double](tilesize * tilesize)
+    cols.filter(filtered, 0, tilesize, 1, tilesize, answer, 0, tilesize, 1)
+
+    var y:Int = 0
+    while (y < tilesize) {
+      val sy = Convolution.reflect(y + halfKernelH, height)
+      var x:Int = 0
+      while (x < tilesize) {
+        if (isNodata(source(sy * width + Convolution.reflect(x + halfKernelW, width)), nodata)) {
+          answer(y * tilesize + x) = Float.NaN
+        }
+        x += 1
+      }
+      y += 1
+    }
+
+    val dst = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 1, DataBuffer.TYPE_FLOAT)
+    dst.writeBand(0, answer)
+    dst
+  }
+
+  // Apply a kernel to a buffered tile with a 2D FFT.  This gives the same result as naiveKernel, for
+  // kernels too big to apply pixel by pixel.
+  def fft(src:MrGeoRaster, weights:Array[Float], kernelW:Int, kernelH:Int, nodata:Double):MrGeoRaster = {
+    val width = src.width()
+    val height = src.height()
+    val tilesize = width - kernelW + 1
+
+    var weight:Float = 0.0f
+    var k:Int = 0
+    while (k < weights.length) {
+      if (weights(k) != 0.0) {
+        weight += weights(k)
+      }
+      k += 1
+    }
+
+    val source = new Array[Double](width * height)
+    src.readBand(0, source)
+
+    val sums = Convolution.correlate(zeroNodata(source, nodata), width, height, weights, kernelW, kernelH)
+    val outW = width - kernelW + 1
+
+    val answer = Array.fill[Double](tilesize * tilesize)(Float.NaN)
+    if (weight != 0.0) {
+      var y:Int = 0
+      while (y < tilesize) {
+        var x:Int = 0
+        while (x < tilesize) {
+          if (!isNodata(source(y * width + x), nodata)) {
+            answer(y * tilesize + x) = sums(y * outW + x) / weight
+          }
+          x += 1
+        }
+        y += 1
+      }
+    }
+
+    val dst = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 1, DataBuffer.TYPE_FLOAT)
+    dst.writeBand(0, answer)
+    dst
+  }
+
+  private def isNodata(value:Double, nodata:Double):Boolean = {
+    if (nodata.isNaN) {
+      value.isNaN
+    }
+    else {
+      value == nodata
+    }
+  }
+
+  // nodata values contribute nothing to the kernel sums
+  private def zeroNodata(values:Array[Double], nodata:Double):Array[Double] = {
+    val zeroed = values.clone()
+    var i:Int = 0
+    while (i < zeroed.length) {
+      if (isNodata(zeroed(i), nodata)) {
+        zeroed(i) = 0.0
+      }
+      i += 1
+    }
+    zeroed
+  }
 }
 
 class KernelMapOp extends RasterMapOp with Externalizable {
@@ -58,7 +169,7 @@ class KernelMapOp extends RasterMapOp with Externalizable {
   private var inputMapOp:Option[RasterMapOp] = None
 
   override def registerClasses():Array[Class[_]] = {
-    Array[Class[_]](classOf[Array[Float]])
+    Array[Class[_]](classOf[Array[Float]], classOf[(Array[Float], Array[Float])])
   }
 
   override def rdd():Option[RasterRDD] = rasterRDD
@@ -89,30 +200,79 @@ class KernelMapOp extends RasterMapOp with Externalizable {
     val halfKernelW = kernel.getWidth / 2 + 1
     val halfKernelH = kernel.getHeight / 2 + 1
 
-    val focal = FocalBuilder.create(rdd, halfKernelW - 1, halfKernelH - 1,
-      meta.getBounds, zoom, nodatas, context)
+    val focal = FocalBuilder.buffered(rdd, halfKernelW - 1, halfKernelH - 1,
+      meta.getBounds, zoom, tilesize, nodatas, context)
 
-    rasterRDD = Some(RasterRDD(kernel.getKernel match {
-      case Some(kernelData) =>
+    rasterRDD = Some(RasterRDD((kernel.getSeparableKernel, kernel.getKernel) match {
+      case (Some(_), _) =>
+        separableKernel(focal, kernel, nodatas, context)
+      case (_, Some(_)) if Convolution.fftCheaper(tilesize + halfKernelW * 2 - 2, tilesize + halfKernelH * 2 - 2,
+        kernel.getWidth, kernel.getHeight) =>
+        fftKernel(focal, kernel, nodatas, context)
+      case (_, Some(_)) =>
         naiveKernel(focal, kernel, nodatas, context)
       case _ =>
         focal.flatMap(tile => {
-          kernel.calculate(tile._1.get(), RasterWritable.toMrGeoRaster(tile._2), nodatas) match {
+          kernel.calculate(tile._1.get(), tile._2, nodatas) match {
             case Some(r:MrGeoRaster) => Array((tile._1, RasterWritable.toWritable(r))).iterator
             case _ => Array.empty[(TileIdWritable, RasterWritable)].iterator
           }
         })
     }))
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, meta.getMaxZoomLevel, Array.fill[Number](1)(Float.NaN),
-      bounds = meta.getBounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, tilesize, 1, DataBuffer.TYPE_FLOAT, Array[Double](Float.NaN),
+      meta.getBounds))
 
     true
   }
 
+  // Apply a separable kernel as a row pass followed by a column pass (see KernelMapOp.separable)
+  def separableKernel(focal:RDD[(TileIdWritable, MrGeoRaster)], kernel:Kernel, nodatas:Array[Double],
+                      context:SparkContext):RDD[(TileIdWritable, RasterWritable)] = {
+    val weights = context.broadcast(kernel.getSeparableKernel.get)
+
+    val kernelW = kernel.getWidth
+    val kernelH = kernel.getHeight
+
+    focal.mapPartitions(_.map(tile => {
+      val startTime = System.currentTimeMillis()
+
+      val dst = KernelMapOp.separable(tile._2, weights.value._1, weights.value._2,
+        kernelW, kernelH, nodatas(0).doubleValue())
+
+      if (log.isDebugEnabled()) {
+        logDebug("Time to process tile " + tile._1.get + " is " + (System.currentTimeMillis() - startTime))
+      }
+
+      (tile._1, RasterWritable.toWritable(dst))
+    }), preservesPartitioning = true)
+  }
+
+  // Apply a (non-separable) kernel with a 2D FFT of each buffered tile (see KernelMapOp.fft)
+  def fftKernel(focal:RDD[(TileIdWritable, MrGeoRaster)], kernel:Kernel, nodatas:Array[Double],
+                context:SparkContext):RDD[(TileIdWritable, RasterWritable)] = {
+    val weights = context.broadcast(kernel.getKernel.get)
+
+    val kernelW = kernel.getWidth
+    val kernelH = kernel.getHeight
+
+    focal.mapPartitions(_.map(tile => {
+      val startTime = System.currentTimeMillis()
+
+      val dst = KernelMapOp.fft(tile._2, weights.value, kernelW, kernelH,
+        nodatas(0).doubleValue())
+
+      if (log.isDebugEnabled()) {
+        logDebug("Time to process tile " + tile._1.get + " is " + (System.currentTimeMillis() - startTime))
+      }
+
+      (tile._1, RasterWritable.toWritable(dst))
+    }), preservesPartitioning = true)
+  }
+
   @SuppressFBWarnings(value = Array[String]("URF_UNREAD_FIELD"),
     justification = "Scala generated code, fields are actually used")
-  def naiveKernel(focal:RDD[(TileIdWritable, RasterWritable)], kernel:Kernel, nodatas:Array[Double],
+  def naiveKernel(focal:RDD[(TileIdWritable, MrGeoRaster)], kernel:Kernel, nodatas:Array[Double],
                   context:SparkContext):RDD[(TileIdWritable, RasterWritable)] = {
 
     val weights = context.broadcast(kernel.getKernel.get)
@@ -156,7 +316,7 @@ class KernelMapOp extends RasterMapOp with Externalizable {
         }
       }
 
-      val src = RasterWritable.toMrGeoRaster(tile._2)
+      val src = tile._2
       val tileWidth = src.width()
       val tilesize = tileWidth - kernelW + 1
       val dst = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 1, DataBuffer.TYPE_FLOAT)
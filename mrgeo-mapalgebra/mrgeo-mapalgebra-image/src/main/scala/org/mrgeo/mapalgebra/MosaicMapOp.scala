@@ -19,7 +19,7 @@ import java.io.{Externalizable, IOException, ObjectInput, ObjectOutput}
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings
 import org.apache.spark.rdd.CoGroupedRDD
-import org.apache.spark.{HashPartitioner, SparkConf, SparkContext}
+import org.apache.spark.{SparkConf, SparkContext}
 import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
 import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.data.tile.TileIdWritable
@@ -153,14 +153,7 @@ class MosaicMapOp extends RasterMapOp with Externalizable {
     logDebug("Bounds: " + bounds.toString)
     logDebug("TileBounds: " + tileBounds.toString)
 
-    // cogroup needs a partitioner, so we'll give one here...
-    var maxpartitions = 0
-    val partitions = pyramids.foreach(p => {
-      if (p.partitions.length > maxpartitions) {
-        maxpartitions = p.partitions.length
-      }
-    })
-    val groups = new CoGroupedRDD(pyramids, new HashPartitioner(maxpartitions))
+    val groups = new CoGroupedRDD(pyramids, SparkUtils.joinPartitioner(pyramids))
 
     rasterRDD = Some(RasterRDD(groups.map(U => {
 
@@ -176,17 +169,37 @@ class MosaicMapOp extends RasterMapOp with Externalizable {
         false
       }
 
+      // how many bands of a constant tile (its 1 x 1 pixel) are nodata
+      def nodatabands(pixel:MrGeoRaster, nodatas:Array[Double]):Int = {
+        (0 until pixel.bands()).count(b => isnodata(pixel.getPixelDouble(0, 0, b), nodatas(b)))
+      }
+
       var dst:MrGeoRaster = null
       var dstnodata:Array[Double] = null
 
+      // constant tiles aren't expanded, a tile that is entirely nodata adds nothing (but is the answer
+      // if nothing else is there), and the first tile, if it has no nodata at all, is the answer as is
+      var verbatim:RasterWritable = null
+      var empty:RasterWritable = null
+
       val done = new Breaks
       var img:Int = 0
       done.breakable {
         for (wr <- U._2) {
           if (wr != null && wr.nonEmpty) {
             val writable = wr.asInstanceOf[Seq[RasterWritable]].head
+            val pixel = RasterWritable.toConstantPixel(writable)
 
-            if (dst == null) {
+            if (pixel != null && nodatabands(pixel, nodata(img)) == pixel.bands()) {
+              if (empty == null) {
+                empty = writable
+              }
+            }
+            else if (dst == null && pixel != null && nodatabands(pixel, nodata(img)) == 0) {
+              verbatim = writable
+              done.break()
+            }
+            else if (dst == null) {
               dst = RasterWritable.toMrGeoRaster(writable)
               dstnodata = nodata(img)
 
@@ -254,11 +267,19 @@ class MosaicMapOp extends RasterMapOp with Externalizable {
       }
 
       // write the tile...
-      (new TileIdWritable(U._1), RasterWritable.toWritable(dst))
+      val tile = if (verbatim != null) {
+        verbatim
+      }
+      else if (dst != null) {
+        RasterWritable.toWritable(dst)
+      }
+      else {
+        empty
+      }
+      (new TileIdWritable(U._1), tile)
     })))
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, nodata(0),
-      bounds = bounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, tilesize, numbands, tiletype, nodata(0), bounds))
 
     true
 
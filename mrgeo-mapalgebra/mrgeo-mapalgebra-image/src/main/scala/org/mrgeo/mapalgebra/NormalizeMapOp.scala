@@ -114,8 +114,8 @@ class NormalizeMapOp extends RasterMapOp with Externalizable {
       (tile._1, RasterWritable.toWritable(raster))
     })))
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, meta.getDefaultValues,
-      bounds = meta.getBounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, meta.getTilesize, meta.getBands, meta.getTileType,
+      meta.getDefaultValues, meta.getBounds))
 
     true
   }
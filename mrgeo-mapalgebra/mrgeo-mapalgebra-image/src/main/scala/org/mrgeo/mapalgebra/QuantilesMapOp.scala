@@ -23,7 +23,7 @@ import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.job.JobArguments
 import org.mrgeo.mapalgebra.parser.{ParserException, ParserNode}
 import org.mrgeo.mapalgebra.raster.RasterMapOp
-import org.mrgeo.quantiles.Quantiles
+import org.mrgeo.quantiles.{QuantileSketch, Quantiles}
 
 import scala.language.existentials
 
@@ -34,7 +34,10 @@ object QuantilesMapOp extends MapOpRegistrar {
   }
 
   def create(raster:RasterMapOp, numQuantiles:Int, fraction:Float = 1.0f) =
-    new QuantilesMapOp(Some(raster), Some(numQuantiles), Some(fraction))
+    new QuantilesMapOp(Some(raster), Some(numQuantiles), Some(fraction), None)
+
+  def create(raster:RasterMapOp, numQuantiles:Int, fraction:Float, accuracy:Double) =
+    new QuantilesMapOp(Some(raster), Some(numQuantiles), Some(fraction), Some(accuracy))
 
   override def apply(node:ParserNode, variables:String => Option[ParserNode]):MapOp =
     new QuantilesMapOp(node, variables)
@@ -46,13 +49,14 @@ class QuantilesMapOp extends RasterMapOp with Externalizable {
   private var inputMapOp:Option[RasterMapOp] = None
   private var numQuantiles:Option[Int] = None
   private var fraction:Option[Float] = None
+  private var accuracy:Option[Double] = None
 
   def this(node:ParserNode, variables:String => Option[ParserNode]) {
     this()
 
-    if ((node.getNumChildren < 2) || (node.getNumChildren > 3)) {
+    if ((node.getNumChildren < 2) || (node.getNumChildren > 4)) {
       throw new ParserException(
-        "quantiles usage: quantiles(source raster, num quantiles, [percent of pixels to use])")
+        "quantiles usage: quantiles(source raster, num quantiles, [percent of pixels to use], [accuracy])")
     }
 
     inputMapOp = RasterMapOp.decodeToRaster(node.getChild(0), variables)
@@ -72,6 +76,18 @@ class QuantilesMapOp extends RasterMapOp with Externalizable {
           "The value for the fraction parameter must be a number between 0.0 and 1.0");
       }
     }
+    if (node.getNumChildren > 3) {
+      accuracy = MapOp.decodeDouble(node.getChild(3), variables)
+      accuracy match {
+        case Some(a) =>
+          if (a < 0.0 || a >= 1.0) {
+            throw new ParserException(
+              "The accuracy passed to quantiles " + a + " must be between 0.0 (exact) and 1.0")
+          }
+        case None => throw new ParserException(
+          "The value for the accuracy parameter must be a number between 0.0 (exact) and 1.0");
+      }
+    }
   }
 
   override def rdd():Option[RasterRDD] = {
@@ -84,7 +100,10 @@ class QuantilesMapOp extends RasterMapOp with Externalizable {
       classOf[Array[Int]],
       classOf[Array[Short]],
       classOf[Array[Byte]],
-      classOf[Array[Object]]
+      classOf[Array[Object]],
+      classOf[Array[Array[Long]]],
+      classOf[Array[QuantileSketch]],
+      classOf[QuantileSketch]
     )
   }
 
@@ -130,7 +149,10 @@ class QuantilesMapOp extends RasterMapOp with Externalizable {
     //      bounds = meta.getBounds, calcStats = false))
 
     // Compute the quantile values and save them to metadata
-    val quantiles = Quantiles.compute(rdd, numberOfQuantiles, fraction, meta)
+    val quantiles = accuracy match {
+      case Some(a) => Quantiles.compute(rdd, numberOfQuantiles, fraction, meta, a)
+      case None => Quantiles.compute(rdd, numberOfQuantiles, fraction, meta)
+    }
     var b:Int = 0
     while (b < quantiles.length) {
       meta.setQuantiles(b, quantiles(b))
@@ -153,11 +175,12 @@ class QuantilesMapOp extends RasterMapOp with Externalizable {
   override def writeExternal(out:ObjectOutput):Unit = {}
 
   private[mapalgebra] def this(raster:Option[RasterMapOp], numQuantiles:Option[Int],
-                               fraction:Option[Float]) = {
+                               fraction:Option[Float], accuracy:Option[Double]) = {
     this()
 
     this.inputMapOp = raster
     this.numQuantiles = numQuantiles
     this.fraction = fraction
+    this.accuracy = accuracy
   }
 }
\ No newline at end of file
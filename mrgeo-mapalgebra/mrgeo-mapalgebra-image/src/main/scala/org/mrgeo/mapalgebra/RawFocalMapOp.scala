@@ -60,14 +60,14 @@ abstract class RawFocalMapOp extends RasterMapOp with Externalizable {
     val bufferX = neighborhoodWidth / 2
     val bufferY = neighborhoodHeight / 2
 
-    val tiles = FocalBuilder.create(rdd, bufferX, bufferY, meta.getBounds, zoom, nodatas, context)
+    val tiles = FocalBuilder.buffered(rdd, bufferX, bufferY, meta.getBounds, zoom, tilesize, nodatas, context)
 
     rasterRDD =
         Some(
           RasterRDD(calculate(tiles, bufferX, bufferY, neighborhoodWidth, neighborhoodHeight, nodatas, zoom, tilesize)))
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, getOutputNoData,
-      bounds = meta.getBounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, tilesize, meta.getBands, getOutputTileType, getOutputNoData,
+      meta.getBounds))
 
     true
   }
@@ -118,6 +118,31 @@ abstract class RawFocalMapOp extends RasterMapOp with Externalizable {
                                   xLeftOffset:Int, neighborhoodWidth:Int,
                                   yAboveOffset:Int, neighborhoodHeight:Int, tileId:Long):Double
 
+  /**
+    * Compute an entire band of the output tile at once, instead of pixel by pixel. Sub-classes that
+    * can evaluate the neighborhoods incrementally (see FocalWindow) override this to avoid re-reading
+    * the whole neighborhood for every pixel. The default computes nothing, and returns false, so
+    * computePixelValue is called for each pixel.
+    *
+    * @param raster             The source raster, with the neighborhood buffer around the tile
+    * @param band               The band to compute
+    * @param nodata             The nodata value of the source band
+    * @param outNoData          The nodata value for the output band
+    * @param bufferX            The width of the buffer on the left and right of the tile
+    * @param bufferY            The height of the buffer above and below the tile
+    * @param xLeftOffset        See computePixelValue
+    * @param neighborhoodWidth  The width of the neighborhood in pixels.
+    * @param yAboveOffset       See computePixelValue
+    * @param neighborhoodHeight The height of the neighborhood in pixels.
+    * @param answer             The output raster, the band is written here
+    * @return true if the band was computed
+    */
+  protected def computeBand(raster:MrGeoRaster, band:Int, nodata:Double, outNoData:Double,
+                            bufferX:Int, bufferY:Int,
+                            xLeftOffset:Int, neighborhoodWidth:Int,
+                            yAboveOffset:Int, neighborhoodHeight:Int,
+                            answer:MrGeoRaster, tileId:Long):Boolean = false
+
   /**
     * This method is called at the start of the "execute" method, giving sub-classes an
     * opportunity to perform some processing or initialization prior to executing the
@@ -158,14 +183,14 @@ abstract class RawFocalMapOp extends RasterMapOp with Externalizable {
     }
   }
 
-  private def calculate(tiles:RDD[(TileIdWritable, RasterWritable)],
+  private def calculate(tiles:RDD[(TileIdWritable, MrGeoRaster)],
                         bufferX:Int, bufferY:Int,
                         neighborhoodWidth:Int, neighborhoodHeight:Int,
                         nodatas:Array[Double], zoom:Int, tilesize:Int) = {
     val outputNoData = getOutputNoData
     tiles.map(tile => {
 
-      val raster = RasterWritable.toMrGeoRaster(tile._2)
+      val raster = tile._2
       val answer = MrGeoRaster.createEmptyRaster(tilesize, tilesize, raster.bands(),
         getOutputTileType) // , Float.NaN)
 
@@ -194,42 +219,45 @@ abstract class RawFocalMapOp extends RasterMapOp with Externalizable {
       val notnodata = MrGeoRaster.createEmptyRaster(rasterWidth, rasterHeight, 1, DataBuffer.TYPE_BYTE)
       while (band < raster.bands()) {
         val outputNoDataForBand = outputNoData(band).doubleValue()
-        var py = 0
-        var px = 0
-        while (py < rasterHeight) {
-          px = 0
-          while (px < rasterWidth) {
-            val v = raster.getPixelDouble(px, py, band)
-            if (!isNoData(v, nodatas(band))) {
-              notnodata.setPixel(px, py, 0, 1.toByte)
-            }
-            else {
-              notnodata.setPixel(px, py, 0, 0.toByte)
+        if (!computeBand(raster, band, nodatas(band), outputNoDataForBand, bufferX, bufferY,
+          xLeftOffset, neighborhoodWidth, yAboveOffset, neighborhoodHeight, answer, tile._1.get())) {
+          var py = 0
+          var px = 0
+          while (py < rasterHeight) {
+            px = 0
+            while (px < rasterWidth) {
+              val v = raster.getPixelDouble(px, py, band)
+              if (!isNoData(v, nodatas(band))) {
+                notnodata.setPixel(px, py, 0, 1.toByte)
+              }
+              else {
+                notnodata.setPixel(px, py, 0, 0.toByte)
+              }
+              px += 1
             }
-            px += 1
+            py += 1
           }
-          py += 1
-        }
-        py = 0
-        px = 0
-        while (py < tilesize) {
+          py = 0
           px = 0
-          while (px < tilesize) {
-            val srcX = px + bufferX
-            val srcY = py + bufferY
-            // If the source pixel is nodata, skip it
-            if (notnodata.getPixelByte(srcX, srcY, band) == 1) {
-              answer.setPixel(px, py, band,
-                computePixelValue(raster, notnodata, outputNoDataForBand,
-                  rasterWidth, srcX, srcY, band, xLeftOffset, neighborhoodWidth,
-                  yAboveOffset, neighborhoodHeight, tile._1.get()))
-            }
-            else {
-              answer.setPixel(px, py, band, outputNoDataForBand)
+          while (py < tilesize) {
+            px = 0
+            while (px < tilesize) {
+              val srcX = px + bufferX
+              val srcY = py + bufferY
+              // If the source pixel is nodata, skip it
+              if (notnodata.getPixelByte(srcX, srcY, band) == 1) {
+                answer.setPixel(px, py, band,
+                  computePixelValue(raster, notnodata, outputNoDataForBand,
+                    rasterWidth, srcX, srcY, band, xLeftOffset, neighborhoodWidth,
+                    yAboveOffset, neighborhoodHeight, tile._1.get()))
+              }
+              else {
+                answer.setPixel(px, py, band, outputNoDataForBand)
+              }
+              px += 1
             }
-            px += 1
+            py += 1
           }
-          py += 1
         }
         band += 1
       }
@@ -19,7 +19,7 @@ import java.awt.image.DataBuffer
 import java.io.{Externalizable, IOException, ObjectInput, ObjectOutput}
 
 import org.apache.spark.rdd.CoGroupedRDD
-import org.apache.spark.{HashPartitioner, SparkConf, SparkContext}
+import org.apache.spark.{SparkConf, SparkContext}
 import org.mrgeo.data.DataProviderFactory.AccessMode
 import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
 import org.mrgeo.data.rdd.RasterRDD
@@ -28,6 +28,7 @@ import org.mrgeo.job.JobArguments
 import org.mrgeo.mapalgebra.parser.{ParserException, ParserNode}
 import org.mrgeo.mapalgebra.raster.{MrsPyramidMapOp, RasterMapOp}
 import org.mrgeo.utils.SparkUtils
+import org.mrgeo.utils.tms.Bounds
 
 import scala.collection.mutable
 import scala.util.Sorting
@@ -185,18 +186,11 @@ class StatisticsMapOp extends RasterMapOp with Externalizable {
     val (zoom, tilesize) = getLayerMapOps(mapopbuilder, nodatabuilder, context)
     val nodatas = nodatabuilder.result()
 
-    val pyramids = mapopbuilder.result()
+    val mapops = mapopbuilder.result()
+    val pyramids = mapops
         .map(_.rdd(zoom) getOrElse (throw new IOException("Can't load RDD! Ouch! " + getClass.getName)))
 
-    // cogroup needs a partitioner, so we'll give one here...
-    var maxpartitions = 0
-    val partitions = pyramids.foreach(p => {
-      if (p.partitions.length > maxpartitions) {
-        maxpartitions = p.partitions.length
-      }
-    })
-
-    val groups = new CoGroupedRDD(pyramids, new HashPartitioner(maxpartitions))
+    val groups = new CoGroupedRDD(pyramids, SparkUtils.joinPartitioner(pyramids))
 
     rasterRDD = Some(RasterRDD(groups.map(tile => {
 
@@ -521,8 +515,15 @@ class StatisticsMapOp extends RasterMapOp with Externalizable {
 
     })))
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, Float.NaN,
-      bounds = null, calcStats = false))
+    // there is an output tile wherever any of the inputs has one
+    val bounds = Bounds.combine(mapops.map(mapop => {
+      val meta = mapop.metadata() getOrElse
+                 (throw new IOException("Can't load metadata! Ouch! " + mapop.getClass.getName))
+      meta.getBounds
+    }):_*)
+
+    metadata(SparkUtils.calculateMetadata(zoom, tilesize, 1, DataBuffer.TYPE_FLOAT, Array[Double](Float.NaN),
+      bounds))
 
     true
   }
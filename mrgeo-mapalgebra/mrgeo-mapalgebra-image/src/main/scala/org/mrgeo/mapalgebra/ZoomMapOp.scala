@@ -57,11 +57,8 @@ class ZoomMapOp extends RasterMapOp with Externalizable
             newMapOp.context(context)
             rasterRDD = newMapOp.rdd(zoom)
             val meta = mapOp.metadata().getOrElse(throw new IOException("Can't load metadata! Ouch! " + mapOp.getClass.getName))
-            metadata(SparkUtils.calculateMetadata(rasterRDD.get,
-              zoom,
-              meta.getDefaultValues,
-              bounds = meta.getBounds,
-              calcStats = false))
+            metadata(SparkUtils.calculateMetadata(zoom, meta.getTilesize, meta.getBands, meta.getTileType,
+              meta.getDefaultValues, meta.getBounds))
             return true
           case _ => throw new IOException("Can only pass a direct image data source to zoom")
         }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.mapalgebra
+
+import java.awt.image.DataBuffer
+
+import junit.framework.Assert
+import org.junit.Test
+import org.junit.experimental.categories.Category
+import org.mrgeo.data.raster.MrGeoRaster
+import org.mrgeo.image.MrsPyramidMetadata
+import org.mrgeo.junit.UnitTest
+import org.mrgeo.test.TestUtils
+import org.scalatest.junit.AssertionsForJUnit
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class FocalStatMapOpTest extends AssertionsForJUnit {
+  private val tilesize = 32
+  private val nodata = -9999.0
+
+  // A buffered tile of random values, with a sprinkling of nodata
+  private def buffered(buffer:Int, datatype:Int, seed:Long):MrGeoRaster = {
+    TestUtils.createRandomRasterWithNodata(tilesize + buffer * 2, tilesize + buffer * 2, datatype, nodata, 20, seed)
+  }
+
+  // Compare computeBand with the pixel by pixel computation
+  private def compare(stat:String, neighborhood:Int, ignoreNoData:Boolean, datatype:Int):Unit = {
+    val meta = new MrsPyramidMetadata
+    meta.setMaxZoomLevel(10)
+    meta.setTilesize(tilesize)
+    meta.setBands(1)
+    meta.setTileType(datatype)
+    meta.setDefaultValues(Array(nodata))
+
+    val op = new FocalStatMapOp(None, stat, neighborhood + "p", ignoreNoData)
+    op.beforeExecute(meta)
+
+    val buffer = neighborhood / 2
+    val xLeftOffset = if (neighborhood % 2 == 0) buffer - 1 else buffer
+    val raster = buffered(buffer, datatype, neighborhood * 31 + stat.hashCode)
+    val outNoData = if (stat == FocalStatMapOp.Count) Int.MinValue else Float.NaN
+
+    val notnodata = MrGeoRaster.createEmptyRaster(raster.width(), raster.height(), 1, DataBuffer.TYPE_BYTE)
+    for (y <- 0 until raster.height(); x <- 0 until raster.width()) {
+      notnodata.setPixel(x, y, 0, (if (raster.getPixelDouble(x, y, 0) == nodata) 0 else 1).toByte)
+    }
+
+    val answer = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 1, DataBuffer.TYPE_DOUBLE)
+    Assert.assertTrue("Band not computed for " + stat,
+      op.computeBand(raster, 0, nodata, outNoData, buffer, buffer, xLeftOffset, neighborhood,
+        xLeftOffset, neighborhood, answer, 0))
+
+    for (y <- 0 until tilesize; x <- 0 until tilesize) {
+      val expected = if (notnodata.getPixelByte(x + buffer, y + buffer, 0) == 1) {
+        op.computePixelValue(raster, notnodata, outNoData, raster.width(), x + buffer, y + buffer, 0,
+          xLeftOffset, neighborhood, xLeftOffset, neighborhood, 0)
+      }
+      else {
+        outNoData
+      }
+      val actual = answer.getPixelDouble(x, y, 0)
+      val msg = stat + " " + neighborhood + "p ignoreNoData: " + ignoreNoData + " at " + x + ", " + y
+      if (expected.isNaN) {
+        Assert.assertTrue(msg + " expected nodata, got " + actual, actual.isNaN)
+      }
+      else {
+        Assert.assertEquals(msg, expected, actual, 1e-6 * math.max(1.0, math.abs(expected)))
+      }
+    }
+  }
+
+  private def compareAll(stats:Seq[String], datatype:Int):Unit = {
+    for (stat <- stats; neighborhood <- Seq(3, 4, 7, 20); ignoreNoData <- Seq(true, false)) {
+      compare(stat, neighborhood, ignoreNoData, datatype)
+    }
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def countSumMeanVariance():Unit = {
+    compareAll(Seq(FocalStatMapOp.Count, FocalStatMapOp.Sum, FocalStatMapOp.Mean, FocalStatMapOp.Variance,
+      FocalStatMapOp.StdDev), DataBuffer.TYPE_FLOAT)
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def minMaxRange():Unit = {
+    compareAll(Seq(FocalStatMapOp.Min, FocalStatMapOp.Max, FocalStatMapOp.Range), DataBuffer.TYPE_FLOAT)
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def median():Unit = {
+    compareAll(Seq(FocalStatMapOp.Median), DataBuffer.TYPE_SHORT)
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def floatMedianNotIncremental():Unit = {
+    val meta = new MrsPyramidMetadata
+    meta.setMaxZoomLevel(10)
+    meta.setTilesize(tilesize)
+    meta.setBands(1)
+    meta.setTileType(DataBuffer.TYPE_FLOAT)
+    meta.setDefaultValues(Array(nodata))
+
+    val op = new FocalStatMapOp(None, FocalStatMapOp.Median, "3p", true)
+    op.beforeExecute(meta)
+
+    val raster = buffered(1, DataBuffer.TYPE_FLOAT, 0)
+    val answer = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 1, DataBuffer.TYPE_FLOAT)
+    Assert.assertFalse(op.computeBand(raster, 0, nodata, Float.NaN, 1, 1, 1, 3, 1, 3, answer, 0))
+  }
+}
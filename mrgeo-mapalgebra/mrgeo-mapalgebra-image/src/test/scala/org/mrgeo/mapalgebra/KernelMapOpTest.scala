@@ -0,0 +1,140 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.mapalgebra
+
+import java.awt.image.DataBuffer
+import java.util.Random
+
+import junit.framework.Assert
+import org.junit.Test
+import org.junit.experimental.categories.Category
+import org.mrgeo.data.raster.MrGeoRaster
+import org.mrgeo.junit.UnitTest
+import org.mrgeo.test.TestUtils
+import org.scalatest.junit.AssertionsForJUnit
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class KernelMapOpTest extends AssertionsForJUnit {
+  private val tilesize = 32
+  private val nodata = -9999.0
+
+  private def value(raster:MrGeoRaster, x:Int, y:Int):Double = {
+    val v = raster.getPixelDouble(Convolution.reflect(x, raster.width()), Convolution.reflect(y, raster.height()), 0)
+    if (v == nodata) 0.0 else v
+  }
+
+  private def weights(n:Int, random:Random):Array[Float] = {
+    Array.fill[Float](n)(random.nextFloat())
+  }
+
+  private def assertSame(msg:String, expected:Double, actual:Double):Unit = {
+    if (expected.isNaN) {
+      Assert.assertTrue(msg + " expected nodata, got " + actual, actual.isNaN)
+    }
+    else {
+      Assert.assertEquals(msg, expected, actual, 1e-4 * math.max(1.0, math.abs(expected)))
+    }
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def separable():Unit = {
+    for (kernelSize <- Seq(3, 7, 31)) {
+      val random = new Random(kernelSize)
+      val rowWeights = weights(kernelSize, random)
+      val colWeights = weights(kernelSize, random)
+      val raster = TestUtils.createRandomRasterWithNodata(tilesize + kernelSize - 1, tilesize + kernelSize - 1,
+        DataBuffer.TYPE_FLOAT, nodata, 20, kernelSize)
+
+      val answer = KernelMapOp.separable(raster, rowWeights, colWeights, kernelSize, kernelSize, nodata)
+
+      // the 2D kernel (the outer product of the weights), sampled where calculate() samples
+      val offset = kernelSize / 2 + 1
+      for (y <- 0 until tilesize; x <- 0 until tilesize) {
+        val expected = if (raster.getPixelDouble(x + offset, y + offset, 0) == nodata) {
+          Double.NaN
+        }
+        else {
+          var sum = 0.0
+          for (ky <- 0 until kernelSize; kx <- 0 until kernelSize) {
+            sum += rowWeights(kx) * colWeights(ky) *
+                   value(raster, x + offset - kernelSize / 2 + kx, y + offset - kernelSize / 2 + ky)
+          }
+          sum
+        }
+        assertSame("kernel " + kernelSize + " at " + x + ", " + y, expected, answer.getPixelDouble(x, y, 0))
+      }
+    }
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def fft():Unit = {
+    val kernelW = 9
+    val kernelH = 5
+    val random = new Random(0)
+    val kernel = weights(kernelW * kernelH, random)
+    kernel(3) = 0.0f
+    val raster = TestUtils.createRandomRasterWithNodata(tilesize + kernelW - 1, tilesize + kernelH - 1,
+      DataBuffer.TYPE_FLOAT, nodata, 20, 1)
+
+    val answer = KernelMapOp.fft(raster, kernel, kernelW, kernelH, nodata)
+
+    // what naiveKernel calculates
+    val weight = kernel.sum
+    for (y <- 0 until tilesize; x <- 0 until tilesize) {
+      val expected = if (raster.getPixelDouble(x, y, 0) == nodata) {
+        Double.NaN
+      }
+      else {
+        var sum = 0.0
+        for (ky <- 0 until kernelH; kx <- 0 until kernelW) {
+          sum += kernel(ky * kernelW + kx) * value(raster, x + kx, y + ky)
+        }
+        sum / weight
+      }
+      assertSame("at " + x + ", " + y, expected, answer.getPixelDouble(x, y, 0))
+    }
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def fftMatchesDirect():Unit = {
+    val random = new Random(2)
+    val length = 300
+    val lines = 5
+    val src = Array.fill[Double](length * lines)(random.nextGaussian())
+
+    for (taps <- Seq(1, 4, 31, 301)) {
+      val w = weights(taps, random)
+      val direct = new Array[Double](200 * lines)
+      val fft = new Array[Double](200 * lines)
+
+      new Convolution.Line(w, length, 50, 200, useFFT = false).filter(src, 0, 1, length, lines, direct, 0, 1, 200)
+      new Convolution.Line(w, length, 50, 200, useFFT = true).filter(src, 0, 1, length, lines, fft, 0, 1, 200)
+
+      for (i <- direct.indices) {
+        assertSame("taps " + taps + " at " + i, direct(i), fft(i))
+      }
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.mapalgebra
+
+import java.awt.image.DataBuffer
+
+import junit.framework.Assert
+import org.apache.spark.scheduler.{SparkListener, SparkListenerJobEnd, SparkListenerJobStart}
+import org.apache.spark.{SparkConf, SparkContext}
+import org.junit.experimental.categories.Category
+import org.junit.{After, Before, Test}
+import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
+import org.mrgeo.data.rdd.{AutoPersister, RasterRDD}
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.junit.UnitTest
+import org.mrgeo.mapalgebra.raster.RasterMapOp
+import org.mrgeo.utils.SparkUtils
+import org.mrgeo.utils.tms.{TMSUtils, TileBounds}
+import org.scalatest.junit.AssertionsForJUnit
+
+import scala.collection.mutable
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+object ExecuteMapOpTest {
+  val zoom = 10
+  val tilesize = 16
+  val tiles = new TileBounds(100, 200, 103, 202)
+
+  // The ids of the jobs started and finished
+  class JobListener extends SparkListener {
+    val started = new mutable.ArrayBuffer[Int] with mutable.SynchronizedBuffer[Int]
+    val ended = new mutable.ArrayBuffer[Int] with mutable.SynchronizedBuffer[Int]
+
+    override def onJobStart(jobStart:SparkListenerJobStart):Unit = started += jobStart.jobId
+
+    override def onJobEnd(jobEnd:SparkListenerJobEnd):Unit = ended += jobEnd.jobId
+  }
+}
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class ExecuteMapOpTest extends AssertionsForJUnit {
+
+  import ExecuteMapOpTest._
+
+  private var context:SparkContext = _
+  private var listener:JobListener = _
+
+  @Before
+  def setup():Unit = {
+    context = new SparkContext(new SparkConf()
+        .setMaster("local")
+        .setAppName("ExecuteMapOpTest")
+        .set("spark.ui.enabled", "false"))
+
+    listener = new JobListener
+    context.addSparkListener(listener)
+  }
+
+  @After
+  def teardown():Unit = {
+    context.stop()
+
+    // RDD ids start over with each context, so the reference counts can't carry over
+    AutoPersister.references.clear()
+  }
+
+  private def input():RasterMapOp = {
+    val rasters = for (ty <- tiles.s to tiles.n; tx <- tiles.w to tiles.e) yield {
+      val raster = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 1, DataBuffer.TYPE_FLOAT)
+      raster.fill(tx * ty)
+      (new TileIdWritable(TMSUtils.tileid(tx, ty, zoom)), RasterWritable.toWritable(raster))
+    }
+
+    val meta = SparkUtils.calculateMetadata(zoom, tilesize, 1, DataBuffer.TYPE_FLOAT, Array(Double.NaN),
+      TMSUtils.tileToBounds(tiles, zoom, tilesize))
+    new FixedRasterMapOp(Some(RasterRDD(context.parallelize(rasters, 2))), meta)
+  }
+
+  // The jobs run so far.  Listener events are delivered in order, so once a probe job's end is seen, all
+  // the earlier jobs have been seen too
+  private def jobsRun():Seq[Int] = {
+    val probe = context.parallelize(Seq(1)).countAsync()
+    Await.result(probe, 1.minute)
+    val probeId = probe.jobIds.head
+
+    val deadline = 1.minute.fromNow
+    while (!listener.ended.contains(probeId) && deadline.hasTimeLeft()) {
+      Thread.sleep(10)
+    }
+    Assert.assertTrue("Never saw the probe job finish", listener.ended.contains(probeId))
+
+    listener.started.filter(_ != probeId).toList
+  }
+
+  private def execute(op:MapOp):RasterMapOp = {
+    Assert.assertTrue(op.execute(context))
+    op.asInstanceOf[RasterMapOp]
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def executeRunsNoJobs():Unit = {
+    val in = input()
+
+    val focal = execute(FocalStatMapOp.create(in, "mean", "3p", true))
+    val log = execute(LogMapOp.create(focal, 10.0))
+    val kernel = execute(KernelMapOp.create(log, KernelMapOp.Gaussian, 100.0))
+    val slope = execute(SlopeMapOp.create(in, "deg"))
+    val combined = execute(BandCombineMapOp.create(kernel, Array(slope)))
+    val extracted = execute(BandExtractMapOp.create(combined, 2))
+    val stats = execute(StatisticsMapOp.create(extracted, "mean", Array(kernel)))
+
+    val bounds = TMSUtils.tileToBounds(new TileBounds(101, 201, 102, 201), zoom, tilesize)
+    val crop = execute(CropMapOp.create(stats, bounds.w, bounds.s, bounds.e, bounds.n))
+    val filled = execute(FillMapOp.create(crop, 0.0))
+    val converted = execute(ConvertMapOp.create(filled, "int"))
+
+    Assert.assertEquals(Nil, jobsRun())
+
+    // the metadata was declared without looking at the tiles
+    val meta = converted.metadata().get
+    Assert.assertEquals(tilesize, meta.getTilesize)
+    Assert.assertEquals(1, meta.getBands)
+    Assert.assertEquals(DataBuffer.TYPE_INT, meta.getTileType)
+    Assert.assertEquals(zoom, meta.getMaxZoomLevel)
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.mapalgebra
+
+import org.apache.spark.{SparkConf, SparkContext}
+import org.mrgeo.data.rdd.RasterRDD
+import org.mrgeo.image.MrsPyramidMetadata
+import org.mrgeo.job.JobArguments
+import org.mrgeo.mapalgebra.raster.RasterMapOp
+
+// An input (or already computed) raster with known metadata, it is never fused into the op consuming it
+class FixedRasterMapOp(raster:Option[RasterRDD], meta:MrsPyramidMetadata) extends RasterMapOp {
+  metadata(meta)
+
+  override def rdd():Option[RasterRDD] = raster
+
+  override def getZoomLevel():Int = meta.getMaxZoomLevel
+
+  override def execute(context:SparkContext):Boolean = true
+
+  override def setup(job:JobArguments, conf:SparkConf):Boolean = true
+
+  override def teardown(job:JobArguments, conf:SparkConf):Boolean = true
+}
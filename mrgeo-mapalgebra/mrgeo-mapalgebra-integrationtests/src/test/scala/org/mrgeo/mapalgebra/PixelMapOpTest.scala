@@ -0,0 +1,231 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.mapalgebra
+
+import java.awt.image.DataBuffer
+import java.util.Random
+
+import junit.framework.Assert
+import org.apache.spark.{SparkConf, SparkContext}
+import org.junit.experimental.categories.Category
+import org.junit.{After, Before, Test}
+import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
+import org.mrgeo.data.rdd.{AutoPersister, RasterRDD}
+import org.mrgeo.data.tile.TileIdWritable
+import org.mrgeo.junit.UnitTest
+import org.mrgeo.mapalgebra.binarymath.{GreaterThanMapOp, MultMapOp, PlusMapOp}
+import org.mrgeo.mapalgebra.raster.{PixelMapOp, RasterMapOp}
+import org.mrgeo.mapalgebra.unarymath.{AbsMapOp, UnaryMinusMapOp}
+import org.mrgeo.utils.SparkUtils
+import org.mrgeo.utils.tms.{TMSUtils, TileBounds}
+import org.scalatest.junit.AssertionsForJUnit
+
+object PixelMapOpTest {
+  val zoom = 10
+  val tilesize = 16
+  val tiles = new TileBounds(100, 200, 103, 200)
+}
+
+@SuppressWarnings(Array("all")) // Test code, not included in production
+class PixelMapOpTest extends AssertionsForJUnit {
+
+  import PixelMapOpTest._
+
+  private var context:SparkContext = _
+
+  @Before
+  def setup():Unit = {
+    context = new SparkContext(new SparkConf()
+        .setMaster("local")
+        .setAppName("PixelMapOpTest")
+        .set("spark.ui.enabled", "false"))
+  }
+
+  @After
+  def teardown():Unit = {
+    context.stop()
+
+    // RDD ids start over with each context, so the reference counts can't carry over
+    AutoPersister.references.clear()
+  }
+
+  private def nodata(datatype:Int):Double = {
+    datatype match {
+      case DataBuffer.TYPE_BYTE | DataBuffer.TYPE_USHORT => 0
+      case DataBuffer.TYPE_FLOAT | DataBuffer.TYPE_DOUBLE => Double.NaN
+      case _ => -9999
+    }
+  }
+
+  // Random values across the whole range of the datatype, so the intermediate results overflow
+  private def value(datatype:Int, random:Random):Double = {
+    datatype match {
+      case DataBuffer.TYPE_BYTE => random.nextInt(256)
+      case DataBuffer.TYPE_SHORT => random.nextInt(65536) - 32768
+      case DataBuffer.TYPE_USHORT => random.nextInt(65536)
+      case DataBuffer.TYPE_INT => random.nextInt()
+      case _ => random.nextGaussian() * 1000.0
+    }
+  }
+
+  // An input with the tiles (except the missing one), with a sprinkling of nodata.  Constant tiles are
+  // stored as a single pixel, like the constant tile elision does
+  private def input(datatype:Int, seed:Long, missing:Option[Long] = None,
+                    constant:Set[Long] = Set.empty):RasterMapOp = {
+    val random = new Random(seed)
+    val nd = nodata(datatype)
+
+    val rasters = for (tx <- tiles.w to tiles.e;
+                       id = TMSUtils.tileid(tx, tiles.n, zoom) if !missing.contains(id)) yield {
+      val writable = if (constant.contains(id)) {
+        val pixel = MrGeoRaster.createEmptyRaster(1, 1, 1, datatype)
+        pixel.setPixel(0, 0, 0, value(datatype, random))
+        RasterWritable.fromConstantPixel(pixel, tilesize, tilesize)
+      }
+      else {
+        val raster = MrGeoRaster.createEmptyRaster(tilesize, tilesize, 1, datatype)
+        for (y <- 0 until tilesize; x <- 0 until tilesize) {
+          raster.setPixel(x, y, 0, if (random.nextInt(10) == 0) nd else value(datatype, random))
+        }
+        RasterWritable.toWritable(raster)
+      }
+      (new TileIdWritable(id), writable)
+    }
+
+    val meta = SparkUtils.calculateMetadata(zoom, tilesize, 1, datatype, Array(nd),
+      TMSUtils.tileToBounds(tiles, zoom, tilesize))
+    new FixedRasterMapOp(Some(RasterRDD(context.parallelize(rasters, 2))), meta)
+  }
+
+  // Execute the op.  When fusing, the op is returned for the next op to consume, otherwise the
+  // op's tiles are computed (by themselves), and the next op consumes those
+  private def step(op:MapOp, fuse:Boolean):RasterMapOp = {
+    val raster = op.asInstanceOf[RasterMapOp]
+    raster.execute(context)
+    if (fuse) {
+      raster
+    }
+    else {
+      new FixedRasterMapOp(Some(RasterRDD(raster.rdd().get.cache())), raster.metadata().get)
+    }
+  }
+
+  // log10(abs(-a) + b) * 2 + (a > b):  -a and abs() keep the datatype of a (so they narrow), log() makes
+  // NaNs, + and * are float, and > is a byte op with its own nodata
+  private def chain(a:RasterMapOp, b:RasterMapOp, fuse:Boolean):RasterMapOp = {
+    val neg = step(UnaryMinusMapOp.create(a), fuse)
+    val abs = step(AbsMapOp.create(neg), fuse)
+    val sum = step(PlusMapOp.create(abs, b), fuse)
+    val log = step(LogMapOp.create(sum, 10.0), fuse)
+    val twice = step(MultMapOp.create(log, 2.0), fuse)
+    val gt = step(GreaterThanMapOp.create(a, b), fuse)
+    step(PlusMapOp.create(twice, gt), fuse)
+  }
+
+  private def collect(op:RasterMapOp):Map[Long, RasterWritable] = {
+    op.rdd().get.collect().map(tile => (tile._1.get(), tile._2)).toMap
+  }
+
+  // Run the chain fused and one op at a time, and compare the tiles.  Returns the fused tiles
+  private def compare(a:RasterMapOp, b:RasterMapOp):Map[Long, RasterWritable] = {
+    val fusedOp = chain(a, b, fuse = true)
+
+    // all the ops were fused, only a and b are read
+    val (leaves, _) = PixelMapOp.compile(fusedOp.asInstanceOf[PixelMapOp])
+    Assert.assertEquals(2, leaves.length)
+
+    val fused = collect(fusedOp)
+    val single = collect(chain(a, b, fuse = false))
+
+    Assert.assertEquals(single.keySet, fused.keySet)
+    for ((id, writable) <- single) {
+      val expected = RasterWritable.toMrGeoRaster(writable)
+      val actual = RasterWritable.toMrGeoRaster(fused(id))
+
+      Assert.assertEquals(expected.datatype(), actual.datatype())
+      for (y <- 0 until tilesize; x <- 0 until tilesize) {
+        val e = expected.getPixelDouble(x, y, 0)
+        val v = actual.getPixelDouble(x, y, 0)
+        val msg = "tile " + id + " pixel " + x + ", " + y
+        if (e.isNaN) {
+          Assert.assertTrue(msg + " expected nodata, got " + v, v.isNaN)
+        }
+        else {
+          Assert.assertEquals(msg, e, v, 0)
+        }
+      }
+    }
+    fused
+  }
+
+  private def compareTypes(b:Int):Unit = {
+    for (datatype <- Seq(DataBuffer.TYPE_BYTE, DataBuffer.TYPE_SHORT, DataBuffer.TYPE_USHORT, DataBuffer.TYPE_INT,
+      DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE)) {
+      compare(input(datatype, datatype), input(b, datatype + 100))
+    }
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def datatypes():Unit = {
+    compareTypes(DataBuffer.TYPE_FLOAT)
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def integerInputs():Unit = {
+    compareTypes(DataBuffer.TYPE_SHORT)
+    compareTypes(DataBuffer.TYPE_BYTE)
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def missingTiles():Unit = {
+    val ma = TMSUtils.tileid(tiles.w + 1, tiles.n, zoom)
+    val mb = TMSUtils.tileid(tiles.w + 2, tiles.n, zoom)
+
+    val fused = compare(input(DataBuffer.TYPE_SHORT, 1, Some(ma)), input(DataBuffer.TYPE_FLOAT, 2, Some(mb)))
+
+    // only the tiles in both inputs
+    Assert.assertEquals(tiles.width() - 2, fused.size.toLong)
+    Assert.assertFalse(fused.contains(ma))
+    Assert.assertFalse(fused.contains(mb))
+  }
+
+  @Test
+  @Category(Array[Class[_]] {
+    classOf[UnitTest]
+  })
+  def constantTiles():Unit = {
+    val all = (tiles.w to tiles.e).map(tx => TMSUtils.tileid(tx, tiles.n, zoom)).toSet
+    val some = Set(TMSUtils.tileid(tiles.w, tiles.n, zoom), TMSUtils.tileid(tiles.w + 1, tiles.n, zoom))
+
+    // constant in both inputs makes a constant output
+    val fused = compare(input(DataBuffer.TYPE_BYTE, 3, constant = all), input(DataBuffer.TYPE_FLOAT, 4,
+      constant = all))
+    fused.values.foreach(tile => Assert.assertNotNull(RasterWritable.toConstantPixel(tile)))
+
+    // constant in only one of them
+    compare(input(DataBuffer.TYPE_SHORT, 5, constant = some), input(DataBuffer.TYPE_FLOAT, 6))
+    compare(input(DataBuffer.TYPE_INT, 7), input(DataBuffer.TYPE_DOUBLE, 8, constant = all))
+  }
+}
@@ -20,7 +20,7 @@ import java.io.{Externalizable, IOException, ObjectInput, ObjectOutput}
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings
 import org.apache.spark.rdd.CoGroupedRDD
-import org.apache.spark.{HashPartitioner, SparkConf, SparkContext}
+import org.apache.spark.{SparkConf, SparkContext}
 import org.mrgeo.data.raster.{MrGeoRaster, RasterUtils, RasterWritable}
 import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.data.tile.TileIdWritable
@@ -103,20 +103,15 @@ class ConMapOp extends RasterMapOp with Externalizable {
 
     // gather all the RDDs and cogroup them
     val rddBuilder = mutable.ArrayBuilder.make[RasterRDD]
-    var maxpartitions = 0
     inputs.foreach(mapop => {
       rddBuilder += (mapop.rdd() match {
-        case Some(r) =>
-          if (r.partitions.length > maxpartitions) {
-            maxpartitions = r.partitions.length
-          }
-          r
+        case Some(r) => r
         case _ => throw new IOException("Can't load RDD! Ouch! " + mapop.getClass.getName)
       })
     })
+    val rdds = rddBuilder.result()
 
-    // cogroup needs a partitioner, so we'll give one here...
-    val groups = new CoGroupedRDD(rddBuilder.result(), new HashPartitioner(maxpartitions))
+    val groups = new CoGroupedRDD(rdds, SparkUtils.joinPartitioner(rdds))
 
     // copy these here to avoid serializing the whole mapop
     nodatas = Array.fill[Double](isRdd.length)(Double.NaN)
@@ -242,8 +237,8 @@ class ConMapOp extends RasterMapOp with Externalizable {
     for (i <- outputNodatas.indices) {
       outputNodatas(i) = nodata
     }
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, meta.getMaxZoomLevel, outputNodatas,
-      bounds = meta.getBounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(meta.getMaxZoomLevel, tilesize, bands, datatype, outputNodatas,
+      meta.getBounds))
 
     true
   }
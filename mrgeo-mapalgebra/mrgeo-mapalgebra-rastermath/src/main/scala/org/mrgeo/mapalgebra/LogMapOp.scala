@@ -19,11 +19,9 @@ import java.awt.image.DataBuffer
 import java.io.{Externalizable, IOException, ObjectInput, ObjectOutput}
 
 import org.apache.spark.{SparkConf, SparkContext}
-import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
-import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.job.JobArguments
 import org.mrgeo.mapalgebra.parser._
-import org.mrgeo.mapalgebra.raster.RasterMapOp
+import org.mrgeo.mapalgebra.raster.{PixelMapOp, RasterMapOp}
 import org.mrgeo.utils.SparkUtils
 
 object LogMapOp extends MapOpRegistrar {
@@ -38,13 +36,13 @@ object LogMapOp extends MapOpRegistrar {
     new LogMapOp(node, variables)
 }
 
-class LogMapOp extends RasterMapOp with Externalizable {
+class LogMapOp extends RasterMapOp with PixelMapOp with Externalizable {
 
   private var inputMapOp:Option[RasterMapOp] = None
   private var base:Option[Double] = None
-  private var rasterRDD:Option[RasterRDD] = None
 
-  override def rdd():Option[RasterRDD] = rasterRDD
+  // precomputed denominator for the calculation
+  private var baseVal:Double = 1
 
   override def getZoomLevel(): Int = {
     inputMapOp.getOrElse(throw new IOException("No raster input specified")).getZoomLevel()
@@ -55,11 +53,8 @@ class LogMapOp extends RasterMapOp with Externalizable {
 
     val meta = input.metadata() getOrElse
                (throw new IOException("Can't load metadata! Ouch! " + input.getClass.getName))
-    val rdd = input.rdd() getOrElse (throw new IOException("Can't load RDD! Ouch! " + inputMapOp.getClass.getName))
 
-
-    // precompute the denominator for the calculation
-    val baseVal =
+    baseVal =
       if (base.isDefined) {
         Math.log(base.get)
       }
@@ -67,54 +62,33 @@ class LogMapOp extends RasterMapOp with Externalizable {
         1
       }
 
-    val nodata = meta.getDefaultValues
     val outputnodata = Array.fill[Double](meta.getBands)(Float.NaN)
 
-    rasterRDD = Some(RasterRDD(rdd.map(tile => {
-      val raster = RasterWritable.toMrGeoRaster(tile._2)
-
-      val output = MrGeoRaster.createEmptyRaster(raster.width(), raster.height(), raster.bands(), DataBuffer.TYPE_FLOAT)
-
-      var y:Int = 0
-      while (y < raster.height()) {
-        var x:Int = 0
-        while (x < raster.width()) {
-          var b:Int = 0
-          while (b < raster.bands()) {
-            val v = raster.getPixelDouble(x, y, b)
-            if (RasterMapOp.isNotNodata(v, nodata(b))) {
-              output.setPixel(x, y, b, Math.log(v) / baseVal)
-            }
-            else {
-              output.setPixel(x, y, b, outputnodata(b))
-            }
-            b += 1
-          }
-          x += 1
-        }
-        y += 1
-      }
-
-      (tile._1, RasterWritable.toWritable(output))
-    })))
-
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, meta.getMaxZoomLevel, outputnodata,
-      bounds = meta.getBounds, calcStats = false))
+    // the RDD is built lazily (see PixelMapOp), so only the metadata is needed here
+    metadata(SparkUtils.calculateMetadata(meta.getMaxZoomLevel, meta.getTilesize, meta.getBands,
+      DataBuffer.TYPE_FLOAT, outputnodata, meta.getBounds))
 
     true
   }
 
+  override def pixelTerms():Array[Either[RasterMapOp, Double]] = {
+    Array(Left(inputMapOp.getOrElse(throw new IOException("No raster input specified"))))
+  }
+
+  override def pixel(values:Array[Double]):Double = Math.log(values(0)) / baseVal
+
   override def setup(job:JobArguments, conf:SparkConf):Boolean = true
 
   override def teardown(job:JobArguments, conf:SparkConf):Boolean = true
 
   override def readExternal(in:ObjectInput):Unit = {
     base = in.readObject().asInstanceOf[Option[Double]]
+    baseVal = in.readDouble()
   }
 
   override def writeExternal(out:ObjectOutput):Unit = {
     out.writeObject(base)
-
+    out.writeDouble(baseVal)
   }
 
   private[mapalgebra] def this(raster:Option[RasterMapOp], base:Option[Double]) = {
@@ -59,10 +59,9 @@ class IsNodataMapOp extends RawUnaryMathMapOp {
     val bounds = getOutputBounds(meta)
     val tb = TMSUtils.boundsToTile(bounds, zoom, meta.getTilesize)
     val allTiles = RasterMapOp.createEmptyRasterRDD(context, tb, zoom)
-    val src = RasterWritable.toMrGeoRaster(rdd.first()._2)
     // If there are tiles missing from the input that are within the bounds,
     // output a tile with all zeros (meaning all pixels are nodata).
-    val missingRaster = MrGeoRaster.createEmptyRaster(src.width(), src.height(), src.bands(),
+    val missingRaster = MrGeoRaster.createEmptyRaster(meta.getTilesize, meta.getTilesize, meta.getBands,
       DataBuffer.TYPE_BYTE, 1)
 
     val joined = new PairRDDFunctions(allTiles).leftOuterJoin(rdd)
@@ -99,12 +98,15 @@ class IsNodataMapOp extends RawUnaryMathMapOp {
     })))
 
     val outputNodatas = Array.fill[Double](meta.getBands)(RasterUtils.getDefaultNoDataForType(DataBuffer.TYPE_BYTE))
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, meta.getMaxZoomLevel, outputNodatas,
-      bounds = bounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(meta.getMaxZoomLevel, meta.getTilesize, meta.getBands,
+      DataBuffer.TYPE_BYTE, outputNodatas, bounds))
 
     true
   }
 
+  // isNodata creates tiles missing from the input, so it isn't pixel-local
+  override def fusable():Boolean = false
+
   protected def getOutputBounds(inputMetadata:MrsPyramidMetadata):Bounds = {
     inputMetadata.getBounds
   }
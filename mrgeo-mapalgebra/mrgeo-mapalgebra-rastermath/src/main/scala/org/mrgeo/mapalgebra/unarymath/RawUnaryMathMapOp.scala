@@ -19,14 +19,13 @@ import java.awt.image.DataBuffer
 import java.io.{Externalizable, IOException, ObjectInput, ObjectOutput}
 
 import org.apache.spark.{SparkConf, SparkContext}
-import org.mrgeo.data.raster.{MrGeoRaster, RasterWritable}
 import org.mrgeo.data.rdd.RasterRDD
 import org.mrgeo.job.JobArguments
 import org.mrgeo.mapalgebra.parser._
-import org.mrgeo.mapalgebra.raster.RasterMapOp
+import org.mrgeo.mapalgebra.raster.{PixelMapOp, RasterMapOp}
 import org.mrgeo.utils.SparkUtils
 
-abstract class RawUnaryMathMapOp extends RasterMapOp with Externalizable {
+abstract class RawUnaryMathMapOp extends RasterMapOp with PixelMapOp with Externalizable {
   var input:Option[RasterMapOp] = None
   var rasterRDD:Option[RasterRDD] = None
 
@@ -41,69 +40,44 @@ abstract class RawUnaryMathMapOp extends RasterMapOp with Externalizable {
   override def execute(context:SparkContext):Boolean = {
 
     // our metadata is the same as the raster
-    val meta = input.get.metadata().get
+    val meta = input.get.metadata() getOrElse
+               (throw new IOException("Can't load metadata! Ouch! " + input.getClass.getName))
 
-    val rdd = input.get.rdd() getOrElse (throw new IOException("Can't load RDD! Ouch! " + input.getClass.getName))
-
-    val r = RasterWritable.toMrGeoRaster(rdd.first()._2)
-    val convert = datatype() != DataBuffer.TYPE_UNDEFINED && r.datatype() != datatype()
-
-    // copy this here to avoid serializing the whole mapop
-    val nodatas = meta.getDefaultValues
+    val convert = datatype() != DataBuffer.TYPE_UNDEFINED && meta.getTileType != datatype()
 
     val outputnodata = if (convert) {
       Array.fill[Double](meta.getBands)(nodata())
     }
     else {
-      nodatas
+      meta.getDefaultValues
     }
     val outputdatatype = if (convert) {
       datatype()
     }
     else {
-      r.datatype()
+      meta.getTileType
     }
 
-    rasterRDD = Some(RasterRDD(rdd.map(tile => {
-      val raster = RasterWritable.toMrGeoRaster(tile._2)
-
-      val output = MrGeoRaster.createEmptyRaster(raster.width(), raster.height(), raster.bands(), outputdatatype)
-
-      val width = raster.width()
-      var b:Int = 0
-      while (b < raster.bands()) {
-        var y:Int = 0
-        while (y < raster.height()) {
-          var x:Int = 0
-          while (x < width) {
-            val v = raster.getPixelDouble(x, y, b)
-            if (RasterMapOp.isNotNodata(v, nodatas(b))) {
-              output.setPixel(x, y, b, function(v))
-            }
-            else {
-              output.setPixel(x, y, b, outputnodata(b))
-            }
-            x += 1
-          }
-          y += 1
-        }
-        b += 1
-      }
-      (tile._1, RasterWritable.toWritable(output))
-    })))
-
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, meta.getMaxZoomLevel, outputnodata,
-      bounds = meta.getBounds, calcStats = false))
+    // the RDD is built lazily (see PixelMapOp), so only the metadata is needed here
+    metadata(SparkUtils.calculateMetadata(meta.getMaxZoomLevel, meta.getTilesize, meta.getBands, outputdatatype,
+      outputnodata, meta.getBounds))
 
     true
   }
 
+  override def pixelTerms():Array[Either[RasterMapOp, Double]] = {
+    Array(Left(input.getOrElse(throw new IOException("No raster input specified"))))
+  }
+
+  override def pixel(values:Array[Double]):Double = function(values(0))
+
   override def readExternal(in:ObjectInput):Unit = {}
 
   override def writeExternal(out:ObjectOutput):Unit = {}
 
+  // ops that override execute to build their own RDD (i.e. isNodata) set rasterRDD directly
   override def rdd():Option[RasterRDD] = {
-    rasterRDD
+    rasterRDD orElse super.rdd()
   }
 
   private[unarymath] def initialize(node:ParserNode, variables:String => Option[ParserNode]) = {
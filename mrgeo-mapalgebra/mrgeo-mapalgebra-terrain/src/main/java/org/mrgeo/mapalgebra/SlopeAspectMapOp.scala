@@ -145,13 +145,13 @@ abstract class SlopeAspectMapOp extends RasterMapOp with Externalizable {
     val bufferX = 1
     val bufferY = 1
 
-    val tiles = FocalBuilder.create(rdd, bufferX, bufferY, meta.getBounds, zoom, nodatas, context)
+    val tiles = FocalBuilder.buffered(rdd, bufferX, bufferY, meta.getBounds, zoom, tilesize, nodatas, context)
 
     rasterRDD =
         Some(RasterRDD(calculate(tiles, bufferX, bufferY, nodatas(0).doubleValue(), zoom, tilesize)))
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, Array[Double](Double.NaN),
-      bounds = meta.getBounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, tilesize, 1, DataBuffer.TYPE_FLOAT, Array[Double](Double.NaN),
+      meta.getBounds))
 
     true
   }
@@ -178,11 +178,11 @@ abstract class SlopeAspectMapOp extends RasterMapOp with Externalizable {
     this.units = units
   }
 
-  private def calculate(tiles:RDD[(TileIdWritable, RasterWritable)], bufferX:Int, bufferY:Int, nodata:Double,
+  private def calculate(tiles:RDD[(TileIdWritable, MrGeoRaster)], bufferX:Int, bufferY:Int, nodata:Double,
                         zoom:Int, tilesize:Int) = {
 
     tiles.map(tile => {
-      val raster = RasterWritable.toMrGeoRaster(tile._2)
+      val raster = tile._2
 
       val width = raster.width() - bufferX * 2
       val height = raster.height() - bufferY * 2
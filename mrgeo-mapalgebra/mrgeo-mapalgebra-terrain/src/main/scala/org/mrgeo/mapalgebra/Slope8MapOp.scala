@@ -85,14 +85,14 @@ class Slope8MapOp extends RasterMapOp with Externalizable {
     val bufferX = 1
     val bufferY = 1
 
-    val tiles = FocalBuilder.create(rdd, bufferX, bufferY, meta.getBounds, zoom, nodatas, context)
+    val tiles = FocalBuilder.buffered(rdd, bufferX, bufferY, meta.getBounds, zoom, tilesize, nodatas, context)
 
     rasterRDD =
         Some(RasterRDD(calculate(tiles, bufferX, bufferY, nodatas(0).doubleValue(), zoom, tilesize)))
 
 
-    metadata(SparkUtils.calculateMetadata(rasterRDD.get, zoom, Array.fill(8)(Double.NaN),
-      bounds = meta.getBounds, calcStats = false))
+    metadata(SparkUtils.calculateMetadata(zoom, tilesize, 8, DataBuffer.TYPE_FLOAT, Array.fill(8)(Double.NaN),
+      meta.getBounds))
 
     true
   }
@@ -148,12 +148,12 @@ class Slope8MapOp extends RasterMapOp with Externalizable {
     }
   }
 
-  private def calculate(tiles:RDD[(TileIdWritable, RasterWritable)], bufferX:Int, bufferY:Int, nodata:Double,
+  private def calculate(tiles:RDD[(TileIdWritable, MrGeoRaster)], bufferX:Int, bufferY:Int, nodata:Double,
                         zoom:Int, tilesize:Int) = {
 
     tiles.map(tile => {
 
-      val raster = RasterWritable.toMrGeoRaster(tile._2)
+      val raster = tile._2
 
       //      val tb = TMSUtils.tileBounds(TMSUtils.tileid(tile._1.get(), zoom), zoom, tilesize)
 
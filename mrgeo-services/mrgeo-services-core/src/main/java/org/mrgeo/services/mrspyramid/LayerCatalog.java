@@ -0,0 +1,419 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.services.mrspyramid;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
+import org.mrgeo.data.DataProviderFactory;
+import org.mrgeo.data.ProviderProperties;
+import org.mrgeo.data.image.MrsImageDataProvider;
+import org.mrgeo.data.image.MrsPyramidMetadataReader;
+import org.mrgeo.image.MrsPyramidMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The pyramids published by the services, and the capabilities documents built from them.
+ * <p>
+ * Each set of provider properties (i.e. each user's view of the data) gets its own catalog, which
+ * is checked for changes at most every "layer.catalog.refresh" seconds.  A check lists the images,
+ * but only reloads the metadata of pyramids whose metadata file was rewritten, and only starts a new
+ * snapshot (with a new version, and none of the old documents) when a pyramid was added, removed or
+ * changed.  While one request checks, the others keep using the current snapshot.  The layers in a
+ * snapshot never change, a changed pyramid gets a new layer in the next snapshot.
+ */
+public class LayerCatalog
+{
+private static final Logger log = LoggerFactory.getLogger(LayerCatalog.class);
+
+private static final String REFRESH_DEFAULT = "60"; // seconds
+
+// the documents include the request URL, so there can be a few of each per snapshot
+private static final int MAX_DOCUMENTS = 64;
+
+private static LayerCatalog instance = null;
+
+private final long refreshMillis;
+private final Cache<String, Catalog> catalogs;
+
+LayerCatalog(long refreshMillis)
+{
+  this.refreshMillis = refreshMillis;
+
+  catalogs = CacheBuilder.newBuilder()
+      .maximumSize(1000)
+      .expireAfterAccess(1, TimeUnit.HOURS)
+      .build();
+}
+
+public static synchronized LayerCatalog getInstance()
+{
+  if (instance == null)
+  {
+    long refresh = Long.parseLong(MrGeoProperties.getInstance()
+        .getProperty(MrGeoConstants.MRGEO_LAYER_CATALOG_REFRESH, REFRESH_DEFAULT));
+    instance = new LayerCatalog(refresh * 1000L);
+  }
+  return instance;
+}
+
+/**
+ * The current snapshot of the pyramids visible with the provider properties
+ */
+public Snapshot getSnapshot(ProviderProperties providerProperties) throws IOException
+{
+  Catalog catalog;
+  try
+  {
+    catalog = catalogs.get(ProviderProperties.toDelimitedString(providerProperties),
+        () -> new Catalog(providerProperties));
+  }
+  catch (ExecutionException e)
+  {
+    throw new IOException(e.getCause());
+  }
+
+  return catalog.getSnapshot();
+}
+
+/**
+ * A stamp that changes whenever the pyramid is rewritten, cheap enough to build on every request.
+ * Pyramids in the catalog use the stamp from the last check, any others the modification time of
+ * their metadata file (or a fingerprint of the metadata when that is unknown).
+ */
+public String getVersion(String name, ProviderProperties providerProperties) throws IOException
+{
+  Layer layer = getSnapshot(providerProperties).getLayer(name);
+  if (layer != null && layer.metadata != null)
+  {
+    return layer.getVersion();
+  }
+
+  MrsPyramidMetadataReader reader = DataProviderFactory.getMrsImageDataProvider(name,
+      DataProviderFactory.AccessMode.READ, providerProperties).getMetadataReader();
+  long modified = reader.getModificationTime();
+  if (modified != 0)
+  {
+    return Long.toString(modified);
+  }
+  return fingerprint(reader.read());
+}
+
+/**
+ * Throw out all the catalogs, the next request for a snapshot lists and reads everything again
+ */
+public void invalidate()
+{
+  catalogs.invalidateAll();
+}
+
+/**
+ * Builds a document from the layers in a snapshot
+ */
+@FunctionalInterface
+public interface DocumentWriter
+{
+  byte[] write(Snapshot snapshot) throws Exception;
+}
+
+public static class Layer
+{
+  private final String name;
+  private final MrsImageDataProvider provider;
+
+  private final MrsPyramidMetadata metadata;
+  private final long modified;
+  private final String fingerprint;
+
+  Layer(String name, MrsImageDataProvider provider, MrsPyramidMetadata metadata, long modified,
+      String fingerprint)
+  {
+    this.name = name;
+    this.provider = provider;
+    this.metadata = metadata;
+    this.modified = modified;
+    this.fingerprint = fingerprint;
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public MrsImageDataProvider getProvider()
+  {
+    return provider;
+  }
+
+  /**
+   * The pyramid's metadata, null if it couldn't be read
+   */
+  public MrsPyramidMetadata getMetadata()
+  {
+    return metadata;
+  }
+
+  /**
+   * Changes whenever the pyramid's metadata file is rewritten
+   */
+  public String getVersion()
+  {
+    return modified + ":" + fingerprint;
+  }
+}
+
+/**
+ * An unchanging list of layers (sorted by name), along with the documents built from them
+ */
+public static class Snapshot
+{
+  private final long version;
+  private final List<Layer> layers;
+  private final Map<String, Layer> byName = new HashMap<>();
+  private final Cache<String, byte[]> documents;
+
+  Snapshot(long version, List<Layer> layers)
+  {
+    this.version = version;
+    this.layers = Collections.unmodifiableList(layers);
+    for (Layer layer : layers)
+    {
+      byName.put(layer.name, layer);
+    }
+
+    documents = CacheBuilder.newBuilder()
+        .maximumSize(MAX_DOCUMENTS)
+        .build();
+  }
+
+  /**
+   * Increases every time a pyramid is added, removed or changed
+   */
+  public long getVersion()
+  {
+    return version;
+  }
+
+  public List<Layer> getLayers()
+  {
+    return layers;
+  }
+
+  /**
+   * The named layer, null if it isn't in the snapshot
+   */
+  public Layer getLayer(String name)
+  {
+    return byName.get(name);
+  }
+
+  public List<String> getNames()
+  {
+    List<String> names = new ArrayList<>(layers.size());
+    for (Layer layer : layers)
+    {
+      names.add(layer.name);
+    }
+    return names;
+  }
+
+  /**
+   * The data providers, sorted by name (a new array on each call, so callers can sort it)
+   */
+  public MrsImageDataProvider[] getProviders()
+  {
+    MrsImageDataProvider[] providers = new MrsImageDataProvider[layers.size()];
+    for (int i = 0; i < providers.length; i++)
+    {
+      providers[i] = layers.get(i).provider;
+    }
+    return providers;
+  }
+
+  /**
+   * The document cached under the key, built by the writer the first time it is asked for.
+   * Concurrent requests for the same key wait for a single build.
+   */
+  public byte[] getDocument(String key, DocumentWriter writer) throws IOException
+  {
+    try
+    {
+      return documents.get(key, () -> writer.write(this));
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+}
+
+private class Catalog
+{
+  private final ProviderProperties providerProperties;
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // only touched while holding the lock
+  private final Map<String, Layer> layers = new HashMap<>();
+  private long version = 0;
+
+  private volatile Snapshot snapshot = null;
+  private volatile long checked = 0;
+
+  Catalog(ProviderProperties providerProperties)
+  {
+    this.providerProperties = providerProperties;
+  }
+
+  Snapshot getSnapshot() throws IOException
+  {
+    Snapshot current = snapshot;
+    if (current != null)
+    {
+      // up to date, or someone else is already checking
+      if (!stale() || !lock.tryLock())
+      {
+        return current;
+      }
+    }
+    else
+    {
+      lock.lock();
+    }
+
+    try
+    {
+      // another request may have checked while we waited for the lock
+      if (snapshot == null || stale())
+      {
+        refresh();
+      }
+      return snapshot;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  private boolean stale()
+  {
+    return System.currentTimeMillis() - checked >= refreshMillis;
+  }
+
+  private void refresh() throws IOException
+  {
+    long start = System.currentTimeMillis();
+
+    String[] names = DataProviderFactory.listImages(providerProperties);
+
+    boolean changed = layers.keySet().retainAll(Arrays.asList(names));
+    for (String name : names)
+    {
+      Layer layer = layers.get(name);
+      if (layer == null)
+      {
+        MrsImageDataProvider provider;
+        try
+        {
+          provider = DataProviderFactory.getMrsImageDataProvider(name,
+              DataProviderFactory.AccessMode.READ, providerProperties);
+        }
+        catch (IOException e)
+        {
+          log.warn("Can't open " + name + ", leaving it out of the layer catalog", e);
+          continue;
+        }
+
+        layer = new Layer(name, provider, null, 0, "");
+      }
+
+      Layer updated = update(layer);
+      if (updated != layers.get(name))
+      {
+        layers.put(name, updated);
+        changed = true;
+      }
+    }
+
+    if (changed || snapshot == null)
+    {
+      List<Layer> sorted = new ArrayList<>(layers.values());
+      sorted.sort(Comparator.comparing(Layer::getName));
+
+      snapshot = new Snapshot(++version, sorted);
+    }
+    checked = System.currentTimeMillis();
+
+    log.debug("Checked {} layers in {}ms, version {}", names.length, checked - start, version);
+  }
+
+  // (re)load the layer's metadata if it is new or its file was modified, returning a new layer if it
+  // changed, otherwise the same one.  The reader reloads its metadata in place, so each layer keeps a
+  // copy, the layers in the older snapshots don't change.
+  private Layer update(Layer layer)
+  {
+    try
+    {
+      MrsPyramidMetadataReader reader = layer.provider.getMetadataReader();
+
+      // 0 means the modification time is unknown, so the metadata is always reloaded (and compared)
+      long modified = reader.getModificationTime();
+      if (layer.metadata != null && modified != 0 && modified == layer.modified)
+      {
+        return layer;
+      }
+
+      MrsPyramidMetadata metadata = new MrsPyramidMetadata(
+          (layer.metadata == null) ? reader.read() : reader.reload());
+      String fingerprint = fingerprint(metadata);
+
+      // a rewritten pyramid (new modification time) may have new tiles, even with the same metadata
+      if (layer.metadata != null && modified == layer.modified && fingerprint.equals(layer.fingerprint))
+      {
+        return layer;
+      }
+      return new Layer(layer.name, layer.provider, metadata, modified, fingerprint);
+    }
+    catch (IOException e)
+    {
+      log.warn("Can't read the metadata for " + layer.name, e);
+      return layer;
+    }
+  }
+}
+
+private static String fingerprint(MrsPyramidMetadata metadata) throws IOException
+{
+  ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  metadata.save(stream);
+  return DigestUtils.shaHex(stream.toByteArray());
+}
+}
@@ -23,12 +23,12 @@ import org.gdal.gdalconst.gdalconstConstants;
 import org.gdal.osr.CoordinateTransformation;
 import org.gdal.osr.SpatialReference;
 import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
 import org.mrgeo.data.*;
 import org.mrgeo.data.DataProviderFactory.AccessMode;
 import org.mrgeo.data.image.MrsImageDataProvider;
 import org.mrgeo.data.image.MrsPyramidMetadataReader;
 import org.mrgeo.data.raster.MrGeoRaster;
-import org.mrgeo.data.tile.TileIdWritable;
 import org.mrgeo.data.tile.TileNotFoundException;
 import org.mrgeo.hdfs.utils.HadoopFileUtils;
 import org.mrgeo.image.*;
@@ -39,9 +39,11 @@ import org.mrgeo.utils.tms.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.image.DataBuffer;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.URL;
+import java.util.Map;
 
 /**
  * Base class for WMS image response handlers; Each image format should subclass this.
@@ -49,6 +51,9 @@ import java.net.URL;
 public abstract class ImageRendererAbstract implements ImageRenderer
 {
 private static final Logger log = LoggerFactory.getLogger(ImageRendererAbstract.class);
+private static final String MEMORY_DEFAULT = Long.toString(64L * 1024 * 1024); // bytes
+// most tiles a mosaic fetches (and holds) at once
+private static final long BATCH_TILES = 256;
 
 // currently, we only support WGS84, but this is here as a class member in
 // case other coord sys's are ever supported
@@ -364,7 +369,8 @@ public MrGeoRaster renderImage(String pyramidName, Bounds requestBounds, int wid
       Dataset dst = null;
       try {
         src = mosaicToDataset(image, zoomLevel, wgs84Bounds, pyramidMetadata.getDefaultValues());
-        dst = GDALUtils.createEmptyDiskBasedRaster(src, width, height);
+        dst = fitsInMemory(width, height, pyramidMetadata.getBands(), pyramidMetadata.getTileType()) ? GDALUtils.createEmptyMemoryRaster(src, width, height) :
+            GDALUtils.createEmptyDiskBasedRaster(src, width, height);
 
         log.debug("WGS84 bounds: {}", wgs84Bounds);
         log.debug("WGS84 requested bounds width: {}", wgs84Bounds.width());
@@ -407,20 +413,8 @@ public MrGeoRaster renderImage(String pyramidName, Bounds requestBounds, int wid
         dst.SetGeoTransform(dstxform);
         dst.SetProjection(dstcrs);
 
-        int resample = gdalconstConstants.GRA_Bilinear;
-        if (pyramidMetadata.getClassification() == MrsPyramidMetadata.Classification.Categorical) {
-          // use gdalconstConstants.GRA_Mode for categorical, which may not exist in earlier versions of gdal,
-          // in which case we will use GRA_NearestNeighbour
-          try {
-            Field mode = gdalconstConstants.class.getDeclaredField("GRA_Mode");
-            resample = mode.getInt(gdalconstConstants.class);
-          } catch (Exception e) {
-            resample = gdalconstConstants.GRA_NearestNeighbour;
-          }
-        }
-
         log.debug("Scaling image...");
-        gdal.ReprojectImage(src, dst, GDALUtils.EPSG4326(), dstcrs, resample, 0, 0.125);
+        gdal.ReprojectImage(src, dst, GDALUtils.EPSG4326(), dstcrs, getResampling(pyramidMetadata), 0, 0.125);
         log.debug("Image scaled.");
 
         return MrGeoRaster.fromDataset(dst);
@@ -467,7 +461,9 @@ Dataset mosaicToDataset(MrsImage image, int zoomlevel,
   int dsWidth = (int)(requestedLR.px - requestedUL.px);
   int dsHeight = (int)(requestedLR.py - requestedUL.py);
   int gdaltype = GDALUtils.toGDALDataType(metadata.getTileType());
-  Dataset ds = GDALUtils.createEmptyDiskBasedRaster(dsWidth, dsHeight, metadata.getBands(), gdaltype, nodatas);
+  Dataset ds = fitsInMemory(dsWidth, dsHeight, metadata.getBands(), metadata.getTileType()) ?
+      GDALUtils.createEmptyMemoryRaster(dsWidth, dsHeight, metadata.getBands(), gdaltype, nodatas) :
+      GDALUtils.createEmptyDiskBasedRaster(dsWidth, dsHeight, metadata.getBands(), gdaltype, nodatas);
   double[] xform = new double[6];
   xform[0] = requestedBounds.w;
   xform[1] = requestedBounds.width() / dsWidth;
@@ -488,33 +484,91 @@ Dataset mosaicToDataset(MrsImage image, int zoomlevel,
       }
     }
   }
-  // the iterator is _much_ faster than requesting individual tiles...
-  // final KVIterator<TileIdWritable, Raster> iter = image.getTiles(TileBounds
-  // .convertToLongRectangle(tileBounds));
-  for (long row = tileBounds.s; row <= tileBounds.n; row++) {
-    TileIdWritable rowStart = new TileIdWritable(TMSUtils.tileid(tileBounds.w, row, zoomlevel));
-    TileIdWritable rowEnd = new TileIdWritable(TMSUtils.tileid(tileBounds.e, row, zoomlevel));
-
-    KVIterator<TileIdWritable, MrGeoRaster> iter = image.getTiles(rowStart, rowEnd);
-    while (iter.hasNext()) {
-      MrGeoRaster source = iter.currentValue();
-      if (source != null) {
-        Tile tile = TMSUtils.tileid(iter.currentKey().get(), zoomlevel);
-        Bounds b = TMSUtils.tileBounds(tile.tx, tile.ty, zoomlevel, tilesize);
-        source.copyToDataset(ds, dsWidth, dsHeight, requestedBounds, b, tilesize, zoomlevel, gdaltype);
+  // Get the tiles a batch of rows at a time.  Each batch is read with a single multi-get, which
+  // reads the image's partitions in parallel.
+  long tilesPerRow = tileBounds.e - tileBounds.w + 1;
+  long rowsPerBatch = Math.max(1, BATCH_TILES / tilesPerRow);
+  for (long row = tileBounds.s; row <= tileBounds.n; row += rowsPerBatch) {
+    long lastRow = Math.min(tileBounds.n, row + rowsPerBatch - 1);
+    long[] tileids = new long[(int) ((lastRow - row + 1) * tilesPerRow)];
+    int ndx = 0;
+    for (long ty = row; ty <= lastRow; ty++) {
+      for (long tx = tileBounds.w; tx <= tileBounds.e; tx++) {
+        tileids[ndx++] = TMSUtils.tileid(tx, ty, zoomlevel);
       }
     }
-    if (iter instanceof CloseableKVIterator) {
-      try {
-        ((CloseableKVIterator) iter).close();
-      } catch (IOException e) {
-        log.error("Exception thrown", e);
-      }
+
+    for (Map.Entry<Long, MrGeoRaster> entry : image.getTiles(tileids).entrySet()) {
+      Tile tile = TMSUtils.tileid(entry.getKey(), zoomlevel);
+      Bounds b = TMSUtils.tileBounds(tile.tx, tile.ty, zoomlevel, tilesize);
+      entry.getValue().copyToDataset(ds, dsWidth, dsHeight, requestedBounds, b, tilesize, zoomlevel, gdaltype);
     }
   }
   return ds;
 }
 
+/**
+ * The GDAL resampling used to render the pyramid
+ */
+static int getResampling(MrsPyramidMetadata metadata)
+{
+  int resample = gdalconstConstants.GRA_Bilinear;
+  if (metadata.getClassification() == MrsPyramidMetadata.Classification.Categorical)
+  {
+    // use gdalconstConstants.GRA_Mode for categorical, which may not exist in earlier versions of gdal,
+    // in which case we will use GRA_NearestNeighbour
+    try
+    {
+      Field mode = gdalconstConstants.class.getDeclaredField("GRA_Mode");
+      resample = mode.getInt(gdalconstConstants.class);
+    }
+    catch (Exception e)
+    {
+      resample = gdalconstConstants.GRA_NearestNeighbour;
+    }
+  }
+  return resample;
+}
+
+/**
+ * The number of source pixels on each side of a pixel that a GDAL resampling reads
+ */
+static int kernelRadius(int resample)
+{
+  if (resample == gdalconstConstants.GRA_NearestNeighbour)
+  {
+    return 0;
+  }
+  if (resample == gdalconstConstants.GRA_Bilinear)
+  {
+    return 1;
+  }
+  if (resample == gdalconstConstants.GRA_Cubic || resample == gdalconstConstants.GRA_CubicSpline)
+  {
+    return 2;
+  }
+  if (resample == gdalconstConstants.GRA_Lanczos)
+  {
+    return 3;
+  }
+  // mode and average read the source pixels under the destination pixel, and their neighbors
+  return 1;
+}
+
+/**
+ * Mosaics and rendered images up to the memory budget (the raw pixel data, all bands) are built in
+ * memory (GDAL MEM driver), avoiding a temporary file per request.  Only huge requests go to disk.
+ *
+ * @param datatype the java (DataBuffer) type of the pixels
+ */
+static boolean fitsInMemory(int width, int height, int bands, int datatype)
+{
+  long budget = Long.parseLong(MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_RENDER_MEMORY,
+      MEMORY_DEFAULT));
+  long bytes = (long) width * height * bands * (DataBuffer.getDataTypeSize(datatype) / 8);
+  return bytes <= budget;
+}
+
 /**
  * Implements image rendering for GetMosaic requests
  *
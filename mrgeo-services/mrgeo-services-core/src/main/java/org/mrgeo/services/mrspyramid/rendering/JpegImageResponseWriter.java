@@ -15,6 +15,9 @@
 
 package org.mrgeo.services.mrspyramid.rendering;
 
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
+import org.mrgeo.data.raster.JpegEncoder;
 import org.mrgeo.data.raster.MrGeoRaster;
 import org.mrgeo.utils.GDALJavaUtils;
 import org.slf4j.Logger;
@@ -30,6 +33,11 @@ public class JpegImageResponseWriter extends ImageResponseWriterAbstract
 {
 private static final Logger log = LoggerFactory.getLogger(JpegImageResponseWriter.class);
 
+// Byte rasters are encoded here, in Java, anything else through GDAL
+private final JpegEncoder encoder = new JpegEncoder(Integer.parseInt(
+    MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_JPEG_QUALITY,
+        MrGeoConstants.MRGEO_JPEG_QUALITY_DEFAULT)));
+
 /*
  * (non-Javadoc)
  *
@@ -57,7 +65,14 @@ public String[] getWmsFormats()
 public void writeToStream(MrGeoRaster raster, double[] defaults, ByteArrayOutputStream byteStream)
     throws IOException
 {
-  GDALJavaUtils.saveRaster(raster.toDataset(null, defaults), byteStream, "jpeg");
+  if (JpegEncoder.canEncode(raster))
+  {
+    encoder.encode(raster, byteStream);
+  }
+  else
+  {
+    GDALJavaUtils.saveRaster(raster.toDataset(null, defaults), byteStream, "jpeg");
+  }
   byteStream.close();
 }
 }
@@ -15,13 +15,17 @@
 
 package org.mrgeo.services.mrspyramid.rendering;
 
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
 import org.mrgeo.data.raster.MrGeoRaster;
+import org.mrgeo.data.raster.PngEncoder;
 import org.mrgeo.utils.GDALJavaUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Properties;
 
 /**
  * Writes PNG images to an HTTP response
@@ -30,6 +34,10 @@ public class PngImageResponseWriter extends ImageResponseWriterAbstract
 {
 private static final Logger log = LoggerFactory.getLogger(PngImageResponseWriter.class);
 
+// Byte rasters (all the color scale appliers make) are encoded here, in Java, anything else
+// through GDAL
+private final PngEncoder encoder = createEncoder();
+
 /*
  * (non-Javadoc)
  *
@@ -57,77 +65,26 @@ public String[] getWmsFormats()
 public void writeToStream(MrGeoRaster raster, double[] defaults,
     ByteArrayOutputStream byteStream) throws IOException
 {
-  GDALJavaUtils.saveRaster(raster.toDataset(null, defaults), byteStream, "png");
+  if (PngEncoder.canEncode(raster))
+  {
+    encoder.encode(raster, defaults, byteStream);
+  }
+  else
+  {
+    GDALJavaUtils.saveRaster(raster.toDataset(null, defaults), byteStream, "png");
+  }
   byteStream.close();
+}
 
-//    // final long start = System.currentTimeMillis();
-//
-//    final boolean alpha = raster.bands() == 4;
-//
-//    final int bands = raster.bands();
-//
-//    final ImageInfo imi = new ImageInfo(raster.width(), raster.height(), 8, true);
-//    final ImageLineInt line = new ImageLineInt(imi);
-//
-//    final PngWriter writer = new PngWriter(byteStream, imi);
-//    writer.setFilterType(FilterType.FILTER_NONE); // no filtering
-//    writer.setCompLevel(6);
-//
-//    final int r = 0;
-//    final int g = 1;
-//    final int b = 2;
-//    final int a = alpha ? 3 : 0;
-//
-//    int rnodata;
-//    int gnodata;
-//    int bnodata;
-//
-//    byte red;
-//    byte green;
-//    byte blue;
-//
-//    if (!alpha)
-//    {
-//      rnodata = defaults != null && defaults.length > 0 ? (int) defaults[0] : Integer.MAX_VALUE;
-//      gnodata = defaults != null && defaults.length > 1 ? (int) defaults[1] : Integer.MAX_VALUE;
-//      bnodata = defaults != null && defaults.length > 2 ? (int) defaults[2] : Integer.MAX_VALUE;
-//    }
-//    else
-//    {
-//      rnodata = 0;
-//      gnodata = 0;
-//      bnodata = 0;
-//    }
-//
-//    byte[] px = new byte[bands];
-//    for (int y = 0, j = 0; y < raster.height(); y++)
-//    {
-//      for (int x = 0; x < raster.width(); x++, j += bands)
-//      {
-//
-//        for (int band = 0; band < bands; band++)
-//        {
-//          px[b] = raster.getPixelByte(x, y, b);
-//        }
-//
-//        if (alpha)
-//        {
-//          ImageLineHelper.setPixelRGBA8(line, x, px[0], px[1], px[2], px[3]);
-//        }
-//        else
-//        {
-//          red = (byte)px[0];
-//          green = (byte)px[1];
-//          blue =  (byte)px[2];
-//
-//          ImageLineHelper.setPixelRGBA8(line, x, red, green, blue, (red == rnodata &&
-//              green == gnodata && blue == bnodata) ? 0 : 255);
-//        }
-//      }
-//      writer.writeRow(line);
-//    }
-//    writer.end();
-//
-//    byteStream.close();
+private static PngEncoder createEncoder()
+{
+  Properties props = MrGeoProperties.getInstance();
+  return new PngEncoder(
+      Integer.parseInt(props.getProperty(MrGeoConstants.MRGEO_PNG_COMPRESSION_LEVEL,
+          MrGeoConstants.MRGEO_PNG_COMPRESSION_LEVEL_DEFAULT)),
+      PngEncoder.Filter.fromName(props.getProperty(MrGeoConstants.MRGEO_PNG_FILTER,
+          MrGeoConstants.MRGEO_PNG_FILTER_DEFAULT)),
+      Boolean.parseBoolean(props.getProperty(MrGeoConstants.MRGEO_PNG_PALETTE,
+          MrGeoConstants.MRGEO_PNG_PALETTE_DEFAULT)));
 }
 }
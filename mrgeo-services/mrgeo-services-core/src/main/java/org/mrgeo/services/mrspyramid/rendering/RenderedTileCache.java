@@ -0,0 +1,407 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.services.mrspyramid.rendering;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.EntityTag;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of fully rendered (color scaled and encoded) tiles, keyed on the request signature and the
+ * versions of the pyramids and color scale it was rendered from.  Tiles are kept in a size bounded memory tier, and optionally
+ * in a local disk directory, which survives restarts and is shared by all the service instances
+ * on the machine.  Each tile carries a strong ETag (a digest of the encoded bytes) for conditional
+ * requests.
+ * <p>
+ * The disk tier is bounded too ("tms.tile.cache.dir.size" bytes).  Tiles are written on a
+ * background thread, and when the directory grows past its size, the least recently used tiles
+ * (by modification time, which reads update) are deleted.  Tiles of old pyramid or color scale
+ * versions are never read again, so they are the first to go.
+ */
+public class RenderedTileCache
+{
+private static final Logger log = LoggerFactory.getLogger(RenderedTileCache.class);
+
+private static final String CACHE_SIZE_DEFAULT = Long.toString(64L * 1024 * 1024); // bytes
+private static final String DIR_SIZE_DEFAULT = Long.toString(1024L * 1024 * 1024); // bytes
+
+// a sweep deletes tiles until the directory is down to this fraction of its size, so sweeps are rare
+private static final double SWEEP_TO = 0.9;
+// disk writes waiting for the writer thread, more are dropped (the tiles are still cached in memory)
+private static final int WRITE_QUEUE = 1024;
+// temporary files younger than this may be another instance's tile in progress
+private static final long TEMP_AGE = 60L * 60 * 1000; // ms
+
+private static RenderedTileCache instance = null;
+
+private final Cache<String, Tile> cache;
+private final File directory;
+private final long maxDirBytes;
+private final ThreadPoolExecutor diskPool;
+
+// bytes in the directory, only used on the disk thread
+private long dirBytes;
+
+RenderedTileCache(long maxBytes, File directory)
+{
+  this(maxBytes, directory, Long.parseLong(DIR_SIZE_DEFAULT));
+}
+
+RenderedTileCache(long maxBytes, File directory, long maxDirBytes)
+{
+  this.directory = directory;
+  this.maxDirBytes = maxDirBytes;
+
+  cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxBytes)
+      .weigher(new Weigher<String, Tile>()
+      {
+        @Override
+        public int weigh(String key, Tile tile)
+        {
+          return tile.bytes.length + key.length();
+        }
+      })
+      .recordStats()
+      .build();
+
+  if (directory != null)
+  {
+    diskPool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(WRITE_QUEUE),
+        runnable ->
+        {
+          Thread thread = new Thread(runnable, "RenderedTileCache");
+          thread.setDaemon(true);
+          return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+
+    // size up (and trim) what earlier runs left in the directory
+    diskPool.execute(this::sweep);
+  }
+  else
+  {
+    diskPool = null;
+  }
+}
+
+/**
+ * The shared cache, or null if caching is turned off (a cache size of 0)
+ */
+public static synchronized RenderedTileCache getInstance()
+{
+  if (instance == null)
+  {
+    Properties props = MrGeoProperties.getInstance();
+    long size = Long.parseLong(props.getProperty(MrGeoConstants.MRGEO_TMS_TILE_CACHE_SIZE, CACHE_SIZE_DEFAULT));
+    if (size <= 0)
+    {
+      return null;
+    }
+
+    File dir = null;
+    long dirsize = Long.parseLong(props.getProperty(MrGeoConstants.MRGEO_TMS_TILE_CACHE_DIR_SIZE, DIR_SIZE_DEFAULT));
+    String dirname = props.getProperty(MrGeoConstants.MRGEO_TMS_TILE_CACHE_DIR);
+    if (dirname != null && !dirname.isEmpty())
+    {
+      dir = new File(dirname);
+      if (!dir.isDirectory() && !dir.mkdirs())
+      {
+        log.error("Can't create tile cache directory " + dirname + ", only caching tiles in memory");
+        dir = null;
+      }
+    }
+
+    log.info("Creating rendered tile cache of " + size + " bytes" +
+        (dir == null ? "" : " (disk: " + dirsize + " bytes in " + dir + ")"));
+    instance = new RenderedTileCache(size, dir, dirsize);
+  }
+  return instance;
+}
+
+/**
+ * Build a cache key from all the request parameters that affect the rendered tile, including the
+ * versions of the pyramids and color scale it is rendered from (nulls are fine)
+ */
+public static String key(Object... params)
+{
+  StringBuilder key = new StringBuilder();
+  for (Object param : params)
+  {
+    key.append('|').append(param);
+  }
+  return key.toString();
+}
+
+public Tile get(String key)
+{
+  Tile tile = cache.getIfPresent(key);
+  if (tile == null && directory != null)
+  {
+    tile = readTile(key);
+    if (tile != null)
+    {
+      cache.put(key, tile);
+    }
+  }
+  return tile;
+}
+
+/**
+ * Cache the encoded tile.  The cache takes ownership of the bytes.  The tile is written to the
+ * disk tier in the background
+ */
+public Tile put(String key, byte[] bytes, String mimeType)
+{
+  Tile tile = new Tile(bytes, mimeType, digest(bytes));
+  cache.put(key, tile);
+
+  if (diskPool != null)
+  {
+    diskPool.execute(() -> writeTile(key, tile));
+  }
+  return tile;
+}
+
+/**
+ * Wait for the disk tier to catch up with the puts so far
+ */
+void flush() throws InterruptedException, ExecutionException
+{
+  if (diskPool != null)
+  {
+    diskPool.submit(() -> { }).get();
+  }
+}
+
+public void invalidateAll()
+{
+  cache.invalidateAll();
+}
+
+public CacheStats stats()
+{
+  return cache.stats();
+}
+
+private static String digest(byte[] bytes)
+{
+  try
+  {
+    MessageDigest md = MessageDigest.getInstance("SHA-1");
+    byte[] hash = md.digest(bytes);
+
+    StringBuilder hex = new StringBuilder(hash.length * 2);
+    for (byte b : hash)
+    {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+  catch (NoSuchAlgorithmException e)
+  {
+    // every java has SHA-1
+    throw new IllegalStateException(e);
+  }
+}
+
+private File tileFile(String key)
+{
+  return new File(directory, digest(key.getBytes(StandardCharsets.UTF_8)));
+}
+
+@SuppressWarnings("squid:S1166") // Exception caught and handled
+@SuppressFBWarnings(value = "PATH_TRAVERSAL_IN", justification = "File name is a digest")
+private Tile readTile(String key)
+{
+  File file = tileFile(key);
+  if (!file.exists())
+  {
+    return null;
+  }
+
+  try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+  {
+    // the key is stored too, to guard against digest collisions
+    if (!key.equals(in.readUTF()))
+    {
+      return null;
+    }
+    String mimeType = in.readUTF();
+    String etag = in.readUTF();
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+
+    // the modification time is the last use, for the sweeps
+    diskPool.execute(() -> touch(file));
+
+    return new Tile(bytes, mimeType, etag);
+  }
+  catch (IOException e)
+  {
+    log.warn("Can't read cached tile " + file + ": " + e.getMessage());
+    return null;
+  }
+}
+
+@SuppressFBWarnings(value = "PATH_TRAVERSAL_IN", justification = "File name is a digest")
+private void writeTile(String key, Tile tile)
+{
+  File file = tileFile(key);
+  File tmp = null;
+  try
+  {
+    // write to a temp file and move it, so readers never see a partial tile
+    tmp = File.createTempFile(file.getName(), ".tmp", directory);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+    {
+      out.writeUTF(key);
+      out.writeUTF(tile.mimeType);
+      out.writeUTF(tile.etag);
+      out.writeInt(tile.bytes.length);
+      out.write(tile.bytes);
+    }
+    long replaced = file.length();
+    long written = tmp.length();
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    dirBytes += written - replaced;
+    if (dirBytes > maxDirBytes)
+    {
+      sweep();
+    }
+  }
+  catch (IOException e)
+  {
+    log.warn("Can't write cached tile " + file + ": " + e.getMessage());
+  }
+  finally
+  {
+    if (tmp != null && tmp.exists() && !tmp.delete())
+    {
+      log.warn("Can't delete temporary tile " + tmp);
+    }
+  }
+}
+
+private static void touch(File file)
+{
+  if (!file.setLastModified(System.currentTimeMillis()))
+  {
+    log.debug("Can't touch cached tile " + file);
+  }
+}
+
+/**
+ * Size up the directory, and delete the least recently used tiles when it is too big.  The
+ * directory may be shared with other instances, so the sizes come from the files themselves.
+ */
+private void sweep()
+{
+  File[] files = directory.listFiles();
+  if (files == null)
+  {
+    log.warn("Can't list tile cache directory " + directory);
+    return;
+  }
+
+  long now = System.currentTimeMillis();
+  long[][] entries = new long[files.length][];
+  long total = 0;
+  for (int i = 0; i < files.length; i++)
+  {
+    // lastModified and length are system calls, only make them once
+    long modified = files[i].lastModified();
+    long length = files[i].length();
+    entries[i] = new long[]{modified, length, i};
+    total += length;
+  }
+
+  if (total > maxDirBytes)
+  {
+    Arrays.sort(entries, Comparator.comparingLong(entry -> entry[0]));
+
+    long target = (long) (maxDirBytes * SWEEP_TO);
+    int deleted = 0;
+    for (int i = 0; i < entries.length && total > target; i++)
+    {
+      File file = files[(int) entries[i][2]];
+      if (file.getName().endsWith(".tmp") && now - entries[i][0] < TEMP_AGE)
+      {
+        continue;
+      }
+      if (file.delete())
+      {
+        total -= entries[i][1];
+        deleted++;
+      }
+    }
+    log.info("Deleted " + deleted + " least recently used tiles from " + directory + ", " + total +
+        " bytes left");
+  }
+  dirBytes = total;
+}
+
+public static class Tile
+{
+  private final byte[] bytes;
+  private final String mimeType;
+  private final String etag;
+
+  Tile(byte[] bytes, String mimeType, String etag)
+  {
+    this.bytes = bytes;
+    this.mimeType = mimeType;
+    this.etag = etag;
+  }
+
+  @SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Shared, read-only tile bytes")
+  public byte[] getBytes()
+  {
+    return bytes;
+  }
+
+  public String getMimeType()
+  {
+    return mimeType;
+  }
+
+  public EntityTag getEntityTag()
+  {
+    return new EntityTag(etag);
+  }
+}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.services.mrspyramid.rendering;
+
+import org.gdal.osr.SpatialReference;
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
+import org.mrgeo.data.ProviderProperties;
+import org.mrgeo.data.raster.GeotiffStripWriter;
+import org.mrgeo.data.raster.MrGeoRaster;
+import org.mrgeo.image.MrsPyramidMetadata;
+import org.mrgeo.services.utils.RequestUtils;
+import org.mrgeo.utils.tms.Bounds;
+import org.mrgeo.utils.tms.TMSUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Renders a coverage a strip of rows at a time, and writes each strip to the response (as part of
+ * an uncompressed GeoTIFF) as soon as it is rendered.  Only one strip is ever in memory, so a
+ * coverage can be far larger than the heap, or than a single MrGeoRaster can hold.
+ * <p>
+ * Each strip holds at most "wcs.coverage.memory" bytes.  Strips are rendered with extra rows
+ * above and below, that are thrown away, so the resampling along the seams matches rendering the
+ * whole coverage at once.  There are enough extra rows to cover the resampling kernel, scaled to
+ * the coverage's pixels when the source pixels are bigger.
+ */
+public class StripedCoverageOutput implements StreamingOutput
+{
+private static final Logger log = LoggerFactory.getLogger(StripedCoverageOutput.class);
+
+private static final String MEMORY_DEFAULT = Long.toString(64L * 1024 * 1024); // bytes
+
+private final ImageRenderer renderer;
+private final String layer;
+private final Bounds bounds;
+private final int width;
+private final int height;
+private final String crs;
+private final ProviderProperties providerProperties;
+private final GeotiffStripWriter writer;
+private final int pad;
+
+/**
+ * @param crs the coverage's coordinate system (e.g. "EPSG:4326"), null is WGS84
+ */
+public StripedCoverageOutput(ImageRenderer renderer, String layer, Bounds bounds, int width, int height,
+    String crs, ProviderProperties providerProperties, MrsPyramidMetadata metadata)
+{
+  this.renderer = renderer;
+  this.layer = layer;
+  this.bounds = bounds;
+  this.width = width;
+  this.height = height;
+  this.crs = crs;
+  this.providerProperties = providerProperties;
+
+  int epsg = 4326;
+  boolean geographic = true;
+  if (crs != null && !crs.equalsIgnoreCase("epsg:4326"))
+  {
+    SpatialReference sr = new SpatialReference();
+    sr.SetFromUserInput(crs);
+    sr.AutoIdentifyEPSG();
+
+    geographic = sr.IsGeographic() != 0;
+    String code = sr.GetAuthorityCode(null);
+    if (code == null)
+    {
+      throw new IllegalArgumentException("Can't find the EPSG code for " + crs);
+    }
+    epsg = Integer.parseInt(code);
+  }
+
+  long rowbytes = (long) width * metadata.getBands() * bytesPerSample(metadata);
+  int rowsPerStrip = (int) Math.max(1, Math.min(height, getMemory() / rowbytes));
+
+  writer = new GeotiffStripWriter(width, height, metadata.getBands(), metadata.getTileType(), rowsPerStrip,
+      bounds, epsg, geographic, metadata.getDefaultValues());
+
+  pad = padding(metadata, bounds, height, crs);
+}
+
+/**
+ * The number of extra rows rendered above and below each strip
+ */
+static int padding(MrsPyramidMetadata metadata, Bounds bounds, int height, String crs)
+{
+  Bounds wgs84 = (crs == null || crs.equalsIgnoreCase("epsg:4326")) ? bounds :
+      RequestUtils.reprojectBoundsToWGS84(bounds, crs);
+
+  // the source pixels are never smaller than the max zoom's, when they're bigger than the coverage's
+  // pixels, the kernel covers more coverage rows
+  double source = TMSUtils.resolution(metadata.getMaxZoomLevel(), metadata.getTilesize());
+  double ratio = Math.max(1.0, source / (wgs84.height() / height));
+
+  int radius = ImageRendererAbstract.kernelRadius(ImageRendererAbstract.getResampling(metadata));
+  return (int) Math.max(1, Math.ceil(radius * ratio));
+}
+
+/**
+ * Whether the coverage is too big to render in one piece
+ */
+public static boolean isLarge(MrsPyramidMetadata metadata, int width, int height)
+{
+  return coverageBytes(metadata, width, height) > getMemory();
+}
+
+/**
+ * The size of the raw coverage data
+ */
+public static long coverageBytes(MrsPyramidMetadata metadata, int width, int height)
+{
+  return (long) width * height * metadata.getBands() * bytesPerSample(metadata);
+}
+
+private static int bytesPerSample(MrsPyramidMetadata metadata)
+{
+  return DataBuffer.getDataTypeSize(metadata.getTileType()) / 8;
+}
+
+private static long getMemory()
+{
+  return Long.parseLong(MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_WCS_COVERAGE_MEMORY,
+      MEMORY_DEFAULT));
+}
+
+/**
+ * The number of bytes that will be written
+ */
+public long getLength()
+{
+  return writer.getLength();
+}
+
+@Override
+public void write(OutputStream output) throws IOException
+{
+  long start = System.currentTimeMillis();
+
+  double pixelHeight = bounds.height() / height;
+  int rowsPerStrip = writer.getRowsPerStrip();
+  for (int row = 0; row < height; row += rowsPerStrip)
+  {
+    int rows = Math.min(rowsPerStrip, height - row);
+
+    // the extra rows stay inside the coverage, the edges of the coverage are edges either way
+    int above = Math.min(pad, row);
+    int below = Math.min(pad, height - (row + rows));
+    Bounds strip = new Bounds(bounds.w, bounds.n - (row + rows + below) * pixelHeight,
+        bounds.e, bounds.n - (row - above) * pixelHeight);
+
+    MrGeoRaster raster;
+    try
+    {
+      raster = renderer.renderImage(layer, strip, width, rows + above + below, providerProperties, crs);
+    }
+    catch (ImageRendererException e)
+    {
+      throw new IOException("Error rendering rows " + row + " - " + (row + rows) + " of " + layer, e);
+    }
+
+    writer.writeStrip((above + below == 0) ? raster : raster.clip(0, above, width, rows), output);
+    log.debug("Wrote rows {} - {} of {}", row, row + rows, height);
+  }
+  writer.finish(output);
+
+  log.info("Streamed a {}x{} coverage of {} in {}ms", width, height, layer, System.currentTimeMillis() - start);
+}
+}
@@ -18,9 +18,9 @@ package org.mrgeo.services.utils;
 import org.gdal.osr.CoordinateTransformation;
 import org.gdal.osr.SpatialReference;
 import org.glassfish.jersey.internal.util.collection.MultivaluedStringMap;
-import org.mrgeo.data.DataProviderFactory;
 import org.mrgeo.data.ProviderProperties;
 import org.mrgeo.data.image.MrsImageDataProvider;
+import org.mrgeo.services.mrspyramid.LayerCatalog;
 import org.mrgeo.utils.GDALUtils;
 import org.mrgeo.utils.tms.Bounds;
 import org.slf4j.Logger;
@@ -33,7 +33,6 @@ import javax.ws.rs.core.UriInfo;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -133,25 +132,13 @@ public static MultivaluedMap<String, String> replaceParam(String name, List<Stri
 
 
 /*
- * Returns a list of all MrsPyramid version 2 data in the home data directory
+ * Returns a list of all MrsPyramid version 2 data in the home data directory, from the
+ * layer catalog (which may be a refresh interval behind the data directory)
  */
 public static MrsImageDataProvider[] getPyramidFilesList(
     ProviderProperties providerProperties) throws IOException
 {
-  String[] images = DataProviderFactory.listImages(providerProperties);
-
-  Arrays.sort(images);
-
-  MrsImageDataProvider[] providers = new MrsImageDataProvider[images.length];
-
-  for (int i = 0; i < images.length; i++)
-  {
-    providers[i] = DataProviderFactory.getMrsImageDataProvider(images[i],
-        DataProviderFactory.AccessMode.READ,
-        providerProperties);
-  }
-
-  return providers;
+  return LayerCatalog.getInstance().getSnapshot(providerProperties).getProviders();
 }
 
 
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.services.mrspyramid;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
+import org.mrgeo.data.DataProviderFactory;
+import org.mrgeo.image.MrsPyramidMetadata;
+import org.mrgeo.junit.UnitTest;
+import org.mrgeo.utils.tms.Bounds;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings("all") // Test code, not included in production
+public class LayerCatalogTest
+{
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+@Before
+public void setUp() throws Exception
+{
+  MrGeoProperties.getInstance().setProperty(MrGeoConstants.MRGEO_HDFS_IMAGE, folder.getRoot().toURI().toString());
+  DataProviderFactory.invalidateCache();
+}
+
+@After
+public void teardown()
+{
+  MrGeoProperties.resetProperties();
+  DataProviderFactory.invalidateCache();
+}
+
+@Test
+@Category(UnitTest.class)
+public void snapshot() throws Exception
+{
+  addPyramid("b", null);
+  addPyramid("a", null);
+
+  LayerCatalog catalog = new LayerCatalog(0);
+  LayerCatalog.Snapshot snapshot = catalog.getSnapshot(null);
+
+  assertEquals(Arrays.asList("a", "b"), snapshot.getNames());
+  assertEquals("a", snapshot.getProviders()[0].getResourceName());
+  assertNotNull(snapshot.getLayers().get(1).getMetadata());
+
+  // nothing changed, so the same snapshot
+  assertSame(snapshot, catalog.getSnapshot(null));
+}
+
+@Test
+@Category(UnitTest.class)
+public void documents() throws Exception
+{
+  addPyramid("a", null);
+
+  LayerCatalog catalog = new LayerCatalog(0);
+  AtomicInteger writes = new AtomicInteger();
+  LayerCatalog.DocumentWriter writer = snapshot ->
+  {
+    writes.incrementAndGet();
+    return String.join(",", snapshot.getNames()).getBytes();
+  };
+
+  assertArrayEquals("a".getBytes(), catalog.getSnapshot(null).getDocument("key", writer));
+  assertArrayEquals("a".getBytes(), catalog.getSnapshot(null).getDocument("key", writer));
+  assertEquals(1, writes.get());
+
+  // a new pyramid means a new snapshot, with a new document
+  addPyramid("b", null);
+  assertArrayEquals("a,b".getBytes(), catalog.getSnapshot(null).getDocument("key", writer));
+  assertEquals(2, writes.get());
+}
+
+@Test
+@Category(UnitTest.class)
+public void changedAndRemoved() throws Exception
+{
+  addPyramid("a", null);
+  addPyramid("b", null);
+
+  LayerCatalog catalog = new LayerCatalog(0);
+  LayerCatalog.Snapshot first = catalog.getSnapshot(null);
+
+  // rewriting the metadata (with a new modification time) reloads it
+  File file = addPyramid("b", "changed");
+  file.setLastModified(file.lastModified() + 10000);
+
+  LayerCatalog.Snapshot second = catalog.getSnapshot(null);
+  assertTrue(second.getVersion() > first.getVersion());
+  assertEquals("changed", second.getLayers().get(1).getMetadata().getTag("abstract", null));
+
+  // the first snapshot still has the old layer, and the unchanged layer is shared
+  assertNull(first.getLayers().get(1).getMetadata().getTag("abstract", null));
+  assertNotEquals(first.getLayers().get(1).getVersion(), second.getLayers().get(1).getVersion());
+  assertSame(first.getLayers().get(0), second.getLayers().get(0));
+
+  FileUtils.deleteDirectory(new File(folder.getRoot(), "a"));
+
+  LayerCatalog.Snapshot third = catalog.getSnapshot(null);
+  assertTrue(third.getVersion() > second.getVersion());
+  assertEquals(Arrays.asList("b"), third.getNames());
+}
+
+@Test
+@Category(UnitTest.class)
+public void versions() throws Exception
+{
+  addPyramid("a", null);
+
+  LayerCatalog catalog = new LayerCatalog(0);
+  String version = catalog.getVersion("a", null);
+  assertEquals(version, catalog.getSnapshot(null).getLayer("a").getVersion());
+  assertEquals(version, catalog.getVersion("a", null));
+
+  File file = addPyramid("a", "changed");
+  file.setLastModified(file.lastModified() + 10000);
+  assertNotEquals(version, catalog.getVersion("a", null));
+
+  // pyramids outside the catalog (here, the same one by its full path) fall back to the metadata file
+  String path = new File(folder.getRoot(), "a").toURI().toString();
+  assertNull(catalog.getSnapshot(null).getLayer(path));
+  assertEquals(Long.toString(file.lastModified()), catalog.getVersion(path, null));
+}
+
+@Test
+@Category(UnitTest.class)
+public void refreshInterval() throws Exception
+{
+  addPyramid("a", null);
+
+  LayerCatalog catalog = new LayerCatalog(60 * 60 * 1000L);
+  LayerCatalog.Snapshot snapshot = catalog.getSnapshot(null);
+
+  // not checked again until the interval is up
+  addPyramid("b", null);
+  assertSame(snapshot, catalog.getSnapshot(null));
+
+  catalog.invalidate();
+  assertEquals(Arrays.asList("a", "b"), catalog.getSnapshot(null).getNames());
+}
+
+// A pyramid with only metadata (no tiles), optionally with an abstract
+private File addPyramid(String name, String abstrct) throws IOException
+{
+  MrsPyramidMetadata meta = new MrsPyramidMetadata();
+  meta.setPyramid(name);
+  meta.setBounds(new Bounds(-180, -90, 180, 90));
+  meta.setTilesize(512);
+  meta.setMaxZoomLevel(1);
+  meta.setBands(1);
+  if (abstrct != null)
+  {
+    meta.setTag("abstract", abstrct);
+  }
+
+  File dir = new File(folder.getRoot(), name);
+  dir.mkdirs();
+  File file = new File(dir, "metadata");
+  try (OutputStream os = new FileOutputStream(file))
+  {
+    meta.save(os);
+  }
+  return file;
+}
+}
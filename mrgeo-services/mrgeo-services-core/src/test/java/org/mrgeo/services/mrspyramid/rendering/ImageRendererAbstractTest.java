@@ -0,0 +1,65 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.services.mrspyramid.rendering;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mrgeo.core.MrGeoConstants;
+import org.mrgeo.core.MrGeoProperties;
+import org.mrgeo.junit.UnitTest;
+
+import java.awt.image.DataBuffer;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings("all") // Test code, not included in production
+public class ImageRendererAbstractTest
+{
+@After
+public void teardown()
+{
+  MrGeoProperties.resetProperties();
+}
+
+@Test
+@Category(UnitTest.class)
+public void inMemory() throws Exception
+{
+  MrGeoProperties.getInstance().setProperty(MrGeoConstants.MRGEO_RENDER_MEMORY, "4096");
+
+  assertTrue(ImageRendererAbstract.fitsInMemory(64, 64, 1, DataBuffer.TYPE_BYTE));
+  assertTrue(ImageRendererAbstract.fitsInMemory(32, 32, 1, DataBuffer.TYPE_FLOAT));
+  assertTrue(ImageRendererAbstract.fitsInMemory(16, 16, 2, DataBuffer.TYPE_DOUBLE));
+}
+
+@Test
+@Category(UnitTest.class)
+public void onDisk() throws Exception
+{
+  MrGeoProperties.getInstance().setProperty(MrGeoConstants.MRGEO_RENDER_MEMORY, "4096");
+
+  assertFalse(ImageRendererAbstract.fitsInMemory(65, 64, 1, DataBuffer.TYPE_BYTE));
+
+  // the same number of pixels, but more bands or bigger samples
+  assertFalse(ImageRendererAbstract.fitsInMemory(64, 64, 3, DataBuffer.TYPE_BYTE));
+  assertFalse(ImageRendererAbstract.fitsInMemory(64, 64, 1, DataBuffer.TYPE_SHORT));
+  assertFalse(ImageRendererAbstract.fitsInMemory(32, 32, 2, DataBuffer.TYPE_FLOAT));
+
+  // the sizes don't overflow
+  assertFalse(ImageRendererAbstract.fitsInMemory(100000, 100000, 4, DataBuffer.TYPE_DOUBLE));
+}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2009-2017. DigitalGlobe, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.mrgeo.services.mrspyramid.rendering;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.mrgeo.junit.UnitTest;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings("all") // Test code, not included in production
+public class RenderedTileCacheTest
+{
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+@Test
+@Category(UnitTest.class)
+public void getPut() throws Exception
+{
+  RenderedTileCache cache = new RenderedTileCache(1024 * 1024, null);
+
+  assertNull(cache.get("key"));
+
+  RenderedTileCache.Tile put = cache.put("key", new byte[]{1, 2, 3}, "image/png");
+  RenderedTileCache.Tile tile = cache.get("key");
+
+  assertNotNull(tile);
+  assertArrayEquals(new byte[]{1, 2, 3}, tile.getBytes());
+  assertEquals("image/png", tile.getMimeType());
+  assertEquals(put.getEntityTag(), tile.getEntityTag());
+  assertFalse(tile.getEntityTag().isWeak());
+}
+
+@Test
+@Category(UnitTest.class)
+public void entityTagFollowsBytes() throws Exception
+{
+  RenderedTileCache cache = new RenderedTileCache(1024 * 1024, null);
+
+  RenderedTileCache.Tile a = cache.put("a", new byte[]{1, 2, 3}, "image/png");
+  RenderedTileCache.Tile b = cache.put("b", new byte[]{1, 2, 3}, "image/png");
+  RenderedTileCache.Tile c = cache.put("c", new byte[]{3, 2, 1}, "image/png");
+
+  assertEquals(a.getEntityTag(), b.getEntityTag());
+  assertNotEquals(a.getEntityTag(), c.getEntityTag());
+}
+
+@Test
+@Category(UnitTest.class)
+public void diskTier() throws Exception
+{
+  RenderedTileCache cache = new RenderedTileCache(1024 * 1024, folder.getRoot());
+  RenderedTileCache.Tile put = cache.put("key", new byte[]{1, 2, 3}, "image/jpeg");
+  cache.flush();
+
+  // a new cache (e.g. after a restart) finds the tile on disk
+  RenderedTileCache restarted = new RenderedTileCache(1024 * 1024, folder.getRoot());
+  RenderedTileCache.Tile tile = restarted.get("key");
+
+  assertNotNull(tile);
+  assertArrayEquals(new byte[]{1, 2, 3}, tile.getBytes());
+  assertEquals("image/jpeg", tile.getMimeType());
+  assertEquals(put.getEntityTag(), tile.getEntityTag());
+
+  assertNull(restarted.get("other"));
+}
+
+// Put a tile, and make it (and every tile before it) older than the next one
+private void putOlder(RenderedTileCache cache, String key) throws Exception
+{
+  cache.put(key, new byte[1000], "image/png");
+  cache.flush();
+  for (File file : folder.getRoot().listFiles())
+  {
+    assertTrue(file.setLastModified(file.lastModified() - 10000));
+  }
+}
+
+private long directoryBytes()
+{
+  long bytes = 0;
+  for (File file : folder.getRoot().listFiles())
+  {
+    bytes += file.length();
+  }
+  return bytes;
+}
+
+@Test
+@Category(UnitTest.class)
+public void diskTierBounded() throws Exception
+{
+  RenderedTileCache cache = new RenderedTileCache(1024 * 1024, folder.getRoot(), 2500);
+  putOlder(cache, "a");
+  putOlder(cache, "b");
+  putOlder(cache, "c");
+
+  // the third tile pushed the directory over its size, the oldest went
+  assertTrue(directoryBytes() <= 2500);
+  assertEquals(2, folder.getRoot().listFiles().length);
+  RenderedTileCache restarted = new RenderedTileCache(1024 * 1024, folder.getRoot(), 2500);
+  assertNull(restarted.get("a"));
+  assertNotNull(restarted.get("b"));
+  restarted.flush();
+
+  // a smaller cache trims the directory when it starts, reading "b" made it the most recently used
+  RenderedTileCache smaller = new RenderedTileCache(1024 * 1024, folder.getRoot(), 1500);
+  smaller.flush();
+  assertTrue(directoryBytes() <= 1500);
+  assertNotNull(smaller.get("b"));
+  assertNull(smaller.get("c"));
+}
+
+@Test
+@Category(UnitTest.class)
+public void keyFollowsVersions() throws Exception
+{
+  String key = RenderedTileCache.key("pyramid", "1:abc", 10, 1, 2, "png", null);
+  assertEquals(key, RenderedTileCache.key("pyramid", "1:abc", 10, 1, 2, "png", null));
+  assertNotEquals(key, RenderedTileCache.key("pyramid", "1:abc", 10, 1, 2, "jpg", null));
+
+  // rewriting the pyramid changes its version
+  assertNotEquals(key, RenderedTileCache.key("pyramid", "2:def", 10, 1, 2, "png", null));
+}
+}
@@ -33,6 +33,7 @@ import org.mrgeo.image.MrsImageException;
 import org.mrgeo.image.MrsPyramidMetadata;
 import org.mrgeo.services.Configuration;
 import org.mrgeo.services.SecurityUtils;
+import org.mrgeo.services.mrspyramid.LayerCatalog;
 import org.mrgeo.services.mrspyramid.rendering.*;
 import org.mrgeo.services.tms.TmsService;
 import org.mrgeo.services.utils.RequestUtils;
@@ -50,7 +51,9 @@ import javax.activation.MimetypesFileTypeMap;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.ext.ContextResolver;
@@ -99,6 +102,8 @@ private final double[] tilezOffset = {0.0, -1.0};
 Providers providers;
 @Context
 TmsService service;
+@Context
+Request request;
 private String imageBaseDir = HadoopUtils.getDefaultImageBaseDirectory();
 private int WGS84 = 0;
 private int WEBMERCATOR = 1;
@@ -220,6 +225,27 @@ public Response getTile(@PathParam("version") final String version,
     // Apply mask if requested
     ProviderProperties providerProperties = SecurityUtils.getProviderProperties();
 
+    // the same request on the same versions of the pyramids and color scale always renders the same tile
+    RenderedTileCache tileCache = RenderedTileCache.getInstance();
+    String cacheKey = null;
+    if (tileCache != null)
+    {
+      LayerCatalog catalog = LayerCatalog.getInstance();
+      boolean masked = mask != null && !mask.isEmpty();
+
+      cacheKey = RenderedTileCache.key(pyramid, catalog.getVersion(pyramid, providerProperties),
+          providerProperties == null ? null : providerProperties.toDelimitedString(),
+          profile, z, x, y, format, colorScaleName, colorScale,
+          colorScaleVersion(pyramid, colorScaleName, colorScale, providerProperties),
+          min, max, maskMax, mask, masked ? catalog.getVersion(mask, providerProperties) : null);
+
+      RenderedTileCache.Tile tile = tileCache.get(cacheKey);
+      if (tile != null)
+      {
+        return tileResponse(tile);
+      }
+    }
+
     if (index == WGS84)
     {
       if (mask != null && !mask.isEmpty())
@@ -305,9 +331,16 @@ public Response getTile(@PathParam("version") final String version,
           .getDefaultValues(), renderer.getQuantiles());
     }
 
-    return ((ImageResponseWriter) ImageHandlerFactory.getHandler(format,
-        ImageResponseWriter.class)).write(raster, renderer.getDefaultValues()).build();
+    ImageResponseWriter writer = (ImageResponseWriter) ImageHandlerFactory.getHandler(format,
+        ImageResponseWriter.class);
+    Response response = writer.write(raster, renderer.getDefaultValues()).build();
 
+    if (tileCache != null && response.getStatus() == Status.OK.getStatusCode() &&
+        response.getEntity() instanceof byte[])
+    {
+      return tileResponse(tileCache.put(cacheKey, (byte[]) response.getEntity(), writer.getResponseMimeType()));
+    }
+    return response;
   }
   catch (final IllegalArgumentException e)
   {
@@ -702,6 +735,49 @@ Document rootResourceXml(final String url) throws ParserConfigurationException
   return doc;
 }
 
+// The version of the color scale file the tile is colored with, either the named one or the
+// pyramid's default.  A JSON color scale is part of the key itself.
+private static String colorScaleVersion(String pyramid, String colorScaleName, String colorScale,
+    ProviderProperties providerProperties) throws IOException
+{
+  if (colorScaleName != null)
+  {
+    return ColorScaleManager.getVersion(colorScaleName);
+  }
+  if (colorScale != null)
+  {
+    return null;
+  }
+
+  LayerCatalog.Layer layer = LayerCatalog.getInstance().getSnapshot(providerProperties).getLayer(pyramid);
+  MrsPyramidMetadata meta = (layer != null && layer.getMetadata() != null) ? layer.getMetadata() :
+      DataProviderFactory.getMrsImageDataProvider(pyramid, DataProviderFactory.AccessMode.READ,
+          providerProperties).getMetadataReader().read();
+
+  String csname = meta.getTag(MrGeoConstants.MRGEO_DEFAULT_COLORSCALE);
+  return (csname == null) ? null : ColorScaleManager.getVersion(csname);
+}
+
+// Send a cached tile, or just a 304 if the client's copy (If-None-Match) is still current
+private Response tileResponse(RenderedTileCache.Tile tile)
+{
+  EntityTag etag = tile.getEntityTag();
+  if (request != null)
+  {
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+    if (notModified != null)
+    {
+      return notModified.tag(etag).build();
+    }
+  }
+
+  return Response.ok().entity(tile.getBytes())
+      .encoding(tile.getMimeType())
+      .header("Content-type", tile.getMimeType())
+      .tag(etag)
+      .build();
+}
+
 private Response createEmptyTile(final ImageResponseWriter writer, final int width,
     final int height) throws MrGeoRaster.MrGeoRasterException
 {
@@ -18,15 +18,14 @@ package org.mrgeo.services.tms;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import org.mrgeo.data.DataProviderFactory;
 import org.mrgeo.data.ProviderProperties;
 import org.mrgeo.image.MrsPyramid;
 import org.mrgeo.image.MrsPyramidMetadata;
 import org.mrgeo.services.SecurityUtils;
+import org.mrgeo.services.mrspyramid.LayerCatalog;
 
 import javax.inject.Singleton;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -70,6 +69,6 @@ public MrsPyramidMetadata getMetadata(String raster) throws ExecutionException
 
 public List<String> listImages() throws IOException
 {
-  return Arrays.asList(DataProviderFactory.listImages(SecurityUtils.getProviderProperties()));
+  return LayerCatalog.getInstance().getSnapshot(SecurityUtils.getProviderProperties()).getNames();
 }
 }
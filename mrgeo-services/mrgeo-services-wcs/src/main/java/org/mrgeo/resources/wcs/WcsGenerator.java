@@ -17,14 +17,20 @@ package org.mrgeo.resources.wcs;
 
 import org.mrgeo.core.MrGeoConstants;
 import org.mrgeo.core.MrGeoProperties;
+import org.mrgeo.data.DataProviderFactory;
 import org.mrgeo.data.ProviderProperties;
+import org.mrgeo.data.image.MrsImageDataProvider;
 import org.mrgeo.data.raster.MrGeoRaster;
+import org.mrgeo.image.MrsPyramidMetadata;
 import org.mrgeo.services.SecurityUtils;
 import org.mrgeo.services.Version;
+import org.mrgeo.services.mrspyramid.LayerCatalog;
 import org.mrgeo.services.mrspyramid.rendering.ImageHandlerFactory;
 import org.mrgeo.services.mrspyramid.rendering.ImageRenderer;
 import org.mrgeo.services.mrspyramid.rendering.ImageRendererException;
 import org.mrgeo.services.mrspyramid.rendering.ImageResponseWriter;
+import org.mrgeo.services.mrspyramid.rendering.StripedCoverageOutput;
+import org.mrgeo.services.mrspyramid.rendering.TiffImageResponseWriter;
 import org.mrgeo.services.utils.DocumentUtils;
 import org.mrgeo.services.utils.RequestUtils;
 import org.mrgeo.services.wcs.DescribeCoverageDocumentGenerator;
@@ -47,14 +53,13 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
 @Path("/wcs")
-@SuppressWarnings("squid:S2696")
-// The local statics are used in the singular case where we need a WCS cache, usually when using S3 and you need fast loading
 public class WcsGenerator
 {
 
@@ -62,63 +67,20 @@ private static final Logger log = LoggerFactory.getLogger(WcsGenerator.class);
 private static final String WCS_VERSION = "1.1.0";
 private static final String WCS_SERVICE = "wcs";
 
-// Package Private for testing only
-static Map<Version, Document> capabilities = new HashMap<>();
-private static String baseURI = null;
-
-static
-{
-  if (MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_WCS_CAPABILITIES_CACHE, "true").equals("true"))
-  {
-    new Thread()
-    {
-      public void run()
-      {
-        long sleeptime = 60L * 1000L *
-            Integer.parseInt(
-                MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_WCS_CAPABILITIES_REFRESH, "5"));
-
-        boolean stop = false;
-        while (!stop)
-        {
-          try
-          {
-            for (Version version : capabilities.keySet())
-            {
-              try
-              {
-                log.info("refreshing capabilities for version {}", version);
-                ProviderProperties providerProperties = SecurityUtils.getProviderProperties();
-                Document doc = generateCapabilities(version, baseURI, providerProperties);
-                capabilities.put(version, doc);
-              }
-              catch (ParserConfigurationException | IOException e)
-              {
-                log.error("Exception thrown", e);
-              }
-            }
-            Thread.sleep(sleeptime);
-          }
-          catch (InterruptedException e)
-          {
-            log.error("Thread Inturrupted...  stopping {}", e);
-            stop = true;
-          }
-        }
-      }
-    }.start();
-  }
-
-}
-
 private Version version = new Version(WCS_VERSION);
 
-private static Document generateCapabilities(Version version, String baseURI, ProviderProperties providerProperties)
-    throws IOException, ParserConfigurationException, InterruptedException
+private static byte[] generateCapabilities(Version version, String baseURI, MrsImageDataProvider[] providers)
+    throws IOException, ParserConfigurationException, InterruptedException, TransformerException
 {
   final WcsCapabilities docGen = new WcsCapabilities();
+  Document doc = docGen.generateDoc(version, baseURI + "?", providers);
 
-  return docGen.generateDoc(version, baseURI + "?", RequestUtils.getPyramidFilesList(providerProperties));
+  ByteArrayOutputStream xmlStream = new ByteArrayOutputStream();
+  try (PrintWriter out = new PrintWriter(new OutputStreamWriter(xmlStream, StandardCharsets.UTF_8)))
+  {
+    DocumentUtils.writeDocument(doc, version, WCS_SERVICE, out);
+  }
+  return xmlStream.toByteArray();
 }
 
 
@@ -147,7 +109,6 @@ private Response handleRequest(UriInfo uriInfo, HttpHeaders headers)
   long start = System.currentTimeMillis();
 
   String uri = RequestUtils.buildBaseURI(uriInfo, headers);
-  baseURI = uri;
 
   MultivaluedMap<String, String> allParams = uriInfo.getQueryParameters();
   String request = getQueryParam(allParams, "request", "GetCapabilities");
@@ -287,26 +248,21 @@ private Response getCapabilities(String baseURI, MultivaluedMap<String, String>
 
   try
   {
-    Document doc;
-    if (capabilities.containsKey(version))
+    // the layer catalog keeps the serialized document until a pyramid is added, removed or changed
+    final Version docVersion = version;
+    byte[] xml;
+    if (MrGeoProperties.getInstance().getProperty(MrGeoConstants.MRGEO_WCS_CAPABILITIES_CACHE, "true").equals("true"))
     {
-      log.warn("*** cached!");
-      doc = capabilities.get(version);
+      xml = LayerCatalog.getInstance().getSnapshot(providerProperties).getDocument(
+          WCS_SERVICE + "|" + docVersion + "|" + baseURI,
+          snapshot -> generateCapabilities(docVersion, baseURI, snapshot.getProviders()));
     }
     else
     {
-      log.warn("*** NOT cached!");
-
-      doc = generateCapabilities(version, baseURI, providerProperties);
-      capabilities.put(version, doc);
+      xml = generateCapabilities(docVersion, baseURI, RequestUtils.getPyramidFilesList(providerProperties));
     }
 
-    ByteArrayOutputStream xmlStream = new ByteArrayOutputStream();
-    final PrintWriter out = new PrintWriter(xmlStream);
-    // DocumentUtils.checkForErrors(doc);
-    DocumentUtils.writeDocument(doc, version, WCS_SERVICE, out);
-    out.close();
-    return Response.ok(xmlStream.toString()).type(MediaType.APPLICATION_XML).build();
+    return Response.ok(xml).type(MediaType.APPLICATION_XML).build();
   }
   catch (InterruptedException | TransformerException | ParserConfigurationException | IOException e)
   {
@@ -388,9 +344,14 @@ private Response getCoverage(MultivaluedMap<String, String> allParams,
   }
 
   ImageRenderer renderer;
+  ImageResponseWriter writer;
+  MrsPyramidMetadata metadata;
   try
   {
     renderer = (ImageRenderer) ImageHandlerFactory.getHandler(format, ImageRenderer.class);
+    writer = (ImageResponseWriter) ImageHandlerFactory.getHandler(format, ImageResponseWriter.class);
+    metadata = DataProviderFactory.getMrsImageDataProvider(layer, DataProviderFactory.AccessMode.READ,
+        providerProperties).getMetadataReader().read();
   }
   catch (Exception e)
   {
@@ -398,6 +359,33 @@ private Response getCoverage(MultivaluedMap<String, String> allParams,
     return writeError(Response.Status.BAD_REQUEST, e.getMessage());
   }
 
+  // Large (Geo)TIFFs are rendered and sent a strip at a time, instead of all in memory
+  if (writer instanceof TiffImageResponseWriter && StripedCoverageOutput.isLarge(metadata, width, height))
+  {
+    try
+    {
+      StripedCoverageOutput output = new StripedCoverageOutput(renderer, layer, bounds, width, height, crs,
+          providerProperties, metadata);
+
+      log.info("Streaming " + layer + " (" + output.getLength() + " bytes)");
+      return Response.ok(output, writer.getResponseMimeType())
+          .header("Content-Length", output.getLength())
+          .header("Content-Disposition", "attachment; filename=" + layer + ".tif")
+          .build();
+    }
+    catch (IllegalArgumentException e)
+    {
+      log.error("Unable to stream the image in getCoverage", e);
+      return writeError(Response.Status.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  if (StripedCoverageOutput.coverageBytes(metadata, width, height) > Integer.MAX_VALUE)
+  {
+    return writeError(Response.Status.BAD_REQUEST, "The requested coverage is too large for " + format +
+        ", request a GeoTIFF or a smaller WIDTH and HEIGHT");
+  }
+
   // Return the resulting image
   try
   {
@@ -405,14 +393,12 @@ private Response getCoverage(MultivaluedMap<String, String> allParams,
     MrGeoRaster result = renderer.renderImage(layer, bounds, width, height, providerProperties, crs);
 
     log.info("Generating response");
-    Response.ResponseBuilder builder = ((ImageResponseWriter) ImageHandlerFactory
-        .getHandler(format, ImageResponseWriter.class))
-        .write(result, layer, bounds);
+    Response.ResponseBuilder builder = writer.write(result, layer, bounds);
 
     log.info("Building and returning response");
     return builder.build();
   }
-  catch (IllegalAccessException | InstantiationException | ImageRendererException e)
+  catch (ImageRendererException e)
   {
     log.error("Unable to render the image in getCoverage", e);
     return writeError(Response.Status.BAD_REQUEST, e.getMessage());
@@ -35,6 +35,7 @@ import org.mrgeo.core.MrGeoConstants;
 import org.mrgeo.core.MrGeoProperties;
 import org.mrgeo.data.DataProviderFactory;
 import org.mrgeo.hdfs.utils.HadoopFileUtils;
+import org.mrgeo.services.mrspyramid.LayerCatalog;
 import org.mrgeo.services.utils.ImageTestUtils;
 import org.mrgeo.test.TestUtils;
 import org.slf4j.Logger;
@@ -103,6 +104,7 @@ public static void setUpForJUnit()
   try
   {
     DataProviderFactory.invalidateCache();
+    LayerCatalog.getInstance().invalidate();
 
     // use the top level dir for input data
     input = TestUtils.composeInputDir(WcsGeneratorTestAbstract.class);
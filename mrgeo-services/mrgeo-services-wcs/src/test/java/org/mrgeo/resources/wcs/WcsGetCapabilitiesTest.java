@@ -20,6 +20,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.mrgeo.junit.IntegrationTest;
+import org.mrgeo.services.mrspyramid.LayerCatalog;
 import org.mrgeo.test.TestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,7 +50,7 @@ public static void setUpForJUnit()
 @Before
 public void setup()
 {
-  WcsGenerator.capabilities.clear();
+  LayerCatalog.getInstance().invalidate();
 }
 /*
  * defaults to GetCapabilities request when no request type is specified
@@ -30,6 +30,7 @@ import org.mrgeo.image.MrsPyramid;
 import org.mrgeo.image.MrsPyramidMetadata;
 import org.mrgeo.services.SecurityUtils;
 import org.mrgeo.services.Version;
+import org.mrgeo.services.mrspyramid.LayerCatalog;
 import org.mrgeo.services.mrspyramid.MrsPyramidService;
 import org.mrgeo.services.mrspyramid.MrsPyramidServiceException;
 import org.mrgeo.services.mrspyramid.rendering.*;
@@ -50,8 +51,11 @@ import javax.ws.rs.core.*;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
 import java.awt.image.DataBuffer;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
@@ -812,20 +816,30 @@ private Response getCapabilities(String baseURI, MultivaluedMap<String, String>
   allParams = RequestUtils.replaceParam("VERSION", version.toString(), allParams);
 
   final GetCapabilitiesDocumentGenerator docGen = new GetCapabilitiesDocumentGenerator();
+  final Version docVersion = version;
+  final MultivaluedMap<String, String> docParams = allParams;
   try
   {
-    // The following code re-builds the request URI to include in the GetCapabilities
-    // output. It sorts the parameters so that they are included in the URI in a
-    // predictable order. The reason for this is so that test cases can compare XML
-    // golden files against the XML generated here without worrying about parameters
-    // shifting locations in the URI.
-    final Document doc = docGen.generateDoc(version, baseURI, allParams,
-        RequestUtils.getPyramidFilesList(providerProperties));
+    // The layer catalog keeps the serialized document until a pyramid is added, removed or
+    // changed.  The document only depends on the version and the base URI.
+    final byte[] xml = LayerCatalog.getInstance().getSnapshot(providerProperties).getDocument(
+        "wms|" + docVersion + "|" + baseURI, snapshot ->
+        {
+          // The following code re-builds the request URI to include in the GetCapabilities
+          // output. It sorts the parameters so that they are included in the URI in a
+          // predictable order. The reason for this is so that test cases can compare XML
+          // golden files against the XML generated here without worrying about parameters
+          // shifting locations in the URI.
+          final Document doc = docGen.generateDoc(docVersion, baseURI, docParams, snapshot.getProviders());
 
-    DOMSource source = new DOMSource(doc);
-    return Response.ok(source, MediaType.APPLICATION_XML).build();
+          ByteArrayOutputStream stream = new ByteArrayOutputStream();
+          TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(stream));
+          return stream.toByteArray();
+        });
+
+    return Response.ok(xml, MediaType.APPLICATION_XML).build();
   }
-  catch (InterruptedException | ParserConfigurationException | IOException e)
+  catch (IOException e)
   {
     log.error("Exception thrown", e);
     return writeError(Response.Status.BAD_REQUEST, e.getMessage());